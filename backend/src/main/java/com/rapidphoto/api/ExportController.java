@@ -0,0 +1,131 @@
+package com.rapidphoto.api;
+
+import com.rapidphoto.cqrs.commands.StartExportCommand;
+import com.rapidphoto.cqrs.commands.handlers.StartExportCommandHandler;
+import com.rapidphoto.cqrs.dtos.ExportJobDTO;
+import com.rapidphoto.cqrs.queries.GetExportJobQuery;
+import com.rapidphoto.cqrs.queries.handlers.GetExportJobQueryHandler;
+import com.rapidphoto.infrastructure.export.ExportScope;
+import com.rapidphoto.security.CurrentUser;
+import com.rapidphoto.security.UserPrincipal;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Export Controller - background ZIP exports of whole selections of photos.
+ *
+ * Unlike POST /api/photos/download-batch, which streams a limited batch within the
+ * request, an export is queued and built in the background, with no photo count or
+ * size limit. Progress arrives on the user notification stream
+ * (/api/upload/sessions/notifications/stream) as EXPORT_PROGRESS, EXPORT_COMPLETED
+ * (with a download URL) and EXPORT_FAILED notifications, and can be polled here.
+ */
+@RestController
+@RequestMapping("/api/exports")
+public class ExportController {
+
+    private final StartExportCommandHandler startExportHandler;
+    private final GetExportJobQueryHandler getExportJobHandler;
+
+    public ExportController(
+        StartExportCommandHandler startExportHandler,
+        GetExportJobQueryHandler getExportJobHandler
+    ) {
+        this.startExportHandler = startExportHandler;
+        this.getExportJobHandler = getExportJobHandler;
+    }
+
+    /**
+     * POST /api/exports - Queue an export
+     *
+     * @param request Scope: ALL, TAG (with tagId) or SESSION (with sessionId)
+     * @return 202 Accepted with the queued export
+     */
+    @PostMapping
+    public Mono<ResponseEntity<ExportJobDTO>> startExport(
+        @RequestBody ExportRequest request,
+        @CurrentUser UserPrincipal currentUser
+    ) {
+        StartExportCommand command;
+        try {
+            command = request.toCommand(currentUser.userId());
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        return startExportHandler.handle(command)
+            .map(export -> ResponseEntity.status(HttpStatus.ACCEPTED).body(export))
+            .onErrorResume(StartExportCommandHandler.ScopeNotFoundException.class, e ->
+                Mono.just(ResponseEntity.notFound().build())
+            )
+            .onErrorResume(StartExportCommandHandler.UnauthorizedException.class, e ->
+                Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).build())
+            )
+            .onErrorMap(StartExportCommandHandler.TooManyExportsException.class, e ->
+                new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, e.getMessage(), e)
+            );
+    }
+
+    /**
+     * GET /api/exports - The user's recent exports, newest first
+     */
+    @GetMapping
+    public Flux<ExportJobDTO> listExports(@CurrentUser UserPrincipal currentUser) {
+        return getExportJobHandler.recent(currentUser.userId());
+    }
+
+    /**
+     * GET /api/exports/{exportId} - State of an export; once completed, with a fresh
+     * presigned download URL
+     */
+    @GetMapping("/{exportId}")
+    public Mono<ResponseEntity<ExportJobDTO>> getExport(
+        @PathVariable String exportId,
+        @CurrentUser UserPrincipal currentUser
+    ) {
+        try {
+            UUID exportUuid = UUID.fromString(exportId);
+            return getExportJobHandler.handle(new GetExportJobQuery(exportUuid, currentUser.userId()))
+                .map(ResponseEntity::ok)
+                .onErrorResume(GetExportJobQueryHandler.ExportNotFoundException.class, e ->
+                    Mono.just(ResponseEntity.notFound().build())
+                )
+                .onErrorResume(GetExportJobQueryHandler.UnauthorizedException.class, e ->
+                    Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).build())
+                );
+        } catch (IllegalArgumentException e) {
+            // Invalid UUID format
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+    }
+
+    /**
+     * Request DTO for starting an export.
+     */
+    public record ExportRequest(String scope, String tagId, String sessionId) {
+
+        /**
+         * @throws IllegalArgumentException for an unknown scope, a malformed ID or an ID
+         *                                  that does not match the scope
+         */
+        StartExportCommand toCommand(UUID userId) {
+            if (scope == null) {
+                throw new IllegalArgumentException("Export scope is required");
+            }
+            ExportScope exportScope = ExportScope.valueOf(scope.toUpperCase(Locale.ROOT));
+            if (exportScope != ExportScope.TAG && tagId != null
+                || exportScope != ExportScope.SESSION && sessionId != null) {
+                throw new IllegalArgumentException("ID does not match export scope " + exportScope);
+            }
+            String scopeId = exportScope == ExportScope.TAG ? tagId : sessionId;
+            return new StartExportCommand(userId, exportScope, scopeId != null ? UUID.fromString(scopeId) : null);
+        }
+    }
+}
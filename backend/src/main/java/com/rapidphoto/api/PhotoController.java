@@ -2,25 +2,34 @@ package com.rapidphoto.api;
 
 import com.rapidphoto.cqrs.commands.DeletePhotoCommand;
 import com.rapidphoto.cqrs.commands.MarkPhotoUploadedCommand;
+import com.rapidphoto.cqrs.commands.MarkPhotosUploadedCommand;
 import com.rapidphoto.cqrs.commands.handlers.DeletePhotoCommandHandler;
 import com.rapidphoto.cqrs.commands.handlers.MarkPhotoUploadedCommandHandler;
+import com.rapidphoto.cqrs.commands.handlers.MarkPhotosUploadedCommandHandler;
 import com.rapidphoto.cqrs.dtos.DownloadUrlDTO;
+import com.rapidphoto.cqrs.dtos.PhotoWithTagsDTO;
 import com.rapidphoto.cqrs.queries.GenerateBatchDownloadQuery;
 import com.rapidphoto.cqrs.queries.GetDownloadUrlQuery;
 import com.rapidphoto.cqrs.queries.GetPhotosForUserQuery;
+import com.rapidphoto.cqrs.queries.PhotoCursor;
 import com.rapidphoto.cqrs.queries.handlers.GenerateBatchDownloadHandler;
 import com.rapidphoto.cqrs.queries.handlers.GetDownloadUrlQueryHandler;
 import com.rapidphoto.cqrs.queries.handlers.GetPhotosForUserQueryHandler;
+import com.rapidphoto.domain.photo.PhotoBatchRepository.UploadCompletion;
 import com.rapidphoto.exception.BatchDownloadLimitExceededException;
 import com.rapidphoto.security.CurrentUser;
 import com.rapidphoto.security.UserPrincipal;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -39,10 +48,13 @@ import java.util.stream.Collectors;
 @RequestMapping("/api/photos")
 public class PhotoController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final GetPhotosForUserQueryHandler getPhotosHandler;
     private final GetDownloadUrlQueryHandler getDownloadUrlHandler;
     private final GenerateBatchDownloadHandler generateBatchDownloadHandler;
     private final MarkPhotoUploadedCommandHandler markPhotoUploadedHandler;
+    private final MarkPhotosUploadedCommandHandler markPhotosUploadedHandler;
     private final DeletePhotoCommandHandler deletePhotoHandler;
 
     public PhotoController(
@@ -50,12 +62,14 @@ public class PhotoController {
         GetDownloadUrlQueryHandler getDownloadUrlHandler,
         GenerateBatchDownloadHandler generateBatchDownloadHandler,
         MarkPhotoUploadedCommandHandler markPhotoUploadedHandler,
+        MarkPhotosUploadedCommandHandler markPhotosUploadedHandler,
         DeletePhotoCommandHandler deletePhotoHandler
     ) {
         this.getPhotosHandler = getPhotosHandler;
         this.getDownloadUrlHandler = getDownloadUrlHandler;
         this.generateBatchDownloadHandler = generateBatchDownloadHandler;
         this.markPhotoUploadedHandler = markPhotoUploadedHandler;
+        this.markPhotosUploadedHandler = markPhotosUploadedHandler;
         this.deletePhotoHandler = deletePhotoHandler;
     }
 
@@ -67,16 +81,82 @@ public class PhotoController {
      * @param size Page size (max 100)
      * @param sort Sort field and direction (e.g., "createdAt,desc")
      * @param tagIds Optional list of tag IDs to filter by (AND logic - photos must have ALL tags)
+     * @param cursor Optional keyset cursor from a previous X-Next-Cursor header; overrides page
      * @param currentUser Current authenticated user
-     * @return List of photos with tags
+     * @return List of photos with tags; X-Next-Cursor is set when the page is full
      */
-    @GetMapping
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
     public Mono<ResponseEntity<?>> getPhotos(
         @RequestParam(defaultValue = "0") int page,
         @RequestParam(defaultValue = "30") int size,
         @RequestParam(defaultValue = "createdAt,desc") String sort,
         @RequestParam(required = false) List<String> tagIds,
+        @RequestParam(required = false) String cursor,
+        @CurrentUser UserPrincipal currentUser
+    ) {
+        GetPhotosForUserQuery query;
+        try {
+            query = toPhotosQuery(currentUser, page, size, tagIds, cursor);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().body(e.getMessage()));
+        }
+
+        return getPhotosHandler.handle(query)
+            .collectList()
+            .map(photos -> {
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                // A full page may have more behind it; hand out the last row as the next cursor
+                if (photos.size() == size) {
+                    PhotoWithTagsDTO last = photos.get(photos.size() - 1);
+                    response.header(NEXT_CURSOR_HEADER, new PhotoCursor(last.createdAt(), last.id()).encode());
+                }
+                return response.body(photos);
+            });
+    }
+
+    /**
+     * GET /api/photos (Accept: application/x-ndjson) - Stream the same page one photo per line.
+     * Photo rows are read first so X-Next-Cursor can go out with the headers; each photo is
+     * then written as soon as its tags and view URL resolve, in gallery order.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<?>> streamPhotos(
+        @RequestParam(defaultValue = "0") int page,
+        @RequestParam(defaultValue = "30") int size,
+        @RequestParam(required = false) List<String> tagIds,
+        @RequestParam(required = false) String cursor,
         @CurrentUser UserPrincipal currentUser
+    ) {
+        GetPhotosForUserQuery query;
+        try {
+            query = toPhotosQuery(currentUser, page, size, tagIds, cursor);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().body(e.getMessage()));
+        }
+
+        return getPhotosHandler.findPhotos(query)
+            .map(photos -> {
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON);
+                if (photos.size() == size) {
+                    var last = photos.get(photos.size() - 1);
+                    response.header(NEXT_CURSOR_HEADER, new PhotoCursor(last.getCreatedAt(), last.getId()).encode());
+                }
+                return response.body(getPhotosHandler.withTagsAndUrls(photos));
+            });
+    }
+
+    /**
+     * Build the gallery query from request parameters.
+     *
+     * @throws IllegalArgumentException with a client-facing message if a tag ID or cursor is malformed
+     */
+    private GetPhotosForUserQuery toPhotosQuery(
+        UserPrincipal currentUser,
+        int page,
+        int size,
+        List<String> tagIds,
+        String cursor
     ) {
         // Convert String UUIDs to UUID list
         List<UUID> tagUuids = null;
@@ -86,21 +166,22 @@ public class PhotoController {
                     .map(UUID::fromString)
                     .collect(Collectors.toList());
             } catch (IllegalArgumentException e) {
-                return Mono.just(ResponseEntity.badRequest()
-                    .body("Invalid tag ID format"));
+                throw new IllegalArgumentException("Invalid tag ID format", e);
             }
         }
 
-        var query = new GetPhotosForUserQuery(
+        PhotoCursor photoCursor = null;
+        if (cursor != null && !cursor.isBlank()) {
+            photoCursor = PhotoCursor.decode(cursor);
+        }
+
+        return new GetPhotosForUserQuery(
             currentUser.userId(),
             page,
             size,
-            tagUuids
+            tagUuids,
+            photoCursor
         );
-
-        return getPhotosHandler.handle(query)
-            .collectList()
-            .map(ResponseEntity::ok);
     }
 
     /**
@@ -118,6 +199,7 @@ public class PhotoController {
             MarkPhotoUploadedCommand command = new MarkPhotoUploadedCommand(
                 photoUuid,
                 request.s3Key(),
+                request.transferMillis(),
                 currentUser.userId()
             );
 
@@ -131,7 +213,70 @@ public class PhotoController {
         }
     }
 
-    public record MarkUploadedRequest(String s3Key) {}
+    /**
+     * transferMillis is optional: the client's summed PUT time, used to plan its next uploads.
+     */
+    public record MarkUploadedRequest(String s3Key, Long transferMillis) {}
+
+    /**
+     * POST /api/photos/uploaded-batch - Mark many photos as uploaded at once
+     * Bulk form of /{photoId}/uploaded: one UPDATE and one progress message per session.
+     * Photos that are not the user's, or already completed or failed, are skipped.
+     *
+     * @param request Uploaded objects (photoId, s3Key, optional etag and transferMillis)
+     * @param currentUser Current authenticated user
+     * @return 200 OK with the number of photos marked, or 400 for a malformed request
+     */
+    @PostMapping("/uploaded-batch")
+    public Mono<ResponseEntity<MarkUploadedBatchResponse>> markPhotosUploaded(
+        @RequestBody MarkUploadedBatchRequest request,
+        @CurrentUser UserPrincipal currentUser
+    ) {
+        try {
+            List<UploadCompletion> completions = request.photos().stream()
+                .map(photo -> new UploadCompletion(
+                    UUID.fromString(photo.photoId()), photo.s3Key(), photo.etag(), photo.transferMillis()))
+                .collect(Collectors.toList());
+
+            return markPhotosUploadedHandler.handle(new MarkPhotosUploadedCommand(completions, currentUser.userId()))
+                .map(updatedCount -> ResponseEntity.ok(
+                    new MarkUploadedBatchResponse(updatedCount, completions.size())
+                ));
+        } catch (IllegalArgumentException e) {
+            // Invalid UUID format
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+    }
+
+    /**
+     * One uploaded object in a MarkUploadedBatchRequest.
+     */
+    public record UploadedPhoto(String photoId, String s3Key, String etag, Long transferMillis) {
+        public UploadedPhoto {
+            if (photoId == null || s3Key == null || s3Key.isBlank()) {
+                throw new IllegalArgumentException("photoId and s3Key are required");
+            }
+        }
+    }
+
+    /**
+     * Request DTO for bulk upload completion.
+     */
+    public record MarkUploadedBatchRequest(List<UploadedPhoto> photos) {
+        public MarkUploadedBatchRequest {
+            if (photos == null || photos.isEmpty()) {
+                throw new IllegalArgumentException("photos cannot be empty");
+            }
+            if (photos.size() > 500) {
+                throw new IllegalArgumentException("Maximum 500 photos per batch");
+            }
+        }
+    }
+
+    /**
+     * Response DTO for bulk upload completion.
+     */
+    public record MarkUploadedBatchResponse(int updatedCount, int totalRequested) {}
 
     /**
      * GET /api/photos/{photoId}/download - Get download URL
@@ -168,18 +313,61 @@ public class PhotoController {
      * POST /api/photos/download-batch - Download multiple photos as ZIP
      * Story 3.6: Batch Photo Download
      *
+     * Archives of stored photos with known checksums have a fixed layout; for those a
+     * single Range header is honored (206 Partial Content), with an ETag for If-Range, so
+     * a dropped download can resume where it stopped.
+     *
      * @param request Batch download request with photo IDs
      * @param currentUser Current authenticated user
-     * @return Streaming ZIP file with selected photos
+     * @param httpRequest Request, for its Range and If-Range headers
+     * @param response Response whose buffer factory the ZIP is written into
+     * @return Streaming ZIP file with selected photos; with a Content-Length when all entries are stored
      */
     @PostMapping("/download-batch")
     public Mono<ResponseEntity<Flux<DataBuffer>>> downloadBatch(
         @RequestBody BatchDownloadRequest request,
-        @CurrentUser UserPrincipal currentUser
+        @CurrentUser UserPrincipal currentUser,
+        ServerHttpRequest httpRequest,
+        ServerHttpResponse response
+    ) {
+        return batchDownload(request.photoIds(), currentUser, httpRequest.getHeaders(), response);
+    }
+
+    /**
+     * GET /api/photos/download-batch?photoIds=... - The same ZIP as the POST form, for
+     * clients that resume or split a download with ranged GETs. Like every API call it
+     * needs the Authorization header, so it is not a link to hand to a browser.
+     *
+     * @param photoIds Photo IDs, in archive order
+     * @param currentUser Current authenticated user
+     * @param httpRequest Request, for its Range and If-Range headers
+     * @param response Response whose buffer factory the ZIP is written into
+     * @return Streaming ZIP file, or the requested part of it
+     */
+    @GetMapping("/download-batch")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> downloadBatchRange(
+        @RequestParam List<String> photoIds,
+        @CurrentUser UserPrincipal currentUser,
+        ServerHttpRequest httpRequest,
+        ServerHttpResponse response
+    ) {
+        try {
+            BatchDownloadRequest request = new BatchDownloadRequest(photoIds);
+            return batchDownload(request.photoIds(), currentUser, httpRequest.getHeaders(), response);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+    }
+
+    private Mono<ResponseEntity<Flux<DataBuffer>>> batchDownload(
+        List<String> photoIds,
+        UserPrincipal currentUser,
+        HttpHeaders requestHeaders,
+        ServerHttpResponse response
     ) {
         try {
             // Convert String UUIDs to UUID list
-            List<UUID> photoUuids = request.photoIds().stream()
+            List<UUID> photoUuids = photoIds.stream()
                 .map(UUID::fromString)
                 .collect(Collectors.toList());
 
@@ -188,28 +376,89 @@ public class PhotoController {
                 currentUser.userId()
             );
 
-            Flux<DataBuffer> zipStream = generateBatchDownloadHandler.handle(query);
-
             // Generate ZIP filename with date and count
             String filename = String.format(
                 "photos-%s-%d-items.zip",
                 LocalDate.now().toString(),
-                request.photoIds().size()
+                photoIds.size()
             );
 
-            return Mono.just(
-                ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE)
-                    .header(HttpHeaders.CONTENT_DISPOSITION,
-                        "attachment; filename=\"" + filename + "\"")
-                    .body(zipStream)
-            );
+            return generateBatchDownloadHandler.handle(query, response.bufferFactory())
+                .map(archive -> archiveResponse(archive, filename, requestHeaders))
+                .onErrorResume(GenerateBatchDownloadHandler.PhotoNotFoundException.class, e ->
+                    Mono.just(ResponseEntity.notFound().build())
+                )
+                .onErrorResume(GenerateBatchDownloadHandler.UnauthorizedException.class, e ->
+                    Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).build())
+                )
+                .onErrorMap(BatchDownloadLimitExceededException.class, e ->
+                    new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e)
+                );
         } catch (IllegalArgumentException e) {
             // Invalid UUID format or validation error
             return Mono.just(ResponseEntity.badRequest().build());
         }
     }
 
+    /**
+     * The whole archive, or the one byte range asked for when the archive supports it.
+     */
+    private static ResponseEntity<Flux<DataBuffer>> archiveResponse(
+        GenerateBatchDownloadHandler.BatchArchive archive,
+        String filename,
+        HttpHeaders requestHeaders
+    ) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        long length = archive.contentLength();
+
+        // Archives with deflated entries have no fixed layout and go out chunked
+        if (!archive.supportsRanges()) {
+            if (length >= 0) {
+                headers.setContentLength(length);
+            }
+            return ResponseEntity.ok().headers(headers).body(archive.content());
+        }
+
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        String etag = archive.etag();
+        headers.setETag(etag);
+        HttpRange range = requestedRange(requestHeaders, etag);
+        if (range == null) {
+            headers.setContentLength(length);
+            return ResponseEntity.ok().headers(headers).body(archive.content());
+        }
+
+        long start = range.getRangeStart(length);
+        long end = range.getRangeEnd(length);
+        if (start >= length) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                .build();
+        }
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        headers.setContentLength(end - start + 1);
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers).body(archive.content(start, end));
+    }
+
+    /**
+     * The single byte range requested, or null to send the whole archive: no Range,
+     * an unreadable one, several ranges, or an If-Range naming another version.
+     */
+    private static HttpRange requestedRange(HttpHeaders requestHeaders, String etag) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = requestHeaders.getRange();
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     /**
      * DELETE /api/photos/{photoId} - Delete a photo
      * Soft deletes the photo by setting deletedAt timestamp
@@ -1,7 +1,13 @@
 package com.rapidphoto.api;
 
+import com.rapidphoto.cqrs.commands.AbortMultipartUploadCommand;
+import com.rapidphoto.cqrs.commands.CompleteMultipartUploadCommand;
+import com.rapidphoto.cqrs.commands.InitiatePhotoUploadBatchCommand;
 import com.rapidphoto.cqrs.commands.InitiatePhotoUploadCommand;
 import com.rapidphoto.cqrs.commands.StartUploadSessionCommand;
+import com.rapidphoto.cqrs.commands.handlers.AbortMultipartUploadCommandHandler;
+import com.rapidphoto.cqrs.commands.handlers.CompleteMultipartUploadCommandHandler;
+import com.rapidphoto.cqrs.commands.handlers.InitiatePhotoUploadBatchCommandHandler;
 import com.rapidphoto.cqrs.commands.handlers.InitiatePhotoUploadCommandHandler;
 import com.rapidphoto.cqrs.commands.handlers.StartUploadSessionCommandHandler;
 import com.rapidphoto.security.UserPrincipal;
@@ -9,19 +15,31 @@ import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
  * REST controller for upload endpoints.
  * Story 2.2: Start Upload Session
  * Story 2.3: S3 Pre-Signed URL Generation
+ * Multipart upload completion/abort for large files
+ * Batch initiate for a whole session in one round trip
  */
 @RestController
 @RequestMapping("/api/upload")
@@ -29,13 +47,22 @@ public class UploadController {
 
     private final StartUploadSessionCommandHandler startUploadSessionCommandHandler;
     private final InitiatePhotoUploadCommandHandler initiatePhotoUploadCommandHandler;
+    private final InitiatePhotoUploadBatchCommandHandler initiatePhotoUploadBatchCommandHandler;
+    private final CompleteMultipartUploadCommandHandler completeMultipartUploadCommandHandler;
+    private final AbortMultipartUploadCommandHandler abortMultipartUploadCommandHandler;
 
     public UploadController(
         StartUploadSessionCommandHandler startUploadSessionCommandHandler,
-        InitiatePhotoUploadCommandHandler initiatePhotoUploadCommandHandler
+        InitiatePhotoUploadCommandHandler initiatePhotoUploadCommandHandler,
+        InitiatePhotoUploadBatchCommandHandler initiatePhotoUploadBatchCommandHandler,
+        CompleteMultipartUploadCommandHandler completeMultipartUploadCommandHandler,
+        AbortMultipartUploadCommandHandler abortMultipartUploadCommandHandler
     ) {
         this.startUploadSessionCommandHandler = startUploadSessionCommandHandler;
         this.initiatePhotoUploadCommandHandler = initiatePhotoUploadCommandHandler;
+        this.initiatePhotoUploadBatchCommandHandler = initiatePhotoUploadBatchCommandHandler;
+        this.completeMultipartUploadCommandHandler = completeMultipartUploadCommandHandler;
+        this.abortMultipartUploadCommandHandler = abortMultipartUploadCommandHandler;
     }
 
     /**
@@ -88,23 +115,36 @@ public class UploadController {
      * {
      *   "filename": "photo.jpg",
      *   "fileSizeBytes": 2097152,
-     *   "mimeType": "image/jpeg"
+     *   "mimeType": "image/jpeg",
+     *   "contentHash": "hex sha-256"   // optional
      * }
      *
-     * Response (for files <5MB):
+     * Response (content already in the user's library, upload must be skipped):
+     * {
+     *   "photoId": "uuid-of-existing-photo",
+     *   "duplicate": true
+     * }
+     *
+     * Response (for files below app.upload.multipart-threshold-bytes, default 16MB):
      * {
      *   "photoId": "uuid",
      *   "uploadUrl": "https://s3.amazonaws.com/...",
      *   "s3Key": "uploads/userId/sessionId/photoId-filename.jpg"
      * }
      *
-     * Response (for files >=5MB - multipart):
+     * Response (for larger files - multipart, sized by UploadPlanner):
      * {
      *   "photoId": "uuid",
      *   "uploadId": "multipart-upload-id",
      *   "partUrls": ["url1", "url2", ...],
+     *   "partSize": 16777216,
+     *   "numParts": 7,
+     *   "suggestedConcurrency": 3,
      *   "s3Key": "uploads/userId/sessionId/photoId-filename.jpg"
      * }
+     *
+     * Multipart uploads must be finished with .../multipart/complete
+     * (or discarded with .../multipart/abort).
      */
     @PostMapping("/sessions/{sessionId}/photos/initiate")
     public Mono<ResponseEntity<Map<String, Object>>> initiatePhotoUpload(
@@ -117,7 +157,8 @@ public class UploadController {
             currentUser.userId(),
             request.filename,
             request.fileSizeBytes,
-            request.mimeType
+            request.mimeType,
+            request.contentHash
         );
 
         return initiatePhotoUploadCommandHandler.handle(command)
@@ -148,6 +189,146 @@ public class UploadController {
             });
     }
 
+    /**
+     * POST /api/upload/sessions/{sessionId}/photos
+     * Initiate uploads for a batch of photos in one round trip.
+     * All photo rows are inserted with a single statement; presigned URLs are generated
+     * in parallel and streamed back as they become ready.
+     *
+     * Request body:
+     * {
+     *   "files": [
+     *     { "filename": "a.jpg", "fileSizeBytes": 2097152, "mimeType": "image/jpeg",
+     *       "contentHash": "hex sha-256 (optional)" },
+     *     ...
+     *   ]
+     * }
+     *
+     * Response (Accept: application/x-ndjson streams one line per file, in completion order;
+     * application/json returns the same objects as an array):
+     * { "index": 0, "photoId": "uuid", "uploadUrl": "...", "s3Key": "..." }
+     * { "index": 1, "photoId": "uuid", "uploadId": "...", "partUrls": [...], ... }
+     * { "index": 2, "photoId": "existing-uuid", "duplicate": true }
+     *
+     * "index" refers to the position of the file in the request. As for a single file,
+     * a duplicate of a photo already in the library is not uploaded.
+     */
+    @PostMapping(
+        value = "/sessions/{sessionId}/photos",
+        produces = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE }
+    )
+    public Flux<Map<String, Object>> initiatePhotoUploadBatch(
+        @PathVariable UUID sessionId,
+        @Valid @RequestBody InitiatePhotoUploadBatchRequest request,
+        @AuthenticationPrincipal UserPrincipal currentUser
+    ) {
+        var command = new InitiatePhotoUploadBatchCommand(
+            sessionId,
+            currentUser.userId(),
+            request.files.stream()
+                .map(file -> new InitiatePhotoUploadBatchCommand.FileDescriptor(
+                    file.filename(), file.fileSizeBytes(), file.mimeType(), file.contentHash()))
+                .toList()
+        );
+
+        // Errors before the first element are still reported with a proper status code
+        return initiatePhotoUploadBatchCommandHandler.handle(command)
+            .onErrorMap(IllegalArgumentException.class, e ->
+                new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e))
+            .onErrorMap(IllegalStateException.class, e ->
+                new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e));
+    }
+
+    /**
+     * POST /api/upload/sessions/{sessionId}/photos/{photoId}/multipart/complete
+     * Complete an S3 multipart upload using the ETags returned by each part PUT.
+     *
+     * Request body:
+     * {
+     *   "uploadId": "multipart-upload-id",
+     *   "parts": [{ "partNumber": 1, "etag": "\"abc...\"" }, ...]
+     * }
+     *
+     * Response:
+     * {
+     *   "photoId": "uuid",
+     *   "s3Key": "uploads/userId/sessionId/photoId-filename.jpg",
+     *   "etag": "\"final-etag\""
+     * }
+     */
+    @PostMapping("/sessions/{sessionId}/photos/{photoId}/multipart/complete")
+    public Mono<ResponseEntity<Map<String, Object>>> completeMultipartUpload(
+        @PathVariable UUID sessionId,
+        @PathVariable UUID photoId,
+        @Valid @RequestBody CompleteMultipartUploadRequest request,
+        @AuthenticationPrincipal UserPrincipal currentUser
+    ) {
+        Map<Integer, String> partETags = request.parts.stream()
+            .collect(Collectors.toMap(
+                CompletedPartRequest::partNumber,
+                CompletedPartRequest::etag,
+                (first, second) -> second
+            ));
+
+        var command = new CompleteMultipartUploadCommand(
+            sessionId,
+            photoId,
+            currentUser.userId(),
+            request.uploadId,
+            partETags
+        );
+
+        return completeMultipartUploadCommandHandler.handle(command)
+            .map(result -> ResponseEntity.ok().body(result))
+            .onErrorResume(IllegalArgumentException.class, e ->
+                Mono.just(ResponseEntity
+                    .badRequest()
+                    .body(Map.of("error", e.getMessage())))
+            )
+            .onErrorResume(S3Exception.class, e ->
+                Mono.just(ResponseEntity
+                    .status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "S3 rejected multipart completion: " + e.awsErrorDetails().errorMessage())))
+            );
+    }
+
+    /**
+     * POST /api/upload/sessions/{sessionId}/photos/{photoId}/multipart/abort
+     * Abort an S3 multipart upload (e.g. user cancelled or upload failed).
+     *
+     * Request body:
+     * {
+     *   "uploadId": "multipart-upload-id"
+     * }
+     */
+    @PostMapping("/sessions/{sessionId}/photos/{photoId}/multipart/abort")
+    public Mono<ResponseEntity<Map<String, Object>>> abortMultipartUpload(
+        @PathVariable UUID sessionId,
+        @PathVariable UUID photoId,
+        @Valid @RequestBody AbortMultipartUploadRequest request,
+        @AuthenticationPrincipal UserPrincipal currentUser
+    ) {
+        var command = new AbortMultipartUploadCommand(
+            sessionId,
+            photoId,
+            currentUser.userId(),
+            request.uploadId
+        );
+
+        return abortMultipartUploadCommandHandler.handle(command)
+            .thenReturn(ResponseEntity.noContent().<Map<String, Object>>build())
+            .onErrorResume(IllegalArgumentException.class, e ->
+                Mono.just(ResponseEntity
+                    .badRequest()
+                    .body(Map.of("error", e.getMessage())))
+            )
+            .onErrorResume(S3Exception.class, e ->
+                Mono.just(ResponseEntity
+                    .status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "S3 rejected multipart abort: " + e.awsErrorDetails().errorMessage())))
+            );
+    }
+
     // Request DTOs
 
     public record StartUploadSessionRequest(
@@ -158,6 +339,25 @@ public class UploadController {
     public record InitiatePhotoUploadRequest(
         @NotBlank String filename,
         @Min(1) long fileSizeBytes,
-        @NotBlank String mimeType
+        @NotBlank String mimeType,
+        @Pattern(regexp = "[0-9a-fA-F]{64}") String contentHash // Optional hex SHA-256
+    ) {}
+
+    public record InitiatePhotoUploadBatchRequest(
+        @NotEmpty @Size(max = 100) List<@Valid InitiatePhotoUploadRequest> files
+    ) {}
+
+    public record CompleteMultipartUploadRequest(
+        @NotBlank String uploadId,
+        @NotEmpty List<@Valid CompletedPartRequest> parts
+    ) {}
+
+    public record CompletedPartRequest(
+        @Min(1) @Max(10000) int partNumber,
+        @NotNull String etag
+    ) {}
+
+    public record AbortMultipartUploadRequest(
+        @NotBlank String uploadId
     ) {}
 }
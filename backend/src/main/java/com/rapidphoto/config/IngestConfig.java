@@ -0,0 +1,70 @@
+package com.rapidphoto.config;
+
+import com.rapidphoto.infrastructure.ingest.InMemoryUploadEventQueue;
+import com.rapidphoto.infrastructure.ingest.SqsUploadEventQueue;
+import com.rapidphoto.infrastructure.ingest.UploadEventQueue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.SqsClientBuilder;
+
+import java.net.URI;
+
+/**
+ * Queue of S3 ObjectCreated notifications consumed by UploadIngestionWorker.
+ * app.ingest.queue: none (default, client callbacks only), memory, or sqs.
+ * The SQS client shares the S3 region, credentials and endpoint (LocalStack).
+ */
+@Configuration
+public class IngestConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.ingest.queue", havingValue = "memory")
+    public UploadEventQueue inMemoryUploadEventQueue() {
+        return new InMemoryUploadEventQueue();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.ingest.queue", havingValue = "sqs")
+    public SqsClient sqsClient(
+        @Value("${aws.s3.region}") String region,
+        @Value("${aws.s3.endpoint:}") String endpoint,
+        @Value("${aws.accessKeyId:}") String accessKeyId,
+        @Value("${aws.secretAccessKey:}") String secretAccessKey
+    ) {
+        SqsClientBuilder builder = SqsClient.builder()
+            .region(Region.of(region));
+
+        // Configure credentials if provided
+        if (accessKeyId != null && !accessKeyId.isEmpty() &&
+            secretAccessKey != null && !secretAccessKey.isEmpty()) {
+            builder.credentialsProvider(
+                StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(accessKeyId, secretAccessKey)
+                )
+            );
+        }
+
+        // Configure endpoint override for LocalStack
+        if (endpoint != null && !endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+
+        return builder.build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.ingest.queue", havingValue = "sqs")
+    public UploadEventQueue sqsUploadEventQueue(
+        SqsClient sqsClient,
+        @Value("${app.ingest.sqs.queue-url:}") String queueUrl,
+        @Value("${app.ingest.sqs.wait-seconds:10}") int waitSeconds
+    ) {
+        return new SqsUploadEventQueue(sqsClient, queueUrl, waitSeconds);
+    }
+}
@@ -6,6 +6,8 @@ import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3ClientBuilder;
 import software.amazon.awssdk.services.s3.S3Configuration;
@@ -16,6 +18,9 @@ import java.net.URI;
 /**
  * Configuration for AWS S3 client.
  * Supports both real AWS and LocalStack for testing.
+ *
+ * The async client (Netty, non-blocking) serves streamed reads such as batch ZIP
+ * downloads; the blocking client is used elsewhere on boundedElastic.
  */
 @Configuration
 public class S3Config {
@@ -56,6 +61,30 @@ public class S3Config {
         return builder.build();
     }
 
+    @Bean
+    public S3AsyncClient s3AsyncClient() {
+        S3AsyncClientBuilder builder = S3AsyncClient.builder()
+            .region(Region.of(region));
+
+        // Configure credentials if provided
+        if (accessKeyId != null && !accessKeyId.isEmpty() &&
+            secretAccessKey != null && !secretAccessKey.isEmpty()) {
+            builder.credentialsProvider(
+                StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(accessKeyId, secretAccessKey)
+                )
+            );
+        }
+
+        // Configure endpoint override for LocalStack
+        if (endpoint != null && !endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(endpoint))
+                   .forcePathStyle(true);  // Required for LocalStack
+        }
+
+        return builder.build();
+    }
+
     @Bean
     public S3Presigner s3Presigner() {
         var builder = S3Presigner.builder()
@@ -0,0 +1,12 @@
+package com.rapidphoto.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background tasks (e.g. draining overflowed processing jobs).
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -4,6 +4,7 @@ import com.rapidphoto.security.JwtAuthenticationFilter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
@@ -42,6 +43,13 @@ public class SecurityConfig {
                 }
                 corsConfig.addAllowedMethod("*");
                 corsConfig.addAllowedHeader("*");
+                corsConfig.addExposedHeader("X-Next-Cursor");
+                // Batch ZIP downloads: file name, size and what is needed to resume with a Range request
+                corsConfig.addExposedHeader(HttpHeaders.CONTENT_DISPOSITION);
+                corsConfig.addExposedHeader(HttpHeaders.CONTENT_LENGTH);
+                corsConfig.addExposedHeader(HttpHeaders.CONTENT_RANGE);
+                corsConfig.addExposedHeader(HttpHeaders.ACCEPT_RANGES);
+                corsConfig.addExposedHeader(HttpHeaders.ETAG);
                 corsConfig.setAllowCredentials(true);
                 return corsConfig;
             }))
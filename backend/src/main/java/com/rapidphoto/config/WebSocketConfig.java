@@ -0,0 +1,23 @@
+package com.rapidphoto.config;
+
+import com.rapidphoto.streaming.UploadControlWebSocketHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+
+import java.util.Map;
+
+/**
+ * Reactive WebSocket endpoints, served by WebFlux itself (no servlet websocket starter).
+ * WebFlux registers the WebSocketHandlerAdapter; only the URL mapping is needed here.
+ */
+@Configuration
+public class WebSocketConfig {
+
+    @Bean
+    public HandlerMapping webSocketHandlerMapping(UploadControlWebSocketHandler uploadControlHandler) {
+        // Ahead of annotated controllers, so /ws paths never fall through to them
+        return new SimpleUrlHandlerMapping(Map.of(UploadControlWebSocketHandler.PATH, uploadControlHandler), -1);
+    }
+}
@@ -0,0 +1,14 @@
+package com.rapidphoto.cqrs.commands;
+
+import java.util.UUID;
+
+/**
+ * Command to abort an S3 multipart upload for a photo.
+ * Discards any parts already uploaded for the given upload ID.
+ */
+public record AbortMultipartUploadCommand(
+    UUID sessionId,
+    UUID photoId,
+    UUID userId, // For authorization
+    String uploadId
+) {}
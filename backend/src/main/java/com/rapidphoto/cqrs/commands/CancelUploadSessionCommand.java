@@ -0,0 +1,11 @@
+package com.rapidphoto.cqrs.commands;
+
+import java.util.UUID;
+
+/**
+ * Command to cancel an in-progress upload session.
+ */
+public record CancelUploadSessionCommand(
+    UUID sessionId,
+    UUID userId // For authorization
+) {}
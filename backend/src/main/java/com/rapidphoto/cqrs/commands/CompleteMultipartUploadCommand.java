@@ -0,0 +1,16 @@
+package com.rapidphoto.cqrs.commands;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Command to complete an S3 multipart upload for a photo.
+ * Called by frontend after all parts were uploaded to their presigned URLs.
+ */
+public record CompleteMultipartUploadCommand(
+    UUID sessionId,
+    UUID photoId,
+    UUID userId, // For authorization
+    String uploadId,
+    Map<Integer, String> partETags // Part number (1-based) -> ETag returned by S3
+) {}
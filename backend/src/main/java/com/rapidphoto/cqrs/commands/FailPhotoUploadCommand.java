@@ -0,0 +1,13 @@
+package com.rapidphoto.cqrs.commands;
+
+import java.util.UUID;
+
+/**
+ * Command to mark a photo upload as failed.
+ * Reported by the client when the S3 upload cannot be completed.
+ */
+public record FailPhotoUploadCommand(
+    UUID photoId,
+    String reason,
+    UUID userId // For authorization
+) {}
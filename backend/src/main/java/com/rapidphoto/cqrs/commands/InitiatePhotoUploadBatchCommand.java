@@ -0,0 +1,30 @@
+package com.rapidphoto.cqrs.commands;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Command to initiate uploads for many photos of a session in one request.
+ */
+public record InitiatePhotoUploadBatchCommand(
+    UUID sessionId,
+    UUID userId,
+    List<FileDescriptor> files
+) {
+    /**
+     * Client-side description of one file to upload.
+     */
+    public record FileDescriptor(
+        String filename,
+        long fileSizeBytes,
+        String mimeType,
+        String contentHash  // Optional hex SHA-256 of the file
+    ) {
+        /**
+         * Constructor for clients that do not send a content hash.
+         */
+        public FileDescriptor(String filename, long fileSizeBytes, String mimeType) {
+            this(filename, fileSizeBytes, mimeType, null);
+        }
+    }
+}
@@ -5,11 +5,22 @@ import java.util.UUID;
 /**
  * Command to initiate a photo upload.
  * Story 2.3: S3 Pre-Signed URL Generation
+ *
+ * contentHash is the client's hex SHA-256 of the file, if it computed one. When the
+ * user already has a photo with that content, no upload is started.
  */
 public record InitiatePhotoUploadCommand(
     UUID sessionId,
     UUID userId,
     String filename,
     long fileSizeBytes,
-    String mimeType
-) {}
+    String mimeType,
+    String contentHash  // Optional hex SHA-256 of the file
+) {
+    /**
+     * Constructor for clients that do not send a content hash.
+     */
+    public InitiatePhotoUploadCommand(UUID sessionId, UUID userId, String filename, long fileSizeBytes, String mimeType) {
+        this(sessionId, userId, filename, fileSizeBytes, mimeType, null);
+    }
+}
@@ -9,5 +9,6 @@ import java.util.UUID;
 public record MarkPhotoUploadedCommand(
     UUID photoId,
     String s3Key,
+    Long transferMillis, // Client's summed PUT time, null if not reported
     UUID userId // For authorization
 ) {}
@@ -0,0 +1,15 @@
+package com.rapidphoto.cqrs.commands;
+
+import com.rapidphoto.domain.photo.PhotoBatchRepository.UploadCompletion;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Command to mark many photos as successfully uploaded to S3 at once.
+ * Bulk counterpart of MarkPhotoUploadedCommand.
+ */
+public record MarkPhotosUploadedCommand(
+    List<UploadCompletion> completions,
+    UUID userId // For authorization
+) {}
@@ -0,0 +1,32 @@
+package com.rapidphoto.cqrs.commands;
+
+import com.rapidphoto.infrastructure.export.ExportScope;
+
+import java.util.UUID;
+
+/**
+ * Command to export a selection of a user's photos as a ZIP in the background.
+ *
+ * @param userId User requesting the export
+ * @param scope Which photos to export
+ * @param scopeId Tag ID for TAG, upload session ID for SESSION, null for ALL
+ */
+public record StartExportCommand(
+    UUID userId,
+    ExportScope scope,
+    UUID scopeId
+) {
+    public StartExportCommand {
+        if (userId == null) {
+            throw new IllegalArgumentException("User ID cannot be null");
+        }
+        if (scope == null) {
+            throw new IllegalArgumentException("Export scope cannot be null");
+        }
+        if ((scope == ExportScope.ALL) != (scopeId == null)) {
+            throw new IllegalArgumentException(scope == ExportScope.ALL
+                ? "Exporting all photos takes no tag or session"
+                : "Export scope " + scope + " needs an ID");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.rapidphoto.cqrs.commands.handlers;
+
+import com.rapidphoto.cqrs.commands.AbortMultipartUploadCommand;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.infrastructure.S3Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Handler for AbortMultipartUploadCommand.
+ * Aborts the S3 multipart upload so already-uploaded parts stop accruing storage.
+ */
+@Service
+public class AbortMultipartUploadCommandHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(AbortMultipartUploadCommandHandler.class);
+
+    private final PhotoRepository photoRepository;
+    private final S3Service s3Service;
+
+    public AbortMultipartUploadCommandHandler(
+        PhotoRepository photoRepository,
+        S3Service s3Service
+    ) {
+        this.photoRepository = photoRepository;
+        this.s3Service = s3Service;
+    }
+
+    public Mono<Void> handle(AbortMultipartUploadCommand command) {
+        if (command.uploadId() == null || command.uploadId().isBlank()) {
+            return Mono.error(new IllegalArgumentException("Upload ID is required"));
+        }
+
+        return photoRepository.findById(command.photoId())
+            .switchIfEmpty(Mono.error(new IllegalArgumentException("Photo not found: " + command.photoId())))
+            .flatMap(photo -> {
+                // Verify ownership
+                if (!photo.getUserId().equals(command.userId())
+                    || !command.sessionId().equals(photo.getSessionId())) {
+                    log.warn("User {} attempted to abort multipart upload for photo {} owned by {}",
+                        command.userId(), command.photoId(), photo.getUserId());
+                    return Mono.error(new IllegalArgumentException("Not authorized"));
+                }
+
+                String s3Key = S3Service.buildUploadKey(
+                    photo.getUserId(), photo.getSessionId(), photo.getId(), photo.getFilename());
+
+                return s3Service.abortMultipartUpload(s3Key, command.uploadId());
+            });
+    }
+}
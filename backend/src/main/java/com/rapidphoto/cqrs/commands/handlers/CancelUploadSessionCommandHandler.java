@@ -0,0 +1,53 @@
+package com.rapidphoto.cqrs.commands.handlers;
+
+import com.rapidphoto.cqrs.commands.CancelUploadSessionCommand;
+import com.rapidphoto.domain.upload.UploadSessionRepository;
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Mono;
+
+/**
+ * Handler for CancelUploadSessionCommand.
+ * Moves the session to CANCELLED; photos already uploaded stay in the library.
+ */
+@Service
+public class CancelUploadSessionCommandHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(CancelUploadSessionCommandHandler.class);
+    private final UploadSessionRepository sessionRepository;
+    private final SessionProgressStore progressStore;
+
+    public CancelUploadSessionCommandHandler(
+        UploadSessionRepository sessionRepository,
+        SessionProgressStore progressStore
+    ) {
+        this.sessionRepository = sessionRepository;
+        this.progressStore = progressStore;
+    }
+
+    @Transactional
+    public Mono<Void> handle(CancelUploadSessionCommand command) {
+        log.info("Cancelling upload session {} for user {}", command.sessionId(), command.userId());
+
+        // Persist the hot counters first, so saving the session row does not write stale ones
+        return progressStore.flush(command.sessionId())
+            .then(sessionRepository.findById(command.sessionId()))
+            .switchIfEmpty(Mono.error(new IllegalArgumentException("Upload session not found: " + command.sessionId())))
+            .flatMap(session -> {
+                // Verify ownership
+                if (!session.getUserId().equals(command.userId())) {
+                    log.warn("User {} attempted to cancel session {} owned by {}",
+                        command.userId(), command.sessionId(), session.getUserId());
+                    return Mono.error(new IllegalArgumentException("Not authorized"));
+                }
+
+                // Throws unless the session is still in progress
+                session.cancel();
+                return sessionRepository.save(session);
+            })
+            .then();
+    }
+}
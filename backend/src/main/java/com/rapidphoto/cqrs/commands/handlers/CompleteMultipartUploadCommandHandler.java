@@ -0,0 +1,69 @@
+package com.rapidphoto.cqrs.commands.handlers;
+
+import com.rapidphoto.cqrs.commands.CompleteMultipartUploadCommand;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.infrastructure.S3Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Handler for CompleteMultipartUploadCommand.
+ * Stitches the uploaded parts into the final S3 object.
+ * The photo itself is marked uploaded separately (MarkPhotoUploadedCommand).
+ */
+@Service
+public class CompleteMultipartUploadCommandHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(CompleteMultipartUploadCommandHandler.class);
+
+    private final PhotoRepository photoRepository;
+    private final S3Service s3Service;
+
+    public CompleteMultipartUploadCommandHandler(
+        PhotoRepository photoRepository,
+        S3Service s3Service
+    ) {
+        this.photoRepository = photoRepository;
+        this.s3Service = s3Service;
+    }
+
+    /**
+     * Complete the multipart upload.
+     *
+     * @return Map with photoId, s3Key and the ETag of the assembled object
+     */
+    public Mono<Map<String, Object>> handle(CompleteMultipartUploadCommand command) {
+        if (command.uploadId() == null || command.uploadId().isBlank()) {
+            return Mono.error(new IllegalArgumentException("Upload ID is required"));
+        }
+        if (command.partETags() == null || command.partETags().isEmpty()) {
+            return Mono.error(new IllegalArgumentException("At least one part is required"));
+        }
+
+        return photoRepository.findById(command.photoId())
+            .switchIfEmpty(Mono.error(new IllegalArgumentException("Photo not found: " + command.photoId())))
+            .flatMap(photo -> {
+                // Verify ownership
+                if (!photo.getUserId().equals(command.userId())
+                    || !command.sessionId().equals(photo.getSessionId())) {
+                    log.warn("User {} attempted to complete multipart upload for photo {} owned by {}",
+                        command.userId(), command.photoId(), photo.getUserId());
+                    return Mono.error(new IllegalArgumentException("Not authorized"));
+                }
+
+                String s3Key = S3Service.buildUploadKey(
+                    photo.getUserId(), photo.getSessionId(), photo.getId(), photo.getFilename());
+
+                return s3Service.completeMultipartUpload(s3Key, command.uploadId(), command.partETags())
+                    .map(eTag -> Map.<String, Object>of(
+                        "photoId", photo.getId().toString(),
+                        "s3Key", s3Key,
+                        "etag", eTag
+                    ));
+            });
+    }
+}
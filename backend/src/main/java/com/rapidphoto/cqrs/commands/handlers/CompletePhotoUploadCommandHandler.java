@@ -1,40 +1,46 @@
 package com.rapidphoto.cqrs.commands.handlers;
 
 import com.rapidphoto.cqrs.commands.CompletePhotoUploadCommand;
-import com.rapidphoto.domain.events.PhotoUploadedEvent;
-import com.rapidphoto.domain.events.UploadSessionCompletedEvent;
 import com.rapidphoto.domain.photo.Photo;
 import com.rapidphoto.domain.photo.PhotoRepository;
 import com.rapidphoto.domain.photo.S3Location;
-import com.rapidphoto.domain.upload.UploadSession;
-import com.rapidphoto.domain.upload.UploadSessionRepository;
+import com.rapidphoto.infrastructure.processing.PhotoProcessingQueue;
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
 import com.rapidphoto.streaming.UploadProgressEventHandler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.UUID;
 
 /**
  * Handler for CompletePhotoUploadCommand.
  * Marks photo as completed and updates session progress.
  * Story 2.7: Real-Time Progress Broadcasting
+ *
+ * Session counters are bumped atomically in Redis (SessionProgressStore) and written
+ * behind to upload_sessions, so parallel completions neither lose increments nor
+ * contend on the session row.
  */
 @Service
 public class CompletePhotoUploadCommandHandler {
 
     private final PhotoRepository photoRepository;
-    private final UploadSessionRepository uploadSessionRepository;
+    private final SessionProgressStore progressStore;
     private final UploadProgressEventHandler eventHandler;
+    private final PhotoProcessingQueue processingQueue;
 
     public CompletePhotoUploadCommandHandler(
         PhotoRepository photoRepository,
-        UploadSessionRepository uploadSessionRepository,
-        UploadProgressEventHandler eventHandler
+        SessionProgressStore progressStore,
+        UploadProgressEventHandler eventHandler,
+        PhotoProcessingQueue processingQueue
     ) {
         this.photoRepository = photoRepository;
-        this.uploadSessionRepository = uploadSessionRepository;
+        this.progressStore = progressStore;
         this.eventHandler = eventHandler;
+        this.processingQueue = processingQueue;
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -57,58 +63,18 @@ public class CompletePhotoUploadCommandHandler {
                 // Complete upload
                 photo.completeUpload(command.exifMetadata());
 
-                // Save photo
+                // Save photo, then queue post-upload processing (thumbnails) for after the commit
                 return photoRepository.save(photo)
+                    .flatMap(savedPhoto -> processingQueue.submitAfterCommit(savedPhoto.getId(), savedPhoto.getUserId())
+                        .thenReturn(savedPhoto))
                     .flatMap(savedPhoto -> {
-                        // Update session progress
-                        if (savedPhoto.getSessionId() != null) {
-                            return uploadSessionRepository.findById(savedPhoto.getSessionId())
-                                .flatMap(session -> {
-                                    session.recordPhotoUploaded();
-
-                                    // Check if session is complete
-                                    boolean isSessionComplete =
-                                        (session.getCompletedPhotos() + session.getFailedPhotos())
-                                        == session.getTotalPhotos();
-
-                                    // Save session first (within transaction)
-                                    return uploadSessionRepository.save(session)
-                                        .flatMap(savedSession -> {
-                                            // Create photo uploaded event
-                                            PhotoUploadedEvent photoEvent = new PhotoUploadedEvent(
-                                                savedPhoto.getId(),
-                                                savedPhoto.getUserId(),
-                                                savedPhoto.getSessionId(),
-                                                savedPhoto.getFilename()
-                                            );
-
-                                            // Publish photo uploaded event to Redis
-                                            Mono<Void> photoEventPublish = eventHandler.handlePhotoUploaded(photoEvent);
-
-                                            // If session complete, also publish completion event
-                                            if (isSessionComplete) {
-                                                UploadSessionCompletedEvent completionEvent =
-                                                    new UploadSessionCompletedEvent(
-                                                        savedSession.getId(),
-                                                        savedSession.getUserId(),
-                                                        savedSession.getCompletedPhotos(),
-                                                        savedSession.getFailedPhotos()
-                                                    );
-
-                                                Mono<Void> completionPublish =
-                                                    eventHandler.handleSessionCompleted(completionEvent);
-
-                                                // Execute both publishes in parallel
-                                                return Mono.when(photoEventPublish, completionPublish)
-                                                    .thenReturn(savedPhoto);
-                                            } else {
-                                                return photoEventPublish.thenReturn(savedPhoto);
-                                            }
-                                        });
-                                })
-                                .thenReturn(savedPhoto);
+                        if (savedPhoto.getSessionId() == null) {
+                            return Mono.just(savedPhoto);
                         }
-                        return Mono.just(savedPhoto);
+                        // Atomic increment: the returned counters are this completion's view of the session
+                        return progressStore.recordCompleted(savedPhoto.getSessionId(), savedPhoto.getId())
+                            .flatMap(progress -> eventHandler.publishProgress(List.of(savedPhoto.getId()), progress))
+                            .thenReturn(savedPhoto);
                     })
                     .map(Photo::getId);
             });
@@ -0,0 +1,77 @@
+package com.rapidphoto.cqrs.commands.handlers;
+
+import com.rapidphoto.cqrs.commands.FailPhotoUploadCommand;
+import com.rapidphoto.domain.events.PhotoUploadFailedEvent;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.domain.photo.PhotoStatus;
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
+import com.rapidphoto.streaming.UploadProgressEventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Mono;
+
+/**
+ * Handler for FailPhotoUploadCommand.
+ * Marks the photo as failed, counts it against its session and publishes PHOTO_FAILED,
+ * plus SESSION_COMPLETED if it was the session's last outstanding photo.
+ * Reporting the same failure twice is a no-op.
+ */
+@Service
+public class FailPhotoUploadCommandHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(FailPhotoUploadCommandHandler.class);
+    private final PhotoRepository photoRepository;
+    private final SessionProgressStore progressStore;
+    private final UploadProgressEventHandler eventHandler;
+
+    public FailPhotoUploadCommandHandler(
+        PhotoRepository photoRepository,
+        SessionProgressStore progressStore,
+        UploadProgressEventHandler eventHandler
+    ) {
+        this.photoRepository = photoRepository;
+        this.progressStore = progressStore;
+        this.eventHandler = eventHandler;
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    public Mono<Void> handle(FailPhotoUploadCommand command) {
+        log.info("Marking photo {} as failed: {}", command.photoId(), command.reason());
+
+        return photoRepository.findById(command.photoId())
+            .switchIfEmpty(Mono.error(new IllegalArgumentException("Photo not found: " + command.photoId())))
+            .flatMap(photo -> {
+                // Verify ownership
+                if (!photo.getUserId().equals(command.userId())) {
+                    log.warn("User {} attempted to fail photo {} owned by {}",
+                        command.userId(), command.photoId(), photo.getUserId());
+                    return Mono.error(new IllegalArgumentException("Not authorized"));
+                }
+                if (photo.getUploadStatus() == PhotoStatus.FAILED) {
+                    return Mono.empty(); // Already reported
+                }
+
+                // Throws if the photo already completed
+                photo.failUpload(command.reason());
+
+                return photoRepository.save(photo)
+                    .flatMap(savedPhoto -> {
+                        if (savedPhoto.getSessionId() == null) {
+                            return Mono.empty();
+                        }
+                        PhotoUploadFailedEvent failedEvent = new PhotoUploadFailedEvent(
+                            savedPhoto.getId(),
+                            savedPhoto.getUserId(),
+                            savedPhoto.getSessionId(),
+                            savedPhoto.getFilename(),
+                            command.reason()
+                        );
+                        return progressStore.recordFailed(savedPhoto.getSessionId(), savedPhoto.getId())
+                            .flatMap(progress -> eventHandler.publishProgress(failedEvent, progress));
+                    });
+            })
+            .then();
+    }
+}
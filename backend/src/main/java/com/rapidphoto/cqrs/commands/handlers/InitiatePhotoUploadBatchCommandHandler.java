@@ -0,0 +1,196 @@
+package com.rapidphoto.cqrs.commands.handlers;
+
+import com.rapidphoto.cqrs.commands.InitiatePhotoUploadBatchCommand;
+import com.rapidphoto.domain.photo.Photo;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.domain.upload.UploadSessionRepository;
+import com.rapidphoto.domain.user.UserPreferences;
+import com.rapidphoto.domain.user.UserPreferencesRepository;
+import com.rapidphoto.infrastructure.S3Service;
+import com.rapidphoto.infrastructure.dedup.ContentHashIndex;
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
+import com.rapidphoto.infrastructure.upload.UploadPlanner;
+import com.rapidphoto.infrastructure.upload.UploadThroughputTracker;
+import com.rapidphoto.streaming.UploadProgressEventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Handler for InitiatePhotoUploadBatchCommand.
+ * Creates all photo records of the batch with one multi-row INSERT, then presigns
+ * upload URLs in parallel and emits each result as soon as it is ready.
+ *
+ * Results may arrive out of order; each carries the "index" of its file descriptor.
+ *
+ * Files whose content hash matches a completed photo in the user's library are
+ * skipped as in InitiatePhotoUploadCommandHandler: no row or URL, the existing photoId
+ * with "duplicate": true, and the file counted as completed in the session under its
+ * own "skipId".
+ */
+@Service
+public class InitiatePhotoUploadBatchCommandHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(InitiatePhotoUploadBatchCommandHandler.class);
+    private static final int PRESIGN_CONCURRENCY = 16;
+    private static final int DEDUP_CONCURRENCY = 16;
+
+    private final PhotoRepository photoRepository;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UserPreferencesRepository preferencesRepository;
+    private final S3Service s3Service;
+    private final UploadPlanner uploadPlanner;
+    private final UploadThroughputTracker throughputTracker;
+    private final ContentHashIndex contentHashIndex;
+    private final SessionProgressStore progressStore;
+    private final UploadProgressEventHandler eventHandler;
+
+    public InitiatePhotoUploadBatchCommandHandler(
+        PhotoRepository photoRepository,
+        UploadSessionRepository uploadSessionRepository,
+        UserPreferencesRepository preferencesRepository,
+        S3Service s3Service,
+        UploadPlanner uploadPlanner,
+        UploadThroughputTracker throughputTracker,
+        ContentHashIndex contentHashIndex,
+        SessionProgressStore progressStore,
+        UploadProgressEventHandler eventHandler
+    ) {
+        this.photoRepository = photoRepository;
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.preferencesRepository = preferencesRepository;
+        this.s3Service = s3Service;
+        this.uploadPlanner = uploadPlanner;
+        this.throughputTracker = throughputTracker;
+        this.contentHashIndex = contentHashIndex;
+        this.progressStore = progressStore;
+        this.eventHandler = eventHandler;
+    }
+
+    public Flux<Map<String, Object>> handle(InitiatePhotoUploadBatchCommand command) {
+        if (command.files() == null || command.files().isEmpty()) {
+            return Flux.error(new IllegalArgumentException("At least one file is required"));
+        }
+
+        // Validate descriptors and build domain objects up front (throws IllegalArgumentException)
+        List<Photo> photos = new ArrayList<>(command.files().size());
+        List<String> contentHashes = new ArrayList<>(command.files().size());
+        try {
+            for (InitiatePhotoUploadBatchCommand.FileDescriptor file : command.files()) {
+                photos.add(Photo.initiateWithId(
+                    UUID.randomUUID(),
+                    command.userId(),
+                    command.sessionId(),
+                    file.filename(),
+                    file.fileSizeBytes()
+                ));
+                contentHashes.add(file.contentHash() == null ? null : ContentHashIndex.normalize(file.contentHash()));
+            }
+        } catch (IllegalArgumentException e) {
+            return Flux.error(e);
+        }
+
+        Mono<Integer> concurrentUploads = preferencesRepository.findByUserId(command.userId())
+            .map(UserPreferences::getConcurrentUploads)
+            .defaultIfEmpty(UserPreferences.createDefault(command.userId()).getConcurrentUploads());
+        Double observedThroughput = throughputTracker.bytesPerSecond(command.userId()).orElse(null);
+
+        return uploadSessionRepository.findById(command.sessionId())
+            .filter(session -> session.getUserId().equals(command.userId()))
+            .switchIfEmpty(Mono.error(new IllegalArgumentException("Upload session not found: " + command.sessionId())))
+            .flatMap(session -> session.isActive()
+                ? findDuplicates(command.userId(), contentHashes)
+                : Mono.error(new IllegalStateException("Upload session is not active: " + command.sessionId())))
+            .flatMapMany(duplicates -> {
+                List<Photo> newPhotos = new ArrayList<>(photos.size());
+                for (int index = 0; index < photos.size(); index++) {
+                    if (!duplicates.containsKey(index)) {
+                        newPhotos.add(photos.get(index));
+                    }
+                }
+                Mono<Long> insert = Mono.empty();
+                if (!newPhotos.isEmpty()) {
+                    insert = photoRepository.insertAll(newPhotos)
+                        .doOnNext(inserted -> log.info("Inserted {} photos for session {}", inserted, command.sessionId()));
+                }
+
+                Map<Integer, UUID> skipIds = new HashMap<>();
+                duplicates.keySet().forEach(index -> skipIds.put(index, UUID.randomUUID()));
+
+                return insert
+                    .then(Mono.defer(() -> recordSkipped(command.sessionId(), duplicates, skipIds)))
+                    .then(concurrentUploads)
+                    .flatMapMany(concurrency -> Flux.range(0, photos.size())
+                        .flatMap(index -> duplicates.containsKey(index)
+                            ? Mono.just(duplicateResult(index, duplicates.get(index), skipIds.get(index)))
+                            : presign(command, index, photos.get(index), concurrency, observedThroughput),
+                            PRESIGN_CONCURRENCY));
+            });
+    }
+
+    /**
+     * Existing photo for each file whose content the user already has, by file index.
+     */
+    private Mono<Map<Integer, Photo>> findDuplicates(UUID userId, List<String> contentHashes) {
+        return Flux.range(0, contentHashes.size())
+            .filter(index -> contentHashes.get(index) != null)
+            .flatMap(index -> contentHashIndex.findDuplicate(userId, contentHashes.get(index))
+                .map(existing -> Map.entry(index, existing)), DEDUP_CONCURRENCY)
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue, HashMap::new);
+    }
+
+    /**
+     * Count skipped files as completed, each under its skip ID, so the session can
+     * still reach its total.
+     */
+    private Mono<Void> recordSkipped(UUID sessionId, Map<Integer, Photo> duplicates, Map<Integer, UUID> skipIds) {
+        if (duplicates.isEmpty()) {
+            return Mono.empty();
+        }
+        List<Integer> indexes = List.copyOf(duplicates.keySet());
+        List<UUID> existingIds = indexes.stream().map(index -> duplicates.get(index).getId()).toList();
+        return progressStore.recordSkipped(sessionId, indexes.stream().map(skipIds::get).toList(), existingIds)
+            .flatMap(progress -> eventHandler.publishProgress(existingIds, progress));
+    }
+
+    private static Map<String, Object> duplicateResult(int index, Photo existing, UUID skipId) {
+        log.info("Skipping upload of file {}: duplicate of photo {}", index, existing.getId());
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", index);
+        result.put("photoId", existing.getId().toString());
+        result.put("skipId", skipId.toString());
+        result.put("duplicate", true);
+        return result;
+    }
+
+    private Mono<Map<String, Object>> presign(InitiatePhotoUploadBatchCommand command, int index, Photo photo,
+                                              int concurrency, Double observedThroughput) {
+        InitiatePhotoUploadBatchCommand.FileDescriptor file = command.files().get(index);
+
+        return Mono.defer(() -> s3Service.generatePresignedUploadUrl(
+                command.userId(),
+                command.sessionId(),
+                photo.getId(),
+                photo.getFilename(),
+                file.mimeType(),
+                uploadPlanner.plan(file.fileSizeBytes(), concurrency, observedThroughput)
+            ))
+            .subscribeOn(Schedulers.parallel())
+            .map(presigned -> {
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("index", index);
+                result.putAll(presigned);
+                return result;
+            });
+    }
+}
@@ -3,12 +3,23 @@ package com.rapidphoto.cqrs.commands.handlers;
 import com.rapidphoto.cqrs.commands.InitiatePhotoUploadCommand;
 import com.rapidphoto.domain.photo.Photo;
 import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.domain.user.UserPreferences;
+import com.rapidphoto.domain.user.UserPreferencesRepository;
 import com.rapidphoto.infrastructure.S3Service;
+import com.rapidphoto.infrastructure.dedup.ContentHashIndex;
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
+import com.rapidphoto.infrastructure.upload.UploadPlanner;
+import com.rapidphoto.infrastructure.upload.UploadThroughputTracker;
+import com.rapidphoto.streaming.UploadProgressEventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Mono;
 
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -16,26 +27,91 @@ import java.util.UUID;
  * Handler for InitiatePhotoUploadCommand.
  * Creates a new photo record and generates S3 pre-signed URL.
  * Story 2.3: S3 Pre-Signed URL Generation
+ *
+ * Multipart part size and client concurrency are planned per file from the user's
+ * concurrent upload preference and observed upload throughput.
+ *
+ * If the client sends a content hash that matches a completed photo in the user's
+ * library, nothing is created or presigned: the existing photoId is returned with
+ * "duplicate": true and the client skips the upload. The session's total includes the
+ * skipped file, so it is counted as completed right away, under a fresh "skipId" of its
+ * own: another file matching the same photo is a separate file of the session.
  */
 @Service
 public class InitiatePhotoUploadCommandHandler {
 
+    private static final Logger log = LoggerFactory.getLogger(InitiatePhotoUploadCommandHandler.class);
+
     private final PhotoRepository photoRepository;
     private final S3Service s3Service;
+    private final UserPreferencesRepository preferencesRepository;
+    private final UploadPlanner uploadPlanner;
+    private final UploadThroughputTracker throughputTracker;
     private final ApplicationEventPublisher eventPublisher;
+    private final ContentHashIndex contentHashIndex;
+    private final SessionProgressStore progressStore;
+    private final UploadProgressEventHandler eventHandler;
 
     public InitiatePhotoUploadCommandHandler(
         PhotoRepository photoRepository,
         S3Service s3Service,
-        ApplicationEventPublisher eventPublisher
+        UserPreferencesRepository preferencesRepository,
+        UploadPlanner uploadPlanner,
+        UploadThroughputTracker throughputTracker,
+        ApplicationEventPublisher eventPublisher,
+        ContentHashIndex contentHashIndex,
+        SessionProgressStore progressStore,
+        UploadProgressEventHandler eventHandler
     ) {
         this.photoRepository = photoRepository;
         this.s3Service = s3Service;
+        this.preferencesRepository = preferencesRepository;
+        this.uploadPlanner = uploadPlanner;
+        this.throughputTracker = throughputTracker;
         this.eventPublisher = eventPublisher;
+        this.contentHashIndex = contentHashIndex;
+        this.progressStore = progressStore;
+        this.eventHandler = eventHandler;
     }
 
     @Transactional(rollbackFor = Exception.class)
     public Mono<Map<String, Object>> handle(InitiatePhotoUploadCommand command) {
+        if (command.contentHash() == null) {
+            return initiate(command);
+        }
+
+        String contentHash;
+        try {
+            contentHash = ContentHashIndex.normalize(command.contentHash());
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+
+        return contentHashIndex.findDuplicate(command.userId(), contentHash)
+            .flatMap(existing -> {
+                log.info("Skipping upload of {}: duplicate of photo {}", command.filename(), existing.getId());
+                UUID skipId = UUID.randomUUID();
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("photoId", existing.getId().toString());
+                result.put("skipId", skipId.toString());
+                result.put("duplicate", true);
+                return recordSkipped(command.sessionId(), skipId, existing.getId()).thenReturn(result);
+            })
+            .switchIfEmpty(Mono.defer(() -> initiate(command)));
+    }
+
+    /**
+     * Count a skipped file as completed, so its session can still reach its total.
+     */
+    private Mono<Void> recordSkipped(UUID sessionId, UUID skipId, UUID existingPhotoId) {
+        if (sessionId == null) {
+            return Mono.empty();
+        }
+        return progressStore.recordSkipped(sessionId, List.of(skipId), List.of(existingPhotoId))
+            .flatMap(progress -> eventHandler.publishProgress(List.of(existingPhotoId), progress));
+    }
+
+    private Mono<Map<String, Object>> initiate(InitiatePhotoUploadCommand command) {
         UUID photoId = UUID.randomUUID();
 
         // Create new photo with the SAME photoId that will be used in S3 key and returned to frontend
@@ -47,18 +123,25 @@ public class InitiatePhotoUploadCommandHandler {
             command.fileSizeBytes()
         );
 
-        // Generate pre-signed URL using the SAME photoId
-        Map<String, Object> presignedUrlData = s3Service.generatePresignedUploadUrl(
-            command.userId(),
-            command.sessionId(),
-            photoId,
-            command.filename(),
-            command.fileSizeBytes(),
-            command.mimeType()
-        );
-
-        // Save photo (will have same photoId as returned to frontend)
+        // Save photo first (will have same photoId as returned to frontend), then
+        // generate pre-signed URL(s) using the SAME photoId. Multipart uploads are
+        // created in S3 at this point, so only do it once the row is persisted.
         return photoRepository.save(photo)
-            .thenReturn(presignedUrlData);
+            .then(preferencesRepository.findByUserId(command.userId())
+                .map(UserPreferences::getConcurrentUploads)
+                .defaultIfEmpty(UserPreferences.createDefault(command.userId()).getConcurrentUploads()))
+            .map(concurrentUploads -> uploadPlanner.plan(
+                command.fileSizeBytes(),
+                concurrentUploads,
+                throughputTracker.bytesPerSecond(command.userId()).orElse(null)
+            ))
+            .flatMap(plan -> s3Service.generatePresignedUploadUrl(
+                command.userId(),
+                command.sessionId(),
+                photoId,
+                photo.getFilename(),
+                command.mimeType(),
+                plan
+            ));
     }
 }
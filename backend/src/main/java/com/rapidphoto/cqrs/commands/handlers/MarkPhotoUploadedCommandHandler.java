@@ -5,6 +5,8 @@ import com.rapidphoto.domain.photo.Photo;
 import com.rapidphoto.domain.photo.PhotoRepository;
 import com.rapidphoto.domain.photo.PhotoStatus;
 import com.rapidphoto.domain.photo.S3Location;
+import com.rapidphoto.infrastructure.processing.PhotoProcessingQueue;
+import com.rapidphoto.infrastructure.upload.UploadThroughputTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,6 +14,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+
 /**
  * Marks a photo as successfully uploaded after S3 upload completes.
  */
@@ -20,13 +24,19 @@ public class MarkPhotoUploadedCommandHandler {
 
     private static final Logger log = LoggerFactory.getLogger(MarkPhotoUploadedCommandHandler.class);
     private final PhotoRepository photoRepository;
+    private final UploadThroughputTracker throughputTracker;
+    private final PhotoProcessingQueue processingQueue;
     private final String bucketName;
 
     public MarkPhotoUploadedCommandHandler(
         PhotoRepository photoRepository,
+        UploadThroughputTracker throughputTracker,
+        PhotoProcessingQueue processingQueue,
         @Value("${aws.s3.bucket-name}") String bucketName
     ) {
         this.photoRepository = photoRepository;
+        this.throughputTracker = throughputTracker;
+        this.processingQueue = processingQueue;
         this.bucketName = bucketName;
     }
 
@@ -51,8 +61,15 @@ public class MarkPhotoUploadedCommandHandler {
                 // Complete the upload
                 photo.completeUpload(null);
 
+                // Feed upload planning for this user's next large files
+                if (command.transferMillis() != null) {
+                    throughputTracker.record(
+                        photo.getUserId(), photo.getFileSize(), Duration.ofMillis(command.transferMillis()));
+                }
+
                 log.info("Photo {} marked as COMPLETED", command.photoId());
-                return photoRepository.save(photo);
+                return photoRepository.save(photo)
+                    .flatMap(savedPhoto -> processingQueue.submitAfterCommit(savedPhoto.getId(), savedPhoto.getUserId()));
             })
             .then();
     }
@@ -0,0 +1,103 @@
+package com.rapidphoto.cqrs.commands.handlers;
+
+import com.rapidphoto.cqrs.commands.MarkPhotosUploadedCommand;
+import com.rapidphoto.domain.photo.PhotoBatchRepository.CompletedUpload;
+import com.rapidphoto.domain.photo.PhotoBatchRepository.UploadCompletion;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.infrastructure.processing.PhotoProcessingQueue;
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
+import com.rapidphoto.infrastructure.upload.UploadThroughputTracker;
+import com.rapidphoto.streaming.UploadProgressEventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Marks many photos as uploaded with one set-based UPDATE.
+ *
+ * Photos of another user, or already completed or failed, are skipped rather than
+ * rejected, so a retried batch is harmless. Each session touched gets one counter
+ * increment and one PHOTO_UPLOADED message listing all of its photos, plus
+ * SESSION_COMPLETED if the batch finished it.
+ */
+@Service
+public class MarkPhotosUploadedCommandHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(MarkPhotosUploadedCommandHandler.class);
+    private final PhotoRepository photoRepository;
+    private final SessionProgressStore progressStore;
+    private final UploadProgressEventHandler eventHandler;
+    private final UploadThroughputTracker throughputTracker;
+    private final PhotoProcessingQueue processingQueue;
+    private final String bucketName;
+
+    public MarkPhotosUploadedCommandHandler(
+        PhotoRepository photoRepository,
+        SessionProgressStore progressStore,
+        UploadProgressEventHandler eventHandler,
+        UploadThroughputTracker throughputTracker,
+        PhotoProcessingQueue processingQueue,
+        @Value("${aws.s3.bucket-name}") String bucketName
+    ) {
+        this.photoRepository = photoRepository;
+        this.progressStore = progressStore;
+        this.eventHandler = eventHandler;
+        this.throughputTracker = throughputTracker;
+        this.processingQueue = processingQueue;
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * @return Number of photos this call moved to COMPLETED
+     */
+    @Transactional
+    public Mono<Integer> handle(MarkPhotosUploadedCommand command) {
+        return photoRepository.completeUploads(command.userId(), bucketName, command.completions())
+            .collectList()
+            .flatMap(completed -> {
+                log.info("Marked {} of {} photos as COMPLETED for user {}",
+                    completed.size(), command.completions().size(), command.userId());
+
+                Map<UUID, Long> transferMillisByPhoto = new HashMap<>();
+                for (UploadCompletion completion : command.completions()) {
+                    if (completion.transferMillis() != null) {
+                        transferMillisByPhoto.put(completion.photoId(), completion.transferMillis());
+                    }
+                }
+                for (CompletedUpload photo : completed) {
+                    Long transferMillis = transferMillisByPhoto.get(photo.photoId());
+                    if (transferMillis != null && photo.fileSize() != null) {
+                        throughputTracker.record(command.userId(), photo.fileSize(), Duration.ofMillis(transferMillis));
+                    }
+                }
+
+                Map<UUID, List<UUID>> photosBySession = completed.stream()
+                    .filter(photo -> photo.sessionId() != null)
+                    .collect(Collectors.groupingBy(
+                        CompletedUpload::sessionId,
+                        LinkedHashMap::new,
+                        Collectors.mapping(CompletedUpload::photoId, Collectors.toList())
+                    ));
+
+                // Processing reloads the photos, so it is queued for once the UPDATE commits
+                return Flux.fromIterable(completed)
+                    .concatMap(photo -> processingQueue.submitAfterCommit(photo.photoId(), command.userId()))
+                    .thenMany(Flux.fromIterable(photosBySession.entrySet()))
+                    .concatMap(session -> progressStore.recordCompleted(session.getKey(), session.getValue())
+                        .flatMap(progress -> eventHandler.publishProgress(session.getValue(), progress)))
+                    .then(Mono.just(completed.size()));
+            });
+    }
+}
@@ -0,0 +1,115 @@
+package com.rapidphoto.cqrs.commands.handlers;
+
+import com.rapidphoto.cqrs.commands.StartExportCommand;
+import com.rapidphoto.cqrs.dtos.ExportJobDTO;
+import com.rapidphoto.domain.tag.Tag;
+import com.rapidphoto.domain.tag.TagRepository;
+import com.rapidphoto.domain.upload.UploadSession;
+import com.rapidphoto.domain.upload.UploadSessionRepository;
+import com.rapidphoto.infrastructure.export.ExportJobRepository;
+import com.rapidphoto.infrastructure.export.ExportWorker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Handler for StartExportCommand.
+ * Checks that the tag or session belongs to the user, then queues the export for
+ * ExportWorker; the archive is built in the background and progress is sent on the
+ * user's notification stream.
+ */
+@Service
+public class StartExportCommandHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(StartExportCommandHandler.class);
+
+    private final ExportJobRepository exportJobRepository;
+    private final TagRepository tagRepository;
+    private final UploadSessionRepository sessionRepository;
+    private final ExportWorker exportWorker;
+    private final int maxActivePerUser;
+
+    public StartExportCommandHandler(
+        ExportJobRepository exportJobRepository,
+        TagRepository tagRepository,
+        UploadSessionRepository sessionRepository,
+        ExportWorker exportWorker,
+        @Value("${app.export.max-active-per-user:2}") int maxActivePerUser
+    ) {
+        this.exportJobRepository = exportJobRepository;
+        this.tagRepository = tagRepository;
+        this.sessionRepository = sessionRepository;
+        this.exportWorker = exportWorker;
+        this.maxActivePerUser = maxActivePerUser;
+    }
+
+    public Mono<ExportJobDTO> handle(StartExportCommand command) {
+        return checkScope(command)
+            .then(Mono.defer(() -> exportJobRepository.countActiveByUserId(command.userId())))
+            .flatMap(active -> {
+                if (active >= maxActivePerUser) {
+                    return Mono.error(new TooManyExportsException(
+                        "At most " + maxActivePerUser + " exports can run at once"));
+                }
+                return exportJobRepository.insert(
+                    command.userId(), command.scope().name(), command.scopeId(), Instant.now());
+            })
+            .doOnNext(job -> {
+                log.info("Queued {} export {} for user {}", job.scope(), job.id(), command.userId());
+                // Start it now if a worker is free, rather than at the next poll
+                exportWorker.poll();
+            })
+            .map(ExportJobDTO::from);
+    }
+
+    /**
+     * Fails unless the tag or session being exported exists and belongs to the user.
+     */
+    private Mono<Void> checkScope(StartExportCommand command) {
+        Mono<UUID> owner = switch (command.scope()) {
+            case ALL -> Mono.just(command.userId());
+            case TAG -> tagRepository.findById(command.scopeId())
+                .map(Tag::getUserId);
+            case SESSION -> sessionRepository.findById(command.scopeId())
+                .map(UploadSession::getUserId);
+        };
+        return owner
+            .switchIfEmpty(Mono.error(new ScopeNotFoundException(
+                command.scope() + " not found: " + command.scopeId())))
+            .flatMap(userId -> userId.equals(command.userId())
+                ? Mono.<Void>empty()
+                : Mono.error(new UnauthorizedException("Not authorized to export " + command.scope())));
+    }
+
+    /**
+     * Exception thrown when the tag or session to export does not exist.
+     */
+    public static class ScopeNotFoundException extends RuntimeException {
+        public ScopeNotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Exception thrown when the tag or session belongs to another user.
+     */
+    public static class UnauthorizedException extends RuntimeException {
+        public UnauthorizedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Exception thrown when the user already has the maximum number of exports queued or running.
+     */
+    public static class TooManyExportsException extends RuntimeException {
+        public TooManyExportsException(String message) {
+            super(message);
+        }
+    }
+}
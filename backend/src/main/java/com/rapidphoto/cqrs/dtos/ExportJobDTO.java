@@ -0,0 +1,47 @@
+package com.rapidphoto.cqrs.dtos;
+
+import com.rapidphoto.infrastructure.export.ExportJob;
+
+import java.time.Instant;
+
+/**
+ * DTO for a background export.
+ */
+public record ExportJobDTO(
+    String id,
+    String scope,               // ALL, TAG or SESSION
+    String scopeId,             // Tag or session ID, null for ALL
+    String status,              // PENDING, RUNNING, COMPLETED or FAILED
+    Integer photoCount,         // Null until the export starts
+    long bytesWritten,
+    int progress,               // 0-100
+    String downloadUrl,         // Presigned S3 URL, once COMPLETED
+    String downloadUrlExpiresAt, // ISO-8601 timestamp
+    String error,
+    String createdAt,
+    String completedAt
+) {
+    /**
+     * DTO for a job without a download link.
+     */
+    public static ExportJobDTO from(ExportJob job) {
+        return from(job, null, null);
+    }
+
+    public static ExportJobDTO from(ExportJob job, String downloadUrl, Instant downloadUrlExpiresAt) {
+        return new ExportJobDTO(
+            job.id().toString(),
+            job.scope(),
+            job.scopeId() != null ? job.scopeId().toString() : null,
+            job.status(),
+            job.photoCount(),
+            job.bytesWritten(),
+            job.progress(),
+            downloadUrl,
+            downloadUrlExpiresAt != null ? downloadUrlExpiresAt.toString() : null,
+            job.error(),
+            job.createdAt() != null ? job.createdAt().toString() : null,
+            job.completedAt() != null ? job.completedAt().toString() : null
+        );
+    }
+}
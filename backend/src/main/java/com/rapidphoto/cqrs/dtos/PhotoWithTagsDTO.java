@@ -11,6 +11,7 @@ import java.util.UUID;
 /**
  * DTO for Photo data with tags.
  * Used for gallery views where tags need to be displayed.
+ * thumbnailUrl is null until the photo's thumbnails have been generated.
  */
 public record PhotoWithTagsDTO(
     UUID id,
@@ -20,6 +21,7 @@ public record PhotoWithTagsDTO(
     long fileSize,
     String s3Key,
     String storageUrl,
+    String thumbnailUrl,
     PhotoStatus uploadStatus,
     int progress,
     Map<String, Object> metadata,
@@ -39,6 +41,7 @@ public record PhotoWithTagsDTO(
             photo.getFileSize(),
             photo.getS3Location() != null ? photo.getS3Location().getKey() : null,
             photo.getS3Location() != null ? photo.getS3Location().toUri() : null,
+            null,
             photo.getUploadStatus(),
             photo.getProgress(),
             photo.getMetadata(),
@@ -60,6 +63,7 @@ public record PhotoWithTagsDTO(
             photoDTO.fileSize(),
             photoDTO.s3Key(),
             photoDTO.storageUrl(),
+            null,
             photoDTO.uploadStatus(),
             photoDTO.progress(),
             photoDTO.metadata(),
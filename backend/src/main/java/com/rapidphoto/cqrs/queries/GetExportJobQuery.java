@@ -0,0 +1,11 @@
+package com.rapidphoto.cqrs.queries;
+
+import java.util.UUID;
+
+/**
+ * Query for the state of a background export, with a download link once it is done.
+ */
+public record GetExportJobQuery(
+    UUID exportId,
+    UUID userId
+) {}
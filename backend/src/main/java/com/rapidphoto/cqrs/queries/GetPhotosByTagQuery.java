@@ -4,13 +4,19 @@ import java.util.UUID;
 
 /**
  * Query to get photos by tag with pagination.
+ * A cursor, when present, takes precedence over page (keyset pagination).
  */
 public record GetPhotosByTagQuery(
     UUID userId,
     UUID tagId,
     int page,
-    int size
+    int size,
+    PhotoCursor cursor
 ) {
+    public GetPhotosByTagQuery(UUID userId, UUID tagId, int page, int size) {
+        this(userId, tagId, page, size, null);
+    }
+
     public GetPhotosByTagQuery {
         if (page < 0) {
             throw new IllegalArgumentException("Page must be >= 0");
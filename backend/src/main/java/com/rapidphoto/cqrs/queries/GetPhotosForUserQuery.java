@@ -6,18 +6,29 @@ import java.util.UUID;
 /**
  * Query to get photos for a user with pagination and optional tag filtering.
  * Story 3.4: Tag Filter & Search - Added tagIds for filtering
+ *
+ * When a cursor is given the page starts right after it (keyset pagination) and
+ * page is ignored; otherwise page selects an offset for older clients.
  */
 public record GetPhotosForUserQuery(
     UUID userId,
     int page,
     int size,
-    List<UUID> tagIds  // Optional tag filter (AND logic - photos must have ALL tags)
+    List<UUID> tagIds,  // Optional tag filter (AND logic - photos must have ALL tags)
+    PhotoCursor cursor  // Optional keyset cursor (last photo of the previous page)
 ) {
     /**
      * Constructor for backward compatibility (no tag filter).
      */
     public GetPhotosForUserQuery(UUID userId, int page, int size) {
-        this(userId, page, size, null);
+        this(userId, page, size, null, null);
+    }
+
+    /**
+     * Constructor for offset pagination with tag filter.
+     */
+    public GetPhotosForUserQuery(UUID userId, int page, int size, List<UUID> tagIds) {
+        this(userId, page, size, tagIds, null);
     }
 
     public GetPhotosForUserQuery {
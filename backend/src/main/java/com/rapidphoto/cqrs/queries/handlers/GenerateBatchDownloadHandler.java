@@ -4,24 +4,31 @@ import com.rapidphoto.cqrs.queries.GenerateBatchDownloadQuery;
 import com.rapidphoto.domain.photo.Photo;
 import com.rapidphoto.domain.photo.PhotoRepository;
 import com.rapidphoto.exception.BatchDownloadLimitExceededException;
+import com.rapidphoto.infrastructure.archive.ArchiveReadAhead;
+import com.rapidphoto.infrastructure.archive.ZipArchiveEncoder;
+import com.rapidphoto.infrastructure.archive.ZipArchiveEntry;
+import com.rapidphoto.infrastructure.dedup.ContentHashService;
+import com.rapidphoto.infrastructure.metadata.ImageHeaderParser;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
 import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
-import software.amazon.awssdk.core.ResponseInputStream;
-import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.ChecksumMode;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 
 import org.springframework.beans.factory.annotation.Value;
 
-import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 /**
  * Handler for batch photo download as ZIP.
@@ -29,144 +36,243 @@ import java.util.zip.ZipOutputStream;
  *
  * Streams ZIP file without loading entire content into memory.
  * Validates photo ownership and size limits before generating ZIP.
+ *
+ * The archive is encoded reactively (ZipArchiveEncoder) from the non-blocking S3
+ * client's byte stream: no thread is held per download. Already-compressed formats
+ * (JPEG, PNG, WebP, HEIC...) are STORED rather than deflated, which costs no CPU and
+ * passes S3's buffers through without a copy. Sizes come from a HEAD of each object,
+ * CRCs from the hashing stage (or S3's own checksum), so an archive of stored entries
+ * has a known length and goes out with a Content-Length; photos without a known CRC
+ * are deflated instead. Photos are written in the
+ * order they were requested.
+ *
+ * When every entry is stored with a known CRC, the layout is fixed and any byte range
+ * of the archive can be produced on its own (BatchArchive.content(start, end)): entry
+ * data inside the range is read with ranged S3 GETs, the rest is skipped. That lets
+ * clients resume a dropped download or fetch segments in parallel.
  */
 @Component
 public class GenerateBatchDownloadHandler {
 
-    private static final long MAX_ZIP_SIZE_BYTES = 500L * 1024 * 1024; // 500MB
-    private static final int BUFFER_SIZE = 8192;
+    private static final Set<String> COMPRESSED_FORMATS = Set.of(
+        "jpg", "jpeg", "png", "webp", "heic", "heif", "avif", "gif");
+    private static final int HEAD_CONCURRENCY = 8;
+
+    /**
+     * How entries are compressed: AUTO stores already-compressed formats and deflates
+     * the rest. A photo whose CRC is not known yet (not hashed, or uploaded in parts) is
+     * always deflated, since streaming readers cannot find the end of STORED data
+     * without its sizes and CRC up front.
+     */
+    enum Compression {
+        AUTO, STORED, DEFLATE
+    }
 
     private final PhotoRepository photoRepository;
-    private final S3Client s3Client;
+    private final S3AsyncClient s3AsyncClient;
+    private final ArchiveReadAhead readAhead;
     private final String bucketName;
+    private final long maxArchiveBytes;
+    private final Compression compression;
 
     public GenerateBatchDownloadHandler(
         PhotoRepository photoRepository,
-        S3Client s3Client,
-        @Value("${aws.s3.bucket-name}") String bucketName
+        S3AsyncClient s3AsyncClient,
+        ArchiveReadAhead readAhead,
+        @Value("${aws.s3.bucket-name}") String bucketName,
+        @Value("${app.download.max-archive-bytes:10737418240}") long maxArchiveBytes,
+        @Value("${app.download.compression:auto}") String compression
     ) {
         this.photoRepository = photoRepository;
-        this.s3Client = s3Client;
+        this.s3AsyncClient = s3AsyncClient;
+        this.readAhead = readAhead;
         this.bucketName = bucketName;
+        this.maxArchiveBytes = maxArchiveBytes;
+        this.compression = Compression.valueOf(compression.toUpperCase(Locale.ROOT));
     }
 
     /**
-     * Handle batch download query - validates and generates ZIP stream.
+     * Handle batch download query - validates and prepares the ZIP stream.
      *
      * @param query Batch download query with photo IDs and user ID
-     * @return Flux of DataBuffer containing ZIP file stream
+     * @return The archive, whose content streams the ZIP file when subscribed to
      */
-    public Flux<DataBuffer> handle(GenerateBatchDownloadQuery query) {
+    public Mono<BatchArchive> handle(GenerateBatchDownloadQuery query) {
+        return handle(query, DefaultDataBufferFactory.sharedInstance);
+    }
+
+    /**
+     * Handle batch download query, writing the ZIP into buffers from bufferFactory
+     * (the response's, so the archive goes out in pooled buffers).
+     */
+    public Mono<BatchArchive> handle(GenerateBatchDownloadQuery query, DataBufferFactory bufferFactory) {
         return photoRepository.findAllById(query.photoIds())
             .collectList()
-            .flatMapMany(photos -> {
+            .flatMap(photos -> {
                 // Validate all photos exist
                 if (photos.size() != query.photoIds().size()) {
-                    return Flux.error(new PhotoNotFoundException("Some photos not found"));
+                    return Mono.error(new PhotoNotFoundException("Some photos not found"));
                 }
 
                 // Validate all photos belong to user
                 boolean allOwnedByUser = photos.stream()
                     .allMatch(photo -> photo.getUserId().equals(query.userId()));
                 if (!allOwnedByUser) {
-                    return Flux.error(new UnauthorizedException("Not authorized to download some photos"));
+                    return Mono.error(new UnauthorizedException("Not authorized to download some photos"));
                 }
 
                 // Check total size limit
                 long totalSize = photos.stream()
                     .mapToLong(Photo::getFileSize)
                     .sum();
-                if (totalSize > MAX_ZIP_SIZE_BYTES) {
-                    return Flux.error(new BatchDownloadLimitExceededException(
-                        "Total size exceeds 500MB limit"));
+                if (totalSize > maxArchiveBytes) {
+                    return Mono.error(limitExceeded());
+                }
+
+                return describeEntries(inRequestOrder(photos, query.photoIds()));
+            })
+            .flatMap(archived -> {
+                // Declared sizes come from the client; check again against what S3 holds
+                long storedSize = archived.stream()
+                    .mapToLong(photo -> photo.entry().size())
+                    .sum();
+                if (storedSize > maxArchiveBytes) {
+                    return Mono.error(limitExceeded());
                 }
 
-                // Generate ZIP stream
-                return generateZipStream(photos);
+                return Mono.just(new BatchArchive(archived, bufferFactory));
             });
     }
 
     /**
-     * Generate ZIP stream from list of photos.
-     * Uses piped streams to avoid loading entire ZIP into memory.
+     * Archive of photos the caller has already selected and authorized, in the given
+     * order and without the size limit (background exports, which are not tied to a
+     * request).
      */
-    private Flux<DataBuffer> generateZipStream(List<Photo> photos) {
-        return Flux.create(sink -> {
-            // Run ZIP generation on bounded elastic scheduler (blocking I/O)
-            Schedulers.boundedElastic().schedule(() -> {
-                try {
-                    PipedOutputStream pipedOutputStream = new PipedOutputStream();
-                    PipedInputStream pipedInputStream = new PipedInputStream(pipedOutputStream, BUFFER_SIZE * 4);
-
-                    // Start ZIP generation in separate thread
-                    Thread zipThread = new Thread(() -> {
-                        try (ZipOutputStream zipOutputStream = new ZipOutputStream(pipedOutputStream)) {
-                            Map<String, Integer> filenameCounts = new HashMap<>();
-
-                            for (Photo photo : photos) {
-                                // Get unique filename
-                                String filename = getUniqueFilename(
-                                    photo.getFilename(),
-                                    filenameCounts
-                                );
-
-                                // Add ZIP entry
-                                ZipEntry zipEntry = new ZipEntry(filename);
-                                zipOutputStream.putNextEntry(zipEntry);
-
-                                // Stream photo from S3
-                                String s3Key = extractS3Key(photo);
-                                try (InputStream photoStream = getS3ObjectStream(s3Key)) {
-                                    // Copy to ZIP
-                                    byte[] buffer = new byte[BUFFER_SIZE];
-                                    int bytesRead;
-                                    while ((bytesRead = photoStream.read(buffer)) != -1) {
-                                        zipOutputStream.write(buffer, 0, bytesRead);
-                                    }
-                                }
-
-                                zipOutputStream.closeEntry();
-                            }
-                        } catch (Exception e) {
-                            try {
-                                pipedOutputStream.close();
-                            } catch (IOException ignored) {
-                            }
-                        }
-                    });
-                    zipThread.setName("zip-generator-" + UUID.randomUUID());
-                    zipThread.start();
-
-                    // Read from input stream and emit DataBuffers
-                    DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
-                    byte[] buffer = new byte[BUFFER_SIZE];
-                    int bytesRead;
-
-                    try {
-                        while ((bytesRead = pipedInputStream.read(buffer)) != -1) {
-                            DataBuffer dataBuffer = bufferFactory.wrap(Arrays.copyOf(buffer, bytesRead));
-                            sink.next(dataBuffer);
-                        }
-                        sink.complete();
-                    } catch (IOException e) {
-                        sink.error(e);
-                    } finally {
-                        try {
-                            pipedInputStream.close();
-                        } catch (IOException ignored) {
-                        }
-                        // Wait for ZIP thread to finish
-                        try {
-                            zipThread.join(30000); // 30 second timeout
-                        } catch (InterruptedException ignored) {
-                            Thread.currentThread().interrupt();
-                        }
-                    }
-                } catch (Exception e) {
-                    sink.error(e);
-                }
+    public Mono<BatchArchive> archive(List<Photo> photos) {
+        return describeEntries(photos)
+            .map(archived -> new BatchArchive(archived, DefaultDataBufferFactory.sharedInstance));
+    }
+
+    /**
+     * One entry per photo, with its size (and CRC where known) read from S3 up front.
+     */
+    private Mono<List<ArchivedPhoto>> describeEntries(List<Photo> photos) {
+        Map<String, Integer> filenameCounts = new HashMap<>();
+        List<String> names = photos.stream()
+            .map(photo -> getUniqueFilename(photo.getFilename(), filenameCounts))
+            .toList();
+        return Flux.range(0, photos.size())
+            .flatMapSequential(i -> describeEntry(photos.get(i), names.get(i)), HEAD_CONCURRENCY)
+            .collectList();
+    }
+
+    private Mono<ArchivedPhoto> describeEntry(Photo photo, String name) {
+        String s3Key = extractS3Key(photo);
+        HeadObjectRequest headObjectRequest = HeadObjectRequest.builder()
+            .bucket(bucketName)
+            .key(s3Key)
+            .checksumMode(ChecksumMode.ENABLED)
+            .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.headObject(headObjectRequest))
+            .onErrorMap(e -> new IllegalStateException("Failed to fetch S3 object: " + s3Key, e))
+            .map(head -> {
+                Long crc32 = getCrc32(photo, head);
+                return new ArchivedPhoto(s3Key, new ZipArchiveEntry(
+                    name,
+                    photo.getCreatedAt(),
+                    crc32 != null && isStored(photo),
+                    head.contentLength(),
+                    crc32,
+                    getS3ObjectContent(s3Key, null)
+                ));
             });
-        });
+    }
+
+    /**
+     * Generate ZIP stream from the entries.
+     * Photos are written in order; the next few are fetched from S3 ahead of time
+     * within the read-ahead budget (ArchiveReadAhead), the rest only when reached.
+     */
+    private Flux<DataBuffer> generateZipStream(List<ZipArchiveEntry> entries, DataBufferFactory bufferFactory) {
+        return Flux.using(
+            () -> readAhead.open(entries),
+            window -> ZipArchiveEncoder.encode(Flux.fromIterable(window.entries()), bufferFactory),
+            ArchiveReadAhead.Window::close
+        );
+    }
+
+    /**
+     * Generate bytes start to end (inclusive) of the ZIP stream, reading only the parts
+     * of the photos that fall inside them.
+     */
+    private Flux<DataBuffer> generateZipRange(List<ArchivedPhoto> photos, long start, long end,
+                                              DataBufferFactory bufferFactory) {
+        List<ZipArchiveEntry> entries = photos.stream().map(ArchivedPhoto::entry).toList();
+        List<ZipArchiveEncoder.ContentRange> ranges = ZipArchiveEncoder.contentRanges(entries, start, end);
+        List<ZipArchiveEntry> parts = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            ZipArchiveEncoder.ContentRange range = ranges.get(i);
+            parts.add(entries.get(i).withContent(range.length() == 0
+                ? Flux.empty()
+                : getS3ObjectContent(photos.get(i).s3Key(),
+                    "bytes=" + range.offset() + "-" + (range.offset() + range.length() - 1))));
+        }
+        return Flux.using(
+            () -> readAhead.open(parts),
+            window -> ZipArchiveEncoder.encodeRange(window.entries(), start, end, bufferFactory),
+            ArchiveReadAhead.Window::close
+        );
+    }
+
+    private BatchDownloadLimitExceededException limitExceeded() {
+        return new BatchDownloadLimitExceededException(
+            "Total size exceeds " + maxArchiveBytes / (1024 * 1024) + "MB limit");
+    }
+
+    private static List<Photo> inRequestOrder(List<Photo> photos, List<UUID> photoIds) {
+        Map<UUID, Photo> byId = new HashMap<>();
+        photos.forEach(photo -> byId.put(photo.getId(), photo));
+        return photoIds.stream().map(byId::get).toList();
+    }
+
+    private boolean isStored(Photo photo) {
+        return switch (compression) {
+            case STORED -> true;
+            case DEFLATE -> false;
+            case AUTO -> isCompressedFormat(photo);
+        };
+    }
+
+    /**
+     * Whether the photo's format is compressed already: by the format metadata
+     * extraction detected, otherwise by file extension.
+     */
+    private static boolean isCompressedFormat(Photo photo) {
+        if (photo.getMetadata().get(ImageHeaderParser.FORMAT) instanceof String format) {
+            return COMPRESSED_FORMATS.contains(format);
+        }
+        String filename = photo.getFilename();
+        int dotIndex = filename == null ? -1 : filename.lastIndexOf('.');
+        return dotIndex >= 0 && COMPRESSED_FORMATS.contains(filename.substring(dotIndex + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * CRC-32 recorded by the hashing stage, else the object's full-object CRC32
+     * checksum if it was uploaded with one; null if neither is known.
+     */
+    private static Long getCrc32(Photo photo, HeadObjectResponse head) {
+        if (photo.getMetadata().get(ContentHashService.CRC32) instanceof Number crc32) {
+            return crc32.longValue();
+        }
+        String checksum = head.checksumCRC32();
+        // Multipart uploads report a checksum of part checksums ("...-N"), not of the object
+        if (checksum == null || checksum.contains("-")) {
+            return null;
+        }
+        byte[] crc32 = Base64.getDecoder().decode(checksum);
+        return crc32.length == 4 ? ByteBuffer.wrap(crc32).getInt() & 0xFFFFFFFFL : null;
     }
 
     /**
@@ -215,19 +321,101 @@ public class GenerateBatchDownloadHandler {
     }
 
     /**
-     * Get InputStream from S3 for a given key.
+     * Stream an S3 object's bytes, or the given HTTP byte range of them; the GET starts
+     * on subscription.
+     * The SDK hands out a fresh buffer per chunk, so chunks can be held for read-ahead.
+     */
+    private Flux<ByteBuffer> getS3ObjectContent(String s3Key, String range) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+            .bucket(bucketName)
+            .key(s3Key)
+            .range(range)
+            .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.toPublisher()))
+            .onErrorMap(e -> new IllegalStateException("Failed to fetch S3 object: " + s3Key, e))
+            .flatMapMany(Flux::from);
+    }
+
+    private record ArchivedPhoto(String s3Key, ZipArchiveEntry entry) {
+    }
+
+    /**
+     * A batch ZIP ready to stream. S3 reads start when content is subscribed to.
      */
-    private InputStream getS3ObjectStream(String s3Key) throws IOException {
-        try {
-            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                .bucket(bucketName)
-                .key(s3Key)
-                .build();
-
-            ResponseInputStream<GetObjectResponse> response = s3Client.getObject(getObjectRequest);
-            return response;
-        } catch (Exception e) {
-            throw new IOException("Failed to fetch S3 object: " + s3Key, e);
+    public final class BatchArchive {
+
+        private final List<ArchivedPhoto> photos;
+        private final List<ZipArchiveEntry> entries;
+        private final DataBufferFactory bufferFactory;
+        private final long contentLength;
+        private final boolean supportsRanges;
+
+        private BatchArchive(List<ArchivedPhoto> photos, DataBufferFactory bufferFactory) {
+            this.photos = photos;
+            this.entries = photos.stream().map(ArchivedPhoto::entry).toList();
+            this.bufferFactory = bufferFactory;
+            this.contentLength = ZipArchiveEncoder.archiveLength(entries);
+            this.supportsRanges = ZipArchiveEncoder.supportsRanges(entries);
+        }
+
+        /**
+         * Exact size of the archive in bytes, or -1 if it is only known once written
+         * (some entries are deflated).
+         */
+        public long contentLength() {
+            return contentLength;
+        }
+
+        /**
+         * Total size of the photos in the archive, which its length is close to (deflated
+         * entries may make it shorter).
+         */
+        public long photoBytes() {
+            return entries.stream().mapToLong(ZipArchiveEntry::size).sum();
+        }
+
+        /**
+         * Whether content(start, end) can be used: every entry is stored with a known CRC.
+         */
+        public boolean supportsRanges() {
+            return supportsRanges;
+        }
+
+        /**
+         * Strong validator of the archive bytes (quoted, for an ETag header): the same
+         * names, timestamps, sizes and CRCs always give the same archive. Null unless
+         * ranges are supported.
+         */
+        public String etag() {
+            if (!supportsRanges) {
+                return null;
+            }
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+            for (ZipArchiveEntry entry : entries) {
+                digest.update((entry.name() + '\0' + entry.lastModified().getEpochSecond() + '\0'
+                    + entry.size() + '\0' + entry.crc32() + '\n').getBytes(StandardCharsets.UTF_8));
+            }
+            return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+        }
+
+        public Flux<DataBuffer> content() {
+            return generateZipStream(entries, bufferFactory);
+        }
+
+        /**
+         * Bytes start to end (inclusive) of the archive; needs supportsRanges().
+         */
+        public Flux<DataBuffer> content(long start, long end) {
+            if (!supportsRanges || start < 0 || start > end || end >= contentLength) {
+                throw new IllegalArgumentException("Unsatisfiable range " + start + "-" + end);
+            }
+            return generateZipRange(photos, start, end, bufferFactory);
         }
     }
 
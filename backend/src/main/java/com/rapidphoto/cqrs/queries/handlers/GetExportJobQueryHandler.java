@@ -0,0 +1,92 @@
+package com.rapidphoto.cqrs.queries.handlers;
+
+import com.rapidphoto.cqrs.dtos.ExportJobDTO;
+import com.rapidphoto.cqrs.queries.GetExportJobQuery;
+import com.rapidphoto.infrastructure.S3Service;
+import com.rapidphoto.infrastructure.export.ExportJob;
+import com.rapidphoto.infrastructure.export.ExportJobRepository;
+import com.rapidphoto.infrastructure.export.ExportJobStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Query handler for GetExportJobQuery.
+ * A completed export gets a freshly presigned download URL on every read, so a link
+ * that expired can be renewed by asking again.
+ */
+@Service
+public class GetExportJobQueryHandler {
+
+    private static final int RECENT_EXPORTS = 20;
+
+    private final ExportJobRepository exportJobRepository;
+    private final S3Service s3Service;
+    private final Duration urlExpiration;
+
+    public GetExportJobQueryHandler(
+        ExportJobRepository exportJobRepository,
+        S3Service s3Service,
+        @Value("${app.export.url-expiration-minutes:60}") long urlExpirationMinutes
+    ) {
+        this.exportJobRepository = exportJobRepository;
+        this.s3Service = s3Service;
+        this.urlExpiration = Duration.ofMinutes(urlExpirationMinutes);
+    }
+
+    public Mono<ExportJobDTO> handle(GetExportJobQuery query) {
+        return exportJobRepository.findById(query.exportId())
+            .switchIfEmpty(Mono.error(new ExportNotFoundException("Export not found: " + query.exportId())))
+            .filter(job -> job.userId().equals(query.userId()))
+            .switchIfEmpty(Mono.error(new UnauthorizedException("Export does not belong to user")))
+            .map(this::toDTO);
+    }
+
+    /**
+     * The user's most recent exports, newest first.
+     */
+    public Flux<ExportJobDTO> recent(UUID userId) {
+        return exportJobRepository.findRecentByUserId(userId, RECENT_EXPORTS)
+            .map(this::toDTO);
+    }
+
+    private ExportJobDTO toDTO(ExportJob job) {
+        if (job.exportStatus() != ExportJobStatus.COMPLETED || job.s3Key() == null) {
+            return ExportJobDTO.from(job);
+        }
+        Instant expiresAt = Instant.now().plus(urlExpiration);
+        String url = s3Service.generatePresignedDownloadUrl(job.s3Key(), archiveFilename(job), urlExpiration);
+        return ExportJobDTO.from(job, url, expiresAt);
+    }
+
+    /**
+     * Download filename, e.g. photos-export-2024-05-01.zip (the date the export was requested).
+     */
+    static String archiveFilename(ExportJob job) {
+        return "photos-export-" + job.createdAt().atZone(ZoneOffset.UTC).toLocalDate() + ".zip";
+    }
+
+    /**
+     * Exception thrown when export is not found.
+     */
+    public static class ExportNotFoundException extends RuntimeException {
+        public ExportNotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Exception thrown when user is not authorized to access the export.
+     */
+    public static class UnauthorizedException extends RuntimeException {
+        public UnauthorizedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.rapidphoto.cqrs.queries.handlers;
 
 import com.rapidphoto.cqrs.dtos.PhotoDTO;
 import com.rapidphoto.cqrs.queries.GetPhotosByTagQuery;
+import com.rapidphoto.cqrs.queries.PhotoCursor;
+import com.rapidphoto.domain.photo.Photo;
 import com.rapidphoto.domain.photo.PhotoRepository;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
@@ -20,13 +22,14 @@ public class GetPhotosByTagQueryHandler {
     }
 
     public Flux<PhotoDTO> handle(GetPhotosByTagQuery query) {
-        // Apply pagination using skip and take
-        int skip = query.page() * query.size();
+        // Pagination and user filter run in SQL; cursor takes precedence over page
+        PhotoCursor cursor = query.cursor();
+        Flux<Photo> photos = cursor != null
+            ? photoRepository.findPageByUserIdAndTagIdBefore(
+                query.userId(), query.tagId(), cursor.createdAt(), cursor.id(), query.size())
+            : photoRepository.findPageByUserIdAndTagId(
+                query.userId(), query.tagId(), query.size(), (long) query.page() * query.size());
 
-        return photoRepository.findByTagId(query.tagId())
-            .filter(photo -> photo.getUserId().equals(query.userId())) // Filter by user
-            .skip(skip)
-            .take(query.size())
-            .map(PhotoDTO::fromDomain);
+        return photos.map(PhotoDTO::fromDomain);
     }
 }
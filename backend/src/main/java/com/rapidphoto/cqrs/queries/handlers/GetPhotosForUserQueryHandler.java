@@ -4,16 +4,20 @@ import com.rapidphoto.cqrs.dtos.PhotoDTO;
 import com.rapidphoto.cqrs.dtos.PhotoWithTagsDTO;
 import com.rapidphoto.cqrs.dtos.TagDTO;
 import com.rapidphoto.cqrs.queries.GetPhotosForUserQuery;
+import com.rapidphoto.cqrs.queries.PhotoCursor;
+import com.rapidphoto.domain.photo.Photo;
 import com.rapidphoto.domain.photo.PhotoRepository;
 import com.rapidphoto.domain.tag.TagRepository;
+import com.rapidphoto.infrastructure.PresignedUrlCache;
 import com.rapidphoto.infrastructure.S3Service;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -27,97 +31,122 @@ public class GetPhotosForUserQueryHandler {
     private final PhotoRepository photoRepository;
     private final TagRepository tagRepository;
     private final S3Service s3Service;
+    private final PresignedUrlCache presignedUrlCache;
+    private final int galleryThumbnailSize;
 
     public GetPhotosForUserQueryHandler(
         PhotoRepository photoRepository,
         TagRepository tagRepository,
-        S3Service s3Service
+        S3Service s3Service,
+        PresignedUrlCache presignedUrlCache,
+        @Value("${app.thumbnails.gallery-size:512}") int galleryThumbnailSize
     ) {
         this.photoRepository = photoRepository;
         this.tagRepository = tagRepository;
         this.s3Service = s3Service;
+        this.presignedUrlCache = presignedUrlCache;
+        this.galleryThumbnailSize = galleryThumbnailSize;
     }
 
     /**
      * Handle query to get photos with tags.
      * Returns PhotoWithTagsDTO for gallery display.
      * Story 3.4: Enhanced with tag filtering (AND logic).
+     *
+     * Only the requested page is read from the database; results are ordered by
+     * (createdAt DESC, id DESC) so the last element can serve as the next cursor.
      */
     public Flux<PhotoWithTagsDTO> handle(GetPhotosForUserQuery query) {
-        // Apply pagination using skip and take
-        int skip = query.page() * query.size();
+        return findPhotos(query).flatMapMany(this::withTagsAndUrls);
+    }
 
-        // Choose query based on whether tags filter is present
-        Flux<com.rapidphoto.domain.photo.Photo> photoFlux;
-        if (query.tagIds() != null && !query.tagIds().isEmpty()) {
-            // Filter by tags (AND logic - photos must have ALL selected tags)
-            photoFlux = photoRepository.findByUserIdAndAllTags(
-                query.userId(),
-                query.tagIds(),
-                query.tagIds().size()  // tagCount for HAVING clause
-            );
-        } else {
-            // No filter - return all photos
-            photoFlux = photoRepository.findByUserId(query.userId());
+    /**
+     * Load one page of photo rows without tags or URLs.
+     * Lets streaming callers learn the page bounds (e.g. the next cursor) before
+     * any DTO is emitted.
+     */
+    public Mono<List<Photo>> findPhotos(GetPhotosForUserQuery query) {
+        return findPage(query).collectList();
+    }
+
+    /**
+     * Attach tags and presigned view URLs to a page of photos.
+     * Each DTO is emitted as soon as it and everything before it have resolved,
+     * so streaming responses start with the first photo rather than the whole page.
+     */
+    public Flux<PhotoWithTagsDTO> withTagsAndUrls(List<Photo> photos) {
+        if (photos.isEmpty()) {
+            return Flux.empty();
         }
 
-        return photoFlux
-            .skip(skip)
-            .take(query.size())
-            .collectList()
-            .flatMapMany(photos -> {
-                if (photos.isEmpty()) {
-                    return Flux.empty();
-                }
-
-                // Batch fetch tags for all photos
-                List<UUID> photoIds = photos.stream()
-                    .map(photo -> photo.getId())
-                    .collect(Collectors.toList());
-
-                return tagRepository.findByPhotoIds(photoIds)
-                    .collect(Collectors.groupingBy(
-                        TagRepository.TagWithPhotoId::photoId,
-                        Collectors.mapping(
-                            twp -> TagDTO.from(twp.id(), twp.name(), twp.color(), twp.createdAt()),
-                            Collectors.toList()
-                        )
-                    ))
-                    .flatMapMany(tagsByPhotoId ->
-                        Flux.fromIterable(photos)
-                            .flatMap(photo -> {
-                                List<TagDTO> tags = tagsByPhotoId.getOrDefault(photo.getId(), List.of());
-
-                                // Generate presigned URL for photo viewing (5 minute expiry)
-                                if (photo.getS3Location() != null) {
-                                    return s3Service.generatePresignedViewUrl(
-                                        photo.getS3Location().getKey(),
-                                        Duration.ofMinutes(5)
-                                    ).map(presignedUrl -> {
-                                        // Create DTO with presigned URL instead of LocalStack URL
-                                        return new PhotoWithTagsDTO(
-                                            photo.getId(),
-                                            photo.getUserId(),
-                                            photo.getSessionId(),
-                                            photo.getFilename(),
-                                            photo.getFileSize(),
-                                            photo.getS3Location().getKey(),
-                                            presignedUrl,  // Use presigned URL instead of LocalStack URL
-                                            photo.getUploadStatus(),
-                                            photo.getProgress(),
-                                            photo.getMetadata(),
-                                            tags,
-                                            photo.getCreatedAt(),
-                                            photo.getUpdatedAt()
-                                        );
-                                    });
-                                } else {
-                                    // No S3 location - return DTO with null storageUrl
-                                    return Mono.just(PhotoWithTagsDTO.fromDomain(photo, tags));
-                                }
-                            })
-                    );
-            });
+        // Batch fetch tags for all photos
+        List<UUID> photoIds = photos.stream()
+            .map(photo -> photo.getId())
+            .collect(Collectors.toList());
+
+        return tagRepository.findByPhotoIds(photoIds)
+            .collect(Collectors.groupingBy(
+                TagRepository.TagWithPhotoId::photoId,
+                Collectors.mapping(
+                    twp -> TagDTO.from(twp.id(), twp.name(), twp.color(), twp.createdAt()),
+                    Collectors.toList()
+                )
+            ))
+            .flatMapMany(tagsByPhotoId ->
+                // Sequential so the page keeps its (created_at, id) order for the cursor
+                Flux.fromIterable(photos)
+                    .flatMapSequential(photo -> {
+                        List<TagDTO> tags = tagsByPhotoId.getOrDefault(photo.getId(), List.of());
+
+                        // Signed per time window so the browser sees the same URL on
+                        // repeat loads, whichever instance serves them
+                        if (photo.getS3Location() != null) {
+                            String s3Key = photo.getS3Location().getKey();
+                            Mono<String> viewUrl = presignedUrlCache.get(
+                                s3Key,
+                                PresignedUrlCache.Purpose.VIEW,
+                                (signedAt, ttl) -> s3Service.generatePresignedViewUrl(s3Key, signedAt, ttl)
+                            );
+                            return Mono.zip(viewUrl, thumbnailUrl(photo)).map(urls -> {
+                                // Create DTO with presigned URL instead of LocalStack URL
+                                return new PhotoWithTagsDTO(
+                                    photo.getId(),
+                                    photo.getUserId(),
+                                    photo.getSessionId(),
+                                    photo.getFilename(),
+                                    photo.getFileSize(),
+                                    photo.getS3Location().getKey(),
+                                    urls.getT1(),  // Use presigned URL instead of LocalStack URL
+                                    urls.getT2().orElse(null),  // Gallery-sized thumbnail once generated
+                                    photo.getUploadStatus(),
+                                    photo.getProgress(),
+                                    photo.getMetadata(),
+                                    tags,
+                                    photo.getCreatedAt(),
+                                    photo.getUpdatedAt()
+                                );
+                            });
+                        } else {
+                            // No S3 location - return DTO with null storageUrl
+                            return Mono.just(PhotoWithTagsDTO.fromDomain(photo, tags));
+                        }
+                    })
+            );
+    }
+
+    /**
+     * Presigned URL of the gallery-sized thumbnail, if it has been generated.
+     */
+    private Mono<Optional<String>> thumbnailUrl(Photo photo) {
+        String thumbnailKey = photo.getThumbnailKey(galleryThumbnailSize);
+        if (thumbnailKey == null) {
+            return Mono.just(Optional.empty());
+        }
+        return presignedUrlCache.get(
+            thumbnailKey,
+            PresignedUrlCache.Purpose.THUMBNAIL,
+            (signedAt, ttl) -> s3Service.generatePresignedThumbnailUrl(thumbnailKey, signedAt, ttl)
+        ).map(Optional::of);
     }
 
     /**
@@ -125,11 +154,30 @@ public class GetPhotosForUserQueryHandler {
      * Returns PhotoDTO without tags.
      */
     public Flux<PhotoDTO> handleLegacy(GetPhotosForUserQuery query) {
-        int skip = query.page() * query.size();
+        return findPage(query).map(PhotoDTO::fromDomain);
+    }
+
+    /**
+     * Push pagination into SQL: keyset when a cursor is present, LIMIT/OFFSET otherwise.
+     */
+    private Flux<Photo> findPage(GetPhotosForUserQuery query) {
+        PhotoCursor cursor = query.cursor();
+        long offset = (long) query.page() * query.size();
+
+        // Choose query based on whether tags filter is present
+        if (query.tagIds() != null && !query.tagIds().isEmpty()) {
+            // Filter by tags (AND logic - photos must have ALL selected tags)
+            int tagCount = query.tagIds().size();  // tagCount for HAVING clause
+            return cursor != null
+                ? photoRepository.findPageByUserIdAndAllTagsBefore(
+                    query.userId(), query.tagIds(), tagCount, cursor.createdAt(), cursor.id(), query.size())
+                : photoRepository.findPageByUserIdAndAllTags(
+                    query.userId(), query.tagIds(), tagCount, query.size(), offset);
+        }
 
-        return photoRepository.findByUserId(query.userId())
-            .skip(skip)
-            .take(query.size())
-            .map(PhotoDTO::fromDomain);
+        // No filter - return all photos
+        return cursor != null
+            ? photoRepository.findPageByUserIdBefore(query.userId(), cursor.createdAt(), cursor.id(), query.size())
+            : photoRepository.findPageByUserId(query.userId(), query.size(), offset);
     }
 }
@@ -32,6 +32,8 @@ public class Photo implements Persistable<UUID> {
     private PhotoStatus uploadStatus;
     private int progress; // 0-100
     private Map<String, Object> metadata; // JSONB in database
+    private Map<String, Object> thumbnailKeys; // JSONB: max edge (px) -> key in thumbnail bucket
+    private String contentHash; // Hex SHA-256 of the stored object, set by the hashing job
     private Instant createdAt;
     private Instant updatedAt;
     private Instant deletedAt;
@@ -56,6 +58,7 @@ public class Photo implements Persistable<UUID> {
         this.uploadStatus = PhotoStatus.PENDING;
         this.progress = 0;
         this.metadata = new HashMap<>();
+        this.thumbnailKeys = new HashMap<>();
         this.createdAt = Instant.now();
         this.updatedAt = Instant.now();
     }
@@ -272,6 +275,32 @@ public class Photo implements Persistable<UUID> {
         return new HashMap<>(metadata); // Return copy for immutability
     }
 
+    /**
+     * Thumbnail keys by max edge in pixels, as written by the thumbnail pipeline.
+     * Empty until thumbnails have been generated.
+     */
+    public Map<String, Object> getThumbnailKeys() {
+        return thumbnailKeys != null ? new HashMap<>(thumbnailKeys) : new HashMap<>();
+    }
+
+    /**
+     * Key of the thumbnail with the given max edge, or null if not generated.
+     */
+    public String getThumbnailKey(int maxEdge) {
+        if (thumbnailKeys == null) {
+            return null;
+        }
+        Object key = thumbnailKeys.get(String.valueOf(maxEdge));
+        return key != null ? key.toString() : null;
+    }
+
+    /**
+     * Hex SHA-256 of the uploaded object, or null if not hashed yet.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
     public Set<UUID> getTagIds() {
         return new HashSet<>(tagIds); // Return copy for immutability
     }
@@ -0,0 +1,45 @@
+package com.rapidphoto.domain.photo;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Set-based write operations for Photo that Spring Data derived queries can't express.
+ * Mixed into PhotoRepository as a custom repository fragment.
+ */
+public interface PhotoBatchRepository {
+
+    /**
+     * Insert newly initiated (PENDING) photos with a single multi-row INSERT.
+     *
+     * @param photos Photos created via Photo.initiate/initiateWithId and not yet persisted
+     * @return Number of rows inserted
+     */
+    Mono<Long> insertAll(List<Photo> photos);
+
+    /**
+     * Mark many of a user's uploads as completed with a single UPDATE.
+     * Only the user's PENDING or UPLOADING photos change; photos that are already
+     * completed or failed, deleted, or owned by someone else are left alone.
+     *
+     * @param userId Owner; rows of other users never match
+     * @param bucketName Bucket the keys live in, for storage_url
+     * @param completions One entry per uploaded object
+     * @return One row per photo this call completed
+     */
+    Flux<CompletedUpload> completeUploads(UUID userId, String bucketName, List<UploadCompletion> completions);
+
+    /**
+     * An object the client finished uploading. etag is optional and kept in metadata.
+     * transferMillis is the client's summed PUT time, when it reported one.
+     */
+    record UploadCompletion(UUID photoId, String s3Key, String etag, Long transferMillis) {}
+
+    /**
+     * A photo moved to COMPLETED by completeUploads.
+     */
+    record CompletedUpload(UUID photoId, UUID sessionId, Long fileSize) {}
+}
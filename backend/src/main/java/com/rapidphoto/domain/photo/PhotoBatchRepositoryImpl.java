@@ -0,0 +1,116 @@
+package com.rapidphoto.domain.photo;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DatabaseClient-backed implementation of PhotoBatchRepository.
+ * Binds one array per column and expands them with UNNEST, so a batch of any size is
+ * a single statement with a fixed number of bind parameters.
+ */
+class PhotoBatchRepositoryImpl implements PhotoBatchRepository {
+
+    private static final String INSERT_ALL_SQL = """
+        INSERT INTO photos (id, user_id, session_id, filename, file_size, upload_status, progress, metadata)
+        SELECT t.id, t.user_id, t.session_id, t.filename, t.file_size, 'PENDING', 0, '{}'::jsonb
+        FROM UNNEST(:ids::uuid[], :userIds::uuid[], :sessionIds::uuid[], :filenames::varchar[], :fileSizes::bigint[])
+            AS t(id, user_id, session_id, filename, file_size)
+        """;
+
+    // Same transition as Photo.startUpload + completeUpload: a key set by startUpload wins
+    private static final String COMPLETE_UPLOADS_SQL = """
+        UPDATE photos p
+        SET s3_key = COALESCE(p.s3_key, t.s3_key),
+            storage_url = COALESCE(p.storage_url, 's3://' || :bucketName || '/' || t.s3_key),
+            upload_status = 'COMPLETED',
+            progress = 100,
+            metadata = CASE WHEN t.etag IS NULL THEN p.metadata
+                            ELSE COALESCE(p.metadata, '{}'::jsonb) || jsonb_build_object('etag', t.etag) END,
+            updated_at = NOW()
+        FROM UNNEST(:ids::uuid[], :s3Keys::varchar[], :etags::varchar[]) AS t(id, s3_key, etag)
+        WHERE p.id = ANY(:ids::uuid[])
+          AND p.id = t.id
+          AND p.user_id = :userId
+          AND p.deleted_at IS NULL
+          AND p.upload_status IN ('PENDING', 'UPLOADING')
+        RETURNING p.id, p.session_id, p.file_size
+        """;
+
+    private final DatabaseClient databaseClient;
+
+    PhotoBatchRepositoryImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<Long> insertAll(List<Photo> photos) {
+        if (photos.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        int size = photos.size();
+        UUID[] ids = new UUID[size];
+        UUID[] userIds = new UUID[size];
+        UUID[] sessionIds = new UUID[size];
+        String[] filenames = new String[size];
+        Long[] fileSizes = new Long[size];
+
+        for (int i = 0; i < size; i++) {
+            Photo photo = photos.get(i);
+            if (!photo.isNew() || photo.getUploadStatus() != PhotoStatus.PENDING) {
+                return Mono.error(new IllegalArgumentException(
+                    "insertAll only accepts new PENDING photos: " + photo.getId()));
+            }
+            ids[i] = photo.getId();
+            userIds[i] = photo.getUserId();
+            sessionIds[i] = photo.getSessionId();
+            filenames[i] = photo.getFilename();
+            fileSizes[i] = photo.getFileSize();
+        }
+
+        return databaseClient.sql(INSERT_ALL_SQL)
+            .bind("ids", ids)
+            .bind("userIds", userIds)
+            .bind("sessionIds", sessionIds)
+            .bind("filenames", filenames)
+            .bind("fileSizes", fileSizes)
+            .fetch()
+            .rowsUpdated();
+    }
+
+    @Override
+    public Flux<CompletedUpload> completeUploads(UUID userId, String bucketName, List<UploadCompletion> completions) {
+        if (completions.isEmpty()) {
+            return Flux.empty();
+        }
+
+        int size = completions.size();
+        UUID[] ids = new UUID[size];
+        String[] s3Keys = new String[size];
+        String[] etags = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            UploadCompletion completion = completions.get(i);
+            ids[i] = completion.photoId();
+            s3Keys[i] = completion.s3Key();
+            etags[i] = completion.etag();
+        }
+
+        return databaseClient.sql(COMPLETE_UPLOADS_SQL)
+            .bind("ids", ids)
+            .bind("s3Keys", s3Keys)
+            .bind("etags", etags)
+            .bind("bucketName", bucketName)
+            .bind("userId", userId)
+            .map((row, metadata) -> new CompletedUpload(
+                row.get("id", UUID.class),
+                row.get("session_id", UUID.class),
+                row.get("file_size", Long.class)
+            ))
+            .all();
+    }
+}
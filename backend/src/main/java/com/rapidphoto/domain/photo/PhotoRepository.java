@@ -1,19 +1,22 @@
 package com.rapidphoto.domain.photo;
 
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
 /**
  * Repository for Photo aggregate.
+ * Batch writes are provided by the PhotoBatchRepository fragment.
  */
 @Repository
-public interface PhotoRepository extends ReactiveCrudRepository<Photo, UUID> {
+public interface PhotoRepository extends ReactiveCrudRepository<Photo, UUID>, PhotoBatchRepository {
 
     /**
      * Find all photos for a user (excluding soft-deleted).
@@ -21,6 +24,83 @@ public interface PhotoRepository extends ReactiveCrudRepository<Photo, UUID> {
     @Query("SELECT * FROM photos WHERE user_id = :userId AND deleted_at IS NULL ORDER BY created_at DESC")
     Flux<Photo> findByUserId(UUID userId);
 
+    /**
+     * One gallery page by offset, newest first. Used for the first page and for
+     * clients that still page by number.
+     */
+    @Query("""
+        SELECT * FROM photos
+        WHERE user_id = :userId AND deleted_at IS NULL
+        ORDER BY created_at DESC, id DESC
+        LIMIT :limit OFFSET :offset
+    """)
+    Flux<Photo> findPageByUserId(UUID userId, int limit, long offset);
+
+    /**
+     * One gallery page after a keyset cursor, newest first.
+     * The row comparison walks idx_photos_gallery_query from the cursor, so every
+     * page costs the same regardless of depth.
+     */
+    @Query("""
+        SELECT * FROM photos
+        WHERE user_id = :userId AND deleted_at IS NULL
+          AND (created_at, id) < (:createdAt, :id)
+        ORDER BY created_at DESC, id DESC
+        LIMIT :limit
+    """)
+    Flux<Photo> findPageByUserIdBefore(UUID userId, Instant createdAt, UUID id, int limit);
+
+    /**
+     * Record generated thumbnail keys without touching the rest of the row, so the
+     * asynchronous thumbnail job cannot overwrite concurrent photo changes.
+     *
+     * @param thumbnailKeysJson JSON object of max edge (px) to thumbnail key
+     */
+    @Modifying
+    @Query("UPDATE photos SET thumbnail_keys = CAST(:thumbnailKeysJson AS jsonb) WHERE id = :photoId")
+    Mono<Integer> updateThumbnailKeys(UUID photoId, String thumbnailKeysJson);
+
+    /**
+     * Merge fields into the metadata JSONB without rewriting the rest of the row.
+     * Keys in metadataJson replace existing keys of the same name.
+     *
+     * @param metadataJson JSON object of fields to merge
+     */
+    @Modifying
+    @Query("UPDATE photos SET metadata = COALESCE(metadata, '{}'::jsonb) || CAST(:metadataJson AS jsonb) WHERE id = :photoId")
+    Mono<Integer> mergeMetadata(UUID photoId, String metadataJson);
+
+    /**
+     * Record the server-computed content hash, and the CRC-32 as metadata key "crc32",
+     * without rewriting the rest of the row.
+     */
+    @Modifying
+    @Query("""
+        UPDATE photos SET content_hash = :contentHash,
+            metadata = COALESCE(metadata, '{}'::jsonb) || jsonb_build_object('crc32', CAST(:crc32 AS bigint))
+        WHERE id = :photoId
+        """)
+    Mono<Integer> updateContentChecksums(UUID photoId, String contentHash, long crc32);
+
+    /**
+     * Oldest completed, non-deleted photo of a user with the given content hash.
+     * Served by idx_photos_user_content_hash.
+     */
+    @Query("""
+        SELECT * FROM photos
+        WHERE user_id = :userId AND content_hash = :contentHash
+          AND deleted_at IS NULL AND upload_status = 'COMPLETED'
+        ORDER BY created_at
+        LIMIT 1
+    """)
+    Mono<Photo> findCompletedByUserIdAndContentHash(UUID userId, String contentHash);
+
+    /**
+     * All content hashes in a user's library, for warming the dedup index.
+     */
+    @Query("SELECT DISTINCT content_hash FROM photos WHERE user_id = :userId AND content_hash IS NOT NULL AND deleted_at IS NULL")
+    Flux<String> findContentHashesByUserId(UUID userId);
+
     /**
      * Find all photos in a session.
      */
@@ -48,6 +128,31 @@ public interface PhotoRepository extends ReactiveCrudRepository<Photo, UUID> {
            "ORDER BY p.created_at DESC")
     Flux<Photo> findByTagId(UUID tagId);
 
+    /**
+     * One page of a user's photos with a tag, by offset.
+     */
+    @Query("""
+        SELECT p.* FROM photos p
+        INNER JOIN photo_tags pt ON p.id = pt.photo_id
+        WHERE pt.tag_id = :tagId AND p.user_id = :userId AND p.deleted_at IS NULL
+        ORDER BY p.created_at DESC, p.id DESC
+        LIMIT :limit OFFSET :offset
+    """)
+    Flux<Photo> findPageByUserIdAndTagId(UUID userId, UUID tagId, int limit, long offset);
+
+    /**
+     * One page of a user's photos with a tag, after a keyset cursor.
+     */
+    @Query("""
+        SELECT p.* FROM photos p
+        INNER JOIN photo_tags pt ON p.id = pt.photo_id
+        WHERE pt.tag_id = :tagId AND p.user_id = :userId AND p.deleted_at IS NULL
+          AND (p.created_at, p.id) < (:createdAt, :id)
+        ORDER BY p.created_at DESC, p.id DESC
+        LIMIT :limit
+    """)
+    Flux<Photo> findPageByUserIdAndTagIdBefore(UUID userId, UUID tagId, Instant createdAt, UUID id, int limit);
+
     /**
      * Find photos that have ALL specified tags (AND logic).
      * Story 3.4: Tag Filter & Search
@@ -73,4 +178,38 @@ public interface PhotoRepository extends ReactiveCrudRepository<Photo, UUID> {
         ORDER BY p.created_at DESC
     """)
     Flux<Photo> findByUserIdAndAllTags(UUID userId, List<UUID> tagIds, int tagCount);
+
+    /**
+     * One page of photos having ALL specified tags, by offset.
+     */
+    @Query("""
+        SELECT p.* FROM photos p
+        INNER JOIN photo_tags pt ON p.id = pt.photo_id
+        WHERE p.user_id = :userId
+          AND p.deleted_at IS NULL
+          AND pt.tag_id IN (:tagIds)
+        GROUP BY p.id
+        HAVING COUNT(DISTINCT pt.tag_id) = :tagCount
+        ORDER BY p.created_at DESC, p.id DESC
+        LIMIT :limit OFFSET :offset
+    """)
+    Flux<Photo> findPageByUserIdAndAllTags(UUID userId, List<UUID> tagIds, int tagCount, int limit, long offset);
+
+    /**
+     * One page of photos having ALL specified tags, after a keyset cursor.
+     */
+    @Query("""
+        SELECT p.* FROM photos p
+        INNER JOIN photo_tags pt ON p.id = pt.photo_id
+        WHERE p.user_id = :userId
+          AND p.deleted_at IS NULL
+          AND pt.tag_id IN (:tagIds)
+          AND (p.created_at, p.id) < (:createdAt, :id)
+        GROUP BY p.id
+        HAVING COUNT(DISTINCT pt.tag_id) = :tagCount
+        ORDER BY p.created_at DESC, p.id DESC
+        LIMIT :limit
+    """)
+    Flux<Photo> findPageByUserIdAndAllTagsBefore(
+        UUID userId, List<UUID> tagIds, int tagCount, Instant createdAt, UUID id, int limit);
 }
@@ -0,0 +1,42 @@
+package com.rapidphoto.domain.upload;
+
+import java.util.UUID;
+
+/**
+ * Point-in-time snapshot of an upload session's counters.
+ * Read from the hot counters in Redis, or from the upload_sessions row.
+ */
+public record SessionProgress(
+    UUID sessionId,
+    UUID userId,
+    int totalPhotos,
+    int completedPhotos,
+    int failedPhotos
+) {
+    public static SessionProgress of(UploadSession session) {
+        return new SessionProgress(
+            session.getId(),
+            session.getUserId(),
+            session.getTotalPhotos(),
+            session.getCompletedPhotos(),
+            session.getFailedPhotos()
+        );
+    }
+
+    /**
+     * Upload progress percentage (0-100), as UploadSession.getProgressPercentage().
+     */
+    public int progressPercentage() {
+        if (totalPhotos == 0) {
+            return 0;
+        }
+        return (int) ((completedPhotos * 100.0) / totalPhotos);
+    }
+
+    /**
+     * Whether every photo of the session has either completed or failed.
+     */
+    public boolean isFinished() {
+        return completedPhotos + failedPhotos == totalPhotos;
+    }
+}
@@ -0,0 +1,38 @@
+package com.rapidphoto.domain.upload;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Set-based counter writes (and the skipped files they count) for UploadSession that
+ * Spring Data derived queries can't express.
+ * Mixed into UploadSessionRepository as a custom repository fragment.
+ */
+public interface UploadSessionProgressRepository {
+
+    /**
+     * Persist counters for many sessions with a single UPDATE.
+     * Counters only move forward, so a late or reordered write never undoes a newer one.
+     *
+     * @param progress Snapshots to write; sessions that no longer exist are ignored
+     * @return Number of rows updated
+     */
+    Mono<Long> saveProgress(List<SessionProgress> progress);
+
+    /**
+     * Record files of a session skipped as duplicates, one row per file.
+     *
+     * @param skipIds  Per-file IDs the skips are counted under
+     * @param photoIds Existing photo each file duplicates, in the same order
+     * @return Number of rows inserted
+     */
+    Mono<Long> saveSkips(UUID sessionId, List<UUID> skipIds, List<UUID> photoIds);
+
+    /**
+     * IDs of every file of a session skipped as a duplicate.
+     */
+    Flux<UUID> findSkipIds(UUID sessionId);
+}
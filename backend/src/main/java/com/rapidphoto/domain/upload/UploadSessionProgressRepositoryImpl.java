@@ -0,0 +1,86 @@
+package com.rapidphoto.domain.upload;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DatabaseClient-backed implementation of UploadSessionProgressRepository.
+ * Binds one array per column and joins them with UNNEST, so a batch of any size is
+ * a single statement with a fixed number of bind parameters.
+ */
+class UploadSessionProgressRepositoryImpl implements UploadSessionProgressRepository {
+
+    private static final String SAVE_PROGRESS_SQL = """
+        UPDATE upload_sessions s
+        SET completed_photos = GREATEST(s.completed_photos, LEAST(t.completed, s.total_photos)),
+            failed_photos = GREATEST(s.failed_photos, LEAST(t.failed, s.total_photos))
+        FROM UNNEST(:ids::uuid[], :completed::int[], :failed::int[]) AS t(id, completed, failed)
+        WHERE s.id = t.id
+        """;
+
+    private static final String SAVE_SKIPS_SQL = """
+        INSERT INTO upload_session_skips (id, session_id, photo_id)
+        SELECT t.id, :sessionId, t.photo_id
+        FROM UNNEST(:ids::uuid[], :photoIds::uuid[]) AS t(id, photo_id)
+        """;
+
+    private static final String FIND_SKIP_IDS_SQL = "SELECT id FROM upload_session_skips WHERE session_id = :sessionId";
+
+    private final DatabaseClient databaseClient;
+
+    UploadSessionProgressRepositoryImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<Long> saveProgress(List<SessionProgress> progress) {
+        if (progress.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        int size = progress.size();
+        UUID[] ids = new UUID[size];
+        Integer[] completed = new Integer[size];
+        Integer[] failed = new Integer[size];
+
+        for (int i = 0; i < size; i++) {
+            SessionProgress snapshot = progress.get(i);
+            ids[i] = snapshot.sessionId();
+            completed[i] = snapshot.completedPhotos();
+            failed[i] = snapshot.failedPhotos();
+        }
+
+        return databaseClient.sql(SAVE_PROGRESS_SQL)
+            .bind("ids", ids)
+            .bind("completed", completed)
+            .bind("failed", failed)
+            .fetch()
+            .rowsUpdated();
+    }
+
+    @Override
+    public Mono<Long> saveSkips(UUID sessionId, List<UUID> skipIds, List<UUID> photoIds) {
+        if (skipIds.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        return databaseClient.sql(SAVE_SKIPS_SQL)
+            .bind("sessionId", sessionId)
+            .bind("ids", skipIds.toArray(UUID[]::new))
+            .bind("photoIds", photoIds.toArray(UUID[]::new))
+            .fetch()
+            .rowsUpdated();
+    }
+
+    @Override
+    public Flux<UUID> findSkipIds(UUID sessionId) {
+        return databaseClient.sql(FIND_SKIP_IDS_SQL)
+            .bind("sessionId", sessionId)
+            .map(row -> row.get("id", UUID.class))
+            .all();
+    }
+}
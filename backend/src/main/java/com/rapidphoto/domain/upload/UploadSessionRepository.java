@@ -10,9 +10,10 @@ import java.util.UUID;
 
 /**
  * Repository for UploadSession aggregate.
+ * Batch counter writes are provided by the UploadSessionProgressRepository fragment.
  */
 @Repository
-public interface UploadSessionRepository extends ReactiveCrudRepository<UploadSession, UUID> {
+public interface UploadSessionRepository extends ReactiveCrudRepository<UploadSession, UUID>, UploadSessionProgressRepository {
 
     /**
      * Find all active sessions for a user.
@@ -0,0 +1,123 @@
+package com.rapidphoto.infrastructure;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of presigned GET URLs keyed by S3 key and purpose.
+ *
+ * Time is cut into epoch-aligned windows of TTL minus the safety margin, and every URL
+ * is signed as of the start of its window, valid for the TTL from there. Signing is
+ * deterministic, so every instance, and this one after a restart, produces the same URL
+ * for a key within a window, and browsers/CDNs see a stable, cacheable URL until the
+ * safety margin before it expires. The cache only saves the signing work.
+ *
+ * In-memory and per-instance; bounded to the most recently requested keys.
+ */
+@Component
+public class PresignedUrlCache {
+
+    /**
+     * What the URL is for. Part of the cache key because the same object can be
+     * signed with different response headers per purpose.
+     */
+    public enum Purpose {
+        VIEW,
+        THUMBNAIL
+    }
+
+    /**
+     * Signs a URL for one key as of signedAt, valid for expiration from then.
+     */
+    @FunctionalInterface
+    public interface UrlSigner {
+        Mono<String> sign(Instant signedAt, Duration expiration);
+    }
+
+    private record Key(String s3Key, Purpose purpose) {}
+
+    private record Entry(String url, Instant windowStart) {}
+
+    private final int maxEntries;
+    private final Duration ttl;
+    private final long windowMillis;
+    private final Clock clock;
+
+    private final Map<Key, Entry> entries;
+
+    @Autowired
+    public PresignedUrlCache(
+        @Value("${app.presign-cache.max-entries:50000}") int maxEntries,
+        @Value("${app.presign-cache.ttl-minutes:15}") int ttlMinutes,
+        @Value("${app.presign-cache.safety-margin-minutes:3}") int safetyMarginMinutes
+    ) {
+        this(maxEntries, Duration.ofMinutes(ttlMinutes), Duration.ofMinutes(safetyMarginMinutes), Clock.systemUTC());
+    }
+
+    PresignedUrlCache(int maxEntries, Duration ttl, Duration safetyMargin, Clock clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Presign cache size must be positive");
+        }
+        if (safetyMargin.isNegative() || safetyMargin.compareTo(ttl) >= 0) {
+            throw new IllegalArgumentException("Presign safety margin must be shorter than the URL TTL");
+        }
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.windowMillis = ttl.minus(safetyMargin).toMillis();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > PresignedUrlCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Return the URL of the current window for the key, from the cache or signed now as
+     * of the window start with the cache TTL.
+     *
+     * @param s3Key S3 object key
+     * @param purpose What the URL is used for
+     * @param signer Signs a URL for the key; must be deterministic for the same inputs
+     * @return Presigned URL valid for at least the safety margin
+     */
+    public Mono<String> get(String s3Key, Purpose purpose, UrlSigner signer) {
+        Key key = new Key(s3Key, purpose);
+        Instant windowStart = windowStart(clock.instant());
+
+        Entry cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached != null && cached.windowStart().equals(windowStart)) {
+            return Mono.just(cached.url());
+        }
+
+        return signer.sign(windowStart, ttl)
+            .doOnNext(url -> {
+                synchronized (entries) {
+                    entries.put(key, new Entry(url, windowStart));
+                }
+            });
+    }
+
+    private Instant windowStart(Instant now) {
+        long millis = now.toEpochMilli();
+        return Instant.ofEpochMilli(millis - Math.floorMod(millis, windowMillis));
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
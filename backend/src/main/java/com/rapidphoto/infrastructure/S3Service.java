@@ -1,77 +1,167 @@
 package com.rapidphoto.infrastructure;
 
+import com.rapidphoto.infrastructure.upload.UploadPlan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.auth.signer.AwsS3V4Signer;
+import software.amazon.awssdk.auth.signer.AwsSignerExecutionAttribute;
+import software.amazon.awssdk.auth.signer.params.Aws4PresignerParams;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.signer.Presigner;
+import software.amazon.awssdk.core.signer.Signer;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.SdkHttpFullRequest;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
 import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.UploadPartPresignRequest;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Clock;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
  * Service for S3 operations including pre-signed URL generation.
  * Story 2.3: S3 Pre-Signed URL Generation
  * Story 3.5: Individual Photo Download (added presigned GET URLs)
+ *
+ * Large files use S3's native multipart upload: the upload is created server-side,
+ * parts are uploaded by the client to presigned UploadPart URLs, and the object is
+ * stitched together by completeMultipartUpload once the client reports part ETags.
+ *
+ * Generated thumbnails live in a separate bucket (aws.s3.thumbnail-bucket-name).
  */
 @Service
 public class S3Service {
 
     private static final Logger log = LoggerFactory.getLogger(S3Service.class);
-    private static final long MULTIPART_THRESHOLD = 5 * 1024 * 1024; // 5MB
-    private static final long PART_SIZE = 5 * 1024 * 1024; // 5MB per part
     private static final Duration PRESIGNED_URL_DURATION = Duration.ofMinutes(15);
     private static final Duration DOWNLOAD_URL_DURATION = Duration.ofMinutes(5); // 5 minutes for downloads
+    private static final int UUID_LENGTH = 36;
 
+    private final S3Client s3Client;
     private final S3Presigner s3Presigner;
     private final String bucketName;
+    private final String thumbnailBucketName;
 
     public S3Service(
+        S3Client s3Client,
         S3Presigner s3Presigner,
-        @Value("${aws.s3.bucket-name}") String bucketName
+        @Value("${aws.s3.bucket-name}") String bucketName,
+        @Value("${aws.s3.thumbnail-bucket-name}") String thumbnailBucketName
     ) {
+        this.s3Client = s3Client;
         this.s3Presigner = s3Presigner;
         this.bucketName = bucketName;
+        this.thumbnailBucketName = thumbnailBucketName;
     }
 
     /**
-     * Generate pre-signed URL for photo upload.
-     * For files <5MB: returns single upload URL
-     * For files >=5MB: returns multipart upload URLs
+     * Build the S3 key for an uploaded photo.
+     * Layout: uploads/{userId}/{sessionId}/{photoId}-{filename}
      */
-    public Map<String, Object> generatePresignedUploadUrl(
+    public static String buildUploadKey(UUID userId, UUID sessionId, UUID photoId, String filename) {
+        return String.format("uploads/%s/%s/%s-%s", userId, sessionId, photoId, filename);
+    }
+
+    /**
+     * Read the IDs back out of an upload key built by buildUploadKey.
+     *
+     * @return The key's parts; empty if the key does not follow the upload layout
+     */
+    public static Optional<UploadKey> parseUploadKey(String key) {
+        String[] parts = key.split("/", 4);
+        if (parts.length != 4 || !"uploads".equals(parts[0])
+            || parts[3].length() <= UUID_LENGTH + 1 || parts[3].charAt(UUID_LENGTH) != '-') {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new UploadKey(
+                UUID.fromString(parts[1]),
+                UUID.fromString(parts[2]),
+                UUID.fromString(parts[3].substring(0, UUID_LENGTH)),
+                parts[3].substring(UUID_LENGTH + 1)
+            ));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Parts of an upload key: uploads/{userId}/{sessionId}/{photoId}-{filename}
+     */
+    public record UploadKey(UUID userId, UUID sessionId, UUID photoId, String filename) {}
+
+    /**
+     * Build the S3 key for a generated thumbnail in the thumbnail bucket.
+     * Layout: thumbnails/{userId}/{photoId}/{maxEdge}.jpg
+     */
+    public static String buildThumbnailKey(UUID userId, UUID photoId, int maxEdge) {
+        return String.format("thumbnails/%s/%s/%d.jpg", userId, photoId, maxEdge);
+    }
+
+    /**
+     * Build the S3 key for a background export archive.
+     * Layout: exports/{userId}/{exportId}.zip
+     */
+    public static String buildExportKey(UUID userId, UUID exportId) {
+        return String.format("exports/%s/%s.zip", userId, exportId);
+    }
+
+    /**
+     * Generate pre-signed URL(s) for photo upload according to the upload plan.
+     * Single PUT plans return one upload URL; multipart plans create an S3 multipart
+     * upload and return presigned part URLs sized by the plan.
+     */
+    public Mono<Map<String, Object>> generatePresignedUploadUrl(
         UUID userId,
         UUID sessionId,
         UUID photoId,
         String filename,
-        long fileSizeBytes,
-        String mimeType
+        String mimeType,
+        UploadPlan plan
     ) {
-        String s3Key = String.format("uploads/%s/%s/%s-%s",
-            userId, sessionId, photoId, filename);
+        String s3Key = buildUploadKey(userId, sessionId, photoId, filename);
 
-        if (fileSizeBytes < MULTIPART_THRESHOLD) {
+        if (!plan.multipart()) {
             // Single upload for small files
-            String uploadUrl = generateSingleUploadUrl(s3Key, mimeType);
-            return Map.of(
-                "photoId", photoId.toString(),
-                "uploadUrl", uploadUrl,
-                "s3Key", s3Key
-            );
+            return Mono.fromCallable(() -> {
+                String uploadUrl = generateSingleUploadUrl(s3Key, mimeType);
+                return Map.<String, Object>of(
+                    "photoId", photoId.toString(),
+                    "uploadUrl", uploadUrl,
+                    "s3Key", s3Key
+                );
+            });
         } else {
             // Multipart upload for large files
-            return generateMultipartUploadUrls(s3Key, fileSizeBytes, mimeType, photoId);
+            return generateMultipartUploadUrls(s3Key, mimeType, photoId, plan);
         }
     }
 
@@ -99,37 +189,119 @@ public class S3Service {
     }
 
     /**
-     * Generate multipart upload URLs.
+     * Create an S3 multipart upload and presign one UploadPart URL per part.
+     * CreateMultipartUpload is a blocking call, so it runs on the boundedElastic scheduler.
      */
-    private Map<String, Object> generateMultipartUploadUrls(
+    private Mono<Map<String, Object>> generateMultipartUploadUrls(
         String s3Key,
-        long fileSizeBytes,
         String mimeType,
-        UUID photoId
+        UUID photoId,
+        UploadPlan plan
     ) {
-        // Calculate number of parts
-        int numParts = (int) Math.ceil((double) fileSizeBytes / PART_SIZE);
-        List<String> partUrls = new ArrayList<>();
-
-        // Generate URL for each part
-        // Note: In production, you'd use S3's CreateMultipartUpload API
-        // For MVP, we'll generate individual part URLs
-        for (int i = 1; i <= numParts; i++) {
-            String partKey = s3Key + ".part" + i;
-            String partUrl = generateSingleUploadUrl(partKey, mimeType);
-            partUrls.add(partUrl);
-        }
+        return createMultipartUpload(s3Key, mimeType)
+            .map(uploadId -> {
+                List<String> partUrls = new ArrayList<>(plan.partCount());
+                for (int partNumber = 1; partNumber <= plan.partCount(); partNumber++) {
+                    partUrls.add(generateUploadPartUrl(s3Key, uploadId, partNumber));
+                }
 
-        // Generate a unique upload ID (in production, this comes from S3)
-        String uploadId = UUID.randomUUID().toString();
+                return Map.<String, Object>of(
+                    "photoId", photoId.toString(),
+                    "uploadId", uploadId,
+                    "partUrls", partUrls,
+                    "partSize", plan.partSize(),
+                    "numParts", plan.partCount(),
+                    "suggestedConcurrency", plan.suggestedConcurrency(),
+                    "s3Key", s3Key
+                );
+            });
+    }
 
-        return Map.of(
-            "photoId", photoId.toString(),
-            "uploadId", uploadId,
-            "partUrls", partUrls,
-            "s3Key", s3Key,
-            "numParts", numParts
-        );
+    /**
+     * Start a multipart upload in S3.
+     *
+     * @return The S3-issued upload ID
+     */
+    public Mono<String> createMultipartUpload(String s3Key, String mimeType) {
+        return Mono.fromCallable(() -> {
+            CreateMultipartUploadResponse response = s3Client.createMultipartUpload(
+                CreateMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .contentType(mimeType)
+                    .build()
+            );
+            log.info("Created multipart upload {} for key {}", response.uploadId(), s3Key);
+            return response.uploadId();
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Generate a presigned URL for uploading a single part of a multipart upload.
+     * Part numbers are 1-based, as required by S3.
+     */
+    public String generateUploadPartUrl(String s3Key, String uploadId, int partNumber) {
+        UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+            .bucket(bucketName)
+            .key(s3Key)
+            .uploadId(uploadId)
+            .partNumber(partNumber)
+            .build();
+
+        UploadPartPresignRequest presignRequest = UploadPartPresignRequest.builder()
+            .signatureDuration(PRESIGNED_URL_DURATION)
+            .uploadPartRequest(uploadPartRequest)
+            .build();
+
+        return s3Presigner.presignUploadPart(presignRequest).url().toString();
+    }
+
+    /**
+     * Complete a multipart upload using the ETags the client received for each part.
+     * S3 requires parts in ascending part-number order.
+     *
+     * @param s3Key Object key the upload was created for
+     * @param uploadId Upload ID returned by createMultipartUpload
+     * @param partETags Map of part number to ETag
+     * @return ETag of the assembled object
+     */
+    public Mono<String> completeMultipartUpload(String s3Key, String uploadId, Map<Integer, String> partETags) {
+        return Mono.fromCallable(() -> {
+            List<CompletedPart> parts = partETags.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.naturalOrder()))
+                .map(entry -> CompletedPart.builder()
+                    .partNumber(entry.getKey())
+                    .eTag(entry.getValue())
+                    .build())
+                .toList();
+
+            CompleteMultipartUploadResponse response = s3Client.completeMultipartUpload(
+                CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build()
+            );
+            log.info("Completed multipart upload {} for key {} ({} parts)", uploadId, s3Key, parts.size());
+            return response.eTag();
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Abort a multipart upload so S3 discards any uploaded parts.
+     */
+    public Mono<Void> abortMultipartUpload(String s3Key, String uploadId) {
+        return Mono.fromRunnable(() -> {
+            s3Client.abortMultipartUpload(
+                AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .uploadId(uploadId)
+                    .build()
+            );
+            log.info("Aborted multipart upload {} for key {}", uploadId, s3Key);
+        }).subscribeOn(Schedulers.boundedElastic()).then();
     }
 
     /**
@@ -160,13 +332,16 @@ public class S3Service {
     /**
      * Generate presigned URL for viewing/displaying photo (inline, not download).
      * Used for gallery views and lightbox.
+     *
+     * @param signedAt Signing time; the same key, time and expiration give the same URL
      */
-    public Mono<String> generatePresignedViewUrl(String s3Key, Duration expiration) {
+    public Mono<String> generatePresignedViewUrl(String s3Key, Instant signedAt, Duration expiration) {
         return Mono.fromCallable(() -> {
             GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                 .bucket(bucketName)
                 .key(s3Key)
                 // No Content-Disposition header - browser will display inline
+                .overrideConfiguration(o -> o.signer(new SignedAtSigner(signedAt, expiration)))
                 .build();
 
             GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
@@ -178,4 +353,107 @@ public class S3Service {
             return presignedRequest.url().toString();
         });
     }
+
+    /**
+     * Open an uploaded object for streaming reads. Blocking; the caller must close
+     * the stream and should run on a scheduler that tolerates blocking I/O.
+     */
+    public ResponseInputStream<GetObjectResponse> openObject(String s3Key) {
+        return s3Client.getObject(
+            GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(s3Key)
+                .build()
+        );
+    }
+
+    /**
+     * Read only the first maxBytes of an uploaded object with a ranged GET.
+     * Objects smaller than the range are returned whole.
+     */
+    public Mono<byte[]> readObjectPrefix(String s3Key, int maxBytes) {
+        return Mono.fromCallable(() -> s3Client.getObjectAsBytes(
+                GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .range("bytes=0-" + (maxBytes - 1))
+                    .build()
+            ).asByteArray())
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Store a generated thumbnail in the thumbnail bucket.
+     */
+    public Mono<Void> putThumbnail(String thumbnailKey, byte[] content, String contentType) {
+        return Mono.fromRunnable(() -> {
+            s3Client.putObject(
+                PutObjectRequest.builder()
+                    .bucket(thumbnailBucketName)
+                    .key(thumbnailKey)
+                    .contentType(contentType)
+                    .build(),
+                RequestBody.fromBytes(content)
+            );
+            log.debug("Stored thumbnail {} ({} bytes)", thumbnailKey, content.length);
+        }).subscribeOn(Schedulers.boundedElastic()).then();
+    }
+
+    /**
+     * Generate presigned URL for viewing a thumbnail inline.
+     *
+     * @param signedAt Signing time; the same key, time and expiration give the same URL
+     */
+    public Mono<String> generatePresignedThumbnailUrl(String thumbnailKey, Instant signedAt, Duration expiration) {
+        return Mono.fromCallable(() -> {
+            GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
+                .signatureDuration(expiration)
+                .getObjectRequest(GetObjectRequest.builder()
+                    .bucket(thumbnailBucketName)
+                    .key(thumbnailKey)
+                    .overrideConfiguration(o -> o.signer(new SignedAtSigner(signedAt, expiration)))
+                    .build())
+                .build();
+
+            return s3Presigner.presignGetObject(presignRequest).url().toString();
+        });
+    }
+
+    /**
+     * S3's SigV4 signer with its clock fixed at signedAt. S3 accepts a URL from its
+     * X-Amz-Date until X-Amz-Expires seconds later, so a past signing time just
+     * shortens its life. Set on presign requests, which take it as a Signer; sign()
+     * signs as of the same time.
+     */
+    private record SignedAtSigner(Instant signedAt, Duration expiration) implements Signer, Presigner {
+
+        private static final AwsS3V4Signer SIGNER = AwsS3V4Signer.create();
+
+        @Override
+        public SdkHttpFullRequest presign(SdkHttpFullRequest request, ExecutionAttributes executionAttributes) {
+            Aws4PresignerParams params = Aws4PresignerParams.builder()
+                .awsCredentials(executionAttributes.getAttribute(AwsSignerExecutionAttribute.AWS_CREDENTIALS))
+                .signingName(executionAttributes.getAttribute(AwsSignerExecutionAttribute.SERVICE_SIGNING_NAME))
+                .signingRegion(executionAttributes.getAttribute(AwsSignerExecutionAttribute.SIGNING_REGION))
+                .doubleUrlEncode(Boolean.TRUE.equals(
+                    executionAttributes.getAttribute(AwsSignerExecutionAttribute.SIGNER_DOUBLE_URL_ENCODE)))
+                .normalizePath(Boolean.TRUE.equals(
+                    executionAttributes.getAttribute(AwsSignerExecutionAttribute.SIGNER_NORMALIZE_PATH)))
+                .signingClockOverride(clock())
+                .expirationTime(signedAt.plus(expiration))
+                .build();
+            return SIGNER.presign(request, params);
+        }
+
+        @Override
+        public SdkHttpFullRequest sign(SdkHttpFullRequest request, ExecutionAttributes executionAttributes) {
+            ExecutionAttributes attributes = executionAttributes.copy();
+            attributes.putAttribute(AwsSignerExecutionAttribute.SIGNING_CLOCK, clock());
+            return SIGNER.sign(request, attributes);
+        }
+
+        private Clock clock() {
+            return Clock.fixed(signedAt, ZoneOffset.UTC);
+        }
+    }
 }
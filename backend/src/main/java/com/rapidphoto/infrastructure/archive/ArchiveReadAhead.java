@@ -0,0 +1,229 @@
+package com.rapidphoto.infrastructure.archive;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded read-ahead for archive entries.
+ *
+ * While one entry is being written, the next app.download.read-ahead-objects entries
+ * are already opened (their S3 GETs in flight) and buffer content, so an archive costs
+ * roughly one object's first-byte latency instead of the sum of all of them. Output
+ * order is unchanged: entries are still written one after another.
+ *
+ * Buffered bytes are capped per archive (read-ahead-request-bytes) and across all
+ * archives (read-ahead-total-bytes). Every open object may still hold one chunk beyond
+ * the caps, so the entry being written always makes progress.
+ *
+ * Metric: download.read-ahead.buffered (bytes held across all archives).
+ */
+@Component
+public class ArchiveReadAhead {
+
+    private final int objects;
+    private final long requestBytes;
+    private final long totalBytes;
+    private final AtomicLong buffered = new AtomicLong();
+
+    public ArchiveReadAhead(
+        @Value("${app.download.read-ahead-objects:4}") int objects,
+        @Value("${app.download.read-ahead-request-bytes:16777216}") long requestBytes,
+        @Value("${app.download.read-ahead-total-bytes:268435456}") long totalBytes,
+        MeterRegistry meterRegistry
+    ) {
+        if (objects < 0 || requestBytes < 0 || totalBytes < 0) {
+            throw new IllegalArgumentException("Read-ahead limits cannot be negative");
+        }
+        this.objects = objects;
+        this.requestBytes = requestBytes;
+        this.totalBytes = totalBytes;
+        Gauge.builder("download.read-ahead.buffered", buffered, AtomicLong::get)
+            .description("Bytes read ahead of archive output across all downloads")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Wrap one archive's entries. The window must be closed when the archive ends,
+     * however it ends, to stop reads that are still in flight.
+     */
+    public Window open(List<ZipArchiveEntry> entries) {
+        return new Window(entries);
+    }
+
+    /**
+     * Read-ahead state of one archive.
+     */
+    public final class Window implements AutoCloseable {
+
+        private final List<ZipArchiveEntry> sources;
+        private final List<Prefetch> prefetches;
+        // Started and not yet done: at most the entry being written and the ones read ahead
+        private final Set<Prefetch> open = new LinkedHashSet<>(); // Guarded by this
+        private long windowBuffered; // Guarded by this
+        private boolean closed; // Guarded by this
+
+        private Window(List<ZipArchiveEntry> sources) {
+            this.sources = sources;
+            this.prefetches = new ArrayList<>(sources.size());
+            for (ZipArchiveEntry source : sources) {
+                prefetches.add(new Prefetch(source.content()));
+            }
+        }
+
+        /**
+         * The same entries, in the same order, with content served from read-ahead.
+         */
+        public List<ZipArchiveEntry> entries() {
+            List<ZipArchiveEntry> entries = new ArrayList<>(sources.size());
+            for (int i = 0; i < sources.size(); i++) {
+                int index = i;
+                ZipArchiveEntry source = sources.get(i);
+                entries.add(source.withContent(Flux.defer(() -> {
+                    // Reaching an entry opens it and the next ones
+                    for (int next = index; next <= index + objects && next < prefetches.size(); next++) {
+                        prefetches.get(next).start();
+                    }
+                    Prefetch prefetch = prefetches.get(index);
+                    return prefetch.sink.asFlux().doOnNext(data -> consumed(prefetch, data.remaining()));
+                })));
+            }
+            return entries;
+        }
+
+        @Override
+        public void close() {
+            long held;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                held = windowBuffered;
+                windowBuffered = 0;
+            }
+            buffered.addAndGet(-held);
+            prefetches.forEach(Prefetch::dispose);
+        }
+
+        synchronized int openObjects() {
+            return open.size();
+        }
+
+        private void consumed(Prefetch prefetch, int bytes) {
+            List<Prefetch> reading;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                prefetch.held -= bytes;
+                windowBuffered -= bytes;
+                reading = List.copyOf(open);
+            }
+            buffered.addAndGet(-bytes);
+            // Freed budget may let any open object read on
+            reading.forEach(Prefetch::pull);
+        }
+
+        /**
+         * One entry's content: read from its source into a buffer the entry drains later.
+         * Requests one chunk at a time while its window has budget.
+         */
+        private final class Prefetch extends BaseSubscriber<ByteBuffer> {
+
+            private final Flux<ByteBuffer> source;
+            private final Sinks.Many<ByteBuffer> sink = Sinks.many().unicast().onBackpressureBuffer();
+            // Guarded by Window.this
+            private boolean started;
+            private boolean subscribed;
+            private boolean requested;
+            private boolean done;
+            private long held;
+
+            private Prefetch(Flux<ByteBuffer> source) {
+                this.source = source;
+            }
+
+            void start() {
+                synchronized (Window.this) {
+                    if (started || closed) {
+                        return;
+                    }
+                    started = true;
+                    open.add(this);
+                }
+                source.subscribe(this);
+            }
+
+            void pull() {
+                synchronized (Window.this) {
+                    if (!subscribed || requested || done || closed) {
+                        return;
+                    }
+                    boolean withinBudget = windowBuffered < requestBytes && buffered.get() < totalBytes;
+                    if (held > 0 && !withinBudget) {
+                        return;
+                    }
+                    requested = true;
+                }
+                request(1);
+            }
+
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                synchronized (Window.this) {
+                    subscribed = true;
+                }
+                pull();
+            }
+
+            @Override
+            protected void hookOnNext(ByteBuffer data) {
+                int bytes = data.remaining();
+                synchronized (Window.this) {
+                    requested = false;
+                    if (closed) {
+                        return;
+                    }
+                    held += bytes;
+                    windowBuffered += bytes;
+                }
+                buffered.addAndGet(bytes);
+                sink.tryEmitNext(data);
+                pull();
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                synchronized (Window.this) {
+                    done = true;
+                    open.remove(this);
+                }
+                sink.tryEmitComplete();
+            }
+
+            @Override
+            protected void hookOnError(Throwable error) {
+                synchronized (Window.this) {
+                    done = true;
+                    open.remove(this);
+                }
+                // Surfaces when the archive reaches this entry
+                sink.tryEmitError(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.rapidphoto.infrastructure.archive;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Encodes a sequence of entries as a ZIP archive without blocking a thread.
+ *
+ * Headers, deflated data and data descriptors are written straight into buffers from
+ * the caller's DataBufferFactory (pooled Netty buffers when it is the response's);
+ * STORED content is passed through in the source's own buffers, without a copy.
+ * Entries are written one after another; an entry's content is subscribed to only when
+ * it is reached and is requested as the output is consumed, so a slow client slows the
+ * sources down instead of buffering the archive.
+ *
+ * When every entry is STORED (which needs its size and CRC) the layout is fixed, and
+ * encodeRange() produces any byte range of the archive from just the entry data that
+ * falls inside it (contentRanges()).
+ */
+public final class ZipArchiveEncoder {
+
+    /**
+     * Part of an entry's data.
+     *
+     * @param offset First byte, from the start of the entry's data
+     * @param length Number of bytes; 0 if none of the entry is needed
+     */
+    public record ContentRange(long offset, long length) {
+    }
+
+    private static final long WHOLE_ARCHIVE_END = Long.MAX_VALUE;
+
+    private ZipArchiveEncoder() {
+    }
+
+    public static Flux<DataBuffer> encode(Flux<ZipArchiveEntry> entries, DataBufferFactory bufferFactory) {
+        return encode(entries, bufferFactory, ZipStreamWriter.ZIP64_LIMIT);
+    }
+
+    static Flux<DataBuffer> encode(Flux<ZipArchiveEntry> entries, DataBufferFactory bufferFactory, long zip64Limit) {
+        return encode(entries.map(entry -> new Part(entry, null)), 0, WHOLE_ARCHIVE_END, bufferFactory, zip64Limit);
+    }
+
+    /**
+     * Bytes start to end (inclusive) of the archive encode() produces for these entries.
+     * Each entry's content must hold exactly the part of its data given by
+     * contentRanges(entries, start, end), and is not subscribed to if that part is empty.
+     */
+    public static Flux<DataBuffer> encodeRange(List<ZipArchiveEntry> entries, long start, long end,
+                                               DataBufferFactory bufferFactory) {
+        return encodeRange(entries, start, end, bufferFactory, ZipStreamWriter.ZIP64_LIMIT);
+    }
+
+    static Flux<DataBuffer> encodeRange(List<ZipArchiveEntry> entries, long start, long end,
+                                        DataBufferFactory bufferFactory, long zip64Limit) {
+        List<ContentRange> ranges = contentRanges(entries, start, end, zip64Limit);
+        List<Part> parts = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            parts.add(new Part(entries.get(i), ranges.get(i)));
+        }
+        return encode(Flux.fromIterable(parts), start, end, bufferFactory, zip64Limit);
+    }
+
+    /**
+     * Exact size in bytes of the archive encode() produces for these entries, or -1 if it
+     * cannot be known in advance: every entry must be STORED.
+     */
+    public static long archiveLength(List<ZipArchiveEntry> entries) {
+        return archiveLength(entries, ZipStreamWriter.ZIP64_LIMIT);
+    }
+
+    static long archiveLength(List<ZipArchiveEntry> entries, long zip64Limit) {
+        return ZipStreamWriter.archiveLength(sizes(entries), zip64Limit);
+    }
+
+    /**
+     * Whether encodeRange() can produce parts of the archive: every entry must be STORED.
+     */
+    public static boolean supportsRanges(List<ZipArchiveEntry> entries) {
+        return entries.stream().allMatch(ZipArchiveEntry::stored);
+    }
+
+    /**
+     * For each entry, the part of its data that lies within bytes start to end
+     * (inclusive) of the archive.
+     */
+    public static List<ContentRange> contentRanges(List<ZipArchiveEntry> entries, long start, long end) {
+        return contentRanges(entries, start, end, ZipStreamWriter.ZIP64_LIMIT);
+    }
+
+    static List<ContentRange> contentRanges(List<ZipArchiveEntry> entries, long start, long end, long zip64Limit) {
+        if (!supportsRanges(entries)) {
+            throw new IllegalArgumentException("Ranges need STORED entries of known size and CRC");
+        }
+        long[] dataOffsets = ZipStreamWriter.dataOffsets(sizes(entries), zip64Limit);
+        List<ContentRange> ranges = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            long from = Math.max(start, dataOffsets[i]);
+            long to = Math.min(end, dataOffsets[i] + entries.get(i).size() - 1) + 1;
+            ranges.add(from < to ? new ContentRange(from - dataOffsets[i], to - from) : new ContentRange(0, 0));
+        }
+        return ranges;
+    }
+
+    /**
+     * Entries in order, keeping only archive bytes start to end. A part with a range
+     * writes only that much of the entry's data and skips the rest.
+     */
+    private static Flux<DataBuffer> encode(Flux<Part> parts, long start, long end,
+                                           DataBufferFactory bufferFactory, long zip64Limit) {
+        return Flux.using(
+                () -> new ZipStreamWriter(zip64Limit),
+                writer -> parts
+                    .concatMap(part -> Flux.concat(
+                        chunk(bufferFactory, writer, start, end, out -> writer.startEntry(part.entry().name(),
+                            part.entry().lastModified(), part.entry().stored(), part.entry().size(),
+                            part.entry().crc32(), out)),
+                        data(bufferFactory, writer, start, end, part),
+                        chunk(bufferFactory, writer, start, end, writer::finishEntry)
+                    ))
+                    .concatWith(chunk(bufferFactory, writer, start, end, writer::finish)),
+                ZipStreamWriter::close
+            )
+            .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    private static Flux<DataBuffer> data(DataBufferFactory bufferFactory, ZipStreamWriter writer,
+                                         long start, long end, Part part) {
+        ContentRange range = part.range();
+        if (range == null) {
+            return content(bufferFactory, writer, start, end, part.entry());
+        }
+        Mono<DataBuffer> skipBefore = Mono.fromRunnable(() -> writer.skip(range.offset()));
+        Mono<DataBuffer> skipAfter = Mono.fromRunnable(() ->
+            writer.skip(part.entry().size() - range.offset() - range.length()));
+        if (range.length() == 0) {
+            return Flux.concat(skipBefore, skipAfter);
+        }
+        return Flux.concat(skipBefore, content(bufferFactory, writer, start, end, part.entry()), skipAfter);
+    }
+
+    private static Flux<DataBuffer> content(DataBufferFactory bufferFactory, ZipStreamWriter writer,
+                                            long start, long end, ZipArchiveEntry entry) {
+        return entry.content().handle((data, sink) -> {
+            long from = writer.offset();
+            ContentOutput out = new ContentOutput(bufferFactory, data.remaining());
+            try {
+                writer.write(data, out);
+            } catch (RuntimeException e) {
+                out.release();
+                throw e;
+            }
+            // Deflate may hold the input back until it has a full block
+            DataBuffer buffer = out.buffer == null ? null : slice(out.buffer, from, start, end);
+            if (buffer != null) {
+                sink.next(buffer);
+            }
+        });
+    }
+
+    /**
+     * One buffer holding whatever the writer step produces within the range, if anything.
+     */
+    private static Mono<DataBuffer> chunk(DataBufferFactory bufferFactory, ZipStreamWriter writer,
+                                          long start, long end, Consumer<ZipStreamWriter.Output> step) {
+        return Mono.fromCallable(() -> {
+            long from = writer.offset();
+            DataBuffer buffer = bufferFactory.allocateBuffer(256);
+            try {
+                step.accept(buffer::write);
+            } catch (RuntimeException e) {
+                DataBufferUtils.release(buffer);
+                throw e;
+            }
+            return slice(buffer, from, start, end);
+        });
+    }
+
+    /**
+     * Trim buffer, which holds archive bytes from offset from on, to bytes start to end;
+     * null (and released) if nothing is left.
+     */
+    private static DataBuffer slice(DataBuffer buffer, long from, long start, long end) {
+        long to = from + buffer.readableByteCount();
+        if (to <= start || from > end || from == to) {
+            DataBufferUtils.release(buffer);
+            return null;
+        }
+        if (from < start) {
+            buffer.readPosition(buffer.readPosition() + (int) (start - from));
+        }
+        if (to - 1 > end) {
+            buffer.writePosition(buffer.writePosition() - (int) (to - 1 - end));
+        }
+        return buffer;
+    }
+
+    private static List<ZipStreamWriter.EntrySize> sizes(List<ZipArchiveEntry> entries) {
+        return entries.stream()
+            .map(entry -> new ZipStreamWriter.EntrySize(entry.name(), entry.stored(), entry.size()))
+            .toList();
+    }
+
+    /**
+     * An entry and the part of its data to write; all of it if range is null.
+     */
+    private record Part(ZipArchiveEntry entry, ContentRange range) {
+    }
+
+    /**
+     * Output of one content chunk: wraps STORED data as is, allocates for deflated data.
+     */
+    private static final class ContentOutput implements ZipStreamWriter.Output {
+
+        private final DataBufferFactory bufferFactory;
+        private final int sizeHint;
+        private DataBuffer buffer;
+
+        private ContentOutput(DataBufferFactory bufferFactory, int sizeHint) {
+            this.bufferFactory = bufferFactory;
+            this.sizeHint = sizeHint;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            if (buffer == null) {
+                buffer = bufferFactory.allocateBuffer(Math.max(sizeHint, length));
+            }
+            buffer.write(bytes, offset, length);
+        }
+
+        @Override
+        public void write(ByteBuffer data) {
+            if (buffer == null) {
+                buffer = bufferFactory.wrap(data);
+            } else {
+                buffer.write(data);
+            }
+        }
+
+        private void release() {
+            if (buffer != null) {
+                DataBufferUtils.release(buffer);
+            }
+        }
+    }
+}
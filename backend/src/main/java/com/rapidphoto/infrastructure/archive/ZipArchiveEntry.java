@@ -0,0 +1,52 @@
+package com.rapidphoto.infrastructure.archive;
+
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * One file of a streamed ZIP archive.
+ *
+ * @param name Path inside the archive
+ * @param lastModified Entry timestamp
+ * @param stored Store the bytes as is instead of deflating them (for content that is
+ *               already compressed, such as JPEG); needs size and crc32
+ * @param size Size of content in bytes, or -1 if unknown
+ * @param crc32 CRC-32 of content if known in advance, otherwise null
+ * @param content Entry bytes; subscribed to only when the entry is written, and
+ *                each buffer is consumed before the next one is requested
+ */
+public record ZipArchiveEntry(
+    String name,
+    Instant lastModified,
+    boolean stored,
+    long size,
+    Long crc32,
+    Flux<ByteBuffer> content
+) {
+
+    /**
+     * @throws IllegalArgumentException for a STORED entry without its size and CRC:
+     *                                  streaming readers need both before the data
+     */
+    public ZipArchiveEntry {
+        if (stored && (size < 0 || crc32 == null)) {
+            throw new IllegalArgumentException("Stored entry " + name + " needs its size and CRC-32");
+        }
+    }
+
+    /**
+     * A deflated entry of unknown size.
+     */
+    public ZipArchiveEntry(String name, Instant lastModified, Flux<ByteBuffer> content) {
+        this(name, lastModified, false, -1, null, content);
+    }
+
+    /**
+     * The same entry with its bytes coming from content.
+     */
+    public ZipArchiveEntry withContent(Flux<ByteBuffer> content) {
+        return new ZipArchiveEntry(name, lastModified, stored, size, crc32, content);
+    }
+}
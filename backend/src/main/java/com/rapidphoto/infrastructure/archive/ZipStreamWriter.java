@@ -0,0 +1,481 @@
+package com.rapidphoto.infrastructure.archive;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a ZIP archive front to back without seeking, one entry at a time.
+ *
+ * Entries are either deflated or STORED (copied as is). A STORED entry's size and CRC
+ * must be known up front and go in its local header, since streaming readers such as
+ * ZipInputStream have no other way to find the end of its data. A deflated entry uses a
+ * data descriptor (general purpose flag bit 3), so CRC and sizes follow the data instead
+ * of preceding it and nothing has to be buffered. The central directory is written by
+ * finish().
+ *
+ * ZIP64 fields are used, as java.util.zip.ZipOutputStream does, only where a size or
+ * offset actually reaches 4GB: in the local header of a STORED entry of known size, in
+ * the data descriptor once an entry's written bytes reach it (streaming readers such as
+ * ZipInputStream pick the descriptor format from the bytes they read), in the central
+ * directory and in a ZIP64 end of central directory record. For STORED entries this
+ * depends only on the declared entries, so archiveLength() can tell the archive's exact
+ * size before it is written. Timestamps are encoded in UTC so the same entries always
+ * produce the same bytes, and data of STORED entries can be skipped to produce just a
+ * byte range of the archive.
+ *
+ * Not thread-safe: calls must be serialized. close() releases the native deflater.
+ */
+class ZipStreamWriter implements AutoCloseable {
+
+    /**
+     * Destination of archive bytes.
+     */
+    interface Output {
+        void write(byte[] bytes, int offset, int length);
+
+        /**
+         * Data of a STORED entry. The writer does not touch data afterwards, so it may be
+         * kept instead of copied.
+         */
+        default void write(ByteBuffer data) {
+            if (data.hasArray()) {
+                write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            } else {
+                byte[] copy = new byte[data.remaining()];
+                data.get(copy);
+                write(copy, 0, copy.length);
+            }
+        }
+    }
+
+    /**
+     * Size of an entry as declared before its data is written.
+     *
+     * @param name Path inside the archive
+     * @param stored Whether the data is stored rather than deflated
+     * @param size Uncompressed size, or -1 if unknown
+     */
+    record EntrySize(String name, boolean stored, long size) {
+    }
+
+    static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8_NAME = 1 << 11;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final short ZIP64_EXTRA_ID = 0x0001;
+    private static final int MAX_ENTRY_COUNT = 0xFFFF;
+    private static final int SCRATCH_SIZE = 16 * 1024;
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] scratch = new byte[SCRATCH_SIZE];
+    private final List<CentralRecord> written = new ArrayList<>();
+    private final long zip64Limit;
+    private long offset;
+    private long storedBytes;
+    private CentralRecord current;
+
+    ZipStreamWriter() {
+        this(ZIP64_LIMIT);
+    }
+
+    /**
+     * @param zip64Limit Sizes and offsets from which ZIP64 fields are used; lowered in tests
+     */
+    ZipStreamWriter(long zip64Limit) {
+        this.zip64Limit = zip64Limit;
+    }
+
+    /**
+     * Begin a deflated entry of unknown size by writing its local file header.
+     */
+    void startEntry(String name, Instant lastModified, Output out) {
+        startEntry(name, lastModified, false, -1, null, out);
+    }
+
+    /**
+     * Begin an entry by writing its local file header.
+     *
+     * @param stored Store the data as is rather than deflating it; needs size and expectedCrc
+     * @param size Uncompressed size, or -1 if unknown; the entry fails if the data differs
+     * @param expectedCrc CRC-32 of the data if known; the entry fails if the data does not match
+     */
+    void startEntry(String name, Instant lastModified, boolean stored, long size, Long expectedCrc, Output out) {
+        if (current != null) {
+            throw new IllegalStateException("Entry " + current.name + " is still open");
+        }
+        if (stored && (size < 0 || expectedCrc == null)) {
+            throw new IllegalArgumentException("Stored entry " + name + " needs its size and CRC-32");
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        boolean descriptor = !stored;
+        // Sizes in the local header only when they are known; a descriptor's follow the data
+        boolean zip64 = !descriptor && usesZip64Sizes(size, size, zip64Limit);
+        current = new CentralRecord(name, nameBytes, dosTime(lastModified), offset, stored, size, expectedCrc,
+            descriptor);
+
+        long headerSize = descriptor ? 0 : size;
+        ByteBuffer header = littleEndian(localHeaderLength(nameBytes.length, zip64));
+        header.putInt(LOCAL_HEADER_SIGNATURE)
+            .putShort((short) (zip64 ? VERSION_ZIP64 : VERSION))
+            .putShort((short) current.flags())
+            .putShort((short) current.method())
+            .putInt(current.dosTime)
+            .putInt(descriptor ? 0 : expectedCrc.intValue()) // Otherwise in the data descriptor
+            .putInt(zip64 ? (int) ZIP64_LIMIT : (int) headerSize)
+            .putInt(zip64 ? (int) ZIP64_LIMIT : (int) headerSize)
+            .putShort((short) nameBytes.length)
+            .putShort((short) (zip64 ? 20 : 0))
+            .put(nameBytes);
+        if (zip64) {
+            header.putShort(ZIP64_EXTRA_ID)
+                .putShort((short) 16)
+                .putLong(headerSize)
+                .putLong(headerSize);
+        }
+        emit(header, out);
+    }
+
+    /**
+     * Add content to the open entry; consumes all of data.
+     */
+    void write(ByteBuffer data, Output out) {
+        if (current == null) {
+            throw new IllegalStateException("No open entry");
+        }
+        crc.update(data.duplicate());
+        if (current.stored) {
+            int length = data.remaining();
+            // Fail before any byte past the declared size goes out
+            if (current.declaredSize >= 0 && storedBytes + length > current.declaredSize) {
+                throw new IllegalStateException("Entry " + current.name + " has more than "
+                    + current.declaredSize + " bytes");
+            }
+            out.write(data.slice());
+            data.position(data.limit());
+            storedBytes += length;
+            offset += length;
+            return;
+        }
+        deflater.setInput(data);
+        while (!deflater.needsInput()) {
+            drain(out);
+        }
+    }
+
+    /**
+     * Account for length bytes of the open entry's data that are not written, because
+     * the caller only wants part of the archive. Only for a STORED entry, whose CRC was
+     * given to startEntry, since its CRC cannot be checked any more.
+     */
+    void skip(long length) {
+        if (current == null) {
+            throw new IllegalStateException("No open entry");
+        }
+        if (!current.stored) {
+            throw new IllegalStateException("Entry " + current.name + " cannot skip data");
+        }
+        current.skipped |= length > 0;
+        storedBytes += length;
+        offset += length;
+    }
+
+    /**
+     * Number of archive bytes produced (or skipped) so far.
+     */
+    long offset() {
+        return offset;
+    }
+
+    /**
+     * Close the open entry: flush the deflater, check the data against what was declared
+     * and write the data descriptor if the entry has one.
+     */
+    void finishEntry(Output out) {
+        if (current == null) {
+            throw new IllegalStateException("No open entry");
+        }
+        if (current.stored) {
+            current.compressedSize = storedBytes;
+            current.size = storedBytes;
+        } else {
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain(out);
+            }
+            current.compressedSize = deflater.getBytesWritten();
+            current.size = deflater.getBytesRead();
+        }
+        current.crc = current.skipped ? current.expectedCrc : crc.getValue();
+        current.zip64Sizes = usesZip64Sizes(current.compressedSize, current.size, zip64Limit);
+        deflater.reset();
+        crc.reset();
+        storedBytes = 0;
+        verify(current);
+
+        if (current.descriptor) {
+            ByteBuffer descriptor = littleEndian(dataDescriptorLength(current.zip64Sizes));
+            descriptor.putInt(DATA_DESCRIPTOR_SIGNATURE)
+                .putInt((int) current.crc);
+            if (current.zip64Sizes) {
+                descriptor.putLong(current.compressedSize).putLong(current.size);
+            } else {
+                descriptor.putInt((int) current.compressedSize).putInt((int) current.size);
+            }
+            emit(descriptor, out);
+        }
+
+        written.add(current);
+        current = null;
+    }
+
+    /**
+     * Write the central directory; the archive is complete afterwards.
+     */
+    void finish(Output out) {
+        if (current != null) {
+            throw new IllegalStateException("Entry " + current.name + " is still open");
+        }
+        long directoryOffset = offset;
+        for (CentralRecord record : written) {
+            boolean zip64Offset = usesZip64Offset(record.localHeaderOffset, zip64Limit);
+            int extraLength = centralExtraLength(record.zip64Sizes, zip64Offset);
+            ByteBuffer header = littleEndian(46 + record.nameBytes.length + extraLength);
+            int version = record.zip64Sizes || zip64Offset ? VERSION_ZIP64 : VERSION;
+            header.putInt(CENTRAL_HEADER_SIGNATURE)
+                .putShort((short) version) // Version made by
+                .putShort((short) version) // Version needed to extract
+                .putShort((short) record.flags())
+                .putShort((short) record.method())
+                .putInt(record.dosTime)
+                .putInt((int) record.crc)
+                .putInt(record.zip64Sizes ? (int) ZIP64_LIMIT : (int) record.compressedSize)
+                .putInt(record.zip64Sizes ? (int) ZIP64_LIMIT : (int) record.size)
+                .putShort((short) record.nameBytes.length)
+                .putShort((short) extraLength)
+                .putShort((short) 0) // Comment length
+                .putShort((short) 0) // Disk number start
+                .putShort((short) 0) // Internal attributes
+                .putInt(0) // External attributes
+                .putInt(zip64Offset ? (int) ZIP64_LIMIT : (int) record.localHeaderOffset)
+                .put(record.nameBytes);
+            if (extraLength > 0) {
+                header.putShort(ZIP64_EXTRA_ID).putShort((short) (extraLength - 4));
+                if (record.zip64Sizes) {
+                    header.putLong(record.size).putLong(record.compressedSize);
+                }
+                if (zip64Offset) {
+                    header.putLong(record.localHeaderOffset);
+                }
+            }
+            emit(header, out);
+        }
+
+        long directorySize = offset - directoryOffset;
+        boolean zip64End = usesZip64End(written.size(), directoryOffset, directorySize, zip64Limit);
+        if (zip64End) {
+            long zip64EndOffset = offset;
+            ByteBuffer end = littleEndian(56 + 20);
+            end.putInt(ZIP64_END_SIGNATURE)
+                .putLong(44) // Size of the rest of this record
+                .putShort((short) VERSION_ZIP64)
+                .putShort((short) VERSION_ZIP64)
+                .putInt(0) // This disk
+                .putInt(0) // Disk with the central directory
+                .putLong(written.size())
+                .putLong(written.size())
+                .putLong(directorySize)
+                .putLong(directoryOffset)
+                .putInt(ZIP64_LOCATOR_SIGNATURE)
+                .putInt(0) // Disk with the ZIP64 end record
+                .putLong(zip64EndOffset)
+                .putInt(1); // Total disks
+            emit(end, out);
+        }
+
+        // With a ZIP64 record every field points readers to it
+        ByteBuffer end = littleEndian(22);
+        end.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+            .putShort((short) 0) // This disk
+            .putShort((short) 0) // Disk with the central directory
+            .putShort((short) (zip64End ? MAX_ENTRY_COUNT : written.size()))
+            .putShort((short) (zip64End ? MAX_ENTRY_COUNT : written.size()))
+            .putInt(zip64End ? (int) ZIP64_LIMIT : (int) directorySize)
+            .putInt(zip64End ? (int) ZIP64_LIMIT : (int) directoryOffset)
+            .putShort((short) 0); // Comment length
+        emit(end, out);
+    }
+
+    @Override
+    public void close() {
+        deflater.end();
+    }
+
+    /**
+     * Exact size of the archive the entries produce, or -1 unless every entry is STORED
+     * (deflated sizes depend on the data).
+     */
+    static long archiveLength(List<EntrySize> entries) {
+        return archiveLength(entries, ZIP64_LIMIT);
+    }
+
+    static long archiveLength(List<EntrySize> entries, long zip64Limit) {
+        long[] layout = layout(entries, zip64Limit);
+        return layout == null ? -1 : layout[entries.size()];
+    }
+
+    /**
+     * Offset in the archive of each entry's first data byte; every entry must be STORED.
+     */
+    static long[] dataOffsets(List<EntrySize> entries, long zip64Limit) {
+        long[] layout = layout(entries, zip64Limit);
+        if (layout == null) {
+            throw new IllegalArgumentException("Layout depends on the data");
+        }
+        return Arrays.copyOf(layout, entries.size());
+    }
+
+    /**
+     * Data offset of each entry followed by the archive length, mirroring the writer;
+     * null unless every entry is STORED.
+     */
+    private static long[] layout(List<EntrySize> entries, long zip64Limit) {
+        long[] layout = new long[entries.size() + 1];
+        long length = 0;
+        long directorySize = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            EntrySize entry = entries.get(i);
+            if (!entry.stored() || entry.size() < 0) {
+                return null;
+            }
+            int nameLength = entry.name().getBytes(StandardCharsets.UTF_8).length;
+            boolean zip64 = usesZip64Sizes(entry.size(), entry.size(), zip64Limit);
+            directorySize += 46 + nameLength + centralExtraLength(zip64, usesZip64Offset(length, zip64Limit));
+            layout[i] = length + localHeaderLength(nameLength, zip64);
+            length = layout[i] + entry.size();
+        }
+        boolean zip64End = usesZip64End(entries.size(), length, directorySize, zip64Limit);
+        layout[entries.size()] = length + directorySize + (zip64End ? 56 + 20 : 0) + 22;
+        return layout;
+    }
+
+    private void verify(CentralRecord record) {
+        if (record.declaredSize >= 0 && record.size != record.declaredSize) {
+            throw new IllegalStateException("Entry " + record.name + " has " + record.size
+                + " bytes, expected " + record.declaredSize);
+        }
+        if (record.expectedCrc != null && record.crc != record.expectedCrc) {
+            throw new IllegalStateException("Entry " + record.name + " does not match its CRC");
+        }
+    }
+
+    private static boolean usesZip64Sizes(long compressedSize, long size, long zip64Limit) {
+        return compressedSize >= zip64Limit || size >= zip64Limit;
+    }
+
+    private static boolean usesZip64Offset(long localHeaderOffset, long zip64Limit) {
+        return localHeaderOffset >= zip64Limit;
+    }
+
+    private static boolean usesZip64End(int entryCount, long directoryOffset, long directorySize, long zip64Limit) {
+        return entryCount >= MAX_ENTRY_COUNT || directoryOffset >= zip64Limit || directorySize >= zip64Limit;
+    }
+
+    private static int localHeaderLength(int nameLength, boolean zip64Sizes) {
+        return 30 + nameLength + (zip64Sizes ? 20 : 0);
+    }
+
+    private static int dataDescriptorLength(boolean zip64Sizes) {
+        return zip64Sizes ? 24 : 16;
+    }
+
+    private static int centralExtraLength(boolean zip64Sizes, boolean zip64Offset) {
+        int fields = (zip64Sizes ? 16 : 0) + (zip64Offset ? 8 : 0);
+        return fields == 0 ? 0 : 4 + fields;
+    }
+
+    private void drain(Output out) {
+        int length = deflater.deflate(scratch);
+        if (length > 0) {
+            out.write(scratch, 0, length);
+            offset += length;
+        }
+    }
+
+    private void emit(ByteBuffer buffer, Output out) {
+        out.write(buffer.array(), 0, buffer.position());
+        offset += buffer.position();
+    }
+
+    private static ByteBuffer littleEndian(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * MS-DOS date and time (2-second resolution, years 1980-2107), time in the low half.
+     */
+    private static int dosTime(Instant instant) {
+        LocalDateTime time = LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+        if (time.getYear() < 1980) {
+            time = LocalDateTime.of(1980, 1, 1, 0, 0);
+        }
+        int date = ((time.getYear() - 1980) << 9) | (time.getMonthValue() << 5) | time.getDayOfMonth();
+        int clock = (time.getHour() << 11) | (time.getMinute() << 5) | (time.getSecond() >> 1);
+        return (date << 16) | clock;
+    }
+
+    private static final class CentralRecord {
+        private final String name;
+        private final byte[] nameBytes;
+        private final int dosTime;
+        private final long localHeaderOffset;
+        private final boolean stored;
+        private final long declaredSize;
+        private final Long expectedCrc;
+        private final boolean descriptor;
+        private boolean zip64Sizes;
+        private boolean skipped;
+        private long crc;
+        private long compressedSize;
+        private long size;
+
+        private CentralRecord(String name, byte[] nameBytes, int dosTime, long localHeaderOffset, boolean stored,
+                              long declaredSize, Long expectedCrc, boolean descriptor) {
+            this.name = name;
+            this.nameBytes = nameBytes;
+            this.dosTime = dosTime;
+            this.localHeaderOffset = localHeaderOffset;
+            this.stored = stored;
+            this.declaredSize = declaredSize;
+            this.expectedCrc = expectedCrc;
+            this.descriptor = descriptor;
+        }
+
+        private int flags() {
+            return FLAG_UTF8_NAME | (descriptor ? FLAG_DATA_DESCRIPTOR : 0);
+        }
+
+        private int method() {
+            return stored ? METHOD_STORED : METHOD_DEFLATED;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.rapidphoto.infrastructure.dedup;
+
+import com.rapidphoto.domain.photo.Photo;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Per-user index of content hashes used to skip duplicate uploads.
+ *
+ * Postgres (photos.content_hash) is the source of truth. A Redis set per user sits in
+ * front of it so the common case, a new file, is answered without a database query.
+ * The set may hold hashes of since-deleted photos, so a hit is always confirmed in
+ * Postgres; a miss is final. Sets are loaded from Postgres on first use and expire
+ * after a period without new hashes. A hash stored while its set is being loaded can
+ * be missed, which only costs one skipped dedup until the set is rebuilt.
+ */
+@Component
+public class ContentHashIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentHashIndex.class);
+    private static final String KEY_PREFIX = "dedup:hashes:";
+    // Member marking a set as fully loaded; cannot collide with a hex hash
+    private static final String LOADED_MARKER = "loaded";
+    private static final Duration TTL = Duration.ofDays(7);
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final PhotoRepository photoRepository;
+
+    public ContentHashIndex(
+        ReactiveRedisTemplate<String, String> redisTemplate,
+        PhotoRepository photoRepository
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.photoRepository = photoRepository;
+    }
+
+    /**
+     * Normalize a hex SHA-256 to lowercase.
+     *
+     * @throws IllegalArgumentException if it is not 64 hex digits
+     */
+    public static String normalize(String contentHash) {
+        String normalized = contentHash == null ? "" : contentHash.trim().toLowerCase(Locale.ROOT);
+        if (!SHA256_HEX.matcher(normalized).matches()) {
+            throw new IllegalArgumentException("Content hash must be a hex SHA-256");
+        }
+        return normalized;
+    }
+
+    /**
+     * Find a completed photo in the user's library with the same content.
+     *
+     * @param contentHash Normalized hex SHA-256
+     * @return The existing photo, or empty if this content is new to the user
+     */
+    public Mono<Photo> findDuplicate(UUID userId, String contentHash) {
+        return mightContain(userId, contentHash)
+            .onErrorResume(error -> {
+                log.warn("Dedup index unavailable, checking database: {}", error.getMessage());
+                return Mono.just(true);
+            })
+            .filter(Boolean::booleanValue)
+            .flatMap(hit -> photoRepository.findCompletedByUserIdAndContentHash(userId, contentHash));
+    }
+
+    /**
+     * Record a hash once its photo is stored. Only updates sets that are already
+     * loaded; an unloaded set picks the hash up from Postgres when it is built.
+     */
+    public Mono<Void> add(UUID userId, String contentHash) {
+        String key = key(userId);
+        return redisTemplate.opsForSet().isMember(key, LOADED_MARKER)
+            .filter(Boolean::booleanValue)
+            .flatMap(loaded -> redisTemplate.opsForSet().add(key, contentHash))
+            .flatMap(added -> redisTemplate.expire(key, TTL))
+            .then();
+    }
+
+    private Mono<Boolean> mightContain(UUID userId, String contentHash) {
+        String key = key(userId);
+        return redisTemplate.opsForSet().isMember(key, contentHash, LOADED_MARKER)
+            .flatMap(members -> Boolean.TRUE.equals(members.get(LOADED_MARKER))
+                ? Mono.just(Boolean.TRUE.equals(members.get(contentHash)))
+                : load(userId).map(hashes -> hashes.containsKey(contentHash)));
+    }
+
+    /**
+     * Build the user's set from Postgres and return its contents.
+     */
+    private Mono<Map<String, Boolean>> load(UUID userId) {
+        String key = key(userId);
+        return photoRepository.findContentHashesByUserId(userId)
+            .collectMap(hash -> hash, hash -> Boolean.TRUE)
+            .flatMap(hashes -> {
+                String[] members = hashes.keySet().toArray(new String[hashes.size() + 1]);
+                members[hashes.size()] = LOADED_MARKER;
+                return redisTemplate.opsForSet().add(key, members)
+                    .then(redisTemplate.expire(key, TTL))
+                    .doOnSuccess(ok -> log.debug("Loaded {} content hashes for user {}", hashes.size(), userId))
+                    .thenReturn(hashes);
+            });
+    }
+
+    private static String key(UUID userId) {
+        return KEY_PREFIX + userId;
+    }
+}
@@ -0,0 +1,114 @@
+package com.rapidphoto.infrastructure.dedup;
+
+import com.rapidphoto.domain.photo.Photo;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.infrastructure.S3Service;
+import com.rapidphoto.infrastructure.processing.PhotoProcessor;
+import com.rapidphoto.infrastructure.processing.ProcessingJobType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.CRC32;
+
+/**
+ * Hashing stage for completed uploads.
+ *
+ * Streams the stored object through SHA-256 in fixed-size chunks, records the digest on
+ * the photo and adds it to the user's ContentHashIndex, so later uploads of the same
+ * file can be skipped. The hash is always computed from S3, never taken from the client.
+ *
+ * The same pass computes the CRC-32, kept as metadata key CRC32, so batch ZIP downloads
+ * can write the checksum of a stored entry before its data.
+ */
+@Service
+public class ContentHashService implements PhotoProcessor {
+
+    public static final String CRC32 = "crc32";
+
+    private static final Logger log = LoggerFactory.getLogger(ContentHashService.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final S3Service s3Service;
+    private final PhotoRepository photoRepository;
+    private final ContentHashIndex contentHashIndex;
+    private final boolean enabled;
+
+    public ContentHashService(
+        S3Service s3Service,
+        PhotoRepository photoRepository,
+        ContentHashIndex contentHashIndex,
+        @Value("${app.dedup.enabled:true}") boolean enabled
+    ) {
+        this.s3Service = s3Service;
+        this.photoRepository = photoRepository;
+        this.contentHashIndex = contentHashIndex;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public ProcessingJobType type() {
+        return ProcessingJobType.CONTENT_HASH;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public Mono<Void> process(Photo photo) {
+        if (photo.getS3Location() == null || photo.getContentHash() != null) {
+            return Mono.empty();
+        }
+        String sourceKey = photo.getS3Location().getKey();
+
+        return Mono.fromCallable(() -> {
+                try (InputStream source = s3Service.openObject(sourceKey)) {
+                    return checksums(source);
+                }
+            })
+            .flatMap(checksums -> {
+                String hash = checksums.sha256Hex();
+                return photoRepository.updateContentChecksums(photo.getId(), hash, checksums.crc32())
+                    .then(contentHashIndex.add(photo.getUserId(), hash)
+                        .onErrorResume(error -> {
+                            // The index reloads from Postgres when rebuilt; not worth failing the job
+                            log.warn("Failed to add hash of photo {} to dedup index: {}", photo.getId(), error.getMessage());
+                            return Mono.empty();
+                        }))
+                    .doOnSuccess(done -> log.debug("Hashed photo {}: {}", photo.getId(), hash));
+            })
+            .then();
+    }
+
+    /**
+     * Lowercase hex SHA-256 and CRC-32 of a stream, read once in fixed-size chunks.
+     */
+    static Checksums checksums(InputStream source) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = source.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+            crc.update(buffer, 0, read);
+        }
+        return new Checksums(HexFormat.of().formatHex(digest.digest()), crc.getValue());
+    }
+
+    record Checksums(String sha256Hex, long crc32) {
+    }
+}
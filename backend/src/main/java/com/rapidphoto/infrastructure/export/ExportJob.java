@@ -0,0 +1,42 @@
+package com.rapidphoto.infrastructure.export;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Row of a background export.
+ *
+ * @param scopeId Tag or upload session ID for those scopes, null for ALL
+ * @param photoCount Photos in the archive, once the worker has selected them
+ * @param progress Percentage of photo bytes written, 0-100
+ * @param s3Key Archive object, once completed
+ * @param attempts Claims so far; identifies the current claim
+ */
+@Table("export_jobs")
+public record ExportJob(
+    @Id UUID id,
+    UUID userId,
+    String scope,
+    UUID scopeId,
+    String status,
+    Integer photoCount,
+    long bytesWritten,
+    int progress,
+    String s3Key,
+    String error,
+    int attempts,
+    Instant createdAt,
+    Instant claimedAt,
+    Instant completedAt
+) {
+    public ExportScope exportScope() {
+        return ExportScope.valueOf(scope);
+    }
+
+    public ExportJobStatus exportStatus() {
+        return ExportJobStatus.valueOf(status);
+    }
+}
@@ -0,0 +1,118 @@
+package com.rapidphoto.infrastructure.export;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Background export jobs.
+ *
+ * Updates made while a job runs match on attempts, the claim they belong to, so a
+ * worker whose claim went stale and was taken over cannot overwrite the new run.
+ */
+@Repository
+public interface ExportJobRepository extends ReactiveCrudRepository<ExportJob, UUID> {
+
+    @Query("""
+        INSERT INTO export_jobs (user_id, scope, scope_id, created_at)
+        VALUES (:userId, :scope, :scopeId, :createdAt)
+        RETURNING *
+    """)
+    Mono<ExportJob> insert(UUID userId, String scope, UUID scopeId, Instant createdAt);
+
+    /**
+     * A user's most recent exports, newest first.
+     */
+    @Query("SELECT * FROM export_jobs WHERE user_id = :userId ORDER BY created_at DESC LIMIT :limit")
+    Flux<ExportJob> findRecentByUserId(UUID userId, int limit);
+
+    /**
+     * Exports of a user that are waiting or running.
+     */
+    @Query("SELECT COUNT(*) FROM export_jobs WHERE user_id = :userId AND status IN ('PENDING', 'RUNNING')")
+    Mono<Long> countActiveByUserId(UUID userId);
+
+    /**
+     * Claim the oldest pending jobs, plus running jobs whose claim went stale (instance
+     * died mid-export). SKIP LOCKED lets several instances claim concurrently without overlap.
+     */
+    @Query("""
+        UPDATE export_jobs
+        SET status = 'RUNNING', claimed_at = :now, attempts = attempts + 1
+        WHERE id IN (
+            SELECT id FROM export_jobs
+            WHERE (status = 'PENDING' OR (status = 'RUNNING' AND claimed_at < :staleBefore))
+              AND attempts < :maxAttempts
+            ORDER BY created_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING *
+    """)
+    Flux<ExportJob> claim(int limit, Instant now, Instant staleBefore, int maxAttempts);
+
+    /**
+     * Fail stale jobs that have used up their attempts.
+     */
+    @Modifying
+    @Query("""
+        UPDATE export_jobs
+        SET status = 'FAILED', error = :error, completed_at = :now
+        WHERE status = 'RUNNING' AND claimed_at < :staleBefore AND attempts >= :maxAttempts
+    """)
+    Mono<Integer> failAbandoned(Instant now, Instant staleBefore, int maxAttempts, String error);
+
+    /**
+     * Record the photos selected for the archive.
+     */
+    @Modifying
+    @Query("""
+        UPDATE export_jobs SET photo_count = :photoCount, bytes_written = 0, progress = 0, claimed_at = :now
+        WHERE id = :id AND attempts = :attempt AND status = 'RUNNING'
+    """)
+    Mono<Integer> start(UUID id, int attempt, int photoCount, Instant now);
+
+    /**
+     * Record progress and renew the claim.
+     *
+     * @return 0 if the claim was lost
+     */
+    @Modifying
+    @Query("""
+        UPDATE export_jobs SET bytes_written = :bytesWritten, progress = :progress, claimed_at = :now
+        WHERE id = :id AND attempts = :attempt AND status = 'RUNNING'
+    """)
+    Mono<Integer> updateProgress(UUID id, int attempt, long bytesWritten, int progress, Instant now);
+
+    @Modifying
+    @Query("""
+        UPDATE export_jobs
+        SET status = 'COMPLETED', s3_key = :s3Key, bytes_written = :bytesWritten, progress = 100,
+            completed_at = :now
+        WHERE id = :id AND attempts = :attempt AND status = 'RUNNING'
+    """)
+    Mono<Integer> complete(UUID id, int attempt, String s3Key, long bytesWritten, Instant now);
+
+    @Modifying
+    @Query("""
+        UPDATE export_jobs SET status = 'FAILED', error = :error, completed_at = :now
+        WHERE id = :id AND attempts = :attempt AND status = 'RUNNING'
+    """)
+    Mono<Integer> fail(UUID id, int attempt, String error, Instant now);
+
+    /**
+     * Put a failed run back in line for another attempt.
+     */
+    @Modifying
+    @Query("""
+        UPDATE export_jobs SET status = 'PENDING', error = :error, claimed_at = NULL
+        WHERE id = :id AND attempts = :attempt AND status = 'RUNNING'
+    """)
+    Mono<Integer> release(UUID id, int attempt, String error);
+}
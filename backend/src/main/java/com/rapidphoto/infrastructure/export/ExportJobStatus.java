@@ -0,0 +1,11 @@
+package com.rapidphoto.infrastructure.export;
+
+/**
+ * Lifecycle of an export job.
+ */
+public enum ExportJobStatus {
+    PENDING,    // Waiting for a worker
+    RUNNING,    // Archive being written to S3
+    COMPLETED,  // Archive in S3, ready to download
+    FAILED      // Gave up; see error
+}
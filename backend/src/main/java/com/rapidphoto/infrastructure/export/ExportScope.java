@@ -0,0 +1,10 @@
+package com.rapidphoto.infrastructure.export;
+
+/**
+ * Which of a user's photos an export archives.
+ */
+public enum ExportScope {
+    ALL,      // Every completed photo in the library
+    TAG,      // Photos with one tag
+    SESSION   // Photos of one upload session
+}
@@ -0,0 +1,238 @@
+package com.rapidphoto.infrastructure.export;
+
+import com.rapidphoto.cqrs.queries.GetExportJobQuery;
+import com.rapidphoto.cqrs.queries.handlers.GenerateBatchDownloadHandler;
+import com.rapidphoto.cqrs.queries.handlers.GetExportJobQueryHandler;
+import com.rapidphoto.domain.photo.Photo;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.domain.photo.PhotoStatus;
+import com.rapidphoto.infrastructure.S3Service;
+import com.rapidphoto.streaming.ExportNotification;
+import com.rapidphoto.streaming.UploadProgressPublisher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds export archives in the background.
+ *
+ * Each instance runs up to app.export.workers exports at a time, claimed from the
+ * export_jobs table. An export selects the user's photos for its scope, encodes them
+ * as a ZIP exactly as a batch download would (GenerateBatchDownloadHandler.archive())
+ * and streams that into a multipart upload at exports/{userId}/{exportId}.zip
+ * (S3MultipartWriter), so no request thread is held and memory stays at a few parts
+ * however large the library. After each part the job's progress is saved, which also
+ * renews its claim, and published to the user's notification channel as
+ * EXPORT_PROGRESS; EXPORT_COMPLETED carries a presigned download URL.
+ *
+ * A run that fails is retried up to MAX_ATTEMPTS times; so is a run whose instance
+ * died, once its claim goes stale.
+ *
+ * Metrics: export.jobs.running, export.jobs.completed and export.jobs.failed.
+ */
+@Component
+public class ExportWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportWorker.class);
+    private static final Duration CLAIM_TIMEOUT = Duration.ofMinutes(10);
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAX_ERROR_LENGTH = 512;
+    private static final String ARCHIVE_CONTENT_TYPE = "application/zip";
+
+    private final ExportJobRepository jobRepository;
+    private final PhotoRepository photoRepository;
+    private final GenerateBatchDownloadHandler archiveHandler;
+    private final S3MultipartWriter multipartWriter;
+    private final UploadProgressPublisher progressPublisher;
+    private final GetExportJobQueryHandler getExportJobHandler;
+    private final int workers;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private final Counter completedCounter;
+    private final Counter failedCounter;
+
+    public ExportWorker(
+        ExportJobRepository jobRepository,
+        PhotoRepository photoRepository,
+        GenerateBatchDownloadHandler archiveHandler,
+        S3MultipartWriter multipartWriter,
+        UploadProgressPublisher progressPublisher,
+        GetExportJobQueryHandler getExportJobHandler,
+        MeterRegistry meterRegistry,
+        @Value("${app.export.workers:2}") int workers
+    ) {
+        if (workers < 0) {
+            throw new IllegalArgumentException("app.export.workers cannot be negative");
+        }
+        this.jobRepository = jobRepository;
+        this.photoRepository = photoRepository;
+        this.archiveHandler = archiveHandler;
+        this.multipartWriter = multipartWriter;
+        this.progressPublisher = progressPublisher;
+        this.getExportJobHandler = getExportJobHandler;
+        this.workers = workers;
+
+        Gauge.builder("export.jobs.running", running, AtomicInteger::get)
+            .description("Export archives being written on this instance")
+            .register(meterRegistry);
+        this.completedCounter = Counter.builder("export.jobs.completed")
+            .description("Export archives written to S3")
+            .register(meterRegistry);
+        this.failedCounter = Counter.builder("export.jobs.failed")
+            .description("Exports given up on")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Claim queued exports while this instance has free workers.
+     */
+    @Scheduled(fixedDelayString = "${app.export.poll-interval-ms:5000}")
+    public void poll() {
+        int free = workers - running.get();
+        if (free <= 0 || !polling.compareAndSet(false, true)) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        Instant staleBefore = now.minus(CLAIM_TIMEOUT);
+        jobRepository.failAbandoned(now, staleBefore, MAX_ATTEMPTS, "Export was interrupted too many times")
+            .thenMany(Flux.defer(() -> jobRepository.claim(free, now, staleBefore, MAX_ATTEMPTS)))
+            .doFinally(signal -> polling.set(false))
+            .subscribe(
+                job -> {
+                    running.incrementAndGet();
+                    log.info("Starting {} export {} for user {} (attempt {})",
+                        job.scope(), job.id(), job.userId(), job.attempts());
+                    run(job)
+                        .doFinally(signal -> running.decrementAndGet())
+                        .subscribe(
+                            done -> { },
+                            error -> log.error("Export {} ended with an error: {}", job.id(), error.getMessage())
+                        );
+                },
+                error -> log.warn("Failed to claim export jobs: {}", error.getMessage())
+            );
+    }
+
+    /**
+     * Write one claimed job's archive, and record and announce how it ended.
+     */
+    Mono<Void> run(ExportJob job) {
+        String s3Key = S3Service.buildExportKey(job.userId(), job.id());
+        return selectPhotos(job)
+            .collectList()
+            .flatMap(photos -> {
+                if (photos.isEmpty()) {
+                    return giveUp(job, "No photos to export");
+                }
+                return jobRepository.start(job.id(), job.attempts(), photos.size(), Instant.now())
+                    .flatMap(updated -> ensureClaimed(job, updated))
+                    .then(Mono.defer(() -> archiveHandler.archive(photos)))
+                    .flatMap(archive -> {
+                        long photoBytes = archive.photoBytes();
+                        return multipartWriter.write(s3Key, ARCHIVE_CONTENT_TYPE, archive.content(), photoBytes,
+                            written -> reportProgress(job, written, photoBytes));
+                    })
+                    .flatMap(written -> jobRepository.complete(job.id(), job.attempts(), s3Key, written, Instant.now()))
+                    .flatMap(updated -> ensureClaimed(job, updated))
+                    .then(Mono.defer(() -> announceCompleted(job)));
+            })
+            .onErrorResume(error -> failed(job, error));
+    }
+
+    /**
+     * Completed photos of the job's user within its scope.
+     */
+    private Flux<Photo> selectPhotos(ExportJob job) {
+        Flux<Photo> candidates = switch (job.exportScope()) {
+            case ALL -> photoRepository.findByUserIdAndStatus(job.userId(), PhotoStatus.COMPLETED.name());
+            case TAG -> photoRepository.findByTagId(job.scopeId());
+            case SESSION -> photoRepository.findBySessionId(job.scopeId());
+        };
+        return candidates.filter(photo -> photo.getUserId().equals(job.userId())
+            && photo.getUploadStatus() == PhotoStatus.COMPLETED
+            && !photo.isDeleted());
+    }
+
+    private Mono<Void> reportProgress(ExportJob job, long written, long photoBytes) {
+        // Archive overhead can take written past the photo bytes; 100 means completed
+        int progress = photoBytes > 0 ? (int) Math.min(99, written * 100 / photoBytes) : 0;
+        return jobRepository.updateProgress(job.id(), job.attempts(), written, progress, Instant.now())
+            .flatMap(updated -> ensureClaimed(job, updated))
+            .then(Mono.defer(() -> publish(job, new ExportNotification(
+                ExportNotification.PROGRESS, job.id().toString(), progress, written, null, null))));
+    }
+
+    private Mono<Void> announceCompleted(ExportJob job) {
+        completedCounter.increment();
+        log.info("Export {} completed", job.id());
+        return getExportJobHandler.handle(new GetExportJobQuery(job.id(), job.userId()))
+            .flatMap(export -> publish(job, new ExportNotification(
+                ExportNotification.COMPLETED, export.id(), 100, export.bytesWritten(), export.downloadUrl(), null)));
+    }
+
+    private Mono<Void> failed(ExportJob job, Throwable error) {
+        if (error instanceof ClaimLostException) {
+            log.warn("Export {} attempt {} was taken over; stopping", job.id(), job.attempts());
+            return Mono.empty();
+        }
+        String message = truncate(error.getMessage() != null ? error.getMessage() : error.toString());
+        if (job.attempts() < MAX_ATTEMPTS) {
+            log.warn("Export {} attempt {} failed, will retry: {}", job.id(), job.attempts(), message);
+            return jobRepository.release(job.id(), job.attempts(), message)
+                .onErrorResume(releaseError -> Mono.empty())
+                .then();
+        }
+        log.error("Export {} failed after {} attempts: {}", job.id(), job.attempts(), message);
+        return giveUp(job, message)
+            .onErrorResume(failError -> Mono.empty());
+    }
+
+    private Mono<Void> giveUp(ExportJob job, String message) {
+        return jobRepository.fail(job.id(), job.attempts(), message, Instant.now())
+            .filter(updated -> updated > 0)
+            .flatMap(updated -> {
+                failedCounter.increment();
+                return publish(job, new ExportNotification(
+                    ExportNotification.FAILED, job.id().toString(), 0, 0, null, message));
+            });
+    }
+
+    /**
+     * Notifications are best effort: the job row stays the source of truth.
+     */
+    private Mono<Void> publish(ExportJob job, ExportNotification notification) {
+        return progressPublisher.publishExportNotification(job.userId().toString(), notification)
+            .onErrorResume(error -> Mono.empty())
+            .then();
+    }
+
+    private static Mono<Void> ensureClaimed(ExportJob job, int updated) {
+        return updated > 0 ? Mono.empty() : Mono.error(new ClaimLostException(job));
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    /**
+     * The job's claim went stale and another run took it over; this run must stop.
+     */
+    private static final class ClaimLostException extends RuntimeException {
+        private ClaimLostException(ExportJob job) {
+            super("Lost claim on export " + job.id());
+        }
+    }
+}
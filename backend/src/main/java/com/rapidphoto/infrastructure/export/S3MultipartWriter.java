@@ -0,0 +1,229 @@
+package com.rapidphoto.infrastructure.export;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * Writes a byte stream of unknown length to an S3 object with a multipart upload,
+ * from the non-blocking S3 client.
+ *
+ * The stream is cut into parts as it arrives; one part uploads while the next fills,
+ * and the stream is only requested as parts go out, so a writer holds a few parts in
+ * memory however large the object is. Parts are app.export.part-size-bytes, grown for
+ * large objects to stay within S3's 10,000 parts. A failed or cancelled write aborts
+ * the upload, so S3 discards the parts already sent; an instance that dies mid-write
+ * leaves them to the bucket's AbortIncompleteMultipartUpload lifecycle rule.
+ */
+@Component
+public class S3MultipartWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(S3MultipartWriter.class);
+
+    // S3 limits: every part but the last is at least 5MB, and an upload has at most 10,000 parts
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    static final int MAX_PARTS = 10_000;
+
+    private final S3AsyncClient s3AsyncClient;
+    private final String bucketName;
+    private final int partSize;
+
+    public S3MultipartWriter(
+        S3AsyncClient s3AsyncClient,
+        @Value("${aws.s3.bucket-name}") String bucketName,
+        @Value("${app.export.part-size-bytes:16777216}") int partSize
+    ) {
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("app.export.part-size-bytes must be at least " + MIN_PART_SIZE);
+        }
+        this.s3AsyncClient = s3AsyncClient;
+        this.bucketName = bucketName;
+        this.partSize = partSize;
+    }
+
+    /**
+     * Write content to s3Key. Buffers of content are released once copied into a part.
+     *
+     * @param expectedBytes Approximate size of content, to size parts; -1 if unknown
+     * @param onPart Called with the bytes written so far after each part; the next part
+     *               is uploaded once its Mono completes
+     * @return Total bytes written, once the object is complete
+     */
+    public Mono<Long> write(String s3Key, String contentType, Flux<DataBuffer> content, long expectedBytes,
+                            LongFunction<Mono<Void>> onPart) {
+        int size = partSizeFor(expectedBytes);
+        CreateMultipartUploadRequest request = CreateMultipartUploadRequest.builder()
+            .bucket(bucketName)
+            .key(s3Key)
+            .contentType(contentType)
+            .build();
+
+        return Mono.usingWhen(
+            Mono.fromFuture(() -> s3AsyncClient.createMultipartUpload(request))
+                .map(CreateMultipartUploadResponse::uploadId),
+            uploadId -> uploadParts(s3Key, uploadId, parts(content, size), onPart),
+            uploadId -> Mono.empty(),
+            (uploadId, error) -> abort(s3Key, uploadId),
+            uploadId -> abort(s3Key, uploadId)
+        );
+    }
+
+    /**
+     * Configured part size, or larger if expectedBytes would need more than half of
+     * S3's part limit (the rest is headroom for a low estimate).
+     */
+    int partSizeFor(long expectedBytes) {
+        long needed = (expectedBytes + MAX_PARTS / 2 - 1) / (MAX_PARTS / 2);
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(partSize, needed));
+    }
+
+    private Mono<Long> uploadParts(String s3Key, String uploadId, Flux<ByteBuffer> parts,
+                                   LongFunction<Mono<Void>> onPart) {
+        AtomicLong written = new AtomicLong();
+        return parts
+            .index()
+            .concatMap(part -> {
+                int partNumber = part.getT1().intValue() + 1;
+                if (partNumber > MAX_PARTS) {
+                    return Mono.<CompletedPart>error(new IllegalStateException("Object " + s3Key + " needs more than "
+                        + MAX_PARTS + " parts"));
+                }
+                int bytes = part.getT2().remaining();
+                return uploadPart(s3Key, uploadId, partNumber, part.getT2())
+                    .flatMap(completed -> onPart.apply(written.addAndGet(bytes)).thenReturn(completed));
+            }, 1)
+            .collectList()
+            .flatMap(completed -> complete(s3Key, uploadId, completed))
+            .then(Mono.fromSupplier(written::get));
+    }
+
+    private Mono<CompletedPart> uploadPart(String s3Key, String uploadId, int partNumber, ByteBuffer part) {
+        UploadPartRequest request = UploadPartRequest.builder()
+            .bucket(bucketName)
+            .key(s3Key)
+            .uploadId(uploadId)
+            .partNumber(partNumber)
+            .contentLength((long) part.remaining())
+            .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.uploadPart(request, AsyncRequestBody.fromByteBuffer(part)))
+            .map(response -> CompletedPart.builder()
+                .partNumber(partNumber)
+                .eTag(response.eTag())
+                .build());
+    }
+
+    private Mono<Void> complete(String s3Key, String uploadId, List<CompletedPart> parts) {
+        CompleteMultipartUploadRequest request = CompleteMultipartUploadRequest.builder()
+            .bucket(bucketName)
+            .key(s3Key)
+            .uploadId(uploadId)
+            .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+            .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.completeMultipartUpload(request))
+            .doOnNext(response -> log.info("Completed multipart upload {} for key {} ({} parts)",
+                uploadId, s3Key, parts.size()))
+            .then();
+    }
+
+    private Mono<Void> abort(String s3Key, String uploadId) {
+        AbortMultipartUploadRequest request = AbortMultipartUploadRequest.builder()
+            .bucket(bucketName)
+            .key(s3Key)
+            .uploadId(uploadId)
+            .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.abortMultipartUpload(request))
+            .doOnNext(response -> log.info("Aborted multipart upload {} for key {}", uploadId, s3Key))
+            // The original error matters more; S3's lifecycle rule cleans up what is left
+            .onErrorResume(error -> {
+                log.warn("Failed to abort multipart upload {} for key {}: {}", uploadId, s3Key, error.getMessage());
+                return Mono.empty();
+            })
+            .then();
+    }
+
+    /**
+     * Content cut into parts of partSize bytes; the last one may be shorter, and there
+     * is always at least one.
+     */
+    static Flux<ByteBuffer> parts(Flux<DataBuffer> content, int partSize) {
+        return Flux.defer(() -> {
+            PartAssembler assembler = new PartAssembler(partSize);
+            return content
+                .concatMapIterable(assembler::add)
+                .concatWith(Mono.fromSupplier(assembler::finish))
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
+    }
+
+    /**
+     * Copies buffers into fixed-size parts.
+     */
+    private static final class PartAssembler {
+
+        private final int partSize;
+        private ByteBuffer current;
+        private boolean emitted;
+
+        private PartAssembler(int partSize) {
+            this.partSize = partSize;
+        }
+
+        List<ByteBuffer> add(DataBuffer buffer) {
+            List<ByteBuffer> full = new ArrayList<>(1);
+            try {
+                while (buffer.readableByteCount() > 0) {
+                    if (current == null) {
+                        current = ByteBuffer.allocate(partSize);
+                    }
+                    int length = Math.min(buffer.readableByteCount(), current.remaining());
+                    buffer.read(current.array(), current.position(), length);
+                    current.position(current.position() + length);
+                    if (!current.hasRemaining()) {
+                        full.add(current.flip());
+                        current = null;
+                        emitted = true;
+                    }
+                }
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+            return full;
+        }
+
+        /**
+         * The partial last part, or an empty one if nothing was written; null if the
+         * content ended exactly on a part boundary.
+         */
+        ByteBuffer finish() {
+            if (current != null) {
+                ByteBuffer last = current.flip();
+                current = null;
+                return last;
+            }
+            return emitted ? null : ByteBuffer.allocate(0);
+        }
+    }
+}
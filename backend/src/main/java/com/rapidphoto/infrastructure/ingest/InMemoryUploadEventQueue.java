@@ -0,0 +1,42 @@
+package com.rapidphoto.infrastructure.ingest;
+
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Process-local UploadEventQueue for development and tests.
+ * Messages are handed out once; delete is a no-op and nothing survives a restart.
+ */
+public class InMemoryUploadEventQueue implements UploadEventQueue {
+
+    private final Queue<Message> messages = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Enqueue a notification body, as S3 would deliver it.
+     */
+    public void offer(String body) {
+        messages.add(new Message(UUID.randomUUID().toString(), body));
+    }
+
+    @Override
+    public Mono<List<Message>> receive(int max) {
+        return Mono.fromSupplier(() -> {
+            List<Message> received = new ArrayList<>();
+            Message message;
+            while (received.size() < max && (message = messages.poll()) != null) {
+                received.add(message);
+            }
+            return received;
+        });
+    }
+
+    @Override
+    public Mono<Void> delete(List<Message> messages) {
+        return Mono.empty();
+    }
+}
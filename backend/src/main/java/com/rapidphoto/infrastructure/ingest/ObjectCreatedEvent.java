@@ -0,0 +1,52 @@
+package com.rapidphoto.infrastructure.ingest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One s3:ObjectCreated:* record of an S3 event notification.
+ *
+ * @param bucket Bucket the object was written to
+ * @param key Object key, URL-decoded
+ * @param etag Object ETag, or null if the notification has none
+ */
+public record ObjectCreatedEvent(String bucket, String key, String etag) {
+
+    /**
+     * Read the ObjectCreated records of a notification body. Other event types and
+     * s3:TestEvent yield nothing; an S3 -> SNS -> SQS envelope is unwrapped first.
+     *
+     * @throws JsonProcessingException if the body is not JSON
+     */
+    public static List<ObjectCreatedEvent> parse(ObjectMapper objectMapper, String body) throws JsonProcessingException {
+        JsonNode root = objectMapper.readTree(body);
+        if (root.path("Message").isTextual()) {
+            root = objectMapper.readTree(root.path("Message").asText());
+        }
+
+        List<ObjectCreatedEvent> events = new ArrayList<>();
+        for (JsonNode record : root.path("Records")) {
+            if (!record.path("eventName").asText().startsWith("ObjectCreated:")) {
+                continue;
+            }
+            JsonNode s3 = record.path("s3");
+            String key = s3.path("object").path("key").asText(null);
+            if (key == null) {
+                continue;
+            }
+            events.add(new ObjectCreatedEvent(
+                s3.path("bucket").path("name").asText(),
+                // Keys arrive form-encoded (spaces as '+')
+                URLDecoder.decode(key, StandardCharsets.UTF_8),
+                s3.path("object").path("eTag").asText(null)
+            ));
+        }
+        return events;
+    }
+}
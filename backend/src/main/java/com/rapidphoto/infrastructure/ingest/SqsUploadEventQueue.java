@@ -0,0 +1,78 @@
+package com.rapidphoto.infrastructure.ingest;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * UploadEventQueue backed by an SQS queue the uploads bucket notifies directly
+ * (s3:ObjectCreated:*). Works against LocalStack through aws.s3.endpoint.
+ *
+ * SQS hands out at most 10 messages per call, so receive long-polls once and then
+ * keeps draining without waiting while full pages come back, up to max.
+ */
+public class SqsUploadEventQueue implements UploadEventQueue {
+
+    private static final int SQS_MAX_MESSAGES = 10;
+
+    private final SqsClient sqsClient;
+    private final String queueUrl;
+    private final int waitSeconds;
+
+    public SqsUploadEventQueue(SqsClient sqsClient, String queueUrl, int waitSeconds) {
+        if (queueUrl == null || queueUrl.isBlank()) {
+            throw new IllegalArgumentException("app.ingest.sqs.queue-url is required for the sqs ingest queue");
+        }
+        this.sqsClient = sqsClient;
+        this.queueUrl = queueUrl;
+        this.waitSeconds = waitSeconds;
+    }
+
+    @Override
+    public Mono<List<Message>> receive(int max) {
+        return Mono.fromCallable(() -> {
+                List<Message> received = new ArrayList<>();
+                int wait = waitSeconds;
+                while (received.size() < max) {
+                    int page = Math.min(SQS_MAX_MESSAGES, max - received.size());
+                    List<software.amazon.awssdk.services.sqs.model.Message> messages = sqsClient.receiveMessage(
+                        ReceiveMessageRequest.builder()
+                            .queueUrl(queueUrl)
+                            .maxNumberOfMessages(page)
+                            .waitTimeSeconds(wait)
+                            .build()
+                    ).messages();
+                    messages.forEach(message -> received.add(new Message(message.receiptHandle(), message.body())));
+                    if (messages.size() < page) {
+                        break;
+                    }
+                    wait = 0; // Only the first call waits for messages to arrive
+                }
+                return received;
+            })
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<Void> delete(List<Message> messages) {
+        List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            entries.add(DeleteMessageBatchRequestEntry.builder()
+                .id(String.valueOf(i))
+                .receiptHandle(messages.get(i).receiptHandle())
+                .build());
+        }
+        return Flux.fromIterable(entries)
+            .buffer(SQS_MAX_MESSAGES)
+            .concatMap(batch -> Mono.fromCallable(() ->
+                    sqsClient.deleteMessageBatch(request -> request.queueUrl(queueUrl).entries(batch)))
+                .subscribeOn(Schedulers.boundedElastic()))
+            .then();
+    }
+}
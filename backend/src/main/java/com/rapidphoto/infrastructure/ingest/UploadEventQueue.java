@@ -0,0 +1,35 @@
+package com.rapidphoto.infrastructure.ingest;
+
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Source of S3 event notifications for the uploads bucket.
+ * Selected by app.ingest.queue: sqs (SqsUploadEventQueue, also LocalStack) or
+ * memory (InMemoryUploadEventQueue, local development and tests).
+ *
+ * Delivery is at least once: a message received but not deleted may be seen again.
+ */
+public interface UploadEventQueue {
+
+    /**
+     * Receive up to max messages, waiting briefly if none are pending.
+     *
+     * @return Received messages; empty if none arrived
+     */
+    Mono<List<Message>> receive(int max);
+
+    /**
+     * Remove processed messages so they are not delivered again.
+     */
+    Mono<Void> delete(List<Message> messages);
+
+    /**
+     * One queued notification.
+     *
+     * @param receiptHandle Queue-specific handle used by delete
+     * @param body Notification JSON as S3 sent it
+     */
+    record Message(String receiptHandle, String body) {}
+}
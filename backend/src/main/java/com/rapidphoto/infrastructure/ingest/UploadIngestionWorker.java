@@ -0,0 +1,178 @@
+package com.rapidphoto.infrastructure.ingest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rapidphoto.cqrs.commands.MarkPhotosUploadedCommand;
+import com.rapidphoto.cqrs.commands.handlers.MarkPhotosUploadedCommandHandler;
+import com.rapidphoto.domain.photo.PhotoBatchRepository.UploadCompletion;
+import com.rapidphoto.infrastructure.S3Service;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Completes uploads from S3 ObjectCreated notifications instead of waiting for the
+ * client to report them, so a closed tab no longer leaves photos PENDING.
+ *
+ * Each poll receives up to app.ingest.batch-size notifications, reads user and photo
+ * IDs straight from the upload key layout (S3Service.parseUploadKey) and completes
+ * each user's photos with one MarkPhotosUploadedCommand. Client callbacks keep
+ * working alongside: whichever arrives second finds the photo completed and is a no-op.
+ * Messages are deleted only after their photos are completed: when one user's command
+ * fails, the messages naming that user are kept for redelivery while the other users'
+ * are deleted. Unreadable messages and foreign keys are dropped.
+ *
+ * Runs only when app.ingest.queue selects a queue (see IngestConfig).
+ * Metrics: upload.ingest.completed and upload.ingest.ignored.
+ */
+@Component
+@ConditionalOnExpression("'${app.ingest.queue:none}' != 'none'")
+public class UploadIngestionWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadIngestionWorker.class);
+
+    private final UploadEventQueue queue;
+    private final MarkPhotosUploadedCommandHandler markPhotosUploadedHandler;
+    private final ObjectMapper objectMapper;
+    private final String bucketName;
+    private final int batchSize;
+    private final Counter completedCounter;
+    private final Counter ignoredCounter;
+    private final AtomicBoolean polling = new AtomicBoolean();
+
+    public UploadIngestionWorker(
+        UploadEventQueue queue,
+        MarkPhotosUploadedCommandHandler markPhotosUploadedHandler,
+        ObjectMapper objectMapper,
+        MeterRegistry meterRegistry,
+        @Value("${aws.s3.bucket-name}") String bucketName,
+        @Value("${app.ingest.batch-size:100}") int batchSize
+    ) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("app.ingest.batch-size must be positive");
+        }
+        this.queue = queue;
+        this.markPhotosUploadedHandler = markPhotosUploadedHandler;
+        this.objectMapper = objectMapper;
+        this.bucketName = bucketName;
+        this.batchSize = batchSize;
+        this.completedCounter = Counter.builder("upload.ingest.completed")
+            .description("Photos completed from S3 ObjectCreated notifications")
+            .register(meterRegistry);
+        this.ignoredCounter = Counter.builder("upload.ingest.ignored")
+            .description("S3 notifications that did not match an upload key")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Drain the queue: keep receiving while full batches come back.
+     */
+    @Scheduled(fixedDelayString = "${app.ingest.poll-interval-ms:1000}")
+    public void poll() {
+        if (!polling.compareAndSet(false, true)) {
+            return; // Previous poll still draining
+        }
+        pollOnce()
+            .expand(received -> received == batchSize ? pollOnce() : Mono.empty())
+            .reduce(0, Integer::sum)
+            .doFinally(signal -> polling.set(false))
+            .subscribe(
+                received -> {
+                    if (received > 0) {
+                        log.debug("Ingested {} S3 notifications", received);
+                    }
+                },
+                error -> log.warn("Failed to ingest S3 notifications: {}", error.getMessage())
+            );
+    }
+
+    /**
+     * Receive and apply one batch.
+     *
+     * @return Number of messages received
+     */
+    Mono<Integer> pollOnce() {
+        return queue.receive(batchSize)
+            .flatMap(messages -> ingest(messages).thenReturn(messages.size()));
+    }
+
+    private Mono<Void> ingest(List<UploadEventQueue.Message> messages) {
+        if (messages.isEmpty()) {
+            return Mono.empty();
+        }
+
+        // Keyed by photo too, so a redelivered notification in the same batch counts once
+        Map<UUID, Map<UUID, UploadCompletion>> completionsByUser = new LinkedHashMap<>();
+        // Users named by each message, which is deleted only once all of them are completed
+        List<Set<UUID>> usersByMessage = new ArrayList<>(messages.size());
+        for (UploadEventQueue.Message message : messages) {
+            Set<UUID> users = new HashSet<>();
+            usersByMessage.add(users);
+            for (ObjectCreatedEvent event : parse(message)) {
+                Optional<S3Service.UploadKey> uploadKey = bucketName.equals(event.bucket())
+                    ? S3Service.parseUploadKey(event.key())
+                    : Optional.empty();
+                if (uploadKey.isEmpty()) {
+                    ignoredCounter.increment();
+                    log.debug("Ignoring S3 notification for {}/{}", event.bucket(), event.key());
+                    continue;
+                }
+                UUID photoId = uploadKey.get().photoId();
+                users.add(uploadKey.get().userId());
+                completionsByUser
+                    .computeIfAbsent(uploadKey.get().userId(), user -> new LinkedHashMap<>())
+                    .put(photoId, new UploadCompletion(photoId, event.key(), event.etag(), null));
+            }
+        }
+
+        Map<UUID, Throwable> failures = new LinkedHashMap<>();
+        return Flux.fromIterable(completionsByUser.entrySet())
+            .concatMap(user -> markPhotosUploadedHandler.handle(new MarkPhotosUploadedCommand(
+                    new ArrayList<>(user.getValue().values()), user.getKey()))
+                .doOnNext(completedCounter::increment)
+                .onErrorResume(error -> {
+                    log.warn("Failed to complete {} uploads of user {}: {}",
+                        user.getValue().size(), user.getKey(), error.getMessage());
+                    failures.put(user.getKey(), error);
+                    return Mono.empty();
+                }))
+            .then(Mono.defer(() -> {
+                List<UploadEventQueue.Message> done = new ArrayList<>(messages.size());
+                for (int i = 0; i < messages.size(); i++) {
+                    if (usersByMessage.get(i).stream().noneMatch(failures::containsKey)) {
+                        done.add(messages.get(i));
+                    }
+                }
+                Mono<Void> delete = done.isEmpty() ? Mono.empty() : queue.delete(done);
+                // Still report the batch as failed, after deleting what did complete
+                return failures.isEmpty() ? delete : delete.then(Mono.error(failures.values().iterator().next()));
+            }));
+    }
+
+    private List<ObjectCreatedEvent> parse(UploadEventQueue.Message message) {
+        try {
+            return ObjectCreatedEvent.parse(objectMapper, message.body());
+        } catch (JsonProcessingException e) {
+            ignoredCounter.increment();
+            log.warn("Dropping unreadable S3 notification {}: {}", message.receiptHandle(), e.getOriginalMessage());
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package com.rapidphoto.infrastructure.metadata;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads image metadata from the leading bytes of a file.
+ *
+ * Understands JPEG (SOF + Exif APP1), PNG (IHDR), WebP (VP8/VP8L/VP8X + EXIF chunk) and
+ * HEIC/AVIF (ispe property). Only headers are walked, so a prefix of the file is enough;
+ * anything past the end of the prefix is simply not reported.
+ *
+ * Output keys (all optional): format, width, height, camera_make, camera_model,
+ * taken_at (ISO local date-time, no zone), orientation (Exif 1-8).
+ * Width and height are as displayed, i.e. swapped for rotated Exif orientations.
+ */
+@Component
+public class ImageHeaderParser {
+
+    public static final String FORMAT = "format";
+    public static final String WIDTH = "width";
+    public static final String HEIGHT = "height";
+    public static final String CAMERA_MAKE = "camera_make";
+    public static final String CAMERA_MODEL = "camera_model";
+    public static final String TAKEN_AT = "taken_at";
+    public static final String ORIENTATION = "orientation";
+
+    private static final DateTimeFormatter EXIF_DATE_TIME = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+    private static final DateTimeFormatter TAKEN_AT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    // Exif/TIFF tags
+    private static final int TAG_MAKE = 0x010F;
+    private static final int TAG_MODEL = 0x0110;
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_DATE_TIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    private static final int TAG_PIXEL_X = 0xA002;
+    private static final int TAG_PIXEL_Y = 0xA003;
+
+    /**
+     * Parse whatever metadata the header prefix contains.
+     *
+     * @param data Leading bytes of the file (may be truncated anywhere)
+     * @return Normalized fields; empty for unrecognized formats
+     */
+    public Map<String, Object> parse(byte[] data) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (data == null || data.length < 12) {
+            return result;
+        }
+
+        try {
+            if (u8(data, 0) == 0xFF && u8(data, 1) == 0xD8) {
+                result.put(FORMAT, "jpeg");
+                parseJpeg(data, result);
+            } else if (startsWith(data, 0, "\u0089PNG")) {
+                result.put(FORMAT, "png");
+                parsePng(data, result);
+            } else if (startsWith(data, 0, "RIFF") && startsWith(data, 8, "WEBP")) {
+                result.put(FORMAT, "webp");
+                parseWebp(data, result);
+            } else if (startsWith(data, 4, "ftyp")) {
+                parseIsoBmff(data, result);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Header runs past the fetched prefix; keep what was read so far
+        }
+
+        normalizeDimensions(result);
+        return result;
+    }
+
+    // ===== JPEG =====
+
+    private void parseJpeg(byte[] data, Map<String, Object> result) {
+        int pos = 2;
+        while (pos + 4 <= data.length) {
+            if (u8(data, pos) != 0xFF) {
+                return;
+            }
+            int marker = u8(data, pos + 1);
+            if (marker == 0xFF) {
+                pos++; // Fill byte
+                continue;
+            }
+            if (marker == 0xD8 || marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                pos += 2; // Standalone markers carry no length
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                return; // End of image / start of scan: no more headers
+            }
+
+            int length = u16(data, pos + 2, false);
+            int segment = pos + 4;
+            if (marker == 0xE1 && startsWith(data, segment, "Exif\0\0")) {
+                parseTiff(data, segment + 6, Math.min(data.length, segment + length - 2), result);
+            } else if (isStartOfFrame(marker)) {
+                // Frame size is authoritative over Exif PixelX/YDimension
+                result.put(HEIGHT, u16(data, segment + 1, false));
+                result.put(WIDTH, u16(data, segment + 3, false));
+                return;
+            }
+            pos = segment + length - 2;
+        }
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    // ===== Exif (TIFF structure) =====
+
+    private void parseTiff(byte[] data, int tiff, int end, Map<String, Object> result) {
+        boolean littleEndian;
+        if (startsWith(data, tiff, "II")) {
+            littleEndian = true;
+        } else if (startsWith(data, tiff, "MM")) {
+            littleEndian = false;
+        } else {
+            return;
+        }
+        if (u16(data, tiff + 2, littleEndian) != 42) {
+            return;
+        }
+
+        long ifd0 = u32(data, tiff + 4, littleEndian);
+        Long exifIfd = readIfd(data, tiff, end, ifd0, littleEndian, result);
+        if (exifIfd != null) {
+            readIfd(data, tiff, end, exifIfd, littleEndian, result);
+        }
+    }
+
+    /**
+     * Read one IFD into result.
+     *
+     * @return Offset of the Exif sub-IFD if this IFD points to one
+     */
+    private Long readIfd(byte[] data, int tiff, int end, long offset, boolean le, Map<String, Object> result) {
+        if (offset <= 0 || tiff + offset + 2 > end) {
+            return null;
+        }
+        int ifd = (int) (tiff + offset);
+        int count = u16(data, ifd, le);
+        Long exifIfd = null;
+
+        for (int i = 0; i < count; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+            int tag = u16(data, entry, le);
+            int type = u16(data, entry + 2, le);
+            long valueCount = u32(data, entry + 4, le);
+
+            switch (tag) {
+                case TAG_MAKE -> putText(result, CAMERA_MAKE, ascii(data, tiff, end, entry, valueCount, le));
+                case TAG_MODEL -> putText(result, CAMERA_MODEL, ascii(data, tiff, end, entry, valueCount, le));
+                case TAG_ORIENTATION -> {
+                    int orientation = u16(data, entry + 8, le);
+                    if (orientation >= 1 && orientation <= 8) {
+                        result.put(ORIENTATION, orientation);
+                    }
+                }
+                // DateTimeOriginal wins over the file's modification DateTime
+                case TAG_DATE_TIME -> {
+                    String modified = dateTime(ascii(data, tiff, end, entry, valueCount, le));
+                    if (modified != null) {
+                        result.putIfAbsent(TAKEN_AT, modified);
+                    }
+                }
+                case TAG_DATE_TIME_ORIGINAL -> putText(result, TAKEN_AT,
+                    dateTime(ascii(data, tiff, end, entry, valueCount, le)));
+                case TAG_PIXEL_X -> result.putIfAbsent(WIDTH, shortOrLong(data, entry, type, le));
+                case TAG_PIXEL_Y -> result.putIfAbsent(HEIGHT, shortOrLong(data, entry, type, le));
+                case TAG_EXIF_IFD -> exifIfd = u32(data, entry + 8, le);
+                default -> { }
+            }
+        }
+        return exifIfd;
+    }
+
+    private static String ascii(byte[] data, int tiff, int end, int entry, long count, boolean le) {
+        if (count <= 0 || count > 1024) {
+            return null;
+        }
+        int start = count <= 4 ? entry + 8 : (int) (tiff + u32(data, entry + 8, le));
+        int stop = (int) Math.min(start + count, end);
+        if (start < 0 || start >= stop) {
+            return null;
+        }
+        int length = 0;
+        while (start + length < stop && data[start + length] != 0) {
+            length++;
+        }
+        String value = new String(data, start, length, StandardCharsets.US_ASCII).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Object shortOrLong(byte[] data, int entry, int type, boolean le) {
+        return type == 3 ? u16(data, entry + 8, le) : (int) u32(data, entry + 8, le);
+    }
+
+    private static String dateTime(String exifValue) {
+        if (exifValue == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(exifValue, EXIF_DATE_TIME).format(TAKEN_AT_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null; // Unset dates are often all zeros or blanks
+        }
+    }
+
+    private static void putText(Map<String, Object> result, String key, String value) {
+        if (value != null) {
+            result.put(key, value);
+        }
+    }
+
+    // ===== PNG =====
+
+    private void parsePng(byte[] data, Map<String, Object> result) {
+        if (startsWith(data, 12, "IHDR")) {
+            result.put(WIDTH, (int) u32(data, 16, false));
+            result.put(HEIGHT, (int) u32(data, 20, false));
+        }
+    }
+
+    // ===== WebP =====
+
+    private void parseWebp(byte[] data, Map<String, Object> result) {
+        int pos = 12;
+        while (pos + 8 <= data.length) {
+            String fourCc = new String(data, pos, 4, StandardCharsets.US_ASCII);
+            long size = u32(data, pos + 4, true);
+            int payload = pos + 8;
+
+            switch (fourCc) {
+                case "VP8 " -> {
+                    // Frame tag (3) + start code (3), then 14-bit dimensions
+                    result.putIfAbsent(WIDTH, u16(data, payload + 6, true) & 0x3FFF);
+                    result.putIfAbsent(HEIGHT, u16(data, payload + 8, true) & 0x3FFF);
+                }
+                case "VP8L" -> {
+                    int b1 = u8(data, payload + 1);
+                    int b2 = u8(data, payload + 2);
+                    int b3 = u8(data, payload + 3);
+                    int b4 = u8(data, payload + 4);
+                    result.putIfAbsent(WIDTH, 1 + (((b2 & 0x3F) << 8) | b1));
+                    result.putIfAbsent(HEIGHT, 1 + (((b4 & 0x0F) << 10) | (b3 << 2) | ((b2 & 0xC0) >> 6)));
+                }
+                case "VP8X" -> {
+                    result.put(WIDTH, 1 + u24(data, payload + 4));
+                    result.put(HEIGHT, 1 + u24(data, payload + 7));
+                }
+                case "EXIF" -> {
+                    int end = (int) Math.min(data.length, payload + size);
+                    int tiff = startsWith(data, payload, "Exif\0\0") ? payload + 6 : payload;
+                    parseTiff(data, tiff, end, result);
+                }
+                default -> { }
+            }
+            long next = payload + size + (size & 1); // Chunks are padded to even length
+            if (next > data.length) {
+                return;
+            }
+            pos = (int) next;
+        }
+    }
+
+    // ===== HEIC / AVIF (ISO base media file format) =====
+
+    private void parseIsoBmff(byte[] data, Map<String, Object> result) {
+        String brand = new String(data, 8, 4, StandardCharsets.US_ASCII);
+        switch (brand) {
+            case "heic", "heix", "heim", "heis", "hevc", "hevx", "mif1", "msf1" -> result.put(FORMAT, "heic");
+            case "avif", "avis" -> result.put(FORMAT, "avif");
+            default -> {
+                return; // Video and other ISO BMFF files
+            }
+        }
+
+        int meta = findBox(data, 0, data.length, "meta");
+        if (meta < 0) {
+            return;
+        }
+        // meta is a full box: 4 bytes of version/flags before its children
+        int iprp = findBox(data, meta + 12, boxEnd(data, meta), "iprp");
+        int ipco = iprp < 0 ? -1 : findBox(data, iprp + 8, boxEnd(data, iprp), "ipco");
+        if (ipco < 0) {
+            return;
+        }
+
+        // One ispe per image item (tiles and the grid); the primary image is the largest
+        long bestArea = -1;
+        int pos = ipco + 8;
+        int end = boxEnd(data, ipco);
+        while (pos + 8 <= end) {
+            int next = boxEnd(data, pos);
+            if (startsWith(data, pos + 4, "ispe")) {
+                int width = (int) u32(data, pos + 12, false);
+                int height = (int) u32(data, pos + 16, false);
+                if ((long) width * height > bestArea) {
+                    bestArea = (long) width * height;
+                    result.put(WIDTH, width);
+                    result.put(HEIGHT, height);
+                }
+            }
+            if (next <= pos) {
+                break;
+            }
+            pos = next;
+        }
+    }
+
+    /**
+     * Offset of the first box of the given type in [start, end), or -1.
+     */
+    private static int findBox(byte[] data, int start, int end, String type) {
+        int pos = start;
+        while (pos + 8 <= end) {
+            if (startsWith(data, pos + 4, type)) {
+                return pos;
+            }
+            int next = boxEnd(data, pos);
+            if (next <= pos) {
+                return -1;
+            }
+            pos = next;
+        }
+        return -1;
+    }
+
+    private static int boxEnd(byte[] data, int box) {
+        long size = u32(data, box, false);
+        if (size == 1) {
+            size = (u32(data, box + 8, false) << 32) | u32(data, box + 12, false);
+        } else if (size == 0) {
+            return data.length; // Extends to end of file
+        }
+        return (int) Math.min(data.length, box + size);
+    }
+
+    // ===== Normalization =====
+
+    private static void normalizeDimensions(Map<String, Object> result) {
+        Object orientation = result.get(ORIENTATION);
+        // Orientations 5-8 rotate by 90 degrees: report the size as displayed
+        if (orientation instanceof Integer value && value >= 5
+                && result.containsKey(WIDTH) && result.containsKey(HEIGHT)) {
+            Object width = result.get(WIDTH);
+            result.put(WIDTH, result.get(HEIGHT));
+            result.put(HEIGHT, width);
+        }
+        if (!(result.get(WIDTH) instanceof Integer w && w > 0 && result.get(HEIGHT) instanceof Integer h && h > 0)) {
+            result.remove(WIDTH);
+            result.remove(HEIGHT);
+        }
+    }
+
+    // ===== Byte helpers =====
+
+    private static boolean startsWith(byte[] data, int offset, String ascii) {
+        if (offset < 0 || offset + ascii.length() > data.length) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if ((data[offset + i] & 0xFF) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int u8(byte[] data, int offset) {
+        return data[offset] & 0xFF;
+    }
+
+    private static int u16(byte[] data, int offset, boolean littleEndian) {
+        return littleEndian
+            ? u8(data, offset) | (u8(data, offset + 1) << 8)
+            : (u8(data, offset) << 8) | u8(data, offset + 1);
+    }
+
+    private static int u24(byte[] data, int offset) {
+        return u8(data, offset) | (u8(data, offset + 1) << 8) | (u8(data, offset + 2) << 16);
+    }
+
+    private static long u32(byte[] data, int offset, boolean littleEndian) {
+        return littleEndian
+            ? (u16(data, offset, true) & 0xFFFFL) | ((long) u16(data, offset + 2, true) << 16)
+            : ((long) u16(data, offset, false) << 16) | (u16(data, offset + 2, false) & 0xFFFFL);
+    }
+}
@@ -0,0 +1,97 @@
+package com.rapidphoto.infrastructure.metadata;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rapidphoto.domain.photo.Photo;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.infrastructure.S3Service;
+import com.rapidphoto.infrastructure.processing.PhotoProcessor;
+import com.rapidphoto.infrastructure.processing.ProcessingJobType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Server-side metadata stage for completed uploads.
+ *
+ * Fetches only the first app.metadata.header-bytes of the original with a ranged GET,
+ * parses the image headers and merges the normalized fields (width, height,
+ * camera_model, ...) into photos.metadata, where the V4 expression indexes pick them up.
+ * Extracted values replace client-supplied ones of the same key.
+ */
+@Service
+public class MetadataExtractionService implements PhotoProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(MetadataExtractionService.class);
+
+    private final S3Service s3Service;
+    private final PhotoRepository photoRepository;
+    private final ImageHeaderParser parser;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int headerBytes;
+
+    public MetadataExtractionService(
+        S3Service s3Service,
+        PhotoRepository photoRepository,
+        ImageHeaderParser parser,
+        ObjectMapper objectMapper,
+        @Value("${app.metadata.enabled:true}") boolean enabled,
+        @Value("${app.metadata.header-bytes:131072}") int headerBytes
+    ) {
+        if (headerBytes <= 0) {
+            throw new IllegalArgumentException("Metadata header bytes must be positive");
+        }
+        this.s3Service = s3Service;
+        this.photoRepository = photoRepository;
+        this.parser = parser;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.headerBytes = headerBytes;
+    }
+
+    @Override
+    public ProcessingJobType type() {
+        return ProcessingJobType.METADATA;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public Mono<Void> process(Photo photo) {
+        if (photo.getS3Location() == null) {
+            return Mono.empty();
+        }
+        return extract(photo)
+            .doOnNext(fields -> log.debug("Extracted metadata {} for photo {}", fields.keySet(), photo.getId()))
+            .then();
+    }
+
+    /**
+     * Read, parse and store header metadata for a photo.
+     *
+     * @return Extracted fields; empty (and nothing written) for unrecognized formats
+     */
+    public Mono<Map<String, Object>> extract(Photo photo) {
+        return s3Service.readObjectPrefix(photo.getS3Location().getKey(), headerBytes)
+            .map(parser::parse)
+            .flatMap(fields -> fields.isEmpty()
+                ? Mono.just(fields)
+                : photoRepository.mergeMetadata(photo.getId(), toJson(fields)).thenReturn(fields));
+    }
+
+    private String toJson(Map<String, Object> fields) {
+        try {
+            return objectMapper.writeValueAsString(fields);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize photo metadata", e);
+        }
+    }
+}
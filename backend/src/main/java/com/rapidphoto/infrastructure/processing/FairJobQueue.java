@@ -0,0 +1,79 @@
+package com.rapidphoto.infrastructure.processing;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bounded in-memory job queue that serves users round-robin.
+ * A user with a 500-photo burst gets one job dispatched per turn, so a single small
+ * upload from someone else is not stuck behind the whole burst.
+ *
+ * Not thread-safe; PhotoProcessingQueue guards access.
+ */
+class FairJobQueue {
+
+    private final int capacity;
+    private final int maxPerUser;
+    private final Map<UUID, Deque<ProcessingJob>> jobsByUser = new LinkedHashMap<>();
+    private int size;
+
+    FairJobQueue(int capacity, int maxPerUser) {
+        if (capacity <= 0 || maxPerUser <= 0) {
+            throw new IllegalArgumentException("Queue capacity and per-user limit must be positive");
+        }
+        this.capacity = capacity;
+        this.maxPerUser = maxPerUser;
+    }
+
+    /**
+     * Add a job unless the queue or the user's share of it is full.
+     *
+     * @param enforceUserLimit false for jobs drained from the overflow table, which already waited their turn
+     * @return false if the job was not accepted and should overflow
+     */
+    boolean offer(ProcessingJob job, boolean enforceUserLimit) {
+        if (size >= capacity) {
+            return false;
+        }
+        Deque<ProcessingJob> userJobs = jobsByUser.computeIfAbsent(job.userId(), id -> new ArrayDeque<>());
+        if (enforceUserLimit && userJobs.size() >= maxPerUser) {
+            return false;
+        }
+        userJobs.addLast(job);
+        size++;
+        return true;
+    }
+
+    /**
+     * Take the next job from the user whose turn it is, or null if empty.
+     */
+    ProcessingJob poll() {
+        Iterator<Map.Entry<UUID, Deque<ProcessingJob>>> users = jobsByUser.entrySet().iterator();
+        if (!users.hasNext()) {
+            return null;
+        }
+        Map.Entry<UUID, Deque<ProcessingJob>> next = users.next();
+        users.remove();
+
+        Deque<ProcessingJob> userJobs = next.getValue();
+        ProcessingJob job = userJobs.pollFirst();
+        size--;
+        if (!userJobs.isEmpty()) {
+            // Back of the line for this user's next job
+            jobsByUser.put(next.getKey(), userJobs);
+        }
+        return job;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int remainingCapacity() {
+        return capacity - size;
+    }
+}
@@ -0,0 +1,292 @@
+package com.rapidphoto.infrastructure.processing;
+
+import com.rapidphoto.domain.photo.Photo;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.domain.photo.PhotoStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bounded worker pool for post-upload photo processing.
+ *
+ * Jobs wait in a per-user round-robin queue and run on a fixed set of
+ * "photo-processing" threads, never on the event loop. When the in-memory queue (or
+ * one user's share of it) is full, jobs overflow to the processing_jobs table and are
+ * drained back as capacity frees up, so bursts apply backpressure instead of growing
+ * memory without bound. A failed job goes to the same table to be retried, up to
+ * MAX_ATTEMPTS runs in all.
+ *
+ * Metrics: photo.processing.queue.depth, photo.processing.in.flight,
+ * photo.processing.wait, photo.processing.duration and photo.processing.spilled.
+ */
+@Component
+public class PhotoProcessingQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(PhotoProcessingQueue.class);
+    private static final Duration CLAIM_TIMEOUT = Duration.ofMinutes(10);
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final PhotoRepository photoRepository;
+    private final ProcessingJobRepository jobRepository;
+    private final Map<ProcessingJobType, PhotoProcessor> processors = new EnumMap<>(ProcessingJobType.class);
+    private final FairJobQueue pending;
+    private final int workers;
+    private final Scheduler scheduler;
+    private final MeterRegistry meterRegistry;
+    private final Counter spilledCounter;
+
+    private int inFlight; // Guarded by this
+
+    public PhotoProcessingQueue(
+        PhotoRepository photoRepository,
+        ProcessingJobRepository jobRepository,
+        List<PhotoProcessor> processors,
+        MeterRegistry meterRegistry,
+        @Value("${app.processing.workers:4}") int workers,
+        @Value("${app.processing.queue-capacity:1000}") int queueCapacity,
+        @Value("${app.processing.max-queued-per-user:100}") int maxQueuedPerUser
+    ) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Processing workers must be positive");
+        }
+        this.photoRepository = photoRepository;
+        this.jobRepository = jobRepository;
+        processors.forEach(processor -> this.processors.put(processor.type(), processor));
+        this.pending = new FairJobQueue(queueCapacity, maxQueuedPerUser);
+        this.workers = workers;
+        // Thread count is the real bound; dispatch only hands out a job when a worker is free
+        this.scheduler = Schedulers.newBoundedElastic(
+            workers, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "photo-processing");
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("photo.processing.queue.depth", this, PhotoProcessingQueue::queuedJobs)
+            .description("Processing jobs waiting in memory")
+            .register(meterRegistry);
+        Gauge.builder("photo.processing.in.flight", this, PhotoProcessingQueue::runningJobs)
+            .description("Processing jobs currently running")
+            .register(meterRegistry);
+        this.spilledCounter = Counter.builder("photo.processing.spilled")
+            .description("Processing jobs written to the overflow table")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Queue every enabled kind of processing for a photo completed in the current
+     * transaction, once it commits: jobs reload the photo and only run on a COMPLETED
+     * one, so a worker must not see the row before the commit. Without a transaction
+     * the jobs are queued right away.
+     */
+    public Mono<Void> submitAfterCommit(UUID photoId, UUID userId) {
+        Runnable submit = () -> submit(photoId, userId);
+        return TransactionSynchronizationManager.forCurrentTransaction()
+            .flatMap(transaction -> {
+                if (!transaction.isSynchronizationActive()) {
+                    return Mono.<Void>fromRunnable(submit);
+                }
+                transaction.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public Mono<Void> afterCommit() {
+                        return Mono.fromRunnable(submit);
+                    }
+                });
+                return Mono.<Void>empty();
+            })
+            .onErrorResume(NoTransactionException.class, e -> Mono.fromRunnable(submit));
+    }
+
+    /**
+     * Queue every enabled kind of processing for a completed photo known only by ID.
+     */
+    public void submit(UUID photoId, UUID userId) {
+        processors.values().stream()
+            .filter(PhotoProcessor::isEnabled)
+            .forEach(processor -> submit(ProcessingJob.of(processor.type(), photoId, userId)));
+    }
+
+    void submit(ProcessingJob job) {
+        boolean accepted;
+        synchronized (this) {
+            accepted = pending.offer(job, true);
+        }
+        if (accepted) {
+            dispatch();
+        } else {
+            spill(job);
+        }
+    }
+
+    /**
+     * Move overflowed and failed jobs back into memory while there is room, and delete
+     * the ones that have used up their attempts.
+     */
+    @Scheduled(fixedDelayString = "${app.processing.drain-interval-ms:5000}")
+    public void drainSpilled() {
+        int room;
+        synchronized (this) {
+            room = pending.remainingCapacity();
+        }
+
+        Instant now = Instant.now();
+        Instant staleBefore = now.minus(CLAIM_TIMEOUT);
+        jobRepository.deleteExhausted(staleBefore, MAX_ATTEMPTS)
+            .doOnNext(deleted -> {
+                if (deleted > 0) {
+                    log.error("Gave up on {} processing jobs abandoned on their last attempt", deleted);
+                }
+            })
+            .thenMany(room > 0 ? jobRepository.claim(room, now, staleBefore, MAX_ATTEMPTS) : Flux.empty())
+            .map(ProcessingJobRecord::toJob)
+            .doOnNext(job -> {
+                synchronized (this) {
+                    // Not accepted only if memory filled meanwhile; the claim expires and it is retried
+                    pending.offer(job, false);
+                }
+            })
+            .doOnComplete(this::dispatch)
+            .subscribe(
+                job -> { },
+                error -> log.warn("Failed to drain spilled processing jobs: {}", error.getMessage())
+            );
+    }
+
+    private void spill(ProcessingJob job) {
+        spilledCounter.increment();
+        jobRepository.insert(job.type().name(), job.photoId(), job.userId(), 0, job.enqueuedAt())
+            .subscribe(
+                rows -> log.debug("Spilled {} job for photo {} to processing_jobs", job.type(), job.photoId()),
+                error -> log.error("Failed to spill {} job for photo {}", job.type(), job.photoId(), error)
+            );
+    }
+
+    /**
+     * Start queued jobs until every worker is busy.
+     */
+    private void dispatch() {
+        while (true) {
+            ProcessingJob job;
+            synchronized (this) {
+                if (inFlight >= workers) {
+                    return;
+                }
+                job = pending.poll();
+                if (job == null) {
+                    return;
+                }
+                inFlight++;
+            }
+            run(job);
+        }
+    }
+
+    private void run(ProcessingJob job) {
+        PhotoProcessor processor = processors.get(job.type());
+        String type = job.type().name();
+        Timer.builder("photo.processing.wait")
+            .tag("type", type)
+            .register(meterRegistry)
+            .record(Duration.between(job.enqueuedAt(), Instant.now()));
+        long startNanos = System.nanoTime();
+
+        // Only once the work succeeded; a failure goes through retryOrGiveUp instead
+        Mono<Void> cleanup = job.spilledId() != null
+            ? Mono.defer(() -> jobRepository.deleteById(job.spilledId()))
+            : Mono.empty();
+
+        Mono<Void> work = processor == null
+            ? Mono.fromRunnable(() -> log.warn("No processor for {} job on photo {}, dropping", type, job.photoId()))
+            : photoRepository.findById(job.photoId())
+                .filter(photo -> isProcessable(photo, type))
+                // Hop off the R2DBC thread before any heavy work starts
+                .publishOn(scheduler)
+                .flatMap(processor::process);
+
+        work.then(cleanup)
+            .doOnEach(signal -> {
+                if (signal.isOnComplete() || signal.isOnError()) {
+                    Timer.builder("photo.processing.duration")
+                        .tag("type", type)
+                        .tag("outcome", signal.isOnError() ? "error" : "success")
+                        .register(meterRegistry)
+                        .record(Duration.ofNanos(System.nanoTime() - startNanos));
+                }
+            })
+            .onErrorResume(error -> retryOrGiveUp(job, error))
+            .doFinally(signal -> {
+                synchronized (this) {
+                    inFlight--;
+                }
+                dispatch();
+            })
+            .subscribe(
+                done -> { },
+                error -> log.error("Failed to reschedule {} job for photo {}", type, job.photoId(), error)
+            );
+    }
+
+    /**
+     * Leave a failed job in processing_jobs for the drain to run again, or delete it
+     * once it has had MAX_ATTEMPTS runs.
+     */
+    private Mono<Void> retryOrGiveUp(ProcessingJob job, Throwable error) {
+        if (job.attempt() >= MAX_ATTEMPTS) {
+            log.error("{} processing failed for photo {} on attempt {}, giving up",
+                job.type(), job.photoId(), job.attempt(), error);
+            return job.spilledId() != null ? jobRepository.deleteById(job.spilledId()) : Mono.empty();
+        }
+
+        log.warn("{} processing failed for photo {} on attempt {} of {}, retrying: {}",
+            job.type(), job.photoId(), job.attempt(), MAX_ATTEMPTS, error.getMessage());
+        Mono<Integer> retry = job.spilledId() != null
+            ? jobRepository.release(job.spilledId())
+            : jobRepository.insert(job.type().name(), job.photoId(), job.userId(), job.attempt(), job.enqueuedAt());
+        return retry.then();
+    }
+
+    private static boolean isProcessable(Photo photo, String type) {
+        if (photo.isDeleted()) {
+            log.debug("Photo {} was deleted, dropping {} job", photo.getId(), type);
+            return false;
+        }
+        if (photo.getUploadStatus() != PhotoStatus.COMPLETED) {
+            // Jobs are only queued once a completion commits, so the upload was reset or failed since
+            log.warn("Photo {} is {} rather than COMPLETED, dropping {} job", photo.getId(), photo.getUploadStatus(), type);
+            return false;
+        }
+        return true;
+    }
+
+    synchronized int queuedJobs() {
+        return pending.size();
+    }
+
+    synchronized int runningJobs() {
+        return inFlight;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.dispose();
+    }
+}
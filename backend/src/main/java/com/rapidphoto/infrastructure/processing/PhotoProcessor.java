@@ -0,0 +1,24 @@
+package com.rapidphoto.infrastructure.processing;
+
+import com.rapidphoto.domain.photo.Photo;
+import reactor.core.publisher.Mono;
+
+/**
+ * CPU- or I/O-heavy work run for each completed photo (thumbnails, metadata, hashing).
+ * Implementations are picked up by PhotoProcessingQueue, which bounds how many run at once.
+ */
+public interface PhotoProcessor {
+
+    ProcessingJobType type();
+
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Process a completed, non-deleted photo.
+     * Called on a photo-processing worker thread, so blocking reads and heavy CPU work
+     * are allowed here rather than on the event loop.
+     */
+    Mono<Void> process(Photo photo);
+}
@@ -0,0 +1,23 @@
+package com.rapidphoto.infrastructure.processing;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One unit of post-upload work for a photo.
+ *
+ * @param spilledId Row in processing_jobs when the job was drained from the overflow table, else null
+ * @param attempt Which run of the job this is, from 1
+ */
+record ProcessingJob(
+    ProcessingJobType type,
+    UUID photoId,
+    UUID userId,
+    Instant enqueuedAt,
+    UUID spilledId,
+    int attempt
+) {
+    static ProcessingJob of(ProcessingJobType type, UUID photoId, UUID userId) {
+        return new ProcessingJob(type, photoId, userId, Instant.now(), null, 1);
+    }
+}
@@ -0,0 +1,26 @@
+package com.rapidphoto.infrastructure.processing;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Overflow row for a processing job that did not fit in memory.
+ */
+@Table("processing_jobs")
+public record ProcessingJobRecord(
+    @Id UUID id,
+    String jobType,
+    UUID photoId,
+    UUID userId,
+    int attempts,
+    Instant createdAt,
+    Instant claimedAt
+) {
+    ProcessingJob toJob() {
+        // Claiming counted this run in attempts
+        return new ProcessingJob(ProcessingJobType.valueOf(jobType), photoId, userId, createdAt, id, attempts);
+    }
+}
@@ -0,0 +1,65 @@
+package com.rapidphoto.infrastructure.processing;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Durable overflow for the photo processing queue.
+ */
+@Repository
+public interface ProcessingJobRepository extends ReactiveCrudRepository<ProcessingJobRecord, UUID> {
+
+    /**
+     * @param attempts Runs the job already had: 0 for an overflowed job, more for a retry
+     */
+    @Modifying
+    @Query("""
+        INSERT INTO processing_jobs (job_type, photo_id, user_id, attempts, created_at)
+        VALUES (:jobType, :photoId, :userId, :attempts, :createdAt)
+    """)
+    Mono<Integer> insert(String jobType, UUID photoId, UUID userId, int attempts, Instant createdAt);
+
+    /**
+     * Give a claimed job back after a failed run, so the next drain retries it.
+     */
+    @Modifying
+    @Query("UPDATE processing_jobs SET claimed_at = NULL WHERE id = :id")
+    Mono<Integer> release(UUID id);
+
+    /**
+     * Delete jobs that used up their attempts and whose last claim went stale
+     * (the instance running the final attempt died).
+     */
+    @Modifying
+    @Query("""
+        DELETE FROM processing_jobs
+        WHERE attempts >= :maxAttempts AND claimed_at < :staleBefore
+    """)
+    Mono<Integer> deleteExhausted(Instant staleBefore, int maxAttempts);
+
+    /**
+     * Claim the oldest unclaimed jobs, plus jobs whose claim went stale (instance died
+     * mid-job). SKIP LOCKED lets several instances drain concurrently without overlap.
+     */
+    @Query("""
+        UPDATE processing_jobs
+        SET claimed_at = :now, attempts = attempts + 1
+        WHERE id IN (
+            SELECT id FROM processing_jobs
+            WHERE (claimed_at IS NULL OR claimed_at < :staleBefore)
+              AND attempts < :maxAttempts
+            ORDER BY created_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING *
+    """)
+    Flux<ProcessingJobRecord> claim(int limit, Instant now, Instant staleBefore, int maxAttempts);
+}
@@ -0,0 +1,11 @@
+package com.rapidphoto.infrastructure.processing;
+
+/**
+ * Kinds of post-upload work run by the photo processing queue.
+ * Stored by name in processing_jobs.job_type.
+ */
+public enum ProcessingJobType {
+    THUMBNAILS,
+    METADATA,
+    CONTENT_HASH
+}
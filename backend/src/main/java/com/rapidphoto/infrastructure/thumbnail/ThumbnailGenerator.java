@@ -0,0 +1,202 @@
+package com.rapidphoto.infrastructure.thumbnail;
+
+import com.rapidphoto.infrastructure.metadata.ImageHeaderParser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Produces JPEG thumbnails from an image stream.
+ *
+ * Memory is bounded by the largest requested size, not the source: the decoder reads
+ * the header first and subsamples rows/columns while decoding, so a 100MB original is
+ * never held as a full-resolution raster. The decoded image is turned upright by its
+ * Exif orientation, read from the head of the same stream, and sizes are then produced
+ * largest first, each scaled from the previous one.
+ */
+@Component
+public class ThumbnailGenerator {
+
+    static final String CONTENT_TYPE = "image/jpeg";
+
+    private static final float JPEG_QUALITY = 0.82f;
+    // Decode at up to twice the largest target so the final downscale stays smooth
+    private static final int DECODE_OVERSAMPLE = 2;
+
+    private final ImageHeaderParser headerParser;
+    private final int headerBytes;
+
+    public ThumbnailGenerator(
+        ImageHeaderParser headerParser,
+        @Value("${app.metadata.header-bytes:131072}") int headerBytes
+    ) {
+        this.headerParser = headerParser;
+        this.headerBytes = headerBytes;
+    }
+
+    /**
+     * Generate thumbnails bounded by each max edge length.
+     * Images smaller than a size are not upscaled.
+     *
+     * @param source Image bytes; read once, not closed
+     * @param maxEdges Longest-edge sizes in pixels
+     * @return JPEG bytes keyed by max edge
+     * @throws IOException if the stream is not a decodable image
+     */
+    public Map<Integer, byte[]> generate(InputStream source, List<Integer> maxEdges) throws IOException {
+        if (maxEdges == null || maxEdges.isEmpty()) {
+            throw new IllegalArgumentException("At least one thumbnail size is required");
+        }
+        List<Integer> sizes = maxEdges.stream()
+            .distinct()
+            .sorted(Comparator.reverseOrder())
+            .toList();
+
+        // Exif sits at the front: read it, then rewind so the decoder sees the whole stream
+        BufferedInputStream buffered = new BufferedInputStream(source, headerBytes);
+        buffered.mark(headerBytes);
+        int orientation = orientation(buffered.readNBytes(headerBytes));
+        buffered.reset();
+
+        BufferedImage image = orient(decode(buffered, sizes.get(0) * DECODE_OVERSAMPLE), orientation);
+
+        Map<Integer, byte[]> thumbnails = new LinkedHashMap<>();
+        for (int maxEdge : sizes) {
+            image = scaleToFit(image, maxEdge);
+            thumbnails.put(maxEdge, encodeJpeg(image));
+        }
+        return thumbnails;
+    }
+
+    /**
+     * Decode the first image, subsampled so its longest edge is close to decodeEdge.
+     */
+    private BufferedImage decode(InputStream source, int decodeEdge) throws IOException {
+        // Backed by a temp-file cache when ImageIO caching is on, so the source is not buffered in heap
+        try (ImageInputStream input = ImageIO.createImageInputStream(source)) {
+            if (input == null) {
+                throw new IOException("Unable to read image stream");
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longestEdge = Math.max(reader.getWidth(0), reader.getHeight(0));
+                // Round up so the decoded raster never exceeds decodeEdge on its longest side
+                int step = Math.max(1, (longestEdge + decodeEdge - 1) / decodeEdge);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private int orientation(byte[] header) {
+        return headerParser.parse(header).get(ImageHeaderParser.ORIENTATION) instanceof Integer value ? value : 1;
+    }
+
+    /**
+     * Rotate and/or mirror the image as Exif orientation 2-8 asks, so it displays
+     * upright without the tag; 5-8 swap width and height.
+     */
+    static BufferedImage orient(BufferedImage image, int orientation) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        // Source to upright coordinates, as (m00, m10, m01, m11, m02, m12): x' = m00*x + m01*y + m02, y' = m10*x + m11*y + m12
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, width, 0);       // Mirror horizontally
+            case 3 -> new AffineTransform(-1, 0, 0, -1, width, height); // Rotate 180
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, height);      // Mirror vertically
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);            // Transpose
+            case 6 -> new AffineTransform(0, 1, -1, 0, height, 0);      // Rotate 90 clockwise
+            case 7 -> new AffineTransform(0, -1, -1, 0, height, width); // Transverse
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, width);       // Rotate 90 counter-clockwise
+            default -> null;
+        };
+        if (transform == null) {
+            return image;
+        }
+
+        boolean swapped = orientation >= 5;
+        BufferedImage oriented = new BufferedImage(swapped ? height : width, swapped ? width : height,
+            BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = oriented.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, oriented.getWidth(), oriented.getHeight());
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return oriented;
+    }
+
+    private BufferedImage scaleToFit(BufferedImage image, int maxEdge) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        // Always redraw once so alpha/indexed sources become plain RGB for JPEG
+        if (scale == 1.0 && image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, targetWidth, targetHeight, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
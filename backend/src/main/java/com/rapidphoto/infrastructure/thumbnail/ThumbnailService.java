@@ -0,0 +1,110 @@
+package com.rapidphoto.infrastructure.thumbnail;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rapidphoto.domain.photo.Photo;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.infrastructure.S3Service;
+import com.rapidphoto.infrastructure.processing.PhotoProcessor;
+import com.rapidphoto.infrastructure.processing.ProcessingJobType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Asynchronous thumbnail stage for completed uploads.
+ *
+ * Streams the original from the uploads bucket, generates one JPEG per configured size,
+ * writes them to the thumbnail bucket and records their keys on the photo. Runs off the
+ * request path as a PhotoProcessingQueue job; failures are logged and the gallery falls
+ * back to the original.
+ */
+@Service
+public class ThumbnailService implements PhotoProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailService.class);
+
+    private final S3Service s3Service;
+    private final PhotoRepository photoRepository;
+    private final ThumbnailGenerator generator;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final List<Integer> sizes;
+
+    public ThumbnailService(
+        S3Service s3Service,
+        PhotoRepository photoRepository,
+        ThumbnailGenerator generator,
+        ObjectMapper objectMapper,
+        @Value("${app.thumbnails.enabled:true}") boolean enabled,
+        @Value("${app.thumbnails.sizes:256,512,1024}") List<Integer> sizes
+    ) {
+        this.s3Service = s3Service;
+        this.photoRepository = photoRepository;
+        this.generator = generator;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.sizes = List.copyOf(sizes);
+    }
+
+    @Override
+    public ProcessingJobType type() {
+        return ProcessingJobType.THUMBNAILS;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public Mono<Void> process(Photo photo) {
+        if (photo.getS3Location() == null) {
+            return Mono.empty();
+        }
+        return generate(photo)
+            .doOnNext(keys -> log.info("Generated {} thumbnails for photo {}", keys.size(), photo.getId()))
+            .then();
+    }
+
+    /**
+     * Generate, store and record thumbnails for a photo.
+     * Decoding runs on the subscribing thread, which must tolerate blocking CPU work.
+     *
+     * @return Thumbnail keys by max edge
+     */
+    public Mono<Map<Integer, String>> generate(Photo photo) {
+        String sourceKey = photo.getS3Location().getKey();
+
+        return Mono.fromCallable(() -> {
+                try (InputStream source = s3Service.openObject(sourceKey)) {
+                    return generator.generate(source, sizes);
+                }
+            })
+            .flatMap(thumbnails -> Flux.fromIterable(thumbnails.entrySet())
+                .flatMap(entry -> {
+                    String key = S3Service.buildThumbnailKey(photo.getUserId(), photo.getId(), entry.getKey());
+                    return s3Service.putThumbnail(key, entry.getValue(), ThumbnailGenerator.CONTENT_TYPE)
+                        .thenReturn(Map.entry(entry.getKey(), key));
+                })
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, TreeMap::new))
+            .flatMap(keys -> photoRepository.updateThumbnailKeys(photo.getId(), toJson(keys))
+                .thenReturn(keys));
+    }
+
+    private String toJson(Map<Integer, String> keys) {
+        try {
+            return objectMapper.writeValueAsString(keys);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize thumbnail keys", e);
+        }
+    }
+}
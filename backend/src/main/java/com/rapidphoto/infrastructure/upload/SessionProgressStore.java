@@ -0,0 +1,358 @@
+package com.rapidphoto.infrastructure.upload;
+
+import com.rapidphoto.domain.photo.Photo;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.domain.photo.PhotoStatus;
+import com.rapidphoto.domain.upload.SessionProgress;
+import com.rapidphoto.domain.upload.UploadSession;
+import com.rapidphoto.domain.upload.UploadSessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hot upload session counters in Redis, written behind to Postgres.
+ *
+ * Each session is a hash (user, total, completed, failed) plus one "p:{photoId}" field
+ * per counted photo, so a retried completion or failure is never counted twice, and a
+ * photo counts towards either completed or failed, never both. Increments run
+ * as one Lua script and mark the session dirty; flushDirty() persists dirty sessions
+ * to upload_sessions in a single batched UPDATE every app.upload.progress-flush-interval-ms,
+ * and a session is flushed immediately when its last photo is counted.
+ *
+ * Files skipped as duplicates have no photo; each is counted under its own skip ID,
+ * saved to upload_session_skips before counting.
+ *
+ * Reconciliation: when a session's hash is missing (first completion, expiry or Redis
+ * data loss) it is rebuilt from the photos and upload_session_skips tables, which are
+ * written before counting.
+ */
+@Component
+public class SessionProgressStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionProgressStore.class);
+    private static final String KEY_PREFIX = "upload-session-progress:";
+    private static final String DIRTY_KEY = KEY_PREFIX + "dirty";
+    private static final Duration TTL = Duration.ofHours(24);
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    private static final String COMPLETED_FIELD = "completed";
+    private static final String FAILED_FIELD = "failed";
+
+    private static final String COUNTED = "counted";
+    private static final String DUPLICATE = "duplicate";
+    private static final String MISSING = "missing";
+
+    /**
+     * KEYS: hash. ARGV: userId, total, completed, failed, ttlMillis, counted photo ids...
+     * Creates the hash only if absent, so concurrent rebuilds cannot overwrite each other.
+     */
+    private static final RedisScript<String> SEED_SCRIPT = RedisScript.of("""
+        if redis.call('EXISTS', KEYS[1]) == 1 then return 'exists' end
+        redis.call('HSET', KEYS[1], 'user', ARGV[1], 'total', ARGV[2], 'completed', ARGV[3], 'failed', ARGV[4])
+        for i = 6, #ARGV do redis.call('HSET', KEYS[1], 'p:' .. ARGV[i], '1') end
+        redis.call('PEXPIRE', KEYS[1], ARGV[5])
+        return 'seeded'
+        """, String.class);
+
+    /**
+     * KEYS: hash, dirty set. ARGV: photoId, sessionId, ttlMillis, counter (completed or failed).
+     * Replies "status,user,total,completed,failed"; status is counted, duplicate, full,
+     * or missing (no snapshot).
+     */
+    private static final RedisScript<String> INCREMENT_SCRIPT = RedisScript.of("""
+        if redis.call('EXISTS', KEYS[1]) == 0 then return 'missing' end
+        local status = 'counted'
+        if redis.call('HSETNX', KEYS[1], 'p:' .. ARGV[1], '1') == 0 then
+            status = 'duplicate'
+        elseif tonumber(redis.call('HGET', KEYS[1], 'completed')) + tonumber(redis.call('HGET', KEYS[1], 'failed'))
+                >= tonumber(redis.call('HGET', KEYS[1], 'total')) then
+            status = 'full'
+        else
+            redis.call('HINCRBY', KEYS[1], ARGV[4], 1)
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            redis.call('SADD', KEYS[2], ARGV[2])
+        end
+        local values = redis.call('HMGET', KEYS[1], 'user', 'total', 'completed', 'failed')
+        return status .. ',' .. table.concat(values, ',')
+        """, String.class);
+
+    /**
+     * KEYS: hash, dirty set. ARGV: sessionId, ttlMillis, photo ids...
+     * Counts every id not counted yet, up to the session total, with one HINCRBY.
+     * Replies "count,user,total,completed,failed", or missing (no snapshot).
+     */
+    private static final RedisScript<String> INCREMENT_ALL_SCRIPT = RedisScript.of("""
+        if redis.call('EXISTS', KEYS[1]) == 0 then return 'missing' end
+        local room = tonumber(redis.call('HGET', KEYS[1], 'total'))
+            - tonumber(redis.call('HGET', KEYS[1], 'completed')) - tonumber(redis.call('HGET', KEYS[1], 'failed'))
+        local counted = 0
+        for i = 3, #ARGV do
+            if counted >= room then break end
+            if redis.call('HSETNX', KEYS[1], 'p:' .. ARGV[i], '1') == 1 then counted = counted + 1 end
+        end
+        if counted > 0 then
+            redis.call('HINCRBY', KEYS[1], 'completed', counted)
+            redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            redis.call('SADD', KEYS[2], ARGV[1])
+        end
+        local values = redis.call('HMGET', KEYS[1], 'user', 'total', 'completed', 'failed')
+        return counted .. ',' .. table.concat(values, ',')
+        """, String.class);
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final UploadSessionRepository sessionRepository;
+    private final PhotoRepository photoRepository;
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    public SessionProgressStore(
+        ReactiveRedisTemplate<String, String> redisTemplate,
+        UploadSessionRepository sessionRepository,
+        PhotoRepository photoRepository
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.sessionRepository = sessionRepository;
+        this.photoRepository = photoRepository;
+    }
+
+    /**
+     * Count a completed photo.
+     *
+     * @return Counters after this photo; empty if it was already counted, the session
+     *         already counts every photo, or the session is unknown or not active
+     */
+    public Mono<SessionProgress> recordCompleted(UUID sessionId, UUID photoId) {
+        return record(sessionId, photoId, COMPLETED_FIELD);
+    }
+
+    /**
+     * Count many completed photos of one session with a single increment.
+     *
+     * @return Counters after these photos; empty if none of them was newly counted
+     *         or the session is unknown or not active
+     */
+    public Mono<SessionProgress> recordCompleted(UUID sessionId, List<UUID> photoIds) {
+        if (photoIds.isEmpty()) {
+            return Mono.empty();
+        }
+        return incrementAll(sessionId, photoIds)
+            .flatMap(reply -> {
+                if (!MISSING.equals(reply.get(0))) {
+                    return Mono.just(reply);
+                }
+                // As in record(): the rebuild already counts these photos
+                return seed(sessionId)
+                    .then(incrementAll(sessionId, photoIds))
+                    .map(retry -> MISSING.equals(retry.get(0))
+                        ? retry
+                        : withStatus(retry, String.valueOf(photoIds.size())));
+            })
+            .filter(reply -> !MISSING.equals(reply.get(0)) && Integer.parseInt(reply.get(0)) > 0)
+            .map(reply -> toProgress(sessionId, reply));
+    }
+
+    /**
+     * Count files skipped as duplicates as completed, each under its own skip ID, so
+     * two files matching the same existing photo both count.
+     *
+     * @param skipIds  One fresh ID per skipped file
+     * @param photoIds Existing photo each file duplicates, in the same order
+     * @return Counters after these files; empty if the session is unknown or not active
+     */
+    public Mono<SessionProgress> recordSkipped(UUID sessionId, List<UUID> skipIds, List<UUID> photoIds) {
+        if (skipIds.isEmpty()) {
+            return Mono.empty();
+        }
+        return sessionRepository.saveSkips(sessionId, skipIds, photoIds)
+            .then(recordCompleted(sessionId, skipIds));
+    }
+
+    /**
+     * Count a failed photo.
+     *
+     * @return Counters after this photo; empty if it was already counted (as completed
+     *         or failed), the session already counts every photo, or the session is
+     *         unknown or not active
+     */
+    public Mono<SessionProgress> recordFailed(UUID sessionId, UUID photoId) {
+        return record(sessionId, photoId, FAILED_FIELD);
+    }
+
+    private Mono<SessionProgress> record(UUID sessionId, UUID photoId, String counter) {
+        return increment(sessionId, photoId, counter)
+            .flatMap(reply -> {
+                if (!MISSING.equals(reply.get(0))) {
+                    return Mono.just(reply);
+                }
+                // The rebuild counts this photo already (it is saved first), so a
+                // duplicate reply right after it still means "counted now"
+                return seed(sessionId)
+                    .then(increment(sessionId, photoId, counter))
+                    .map(retry -> DUPLICATE.equals(retry.get(0)) ? withStatus(retry, COUNTED) : retry);
+            })
+            .filter(reply -> COUNTED.equals(reply.get(0)))
+            .map(reply -> toProgress(sessionId, reply));
+    }
+
+    /**
+     * Current counters, from Redis if the session is hot, otherwise from Postgres.
+     */
+    public Mono<SessionProgress> get(UUID sessionId) {
+        return redisTemplate.<String, String>opsForHash()
+            .multiGet(key(sessionId), List.of("user", "total", "completed", "failed"))
+            .filter(values -> values.get(1) != null)
+            .map(values -> toProgress(sessionId, values, 0))
+            .switchIfEmpty(Mono.defer(() -> sessionRepository.findById(sessionId).map(SessionProgress::of)));
+    }
+
+    /**
+     * Persist one session's counters now (e.g. when its last photo is counted).
+     */
+    public Mono<Void> flush(UUID sessionId) {
+        // Clear the dirty mark first: an increment racing with this write marks it again
+        return redisTemplate.opsForSet().remove(DIRTY_KEY, sessionId.toString())
+            .then(persist(List.of(sessionId.toString())))
+            .then();
+    }
+
+    /**
+     * Write-behind: persist every session counted since the last run in one UPDATE.
+     */
+    @Scheduled(fixedDelayString = "${app.upload.progress-flush-interval-ms:250}")
+    public void flushDirty() {
+        if (!flushing.compareAndSet(false, true)) {
+            return; // Previous flush still running
+        }
+        redisTemplate.opsForSet().pop(DIRTY_KEY, FLUSH_BATCH_SIZE)
+            .collectList()
+            .flatMap(this::persist)
+            .doFinally(signal -> flushing.set(false))
+            .subscribe(
+                rows -> {
+                    if (rows > 0) {
+                        log.debug("Flushed progress of {} upload sessions", rows);
+                    }
+                },
+                error -> log.warn("Failed to flush upload session progress: {}", error.getMessage())
+            );
+    }
+
+    private Mono<Long> persist(List<String> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return Flux.fromIterable(sessionIds)
+            .flatMap(id -> {
+                UUID sessionId = UUID.fromString(id);
+                return redisTemplate.<String, String>opsForHash()
+                    .multiGet(key(sessionId), List.of("user", "total", "completed", "failed"))
+                    .filter(values -> values.get(1) != null)
+                    .map(values -> toProgress(sessionId, values, 0));
+            })
+            .collectList()
+            .flatMap(sessionRepository::saveProgress)
+            .onErrorResume(error -> redisTemplate.opsForSet()
+                // Keep them dirty so the next run retries
+                .add(DIRTY_KEY, sessionIds.toArray(String[]::new))
+                .then(Mono.error(error)));
+    }
+
+    private Mono<List<String>> increment(UUID sessionId, UUID photoId, String counter) {
+        return redisTemplate.execute(
+                INCREMENT_SCRIPT,
+                List.of(key(sessionId), DIRTY_KEY),
+                List.of(photoId.toString(), sessionId.toString(), String.valueOf(TTL.toMillis()), counter)
+            )
+            .next()
+            .map(reply -> List.of(reply.split(",")));
+    }
+
+    private Mono<List<String>> incrementAll(UUID sessionId, List<UUID> photoIds) {
+        List<String> args = new ArrayList<>(2 + photoIds.size());
+        args.add(sessionId.toString());
+        args.add(String.valueOf(TTL.toMillis()));
+        photoIds.forEach(photoId -> args.add(photoId.toString()));
+        return redisTemplate.execute(INCREMENT_ALL_SCRIPT, List.of(key(sessionId), DIRTY_KEY), args)
+            .next()
+            .map(reply -> List.of(reply.split(",")));
+    }
+
+    /**
+     * Rebuild a session's hash from Postgres. No-op if the session is missing or not active.
+     */
+    private Mono<Void> seed(UUID sessionId) {
+        return sessionRepository.findById(sessionId)
+            .filter(UploadSession::isActive)
+            .flatMap(session -> Mono.zip(
+                    photoRepository.findBySessionId(sessionId).collectList(),
+                    sessionRepository.findSkipIds(sessionId).map(UUID::toString).collectList())
+                .flatMap(tuple -> {
+                    List<Photo> photos = tuple.getT1();
+                    // Skipped files count as completed
+                    List<String> completedIds = new ArrayList<>(tuple.getT2());
+                    photos.stream()
+                        .filter(photo -> photo.getUploadStatus() == PhotoStatus.COMPLETED)
+                        .map(photo -> photo.getId().toString())
+                        .forEach(completedIds::add);
+                    List<String> failedIds = photos.stream()
+                        .filter(photo -> photo.getUploadStatus() == PhotoStatus.FAILED)
+                        .map(photo -> photo.getId().toString())
+                        .toList();
+                    int total = session.getTotalPhotos();
+                    // Never behind the last flushed row
+                    int completed = Math.max(session.getCompletedPhotos(), Math.min(completedIds.size(), total));
+                    int failed = Math.max(session.getFailedPhotos(), Math.min(failedIds.size(), total));
+
+                    List<String> args = new ArrayList<>(5 + completedIds.size() + failedIds.size());
+                    args.add(session.getUserId().toString());
+                    args.add(String.valueOf(total));
+                    args.add(String.valueOf(completed));
+                    args.add(String.valueOf(failed));
+                    args.add(String.valueOf(TTL.toMillis()));
+                    args.addAll(completedIds);
+                    args.addAll(failedIds);
+
+                    log.info("Rebuilding progress counters for session {} from {} photos and {} skipped files",
+                        sessionId, photos.size(), tuple.getT2().size());
+                    return redisTemplate.execute(SEED_SCRIPT, List.of(key(sessionId)), args).then();
+                }));
+    }
+
+    private static List<String> withStatus(List<String> reply, String status) {
+        List<String> copy = new ArrayList<>(reply);
+        copy.set(0, status);
+        return copy;
+    }
+
+    private static SessionProgress toProgress(UUID sessionId, List<String> reply) {
+        return toProgress(sessionId, reply, 1);
+    }
+
+    /**
+     * Build a snapshot from user, total, completed, failed starting at offset.
+     */
+    private static SessionProgress toProgress(UUID sessionId, List<String> values, int offset) {
+        return new SessionProgress(
+            sessionId,
+            UUID.fromString(values.get(offset)),
+            Integer.parseInt(values.get(offset + 1)),
+            Integer.parseInt(values.get(offset + 2)),
+            Integer.parseInt(values.get(offset + 3))
+        );
+    }
+
+    private static String key(UUID sessionId) {
+        return KEY_PREFIX + sessionId;
+    }
+}
@@ -0,0 +1,26 @@
+package com.rapidphoto.infrastructure.upload;
+
+/**
+ * How a single file should be uploaded to S3.
+ * Produced by UploadPlanner and returned to the client in the initiate response.
+ *
+ * @param fileSizeBytes Size of the file being uploaded
+ * @param multipart Whether to use S3 multipart upload (false = single presigned PUT)
+ * @param partSize Bytes per part (last part may be smaller); equals fileSizeBytes for single PUT
+ * @param partCount Number of parts (1 for single PUT)
+ * @param suggestedConcurrency Number of parts the client should upload in parallel
+ */
+public record UploadPlan(
+    long fileSizeBytes,
+    boolean multipart,
+    long partSize,
+    int partCount,
+    int suggestedConcurrency
+) {
+    /**
+     * Plan for a single presigned PUT.
+     */
+    public static UploadPlan singlePut(long fileSizeBytes) {
+        return new UploadPlan(fileSizeBytes, false, fileSizeBytes, 1, 1);
+    }
+}
@@ -0,0 +1,84 @@
+package com.rapidphoto.infrastructure.upload;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Chooses single PUT vs multipart, the part size and a client concurrency hint for an upload.
+ *
+ * Rules:
+ * - Files below the multipart threshold use one presigned PUT (a 2-3 part split of a
+ *   small file costs more in presign/complete round trips than it gains).
+ * - Parts are sized so each one takes roughly {@code targetPartSeconds} on one connection
+ *   at the user's observed throughput, but never larger than an even split across the
+ *   user's concurrent uploads (so every connection gets work).
+ * - S3 limits apply: 5MB minimum part size (except the last), 10,000 parts maximum.
+ */
+@Component
+public class UploadPlanner {
+
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024; // S3 minimum
+    static final long MAX_PART_SIZE = 512L * 1024 * 1024;
+    static final long DEFAULT_PART_SIZE = 16L * 1024 * 1024; // Used when throughput is unknown
+    static final int MAX_PARTS = 10_000; // S3 maximum
+    private static final long PART_SIZE_ALIGNMENT = 1024 * 1024;
+
+    private final long multipartThresholdBytes;
+    private final int targetPartSeconds;
+
+    public UploadPlanner(
+        @Value("${app.upload.multipart-threshold-bytes:16777216}") long multipartThresholdBytes,
+        @Value("${app.upload.target-part-seconds:8}") int targetPartSeconds
+    ) {
+        if (multipartThresholdBytes < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("Multipart threshold must be at least " + MIN_PART_SIZE + " bytes");
+        }
+        this.multipartThresholdBytes = multipartThresholdBytes;
+        this.targetPartSeconds = Math.max(1, targetPartSeconds);
+    }
+
+    /**
+     * Plan an upload.
+     *
+     * @param fileSizeBytes Size of the file
+     * @param concurrentUploads User's concurrent upload preference (UserPreferences.concurrentUploads)
+     * @param observedBytesPerSecond User's observed per-connection upload throughput, or null if unknown
+     */
+    public UploadPlan plan(long fileSizeBytes, int concurrentUploads, Double observedBytesPerSecond) {
+        if (fileSizeBytes <= 0) {
+            throw new IllegalArgumentException("File size must be positive");
+        }
+        if (fileSizeBytes < multipartThresholdBytes) {
+            return UploadPlan.singlePut(fileSizeBytes);
+        }
+
+        int concurrency = Math.max(1, concurrentUploads);
+        long evenSplit = ceilDiv(fileSizeBytes, concurrency);
+
+        long targetPartSize = DEFAULT_PART_SIZE;
+        if (observedBytesPerSecond != null && observedBytesPerSecond > 0) {
+            targetPartSize = (long) Math.min(observedBytesPerSecond * targetPartSeconds, MAX_PART_SIZE);
+        }
+
+        long partSize = Math.min(targetPartSize, evenSplit);
+        partSize = Math.max(partSize, ceilDiv(fileSizeBytes, MAX_PARTS));
+        partSize = clamp(partSize, MIN_PART_SIZE, Math.max(MAX_PART_SIZE, ceilDiv(fileSizeBytes, MAX_PARTS)));
+        partSize = ceilDiv(partSize, PART_SIZE_ALIGNMENT) * PART_SIZE_ALIGNMENT;
+
+        int partCount = (int) ceilDiv(fileSizeBytes, partSize);
+        if (partCount == 1) {
+            // Rounding swallowed the whole file - a single PUT is strictly cheaper
+            return UploadPlan.singlePut(fileSizeBytes);
+        }
+
+        return new UploadPlan(fileSizeBytes, true, partSize, partCount, Math.min(concurrency, partCount));
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
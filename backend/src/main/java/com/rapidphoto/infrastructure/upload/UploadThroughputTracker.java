@@ -0,0 +1,63 @@
+package com.rapidphoto.infrastructure.upload;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Tracks observed per-connection upload throughput per user as an exponentially weighted
+ * moving average. Fed by photo completions that report the client's transfer time; read by
+ * UploadPlanner to size multipart parts.
+ *
+ * In-memory and per-instance: an estimate only, lost on restart. Bounded to the
+ * most recently active users.
+ */
+@Component
+public class UploadThroughputTracker {
+
+    private static final int MAX_TRACKED_USERS = 10_000;
+    private static final double SMOOTHING = 0.3; // Weight of the newest sample
+    private static final long MIN_SAMPLE_BYTES = 256 * 1024; // Tiny files are dominated by latency
+
+    private final Map<UUID, Double> bytesPerSecondByUser = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Double> eldest) {
+            return size() > MAX_TRACKED_USERS;
+        }
+    };
+
+    /**
+     * Record a completed upload.
+     *
+     * @param userId User who uploaded
+     * @param bytes File size in bytes
+     * @param elapsed Time the client spent in PUT requests for the file, summed across parts
+     */
+    public void record(UUID userId, long bytes, Duration elapsed) {
+        if (userId == null || bytes < MIN_SAMPLE_BYTES || elapsed == null || elapsed.isNegative() || elapsed.isZero()) {
+            return;
+        }
+        double sample = bytes / (elapsed.toMillis() / 1000.0);
+        if (!Double.isFinite(sample)) {
+            return;
+        }
+
+        synchronized (bytesPerSecondByUser) {
+            bytesPerSecondByUser.merge(userId, sample,
+                (previous, latest) -> previous * (1 - SMOOTHING) + latest * SMOOTHING);
+        }
+    }
+
+    /**
+     * Observed throughput for a user in bytes per second, if any uploads were seen.
+     */
+    public Optional<Double> bytesPerSecond(UUID userId) {
+        synchronized (bytesPerSecondByUser) {
+            return Optional.ofNullable(bytesPerSecondByUser.get(userId));
+        }
+    }
+}
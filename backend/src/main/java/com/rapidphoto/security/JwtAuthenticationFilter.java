@@ -3,6 +3,7 @@ package com.rapidphoto.security;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -20,11 +21,15 @@ import java.util.UUID;
  * JWT Authentication Filter for Spring Security WebFlux.
  * Extracts JWT from Authorization header, validates it,
  * and sets authentication in SecurityContext.
+ *
+ * Browsers cannot set headers on a WebSocket handshake, so WebSocket upgrade requests
+ * (and only those) may carry the token in the access_token query parameter instead.
  */
 @Component
 public class JwtAuthenticationFilter implements WebFilter {
 
     private static final String BEARER_PREFIX = "Bearer ";
+    private static final String ACCESS_TOKEN_PARAM = "access_token";
     private final JwtUtil jwtUtil;
 
     public JwtAuthenticationFilter(JwtUtil jwtUtil) {
@@ -33,16 +38,13 @@ public class JwtAuthenticationFilter implements WebFilter {
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
-        String authHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        String token = extractToken(exchange.getRequest());
 
-        // If no Authorization header or doesn't start with "Bearer ", continue without authentication
-        if (authHeader == null || !authHeader.startsWith(BEARER_PREFIX)) {
+        // If no token, continue without authentication
+        if (token == null) {
             return chain.filter(exchange);
         }
 
-        // Extract token
-        String token = authHeader.substring(BEARER_PREFIX.length());
-
         try {
             // Validate token and extract claims
             Claims claims = jwtUtil.validateToken(token);
@@ -69,4 +71,18 @@ public class JwtAuthenticationFilter implements WebFilter {
             return chain.filter(exchange);
         }
     }
+
+    /**
+     * Bearer token from the Authorization header, or from the query of a WebSocket handshake.
+     */
+    private static String extractToken(ServerHttpRequest request) {
+        String authHeader = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authHeader != null && authHeader.startsWith(BEARER_PREFIX)) {
+            return authHeader.substring(BEARER_PREFIX.length());
+        }
+        if ("websocket".equalsIgnoreCase(request.getHeaders().getUpgrade())) {
+            return request.getQueryParams().getFirst(ACCESS_TOKEN_PARAM);
+        }
+        return null;
+    }
 }
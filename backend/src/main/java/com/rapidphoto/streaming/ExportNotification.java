@@ -0,0 +1,24 @@
+package com.rapidphoto.streaming;
+
+/**
+ * User notification about a background export, sent on the user notification channel.
+ *
+ * @param type EXPORT_PROGRESS, EXPORT_COMPLETED or EXPORT_FAILED
+ * @param exportId Export job ID
+ * @param progressPercentage Share of photo bytes written, 0-100
+ * @param bytesWritten Archive bytes uploaded so far
+ * @param downloadUrl Presigned URL of the archive (EXPORT_COMPLETED only)
+ * @param message Reason for EXPORT_FAILED, otherwise null
+ */
+public record ExportNotification(
+    String type,
+    String exportId,
+    int progressPercentage,
+    long bytesWritten,
+    String downloadUrl,
+    String message
+) {
+    public static final String PROGRESS = "EXPORT_PROGRESS";
+    public static final String COMPLETED = "EXPORT_COMPLETED";
+    public static final String FAILED = "EXPORT_FAILED";
+}
@@ -0,0 +1,125 @@
+package com.rapidphoto.streaming;
+
+import com.rapidphoto.domain.upload.SessionProgress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Merges PHOTO_UPLOADED messages per session.
+ *
+ * The first completion of a session opens a batch and schedules its publish one window
+ * later; completions arriving meanwhile only join the batch. A burst of uploads therefore
+ * costs one pub/sub message (and one SSE frame per listener) per window instead of one per
+ * photo. A zero window publishes every completion on its own.
+ */
+class PhotoUploadedCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(PhotoUploadedCoalescer.class);
+
+    private final Duration window;
+    private final Function<PhotoUploadedMessage, Mono<Void>> publisher;
+    // Batches are only mutated inside compute() and only read after remove()
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    PhotoUploadedCoalescer(Duration window, Function<PhotoUploadedMessage, Mono<Void>> publisher) {
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("Coalescing window cannot be negative");
+        }
+        this.window = window;
+        this.publisher = publisher;
+    }
+
+    /**
+     * Add a completed photo to its session's batch.
+     * Completes once the photo is queued; the batch is published when the window closes.
+     */
+    Mono<Void> add(String sessionId, String photoId, SessionProgress progress) {
+        return addAll(sessionId, List.of(photoId), progress);
+    }
+
+    /**
+     * Add photos completed together (one increment) to their session's batch.
+     */
+    Mono<Void> addAll(String sessionId, List<String> photoIds, SessionProgress progress) {
+        if (window.isZero()) {
+            return publisher.apply(new PhotoUploadedMessage(
+                sessionId, photoIds.get(photoIds.size() - 1), photoIds,
+                progress.completedPhotos(), progress.totalPhotos(), progress.progressPercentage()));
+        }
+
+        return Mono.fromRunnable(() -> {
+            boolean[] opened = new boolean[1];
+            batches.compute(sessionId, (id, batch) -> {
+                if (batch == null) {
+                    batch = new Batch();
+                    opened[0] = true;
+                }
+                batch.add(photoIds, progress);
+                return batch;
+            });
+            if (opened[0]) {
+                Mono.delay(window)
+                    .then(flush(sessionId))
+                    .subscribe(
+                        done -> { },
+                        error -> log.warn("Failed to publish PHOTO_UPLOADED batch for session {}: {}",
+                            sessionId, error.getMessage())
+                    );
+            }
+        });
+    }
+
+    /**
+     * Publish the session's pending batch now, if there is one.
+     */
+    Mono<Void> flush(String sessionId) {
+        return Mono.defer(() -> {
+            Batch batch = batches.remove(sessionId);
+            return batch != null ? publisher.apply(batch.toMessage(sessionId)) : Mono.empty();
+        });
+    }
+
+    int pendingSessions() {
+        return batches.size();
+    }
+
+    private static final class Batch {
+        private final Set<String> photoIds = new LinkedHashSet<>();
+        private String lastPhotoId;
+        private SessionProgress latest;
+
+        void add(List<String> completed, SessionProgress progress) {
+            photoIds.addAll(completed);
+            lastPhotoId = completed.get(completed.size() - 1);
+            // Completions can finish out of order; counters only move forward
+            if (latest == null || settled(progress) >= settled(latest)) {
+                latest = progress;
+            }
+        }
+
+        PhotoUploadedMessage toMessage(String sessionId) {
+            return new PhotoUploadedMessage(
+                sessionId,
+                lastPhotoId,
+                new ArrayList<>(photoIds),
+                latest.completedPhotos(),
+                latest.totalPhotos(),
+                latest.progressPercentage()
+            );
+        }
+
+        private static int settled(SessionProgress progress) {
+            return progress.completedPhotos() + progress.failedPhotos();
+        }
+    }
+}
@@ -1,17 +1,34 @@
 package com.rapidphoto.streaming;
 
+import java.util.List;
+
 /**
- * Message indicating a photo was successfully uploaded.
+ * Message indicating one or more photos were successfully uploaded.
  * Story 2.6: Real-Time Streaming Infrastructure Setup
+ *
+ * Completions within the coalescing window are merged: photoIds lists every photo in
+ * the batch, photoId is the last of them and the counters are the latest seen.
  */
 public record PhotoUploadedMessage(
     String sessionId,
     String photoId,
+    List<String> photoIds,
     int uploadedCount,
     int totalCount,
     int progressPercent
 ) implements UploadProgressMessage {
 
+    public PhotoUploadedMessage {
+        photoIds = photoIds != null ? List.copyOf(photoIds) : List.of(photoId);
+    }
+
+    /**
+     * Message for a single photo.
+     */
+    public PhotoUploadedMessage(String sessionId, String photoId, int uploadedCount, int totalCount, int progressPercent) {
+        this(sessionId, photoId, List.of(photoId), uploadedCount, totalCount, progressPercent);
+    }
+
     @Override
     public String type() {
         return "PHOTO_UPLOADED";
@@ -0,0 +1,246 @@
+package com.rapidphoto.streaming;
+
+import com.rapidphoto.streaming.UploadProgressPublisher.PublishedMessage;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of session progress messages for the Redis pub/sub hop,
+ * used when app.streaming.wire-format is "binary".
+ *
+ * Layout: format byte (0x01, never '{', so JSON and binary payloads can share a
+ * channel), kind byte, flags byte (bit 0: event id present), then the event id as two
+ * varints (millis, sequence) and the message fields in record order. Ids that are
+ * canonical UUIDs take 16 bytes behind a 0 tag, other ids are a 1 tag plus a
+ * length-prefixed UTF-8 string (length + 1, zero for null). Counts are unsigned varints.
+ *
+ * The session event log keeps JSON; only the live fan-out between instances is compact.
+ */
+@Component
+public class ProgressMessageCodec {
+
+    static final byte FORMAT = 0x01;
+
+    private static final byte PHOTO_UPLOADED = 1;
+    private static final byte PHOTO_FAILED = 2;
+    private static final byte SESSION_COMPLETED = 3;
+    private static final byte SESSION_SNAPSHOT = 4;
+
+    private static final int HAS_EVENT_ID = 1;
+    private static final byte UUID_ID = 0;
+    private static final byte STRING_ID = 1;
+
+    /**
+     * Whether a pub/sub payload is in this binary format rather than JSON.
+     */
+    public static boolean isBinary(byte[] payload) {
+        return payload.length > 0 && payload[0] == FORMAT;
+    }
+
+    /**
+     * Encode a message with its event log id (nullable).
+     */
+    public byte[] encode(UploadProgressMessage message, String eventId) {
+        Writer out = new Writer();
+        out.write(FORMAT);
+        out.write(kind(message));
+        out.write(eventId != null ? HAS_EVENT_ID : 0);
+        if (eventId != null) {
+            int dash = eventId.indexOf('-');
+            out.varint(Long.parseUnsignedLong(eventId.substring(0, dash)));
+            out.varint(Long.parseUnsignedLong(eventId.substring(dash + 1)));
+        }
+        out.id(message.sessionId());
+
+        if (message instanceof PhotoUploadedMessage uploaded) {
+            List<String> photoIds = uploaded.photoIds();
+            out.varint(photoIds.size());
+            photoIds.forEach(out::id);
+            // photoId is the last of photoIds unless the sender set it apart
+            boolean lastOfBatch = !photoIds.isEmpty() && uploaded.photoId().equals(photoIds.get(photoIds.size() - 1));
+            out.write(lastOfBatch ? 1 : 0);
+            if (!lastOfBatch) {
+                out.id(uploaded.photoId());
+            }
+            out.varint(uploaded.uploadedCount());
+            out.varint(uploaded.totalCount());
+            out.varint(uploaded.progressPercent());
+        } else if (message instanceof PhotoFailedMessage failed) {
+            out.id(failed.photoId());
+            out.string(failed.errorMessage());
+            out.varint(failed.failedCount());
+            out.varint(failed.totalCount());
+        } else if (message instanceof SessionCompletedMessage completed) {
+            out.varint(completed.successCount());
+            out.varint(completed.failedCount());
+            out.varint(completed.totalCount());
+        } else if (message instanceof SessionSnapshotMessage snapshot) {
+            out.varint(snapshot.uploadedCount());
+            out.varint(snapshot.failedCount());
+            out.varint(snapshot.totalCount());
+            out.varint(snapshot.progressPercent());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a binary payload.
+     *
+     * @throws IllegalArgumentException if the payload is not a well-formed binary message
+     */
+    public PublishedMessage decode(byte[] payload) {
+        if (!isBinary(payload)) {
+            throw new IllegalArgumentException("Not a binary progress message");
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(payload, 1, payload.length - 1);
+            byte kind = in.get();
+            int flags = in.get();
+            String eventId = (flags & HAS_EVENT_ID) != 0
+                ? Long.toUnsignedString(readVarint(in)) + "-" + Long.toUnsignedString(readVarint(in))
+                : null;
+            String sessionId = readId(in);
+
+            UploadProgressMessage message = switch (kind) {
+                case PHOTO_UPLOADED -> {
+                    int count = length(in);
+                    List<String> photoIds = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        photoIds.add(readId(in));
+                    }
+                    String photoId = in.get() == 1 ? photoIds.get(count - 1) : readId(in);
+                    yield new PhotoUploadedMessage(sessionId, photoId, photoIds,
+                        (int) readVarint(in), (int) readVarint(in), (int) readVarint(in));
+                }
+                case PHOTO_FAILED -> new PhotoFailedMessage(sessionId, readId(in), readString(in),
+                    (int) readVarint(in), (int) readVarint(in));
+                case SESSION_COMPLETED -> new SessionCompletedMessage(sessionId,
+                    (int) readVarint(in), (int) readVarint(in), (int) readVarint(in));
+                case SESSION_SNAPSHOT -> new SessionSnapshotMessage(sessionId,
+                    (int) readVarint(in), (int) readVarint(in), (int) readVarint(in), (int) readVarint(in));
+                default -> throw new IllegalArgumentException("Unknown progress message kind " + kind);
+            };
+            return new PublishedMessage(eventId, message);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated binary progress message", e);
+        }
+    }
+
+    private static byte kind(UploadProgressMessage message) {
+        if (message instanceof PhotoUploadedMessage) {
+            return PHOTO_UPLOADED;
+        } else if (message instanceof PhotoFailedMessage) {
+            return PHOTO_FAILED;
+        } else if (message instanceof SessionCompletedMessage) {
+            return SESSION_COMPLETED;
+        }
+        return SESSION_SNAPSHOT;
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * A count or length; never more than the bytes left, so a corrupt value cannot force a huge allocation.
+     */
+    private static int length(ByteBuffer in) {
+        long value = readVarint(in);
+        if (value > in.remaining() + 1L) {
+            throw new IllegalArgumentException("Length exceeds binary progress message");
+        }
+        return (int) value;
+    }
+
+    private static String readId(ByteBuffer in) {
+        if (in.get() == UUID_ID) {
+            return new UUID(in.getLong(), in.getLong()).toString();
+        }
+        return readString(in);
+    }
+
+    private static String readString(ByteBuffer in) {
+        // Length is stored plus one, so zero can mean null
+        int length = length(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Growable output buffer with the layout's primitive writers.
+     */
+    private static final class Writer extends ByteArrayOutputStream {
+
+        Writer() {
+            super(64);
+        }
+
+        void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void id(String id) {
+            UUID uuid = asUuid(id);
+            if (uuid != null) {
+                write(UUID_ID);
+                long most = uuid.getMostSignificantBits();
+                long least = uuid.getLeastSignificantBits();
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    write((int) (most >>> shift));
+                }
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    write((int) (least >>> shift));
+                }
+            } else {
+                write(STRING_ID);
+                string(id);
+            }
+        }
+
+        void string(String value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length + 1L);
+            writeBytes(bytes);
+        }
+
+        private static UUID asUuid(String id) {
+            // Only canonical lower-case UUIDs, so decoding gives back the same string
+            if (id.length() != 36) {
+                return null;
+            }
+            try {
+                UUID uuid = UUID.fromString(id);
+                return uuid.toString().equals(id) ? uuid : null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -29,14 +29,17 @@ public class RealtimeInfoController {
             List.of(
                 "PHOTO_UPLOADED - Photo successfully uploaded to S3",
                 "PHOTO_FAILED - Photo upload failed with error",
-                "SESSION_COMPLETED - All photos in session finished uploading"
+                "SESSION_COMPLETED - All photos in session finished uploading",
+                "SESSION_SNAPSHOT - Current session counters, sent when a stream starts without replay"
             ),
             "/api/upload/sessions/notifications/stream",
             List.of(
                 "Authentication required: Include JWT token in Authorization header",
                 "EventSource API automatically handles reconnection",
+                "Reconnects with Last-Event-ID replay the events missed while disconnected",
                 "Heartbeat sent every 30 seconds to keep connection alive",
-                "Connection timeout: 60 seconds of inactivity"
+                "Connection timeout: 60 seconds of inactivity",
+                "Upload control WebSocket at /api/upload/sessions/{sessionId}/ws: photo acks, failures and cancel, with progress pushed back"
             )
         ));
     }
@@ -0,0 +1,178 @@
+package com.rapidphoto.streaming;
+
+import com.rapidphoto.streaming.UploadProgressPublisher.PublishedMessage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-instance multiplexer between Redis pub/sub and local SSE streams.
+ *
+ * The instance holds a single pattern subscription covering every session and
+ * notification channel, and routes each message to the local listeners of its channel
+ * through one Sinks.Many per channel. Channels are reference counted: a channel's sink is
+ * dropped when its last listener leaves, and the pattern subscription itself is closed
+ * when no listener is left at all. All streams share one heartbeat ticker.
+ *
+ * Each message is turned into its SSE frame (SseFrames) once, on arrival, and that same
+ * frame instance is handed to every listener of the channel. Payloads are read as bytes so
+ * both wire formats can arrive on the same channel: JSON is forwarded as-is, and binary
+ * session messages (ProgressMessageCodec) are rendered to JSON once, here.
+ *
+ * Like the per-connection subscriptions it replaces, messages published before a
+ * listener's subscription is active are not replayed.
+ */
+@Component
+public class RedisSubscriptionHub {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisSubscriptionHub.class);
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(30);
+    // Per listener; a stalled client loses its oldest pending messages instead of holding up the others
+    private static final int LISTENER_BUFFER = 256;
+
+    private static final String SESSION_CHANNELS = UploadProgressPublisher.getSessionChannel("");
+    private static final String[] PATTERNS = {
+        SESSION_CHANNELS + "*",
+        UploadProgressPublisher.getUserNotificationChannel("*")
+    };
+
+    private final ReactiveRedisTemplate<String, byte[]> redisTemplate;
+    private final UploadProgressPublisher publisher;
+    private final ProgressMessageCodec codec;
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+    private final Flux<ServerSentEvent<String>> heartbeat = Flux.interval(HEARTBEAT_INTERVAL)
+        .map(tick -> SseFrames.heartbeat())
+        .share();
+
+    private int listeners; // Guarded by this
+    private Disposable subscription; // Guarded by this
+
+    public RedisSubscriptionHub(
+        ReactiveRedisTemplate<String, byte[]> binaryRedisTemplate,
+        UploadProgressPublisher publisher,
+        ProgressMessageCodec codec,
+        MeterRegistry meterRegistry
+    ) {
+        this.redisTemplate = binaryRedisTemplate;
+        this.publisher = publisher;
+        this.codec = codec;
+
+        Gauge.builder("sse.hub.channels", routes, Map::size)
+            .description("Channels with at least one local SSE listener")
+            .register(meterRegistry);
+        Gauge.builder("sse.hub.listeners", this, RedisSubscriptionHub::listenerCount)
+            .description("Local SSE listeners served by the shared subscription")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Messages published to a channel from now on, as ready-to-write SSE frames.
+     * Subscribing registers a listener; cancelling releases it.
+     */
+    public Flux<ServerSentEvent<String>> listen(String channel) {
+        return Flux.defer(() -> {
+            Route route = acquire(channel);
+            return route.sink.asFlux()
+                .onBackpressureBuffer(LISTENER_BUFFER,
+                    dropped -> log.warn("Dropped message for slow listener on {}", channel),
+                    BufferOverflowStrategy.DROP_OLDEST)
+                .doFinally(signal -> release(channel, route));
+        });
+    }
+
+    /**
+     * Shared keep-alive ticker; one timer serves every open stream.
+     */
+    public Flux<ServerSentEvent<String>> heartbeat() {
+        return heartbeat;
+    }
+
+    private synchronized Route acquire(String channel) {
+        Route route = routes.computeIfAbsent(channel, key -> new Route());
+        route.listeners++;
+        if (listeners++ == 0) {
+            subscribe();
+        }
+        return route;
+    }
+
+    private synchronized void release(String channel, Route route) {
+        if (--route.listeners == 0) {
+            routes.remove(channel, route);
+        }
+        if (--listeners == 0 && subscription != null) {
+            log.info("Last SSE listener left, closing shared Redis subscription");
+            subscription.dispose();
+            subscription = null;
+        }
+    }
+
+    private void subscribe() {
+        log.info("Opening shared Redis subscription for SSE streams");
+        subscription = redisTemplate.listenToPattern(PATTERNS)
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                .maxBackoff(Duration.ofSeconds(30))
+                .doBeforeRetry(retry -> log.warn("Shared Redis subscription failed, resubscribing: {}",
+                    retry.failure().getMessage())))
+            .subscribe(message -> route(message.getChannel(), message.getMessage()));
+    }
+
+    private void route(String channel, byte[] payload) {
+        Route route = routes.get(channel);
+        if (route == null) {
+            return;
+        }
+        ServerSentEvent<String> frame;
+        try {
+            frame = channel.startsWith(SESSION_CHANNELS)
+                ? sessionFrame(payload)
+                : SseFrames.notification(new String(payload, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            log.warn("Skipping unreadable message on {}: {}", channel, e.getMessage());
+            return;
+        }
+        // Messages arrive one at a time from the subscription, so emissions never race
+        route.sink.tryEmitNext(frame);
+    }
+
+    private ServerSentEvent<String> sessionFrame(byte[] payload) {
+        if (ProgressMessageCodec.isBinary(payload)) {
+            PublishedMessage published = codec.decode(payload);
+            return SseFrames.session(published.eventId(), publisher.serializeMessage(published.message()));
+        }
+        return SseFrames.session(new String(payload, StandardCharsets.UTF_8));
+    }
+
+    synchronized int listenerCount() {
+        return listeners;
+    }
+
+    @PreDestroy
+    synchronized void shutdown() {
+        if (subscription != null) {
+            subscription.dispose();
+            subscription = null;
+        }
+    }
+
+    private static final class Route {
+        // Best effort: each listener buffers on its own, so the sink never waits on demand
+        private final Sinks.Many<ServerSentEvent<String>> sink = Sinks.many().multicast().directBestEffort();
+        private int listeners; // Guarded by the hub
+    }
+}
@@ -0,0 +1,181 @@
+package com.rapidphoto.streaming;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Capped, replayable history of an upload session's progress messages.
+ *
+ * Every message published on a session channel is also appended to the Redis Stream
+ * "upload-session-events:{sessionId}". The stream entry id is monotonic per session and
+ * is sent as the SSE event id, so a reconnecting client's Last-Event-ID says exactly
+ * which events it has already seen. Streams are trimmed to about
+ * app.streaming.session-events-max-len entries and expire a day after the last append.
+ */
+@Component
+public class SessionEventLog {
+
+    /**
+     * Position before any entry; used when a session has no logged events yet.
+     */
+    public static final String EMPTY_ID = "0-0";
+
+    private static final String KEY_PREFIX = "upload-session-events:";
+    private static final String PAYLOAD_FIELD = "m";
+    private static final Duration TTL = Duration.ofHours(24);
+
+    /**
+     * KEYS: stream. ARGV: payload, maxLen, ttlMillis, channel, message, format.
+     * Appends the payload, then publishes the message with the new entry id spliced in:
+     * for "json" as a trailing eventId field, for "binary" as the ProgressMessageCodec
+     * event id (flags byte set, then millis and sequence varints). One script, so
+     * messages reach the channel in entry id order. Replies "id,subscribers".
+     */
+    private static final RedisScript<String> APPEND_AND_PUBLISH_SCRIPT = RedisScript.of("""
+        local function varint(n)
+            local out = ''
+            while n >= 128 do
+                out = out .. string.char(n % 128 + 128)
+                n = math.floor(n / 128)
+            end
+            return out .. string.char(n)
+        end
+        local id = redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[2], '*', 'm', ARGV[1])
+        redis.call('PEXPIRE', KEYS[1], ARGV[3])
+        local message
+        if ARGV[6] == 'binary' then
+            local dash = string.find(id, '-', 1, true)
+            message = string.sub(ARGV[5], 1, 2) .. string.char(1)
+                .. varint(tonumber(string.sub(id, 1, dash - 1))) .. varint(tonumber(string.sub(id, dash + 1)))
+                .. string.sub(ARGV[5], 4)
+        else
+            message = string.sub(ARGV[5], 1, -2) .. ',"eventId":"' .. id .. '"}'
+        end
+        return id .. ',' .. redis.call('PUBLISH', ARGV[4], message)
+        """, String.class);
+
+    private static final RedisElementWriter<byte[]> BYTES = RedisElementWriter.from(RedisSerializer.byteArray());
+    private static final RedisElementReader<String> STRING = RedisElementReader.from(RedisSerializer.string());
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final int maxLen;
+
+    public SessionEventLog(
+        ReactiveRedisTemplate<String, String> redisTemplate,
+        @Value("${app.streaming.session-events-max-len:1000}") int maxLen
+    ) {
+        if (maxLen <= 0) {
+            throw new IllegalArgumentException("Session event stream length must be positive");
+        }
+        this.redisTemplate = redisTemplate;
+        this.maxLen = maxLen;
+    }
+
+    /**
+     * Append a serialized message to the session's stream and publish it, tagged with
+     * the new entry id, in one step.
+     *
+     * @param message JSON object, or a ProgressMessageCodec payload encoded without an
+     *                event id when binary is set
+     * @return Number of subscribers that received the message
+     */
+    public Mono<Long> appendAndPublish(String sessionId, String payload, String channel, byte[] message, boolean binary) {
+        return redisTemplate.execute(
+                APPEND_AND_PUBLISH_SCRIPT,
+                List.of(key(sessionId)),
+                List.of(
+                    utf8(payload),
+                    utf8(String.valueOf(maxLen)),
+                    utf8(String.valueOf(TTL.toMillis())),
+                    utf8(channel),
+                    message,
+                    utf8(binary ? "binary" : "json")),
+                BYTES,
+                STRING)
+            .next()
+            .map(reply -> Long.parseLong(reply.substring(reply.indexOf(',') + 1)));
+    }
+
+    /**
+     * Entries strictly after the given id, oldest first.
+     */
+    public Flux<Entry> readAfter(String sessionId, String lastId) {
+        return redisTemplate.opsForStream()
+            .range(key(sessionId), Range.rightUnbounded(Range.Bound.inclusive(lastId)))
+            .map(SessionEventLog::toEntry)
+            .filter(entry -> compareIds(entry.id(), lastId) > 0);
+    }
+
+    /**
+     * Id of the oldest entry still retained; empty if the stream is empty or gone.
+     */
+    public Mono<String> firstId(String sessionId) {
+        return redisTemplate.opsForStream()
+            .range(key(sessionId), Range.unbounded(), Limit.limit().count(1))
+            .next()
+            .map(record -> record.getId().getValue());
+    }
+
+    /**
+     * Id of the newest entry; empty if the stream is empty or gone.
+     */
+    public Mono<String> lastId(String sessionId) {
+        return redisTemplate.opsForStream()
+            .reverseRange(key(sessionId), Range.unbounded(), Limit.limit().count(1))
+            .next()
+            .map(record -> record.getId().getValue());
+    }
+
+    /**
+     * Whether the value has the "millis-sequence" shape of a stream entry id.
+     */
+    public static boolean isEntryId(String value) {
+        return value != null && value.matches("\\d{1,19}-\\d{1,19}");
+    }
+
+    /**
+     * Order two entry ids as Redis does: by millisecond part, then sequence.
+     */
+    public static int compareIds(String a, String b) {
+        int dash = a.indexOf('-');
+        int otherDash = b.indexOf('-');
+        int byTime = Long.compareUnsigned(
+            Long.parseUnsignedLong(a.substring(0, dash)), Long.parseUnsignedLong(b.substring(0, otherDash)));
+        if (byTime != 0) {
+            return byTime;
+        }
+        return Long.compareUnsigned(
+            Long.parseUnsignedLong(a.substring(dash + 1)), Long.parseUnsignedLong(b.substring(otherDash + 1)));
+    }
+
+    private static Entry toEntry(MapRecord<String, Object, Object> record) {
+        return new Entry(record.getId().getValue(), String.valueOf(record.getValue().get(PAYLOAD_FIELD)));
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String key(String sessionId) {
+        return KEY_PREFIX + sessionId;
+    }
+
+    /**
+     * One stored message: its stream id and serialized payload.
+     */
+    public record Entry(String id, String payload) {}
+}
@@ -0,0 +1,19 @@
+package com.rapidphoto.streaming;
+
+/**
+ * Current counters of a session, sent first on a stream that cannot be resumed
+ * from the event log (fresh connect, or events since Last-Event-ID were trimmed).
+ */
+public record SessionSnapshotMessage(
+    String sessionId,
+    int uploadedCount,
+    int failedCount,
+    int totalCount,
+    int progressPercent
+) implements UploadProgressMessage {
+
+    @Override
+    public String type() {
+        return "SESSION_SNAPSHOT";
+    }
+}
@@ -0,0 +1,100 @@
+package com.rapidphoto.streaming;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.http.codec.ServerSentEvent;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Builds SSE frames straight from the JSON published on Redis.
+ *
+ * The payload is forwarded as the data field untouched; only the top-level "type" and
+ * "eventId" fields are read, with a streaming parser, to fill in the event name and id.
+ * No UploadProgressMessage is materialized, and Spring writes String data as-is, so the
+ * JSON is never re-serialized. Frames are immutable and shared by every listener of a
+ * channel, so this work happens once per message rather than once per subscriber.
+ * Live frames keep the publisher's eventId field in their data; clients ignore it.
+ */
+final class SseFrames {
+
+    static final String NOTIFICATION_EVENT = "notification";
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final ServerSentEvent<String> HEARTBEAT = ServerSentEvent.<String>builder()
+        .comment("heartbeat")
+        .build();
+
+    private SseFrames() {
+    }
+
+    /**
+     * Frame for a message published on a session channel; its id is the embedded eventId.
+     */
+    static ServerSentEvent<String> session(String json) {
+        Header header = readHeader(json);
+        return frame(header.type(), header.eventId(), json);
+    }
+
+    /**
+     * Frame for a message read back from the session event log under the given id.
+     */
+    static ServerSentEvent<String> session(String eventId, String json) {
+        return frame(readHeader(json).type(), eventId, json);
+    }
+
+    /**
+     * Frame for a message published on a user notification channel.
+     */
+    static ServerSentEvent<String> notification(String json) {
+        return frame(NOTIFICATION_EVENT, UUID.randomUUID().toString(), json);
+    }
+
+    static ServerSentEvent<String> heartbeat() {
+        return HEARTBEAT;
+    }
+
+    private static ServerSentEvent<String> frame(String event, String id, String json) {
+        return ServerSentEvent.<String>builder()
+            .event(event)
+            .id(id)
+            .data(json)
+            .build();
+    }
+
+    /**
+     * Read the top-level type and eventId fields, skipping everything else.
+     *
+     * @throws IllegalArgumentException if the payload is not a JSON object with a type
+     */
+    private static Header readHeader(String json) {
+        String type = null;
+        String eventId = null;
+        try (JsonParser parser = JSON.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Progress message must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME && (type == null || eventId == null)) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("type".equals(field) && value == JsonToken.VALUE_STRING) {
+                    type = parser.getText();
+                } else if (UploadProgressPublisher.EVENT_ID_FIELD.equals(field) && value == JsonToken.VALUE_STRING) {
+                    eventId = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed progress message", e);
+        }
+        if (type == null) {
+            throw new IllegalArgumentException("Progress message has no type");
+        }
+        return new Header(type, eventId);
+    }
+
+    private record Header(String type, String eventId) {}
+}
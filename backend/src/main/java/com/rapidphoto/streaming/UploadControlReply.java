@@ -0,0 +1,19 @@
+package com.rapidphoto.streaming;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one UploadControlRequest: ACK, or ERROR with a client-facing reason.
+ * requestId is null only for messages that could not be read at all.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UploadControlReply(String type, String requestId, String error) {
+
+    public static UploadControlReply ack(String requestId) {
+        return new UploadControlReply("ACK", requestId, null);
+    }
+
+    public static UploadControlReply error(String requestId, String error) {
+        return new UploadControlReply("ERROR", requestId, error);
+    }
+}
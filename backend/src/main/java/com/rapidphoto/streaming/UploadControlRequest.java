@@ -0,0 +1,40 @@
+package com.rapidphoto.streaming;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * Commands a client sends over the upload control WebSocket.
+ * Every command carries a client-chosen requestId, echoed in its UploadControlReply.
+ */
+@JsonTypeInfo(
+    use = JsonTypeInfo.Id.NAME,
+    include = JsonTypeInfo.As.PROPERTY,
+    property = "type"
+)
+@JsonSubTypes({
+    @JsonSubTypes.Type(value = UploadControlRequest.PhotoUploaded.class, name = "PHOTO_UPLOADED"),
+    @JsonSubTypes.Type(value = UploadControlRequest.PhotoFailed.class, name = "PHOTO_FAILED"),
+    @JsonSubTypes.Type(value = UploadControlRequest.Cancel.class, name = "CANCEL")
+})
+public sealed interface UploadControlRequest {
+
+    String requestId();
+
+    /**
+     * The photo's S3 upload finished; same as one entry of POST /api/photos/uploaded-batch,
+     * so a photo of another user or one already completed is skipped and still ACKed.
+     */
+    record PhotoUploaded(String requestId, String photoId, String s3Key, Long transferMillis)
+        implements UploadControlRequest {}
+
+    /**
+     * The photo's S3 upload failed and will not be retried in this session.
+     */
+    record PhotoFailed(String requestId, String photoId, String reason) implements UploadControlRequest {}
+
+    /**
+     * Cancel the upload session the socket is bound to.
+     */
+    record Cancel(String requestId) implements UploadControlRequest {}
+}
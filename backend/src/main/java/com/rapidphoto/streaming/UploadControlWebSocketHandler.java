@@ -0,0 +1,210 @@
+package com.rapidphoto.streaming;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rapidphoto.cqrs.commands.CancelUploadSessionCommand;
+import com.rapidphoto.cqrs.commands.FailPhotoUploadCommand;
+import com.rapidphoto.cqrs.commands.MarkPhotosUploadedCommand;
+import com.rapidphoto.cqrs.commands.handlers.CancelUploadSessionCommandHandler;
+import com.rapidphoto.cqrs.commands.handlers.FailPhotoUploadCommandHandler;
+import com.rapidphoto.cqrs.commands.handlers.MarkPhotosUploadedCommandHandler;
+import com.rapidphoto.domain.photo.PhotoBatchRepository.UploadCompletion;
+import com.rapidphoto.domain.upload.SessionProgress;
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
+import com.rapidphoto.security.UserPrincipal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.PathContainer;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bidirectional upload control for one session over a single WebSocket:
+ * ws(s)://.../api/upload/sessions/{sessionId}/ws
+ *
+ * Client to server: UploadControlRequest JSON (PHOTO_UPLOADED, PHOTO_FAILED, CANCEL),
+ * each answered with an UploadControlReply (ACK or ERROR) carrying its requestId.
+ * Up to MAX_IN_FLIGHT commands run at once, so replies can arrive out of order.
+ *
+ * Server to client: a SESSION_SNAPSHOT, then every progress message published for the
+ * session, as the same JSON the SSE stream sends as event data. Live messages come from
+ * the shared RedisSubscriptionHub; the socket is pinged on the hub's heartbeat.
+ *
+ * The handshake is authenticated like any other request (see JwtAuthenticationFilter);
+ * sockets without an authenticated user, or for a session of another user, are closed
+ * with POLICY_VIOLATION.
+ */
+@Component
+public class UploadControlWebSocketHandler implements WebSocketHandler {
+
+    public static final String PATH = "/api/upload/sessions/{sessionId}/ws";
+
+    private static final Logger log = LoggerFactory.getLogger(UploadControlWebSocketHandler.class);
+    private static final PathPattern PATH_PATTERN = PathPatternParser.defaultInstance.parse(PATH);
+    private static final int MAX_IN_FLIGHT = 16;
+
+    private final RedisSubscriptionHub subscriptionHub;
+    private final UploadProgressPublisher progressPublisher;
+    private final SessionProgressStore progressStore;
+    private final MarkPhotosUploadedCommandHandler markPhotosUploadedHandler;
+    private final FailPhotoUploadCommandHandler failPhotoUploadHandler;
+    private final CancelUploadSessionCommandHandler cancelUploadSessionHandler;
+    private final ObjectMapper objectMapper;
+
+    public UploadControlWebSocketHandler(
+        RedisSubscriptionHub subscriptionHub,
+        UploadProgressPublisher progressPublisher,
+        SessionProgressStore progressStore,
+        MarkPhotosUploadedCommandHandler markPhotosUploadedHandler,
+        FailPhotoUploadCommandHandler failPhotoUploadHandler,
+        CancelUploadSessionCommandHandler cancelUploadSessionHandler,
+        ObjectMapper objectMapper
+    ) {
+        this.subscriptionHub = subscriptionHub;
+        this.progressPublisher = progressPublisher;
+        this.progressStore = progressStore;
+        this.markPhotosUploadedHandler = markPhotosUploadedHandler;
+        this.failPhotoUploadHandler = failPhotoUploadHandler;
+        this.cancelUploadSessionHandler = cancelUploadSessionHandler;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        UUID sessionId = sessionId(session);
+        if (sessionId == null) {
+            return session.close(CloseStatus.BAD_DATA.withReason("Invalid session ID"));
+        }
+        return session.getHandshakeInfo().getPrincipal()
+            .filter(principal -> principal instanceof Authentication authentication
+                && authentication.getPrincipal() instanceof UserPrincipal)
+            .map(principal -> (UserPrincipal) ((Authentication) principal).getPrincipal())
+            .flatMap(user -> progressStore.get(sessionId)
+                .filter(progress -> progress.userId().equals(user.userId()))
+                .flatMap(progress -> serve(session, progress, user)))
+            .switchIfEmpty(Mono.defer(() -> session.close(CloseStatus.POLICY_VIOLATION)));
+    }
+
+    private Mono<Void> serve(WebSocketSession session, SessionProgress current, UserPrincipal user) {
+        UUID sessionId = current.sessionId();
+        log.info("Client {} opened upload control socket for session {}", user.userId(), sessionId);
+
+        Sinks.Empty<Void> closed = Sinks.empty();
+        Flux<WebSocketMessage> replies = session.receive()
+            .filter(message -> message.getType() == WebSocketMessage.Type.TEXT)
+            .map(WebSocketMessage::getPayloadAsText)
+            .flatMap(text -> execute(text, sessionId, user), MAX_IN_FLIGHT)
+            .map(reply -> session.textMessage(toJson(reply)))
+            .doFinally(signal -> closed.tryEmitEmpty());
+
+        // Messages carry cumulative counters, so one missed between the snapshot and going live is caught up by the next
+        Flux<WebSocketMessage> progress = subscriptionHub
+            .listen(UploadProgressPublisher.getSessionChannel(sessionId.toString()))
+            .map(ServerSentEvent::data)
+            .startWith(snapshot(current))
+            .map(session::textMessage);
+
+        Flux<WebSocketMessage> pings = subscriptionHub.heartbeat()
+            .map(tick -> session.pingMessage(factory -> factory.allocateBuffer(0)));
+
+        // Server-side streams stop once the client stops sending (socket closed)
+        return session.send(Flux.merge(replies, Flux.merge(progress, pings).takeUntilOther(closed.asMono())))
+            .doFinally(signal -> log.info("Upload control socket for session {} closed ({})", sessionId, signal));
+    }
+
+    /**
+     * Run one client command and describe its outcome. Never errors.
+     */
+    Mono<UploadControlReply> execute(String text, UUID sessionId, UserPrincipal user) {
+        UploadControlRequest request;
+        try {
+            request = objectMapper.readValue(text, UploadControlRequest.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Unreadable upload control message on session {}: {}", sessionId, e.getOriginalMessage());
+            return Mono.just(UploadControlReply.error(null, "Unreadable message"));
+        }
+
+        return Mono.defer(() -> dispatch(request, sessionId, user))
+            .thenReturn(UploadControlReply.ack(request.requestId()))
+            .onErrorResume(IllegalArgumentException.class, e ->
+                Mono.just(UploadControlReply.error(request.requestId(), e.getMessage())))
+            .onErrorResume(IllegalStateException.class, e ->
+                Mono.just(UploadControlReply.error(request.requestId(), e.getMessage())))
+            .onErrorResume(e -> {
+                log.error("Upload control command {} failed on session {}", request, sessionId, e);
+                return Mono.just(UploadControlReply.error(request.requestId(), "Internal error"));
+            });
+    }
+
+    private Mono<Void> dispatch(UploadControlRequest request, UUID sessionId, UserPrincipal user) {
+        if (request instanceof UploadControlRequest.PhotoUploaded uploaded) {
+            // Bulk path with one entry: it counts the photo in its session and publishes progress
+            UploadCompletion completion = new UploadCompletion(
+                photoId(uploaded.photoId()), uploaded.s3Key(), null, uploaded.transferMillis());
+            return markPhotosUploadedHandler.handle(new MarkPhotosUploadedCommand(List.of(completion), user.userId()))
+                .then();
+        } else if (request instanceof UploadControlRequest.PhotoFailed failed) {
+            return failPhotoUploadHandler.handle(new FailPhotoUploadCommand(
+                photoId(failed.photoId()), failed.reason(), user.userId()));
+        }
+        return cancelUploadSessionHandler.handle(new CancelUploadSessionCommand(sessionId, user.userId()));
+    }
+
+    private String snapshot(SessionProgress progress) {
+        return progressPublisher.serializeMessage(new SessionSnapshotMessage(
+            progress.sessionId().toString(),
+            progress.completedPhotos(),
+            progress.failedPhotos(),
+            progress.totalPhotos(),
+            progress.progressPercentage()
+        ));
+    }
+
+    private static UUID photoId(String photoId) {
+        if (photoId == null) {
+            throw new IllegalArgumentException("Missing photo ID");
+        }
+        try {
+            return UUID.fromString(photoId);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid photo ID", e);
+        }
+    }
+
+    private String toJson(UploadControlReply reply) {
+        try {
+            return objectMapper.writeValueAsString(reply);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize reply", e);
+        }
+    }
+
+    /**
+     * Session ID from the handshake path; null if it is not a UUID.
+     */
+    private static UUID sessionId(WebSocketSession session) {
+        PathPattern.PathMatchInfo match = PATH_PATTERN.matchAndExtract(
+            PathContainer.parsePath(session.getHandshakeInfo().getUri().getPath()));
+        if (match == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(match.getUriVariables().get("sessionId"));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
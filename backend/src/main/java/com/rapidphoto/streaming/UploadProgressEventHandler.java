@@ -3,16 +3,25 @@ package com.rapidphoto.streaming;
 import com.rapidphoto.domain.events.PhotoUploadFailedEvent;
 import com.rapidphoto.domain.events.PhotoUploadedEvent;
 import com.rapidphoto.domain.events.UploadSessionCompletedEvent;
-import com.rapidphoto.domain.upload.UploadSession;
-import com.rapidphoto.domain.upload.UploadSessionRepository;
+import com.rapidphoto.domain.upload.SessionProgress;
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
 /**
  * Handles domain events and publishes progress messages to Redis pub/sub.
  * Story 2.7: Real-Time Progress Broadcasting
+ *
+ * Session counters are read from SessionProgressStore (Redis, falling back to Postgres).
+ * PHOTO_UPLOADED is coalesced per session over app.upload.progress-coalesce-window-ms;
+ * PHOTO_FAILED and SESSION_COMPLETED are published immediately.
  */
 @Service
 public class UploadProgressEventHandler {
@@ -20,14 +29,17 @@ public class UploadProgressEventHandler {
     private static final Logger log = LoggerFactory.getLogger(UploadProgressEventHandler.class);
 
     private final UploadProgressPublisher progressPublisher;
-    private final UploadSessionRepository sessionRepository;
+    private final SessionProgressStore progressStore;
+    private final PhotoUploadedCoalescer coalescer;
 
     public UploadProgressEventHandler(
         UploadProgressPublisher progressPublisher,
-        UploadSessionRepository sessionRepository
+        SessionProgressStore progressStore,
+        @Value("${app.upload.progress-coalesce-window-ms:150}") long coalesceWindowMs
     ) {
         this.progressPublisher = progressPublisher;
-        this.sessionRepository = sessionRepository;
+        this.progressStore = progressStore;
+        this.coalescer = new PhotoUploadedCoalescer(Duration.ofMillis(coalesceWindowMs), this::publishPhotoUploaded);
     }
 
     /**
@@ -36,23 +48,69 @@ public class UploadProgressEventHandler {
      */
     public Mono<Void> handlePhotoUploaded(PhotoUploadedEvent event) {
         // Fetch latest session state and publish to Redis
-        return sessionRepository.findById(event.getSessionId())
-            .flatMap(session -> {
-                PhotoUploadedMessage message = new PhotoUploadedMessage(
-                    event.getSessionId().toString(),
-                    event.getPhotoId().toString(),
-                    session.getCompletedPhotos(),
-                    session.getTotalPhotos(),
-                    session.getProgressPercentage()
-                );
-
-                // Publish to Redis channel (SSE clients will receive this)
-                return progressPublisher.publishSessionProgress(event.getSessionId().toString(), message)
-                    .doOnSuccess(count ->
-                        log.info("Published PHOTO_UPLOADED to {} subscribers - Progress: {}/{}",
-                            count, session.getCompletedPhotos(), session.getTotalPhotos())
-                    );
-            })
+        return progressStore.get(event.getSessionId())
+            .flatMap(progress -> handlePhotoUploaded(event, progress));
+    }
+
+    /**
+     * Handle photo upload completion event with the counters it produced
+     * (as returned by the increment), without re-reading them.
+     * Completes once the photo joins its session's pending batch.
+     */
+    public Mono<Void> handlePhotoUploaded(PhotoUploadedEvent event, SessionProgress progress) {
+        return coalescer.add(event.getSessionId().toString(), event.getPhotoId().toString(), progress);
+    }
+
+    /**
+     * Handle photos completed together in one bulk update, with the counters their
+     * single increment produced. They join the session's batch as one message.
+     */
+    public Mono<Void> handlePhotosUploaded(UUID sessionId, List<UUID> photoIds, SessionProgress progress) {
+        return coalescer.addAll(sessionId.toString(), photoIds.stream().map(UUID::toString).toList(), progress);
+    }
+
+    /**
+     * Publish photos counted as completed by one increment, plus SESSION_COMPLETED if
+     * that increment accounted for the session's last photo (exactly one increment sees
+     * the final count). Shared by every command that counts completions.
+     */
+    public Mono<Void> publishProgress(List<UUID> photoIds, SessionProgress progress) {
+        return withCompletion(Mono.defer(() -> handlePhotosUploaded(progress.sessionId(), photoIds, progress)), progress);
+    }
+
+    /**
+     * Publish a photo counted as failed, plus SESSION_COMPLETED if it was the
+     * session's last, as publishProgress(List, SessionProgress) does for completions.
+     */
+    public Mono<Void> publishProgress(PhotoUploadFailedEvent event, SessionProgress progress) {
+        return withCompletion(Mono.defer(() -> handlePhotoFailed(event, progress)), progress);
+    }
+
+    private Mono<Void> withCompletion(Mono<Void> photosPublish, SessionProgress progress) {
+        if (!progress.isFinished()) {
+            return photosPublish;
+        }
+
+        UploadSessionCompletedEvent completionEvent = new UploadSessionCompletedEvent(
+            progress.sessionId(),
+            progress.userId(),
+            progress.completedPhotos(),
+            progress.failedPhotos()
+        );
+        // Persist final counts right away instead of waiting for the write-behind flush; the
+        // photos are published (or join their batch) first, so they precede SESSION_COMPLETED
+        return progressStore.flush(progress.sessionId())
+            .then(photosPublish)
+            .then(Mono.defer(() -> handleSessionCompleted(completionEvent)));
+    }
+
+    private Mono<Void> publishPhotoUploaded(PhotoUploadedMessage message) {
+        // Publish to Redis channel (SSE clients will receive this)
+        return progressPublisher.publishSessionProgress(message.sessionId(), message)
+            .doOnSuccess(count ->
+                log.info("Published PHOTO_UPLOADED ({} photos) to {} subscribers - Progress: {}/{}",
+                    message.photoIds().size(), count, message.uploadedCount(), message.totalCount())
+            )
             .then();
     }
 
@@ -61,28 +119,35 @@ public class UploadProgressEventHandler {
      * Publishes failure notification to Redis.
      */
     public Mono<Void> handlePhotoFailed(PhotoUploadFailedEvent event) {
-        return sessionRepository.findById(event.getSessionId())
-            .flatMap(session -> {
-                PhotoFailedMessage message = new PhotoFailedMessage(
-                    event.getSessionId().toString(),
-                    event.getPhotoId().toString(),
-                    event.getReason(),
-                    session.getFailedPhotos(),
-                    session.getTotalPhotos()
-                );
-
-                return progressPublisher.publishSessionProgress(event.getSessionId().toString(), message)
-                    .doOnSuccess(count ->
-                        log.warn("Published PHOTO_FAILED to {} subscribers - Reason: {}",
-                            count, event.getReason())
-                    );
-            })
+        return progressStore.get(event.getSessionId())
+            .flatMap(progress -> handlePhotoFailed(event, progress));
+    }
+
+    /**
+     * Handle photo upload failure event with the counters it produced
+     * (as returned by the increment), without re-reading them.
+     */
+    public Mono<Void> handlePhotoFailed(PhotoUploadFailedEvent event, SessionProgress progress) {
+        PhotoFailedMessage message = new PhotoFailedMessage(
+            event.getSessionId().toString(),
+            event.getPhotoId().toString(),
+            event.getReason(),
+            progress.failedPhotos(),
+            progress.totalPhotos()
+        );
+
+        return progressPublisher.publishSessionProgress(event.getSessionId().toString(), message)
+            .doOnSuccess(count ->
+                log.warn("Published PHOTO_FAILED to {} subscribers - Reason: {}",
+                    count, event.getReason())
+            )
             .then();
     }
 
     /**
      * Handle session completion event.
-     * Publishes to both session channel and user notification channel.
+     * Publishes to both session channel and user notification channel,
+     * after any PHOTO_UPLOADED batch still pending for the session.
      */
     public Mono<Void> handleSessionCompleted(UploadSessionCompletedEvent event) {
         SessionCompletedMessage message = new SessionCompletedMessage(
@@ -92,9 +157,9 @@ public class UploadProgressEventHandler {
             event.getUploadedCount() + event.getFailedCount()
         );
 
-        // Publish to session channel
-        Mono<Void> sessionNotification = progressPublisher
-            .publishSessionProgress(event.getSessionId().toString(), message)
+        // Publish to session channel; the pending batch goes first so counters never trail completion
+        Mono<Void> sessionNotification = coalescer.flush(event.getSessionId().toString())
+            .then(Mono.defer(() -> progressPublisher.publishSessionProgress(event.getSessionId().toString(), message)))
             .doOnSuccess(count ->
                 log.info("Published SESSION_COMPLETED to {} subscribers - Uploaded: {}, Failed: {}",
                     count, event.getUploadedCount(), event.getFailedCount())
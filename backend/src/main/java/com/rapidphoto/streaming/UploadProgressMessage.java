@@ -15,10 +15,11 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 @JsonSubTypes({
     @JsonSubTypes.Type(value = PhotoUploadedMessage.class, name = "PHOTO_UPLOADED"),
     @JsonSubTypes.Type(value = PhotoFailedMessage.class, name = "PHOTO_FAILED"),
-    @JsonSubTypes.Type(value = SessionCompletedMessage.class, name = "SESSION_COMPLETED")
+    @JsonSubTypes.Type(value = SessionCompletedMessage.class, name = "SESSION_COMPLETED"),
+    @JsonSubTypes.Type(value = SessionSnapshotMessage.class, name = "SESSION_SNAPSHOT")
 })
 public sealed interface UploadProgressMessage
-    permits PhotoUploadedMessage, PhotoFailedMessage, SessionCompletedMessage {
+    permits PhotoUploadedMessage, PhotoFailedMessage, SessionCompletedMessage, SessionSnapshotMessage {
 
     /**
      * The session ID this message belongs to
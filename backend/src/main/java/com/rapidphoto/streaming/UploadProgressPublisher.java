@@ -1,17 +1,28 @@
 package com.rapidphoto.streaming;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Service for publishing upload progress messages to Redis pub/sub channels.
  * Messages are broadcast to all backend instances and then sent to SSE clients.
  * Story 2.6: Real-Time Streaming Infrastructure Setup
+ *
+ * Session messages are appended to the session's SessionEventLog and published in the
+ * same Redis script, so they reach the channel in log order; the published JSON carries
+ * the entry id as "eventId" so streams can use it as the SSE event id.
+ * With app.streaming.wire-format=binary, session messages are published in the compact
+ * ProgressMessageCodec layout instead (notifications stay JSON).
  */
 @Service
 public class UploadProgressPublisher {
@@ -19,21 +30,35 @@ public class UploadProgressPublisher {
     private static final Logger log = LoggerFactory.getLogger(UploadProgressPublisher.class);
     private static final String SESSION_CHANNEL_PREFIX = "upload-session:";
     private static final String USER_NOTIFICATION_PREFIX = "user-notifications:";
+    static final String EVENT_ID_FIELD = "eventId";
 
     private final ReactiveRedisTemplate<String, String> redisTemplate;
     private final ObjectMapper objectMapper;
+    private final SessionEventLog eventLog;
+    private final ProgressMessageCodec codec;
+    private final boolean binaryWireFormat;
 
     public UploadProgressPublisher(
         ReactiveRedisTemplate<String, String> redisTemplate,
-        ObjectMapper objectMapper
+        ObjectMapper objectMapper,
+        SessionEventLog eventLog,
+        ProgressMessageCodec codec,
+        @Value("${app.streaming.wire-format:json}") String wireFormat
     ) {
+        if (!"json".equalsIgnoreCase(wireFormat) && !"binary".equalsIgnoreCase(wireFormat)) {
+            throw new IllegalArgumentException("Unknown progress wire format: " + wireFormat);
+        }
         this.redisTemplate = redisTemplate;
         this.objectMapper = objectMapper;
+        this.eventLog = eventLog;
+        this.codec = codec;
+        this.binaryWireFormat = "binary".equalsIgnoreCase(wireFormat);
     }
 
     /**
      * Publish progress update for a specific upload session.
-     * All backend instances subscribed to this session will receive the message.
+     * All backend instances subscribed to this session will receive the message,
+     * and it is kept in the session's event log for clients that reconnect.
      *
      * @param sessionId The upload session ID
      * @param message The progress message to broadcast
@@ -43,7 +68,12 @@ public class UploadProgressPublisher {
         String channel = SESSION_CHANNEL_PREFIX + sessionId;
         String messageJson = serializeMessage(message);
 
-        return redisTemplate.convertAndSend(channel, messageJson)
+        // The log assigns the event id, so the script adds it to the published message
+        byte[] published = binaryWireFormat
+            ? codec.encode(message, null)
+            : messageJson.getBytes(StandardCharsets.UTF_8);
+
+        return eventLog.appendAndPublish(sessionId, messageJson, channel, published, binaryWireFormat)
             .doOnSuccess(count -> log.info("Published {} to channel {} - {} subscribers received",
                 message.type(), channel, count))
             .doOnError(error -> log.error("Failed to publish message to channel {}: {}",
@@ -59,6 +89,17 @@ public class UploadProgressPublisher {
      * @return Number of subscribers that received the notification
      */
     public Mono<Long> publishUserNotification(String userId, Notification notification) {
+        return publishToUser(userId, notification);
+    }
+
+    /**
+     * Publish export job progress to a user, on the same channel as other notifications.
+     */
+    public Mono<Long> publishExportNotification(String userId, ExportNotification notification) {
+        return publishToUser(userId, notification);
+    }
+
+    private Mono<Long> publishToUser(String userId, Object notification) {
         String channel = USER_NOTIFICATION_PREFIX + userId;
         String notificationJson = serializeNotification(notification);
 
@@ -72,7 +113,7 @@ public class UploadProgressPublisher {
     /**
      * Serialize notification to JSON.
      */
-    private String serializeNotification(Notification notification) {
+    private String serializeNotification(Object notification) {
         try {
             return objectMapper.writeValueAsString(notification);
         } catch (JsonProcessingException e) {
@@ -85,7 +126,7 @@ public class UploadProgressPublisher {
      * Serialize message to JSON.
      * Jackson will automatically include the "type" discriminator field.
      */
-    private String serializeMessage(UploadProgressMessage message) {
+    public String serializeMessage(UploadProgressMessage message) {
         try {
             return objectMapper.writeValueAsString(message);
         } catch (JsonProcessingException e) {
@@ -95,18 +136,29 @@ public class UploadProgressPublisher {
     }
 
     /**
-     * Deserialize JSON string to UploadProgressMessage.
-     * Jackson will automatically determine the correct subtype based on "type" field.
+     * Deserialize a published session message together with its event log id
+     * (null if it was published without one).
      */
-    public UploadProgressMessage deserializeMessage(String json) {
+    public PublishedMessage readPublished(String json) {
         try {
-            return objectMapper.readValue(json, UploadProgressMessage.class);
-        } catch (JsonProcessingException e) {
+            JsonNode tree = objectMapper.readTree(json);
+            JsonNode eventId = tree instanceof ObjectNode node ? node.remove(EVENT_ID_FIELD) : null;
+            UploadProgressMessage message = objectMapper.treeToValue(tree, UploadProgressMessage.class);
+            return new PublishedMessage(eventId != null && eventId.isTextual() ? eventId.asText() : null, message);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
             log.error("Failed to deserialize message: {}", json, e);
             throw new RuntimeException("Failed to deserialize message", e);
         }
     }
 
+    /**
+     * Deserialize JSON string to UploadProgressMessage.
+     * Jackson will automatically determine the correct subtype based on "type" field.
+     */
+    public UploadProgressMessage deserializeMessage(String json) {
+        return readPublished(json).message();
+    }
+
     /**
      * Get the channel name for a session ID.
      * Useful for subscribing to session updates.
@@ -122,4 +174,9 @@ public class UploadProgressPublisher {
     public static String getUserNotificationChannel(String userId) {
         return USER_NOTIFICATION_PREFIX + userId;
     }
+
+    /**
+     * A session message as received from pub/sub.
+     */
+    public record PublishedMessage(String eventId, UploadProgressMessage message) {}
 }
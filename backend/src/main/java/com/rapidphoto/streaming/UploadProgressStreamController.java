@@ -1,17 +1,21 @@
 package com.rapidphoto.streaming;
 
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
 import com.rapidphoto.security.CurrentUser;
 import com.rapidphoto.security.UserPrincipal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
 
-import java.time.Duration;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * SSE (Server-Sent Events) controller for real-time upload progress streaming.
@@ -20,23 +24,34 @@ import java.util.UUID;
  * Endpoints:
  * - GET /api/upload/sessions/{sessionId}/stream - Stream progress for specific session
  * - GET /api/upload/sessions/notifications/stream - Stream user-level notifications
+ *
+ * Streams are served from the instance's shared RedisSubscriptionHub rather than a
+ * Redis subscription and heartbeat timer per connection.
  */
 @RestController
 @RequestMapping("/api/upload/sessions")
 public class UploadProgressStreamController {
 
     private static final Logger log = LoggerFactory.getLogger(UploadProgressStreamController.class);
-    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(30);
 
-    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    // Live events held per stream while the backlog is sent
+    private static final int LIVE_BUFFER = 256;
+
+    private final RedisSubscriptionHub subscriptionHub;
     private final UploadProgressPublisher progressPublisher;
+    private final SessionEventLog eventLog;
+    private final SessionProgressStore progressStore;
 
     public UploadProgressStreamController(
-        ReactiveRedisTemplate<String, String> redisTemplate,
-        UploadProgressPublisher progressPublisher
+        RedisSubscriptionHub subscriptionHub,
+        UploadProgressPublisher progressPublisher,
+        SessionEventLog eventLog,
+        SessionProgressStore progressStore
     ) {
-        this.redisTemplate = redisTemplate;
+        this.subscriptionHub = subscriptionHub;
         this.progressPublisher = progressPublisher;
+        this.eventLog = eventLog;
+        this.progressStore = progressStore;
     }
 
     /**
@@ -44,6 +59,11 @@ public class UploadProgressStreamController {
      * Client connects with EventSource API:
      * const eventSource = new EventSource('/api/upload/sessions/{sessionId}/stream');
      *
+     * Frames carry the published JSON unchanged as their data (see SseFrames).
+     * Event ids are SessionEventLog entry ids. A reconnect carrying Last-Event-ID first
+     * replays the events it missed, then continues live; a fresh connect (or one whose
+     * missed events were already trimmed) starts with a SESSION_SNAPSHOT instead.
+     *
      * AC1: SSE connection succeeds with valid JWT
      * AC2: Stream endpoint available
      * AC3: JWT authentication required
@@ -51,29 +71,40 @@ public class UploadProgressStreamController {
      * AC5: Automatic reconnection support
      */
     @GetMapping(value = "/{sessionId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<ServerSentEvent<UploadProgressMessage>> streamProgress(
+    public Flux<ServerSentEvent<String>> streamProgress(
         @PathVariable String sessionId,
-        @CurrentUser UserPrincipal currentUser
+        @CurrentUser UserPrincipal currentUser,
+        @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId
     ) {
-        log.info("Client {} subscribing to session {}", currentUser.userId(), sessionId);
+        log.info("Client {} subscribing to session {} (Last-Event-ID: {})", currentUser.userId(), sessionId, lastEventId);
 
         // TODO: Verify user owns this session (Story 2.2 - StartUploadSession)
         // For now, we trust the authenticated user
 
         String channel = UploadProgressPublisher.getSessionChannel(sessionId);
-
-        // Subscribe to Redis pub/sub channel for this session
-        Flux<ServerSentEvent<UploadProgressMessage>> messageFlux = redisTemplate
-            .listenToChannel(channel)
-            .map(message -> {
-                UploadProgressMessage progress = progressPublisher.deserializeMessage(
-                    message.getMessage()
-                );
-                return ServerSentEvent.<UploadProgressMessage>builder()
-                    .event(progress.type())
-                    .data(progress)
-                    .id(UUID.randomUUID().toString())
-                    .build();
+        String resumeFrom = SessionEventLog.isEntryId(lastEventId) ? lastEventId : null;
+
+        Flux<ServerSentEvent<String>> messageFlux = Flux.defer(() -> {
+                // Listen before reading the log, so nothing published in between is missed
+                Sinks.Many<ServerSentEvent<String>> live = Sinks.many().unicast()
+                    .onBackpressureBuffer(Queues.<ServerSentEvent<String>>get(LIVE_BUFFER).get());
+                Disposable liveConnection = subscriptionHub
+                    .listen(channel)
+                    .subscribe(
+                        frame -> {
+                            if (live.tryEmitNext(frame).isFailure()) {
+                                log.warn("Dropped live event for slow client on session {}", sessionId);
+                            }
+                        },
+                        live::tryEmitError
+                    );
+
+                AtomicReference<String> lastSent = new AtomicReference<>(resumeFrom);
+                return Flux.concat(backlog(sessionId, currentUser, resumeFrom), live.asFlux())
+                    // Live events arrive in log order (logged and published in one script),
+                    // so those already covered by the backlog are skipped
+                    .filter(frame -> frame.id() == null || advance(lastSent, frame.id()))
+                    .doFinally(signal -> liveConnection.dispose());
             })
             .doOnSubscribe(s -> log.info("SSE stream started for session {}", sessionId))
             .doOnCancel(() -> log.info("SSE stream cancelled for session {}", sessionId))
@@ -81,14 +112,70 @@ public class UploadProgressStreamController {
             .doOnError(error -> log.error("SSE stream error for session {}: {}",
                 sessionId, error.getMessage()));
 
-        // Add heartbeat to keep connection alive
-        Flux<ServerSentEvent<UploadProgressMessage>> heartbeat = Flux.interval(HEARTBEAT_INTERVAL)
-            .map(tick -> ServerSentEvent.<UploadProgressMessage>builder()
-                .comment("heartbeat")
-                .build());
+        // Merge messages and heartbeat (shared ticker) to keep connection alive
+        return Flux.merge(messageFlux, subscriptionHub.heartbeat());
+    }
 
-        // Merge messages and heartbeat
-        return Flux.merge(messageFlux, heartbeat);
+    /**
+     * Stream progress updates for a session from its current state.
+     */
+    public Flux<ServerSentEvent<String>> streamProgress(String sessionId, UserPrincipal currentUser) {
+        return streamProgress(sessionId, currentUser, null);
+    }
+
+    /**
+     * Events to send before going live: the ones after resumeFrom if the log still has
+     * all of them, otherwise a snapshot.
+     */
+    private Flux<ServerSentEvent<String>> backlog(String sessionId, UserPrincipal currentUser, String resumeFrom) {
+        if (resumeFrom == null) {
+            return snapshot(sessionId, currentUser).flux();
+        }
+        return eventLog.firstId(sessionId)
+            .map(firstId -> SessionEventLog.compareIds(firstId, resumeFrom) <= 0)
+            .defaultIfEmpty(false)
+            .flatMapMany(retained -> {
+                if (!retained) {
+                    log.info("Events after {} for session {} were trimmed, sending snapshot", resumeFrom, sessionId);
+                    return snapshot(sessionId, currentUser);
+                }
+                return eventLog.readAfter(sessionId, resumeFrom)
+                    .map(entry -> SseFrames.session(entry.id(), entry.payload()));
+            });
+    }
+
+    /**
+     * Current counters of the user's session, tagged with the newest log entry id they include.
+     * Empty for unknown sessions and sessions of other users.
+     */
+    private Mono<ServerSentEvent<String>> snapshot(String sessionId, UserPrincipal currentUser) {
+        UUID id;
+        try {
+            id = UUID.fromString(sessionId);
+        } catch (IllegalArgumentException e) {
+            return Mono.empty();
+        }
+        // Read the log position first: the counters read after it include every event up to it
+        return eventLog.lastId(sessionId)
+            .defaultIfEmpty(SessionEventLog.EMPTY_ID)
+            .flatMap(lastId -> progressStore.get(id)
+                .filter(progress -> progress.userId().equals(currentUser.userId()))
+                .map(progress -> SseFrames.session(lastId, progressPublisher.serializeMessage(new SessionSnapshotMessage(
+                    sessionId,
+                    progress.completedPhotos(),
+                    progress.failedPhotos(),
+                    progress.totalPhotos(),
+                    progress.progressPercentage()
+                )))));
+    }
+
+    private static boolean advance(AtomicReference<String> lastSent, String eventId) {
+        String previous = lastSent.get();
+        if (previous != null && SessionEventLog.compareIds(eventId, previous) <= 0) {
+            return false;
+        }
+        lastSent.set(eventId);
+        return true;
     }
 
     /**
@@ -107,26 +194,15 @@ public class UploadProgressStreamController {
 
         String channel = UploadProgressPublisher.getUserNotificationChannel(userId);
 
-        // Subscribe to Redis pub/sub channel for this user
-        Flux<ServerSentEvent<String>> messageFlux = redisTemplate
-            .listenToChannel(channel)
-            .map(message -> ServerSentEvent.<String>builder()
-                .event("notification")
-                .data(message.getMessage())
-                .id(UUID.randomUUID().toString())
-                .build())
+        // Listen on this user's channel through the shared Redis subscription
+        Flux<ServerSentEvent<String>> messageFlux = subscriptionHub
+            .listen(channel)
             .doOnSubscribe(s -> log.info("SSE notification stream started for user {}", userId))
             .doOnCancel(() -> log.info("SSE notification stream cancelled for user {}", userId))
             .doOnError(error -> log.error("SSE notification stream error for user {}: {}",
                 userId, error.getMessage()));
 
-        // Add heartbeat to keep connection alive
-        Flux<ServerSentEvent<String>> heartbeat = Flux.interval(HEARTBEAT_INTERVAL)
-            .map(tick -> ServerSentEvent.<String>builder()
-                .comment("heartbeat")
-                .build());
-
-        // Merge messages and heartbeat
-        return Flux.merge(messageFlux, heartbeat);
+        // Merge messages and heartbeat (shared ticker) to keep connection alive
+        return Flux.merge(messageFlux, subscriptionHub.heartbeat());
     }
 }
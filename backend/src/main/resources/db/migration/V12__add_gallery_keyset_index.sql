@@ -0,0 +1,14 @@
+-- =====================================================
+-- V12: Gallery keyset pagination index
+-- =====================================================
+-- The gallery pages by a (created_at, id) cursor:
+--   WHERE user_id = ? AND deleted_at IS NULL AND (created_at, id) < (?, ?)
+--   ORDER BY created_at DESC, id DESC LIMIT ?
+-- Adding id to idx_photos_gallery_query lets the scan start at the cursor and
+-- return rows already in order, so deep pages cost the same as the first one.
+-- =====================================================
+
+DROP INDEX IF EXISTS idx_photos_gallery_query;
+CREATE INDEX idx_photos_gallery_query ON photos(user_id, deleted_at, created_at DESC, id DESC);
+
+COMMENT ON INDEX idx_photos_gallery_query IS 'Optimizes user gallery keyset pagination (most common query pattern)';
@@ -0,0 +1,12 @@
+-- =====================================================
+-- V13: Thumbnail keys on photos
+-- =====================================================
+-- Generated thumbnails are stored in the thumbnail bucket. Their keys are recorded
+-- per photo as a JSON object of max edge (px) to S3 key, e.g.
+--   {"256": "thumbnails/{userId}/{photoId}/256.jpg", "1024": "..."}
+-- An empty object means thumbnails have not been generated (yet).
+-- =====================================================
+
+ALTER TABLE photos ADD COLUMN thumbnail_keys JSONB NOT NULL DEFAULT '{}'::jsonb;
+
+COMMENT ON COLUMN photos.thumbnail_keys IS 'Generated thumbnail S3 keys by max edge in pixels';
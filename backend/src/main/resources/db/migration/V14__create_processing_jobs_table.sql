@@ -0,0 +1,23 @@
+-- =====================================================
+-- V14: Overflow table for post-upload processing jobs
+-- =====================================================
+-- Processing jobs (thumbnails, ...) normally live in an in-memory queue. When that
+-- queue is full they are written here and drained back as capacity frees up.
+-- A job is claimed by setting claimed_at and deleted when it finishes; claims older
+-- than the timeout are picked up again, up to a fixed number of attempts.
+-- =====================================================
+
+CREATE TABLE processing_jobs (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    job_type VARCHAR(32) NOT NULL,
+    photo_id UUID NOT NULL REFERENCES photos(id) ON DELETE CASCADE,
+    user_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    claimed_at TIMESTAMP WITH TIME ZONE
+);
+
+-- Drain order: oldest first
+CREATE INDEX idx_processing_jobs_created_at ON processing_jobs(created_at);
+
+COMMENT ON TABLE processing_jobs IS 'Overflow for post-upload processing jobs that did not fit in memory';
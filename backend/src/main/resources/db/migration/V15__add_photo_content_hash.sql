@@ -0,0 +1,17 @@
+-- =====================================================
+-- V15: Content hash on photos for upload deduplication
+-- =====================================================
+-- content_hash is the lowercase hex SHA-256 of the stored object, computed server-side
+-- after upload. NULL until the hashing job has run.
+-- Not unique: libraries may already contain copies, and concurrent uploads of the
+-- same file can both complete before either is hashed.
+-- =====================================================
+
+ALTER TABLE photos ADD COLUMN content_hash VARCHAR(64);
+
+-- Supports: WHERE user_id = ? AND content_hash = ? (duplicate lookup on initiate)
+CREATE INDEX idx_photos_user_content_hash ON photos(user_id, content_hash)
+    WHERE content_hash IS NOT NULL AND deleted_at IS NULL;
+
+COMMENT ON COLUMN photos.content_hash IS 'Hex SHA-256 of the uploaded object, for per-user deduplication';
+COMMENT ON INDEX idx_photos_user_content_hash IS 'Optimizes duplicate upload detection';
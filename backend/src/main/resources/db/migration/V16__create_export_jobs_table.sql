@@ -0,0 +1,40 @@
+-- =====================================================
+-- V16: Background export jobs
+-- =====================================================
+-- An export archives a whole selection of a user's photos (all of them, one tag or
+-- one upload session) into a ZIP in S3, outside any HTTP request. Jobs are claimed
+-- by setting status RUNNING and claimed_at; a running job refreshes claimed_at as it
+-- uploads parts, so claims older than the timeout belong to a dead instance and are
+-- picked up again, up to a fixed number of attempts. attempts also fences updates
+-- from a worker whose claim was taken over.
+-- =====================================================
+
+CREATE TABLE export_jobs (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    user_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    scope VARCHAR(16) NOT NULL,
+    -- Tag or upload session ID for those scopes, NULL for ALL
+    scope_id UUID,
+    status VARCHAR(16) NOT NULL DEFAULT 'PENDING',
+    photo_count INTEGER,
+    bytes_written BIGINT NOT NULL DEFAULT 0,
+    progress INTEGER NOT NULL DEFAULT 0,
+    s3_key VARCHAR(512),
+    error VARCHAR(512),
+    attempts INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    claimed_at TIMESTAMP WITH TIME ZONE,
+    completed_at TIMESTAMP WITH TIME ZONE,
+
+    CONSTRAINT chk_export_jobs_scope CHECK (scope IN ('ALL', 'TAG', 'SESSION')),
+    CONSTRAINT chk_export_jobs_status CHECK (status IN ('PENDING', 'RUNNING', 'COMPLETED', 'FAILED'))
+);
+
+-- Claim order: oldest first, among jobs not yet finished
+CREATE INDEX idx_export_jobs_claim ON export_jobs(created_at)
+    WHERE status IN ('PENDING', 'RUNNING');
+
+-- A user's exports, newest first
+CREATE INDEX idx_export_jobs_user ON export_jobs(user_id, created_at DESC);
+
+COMMENT ON TABLE export_jobs IS 'Background ZIP exports of a user''s photos to S3';
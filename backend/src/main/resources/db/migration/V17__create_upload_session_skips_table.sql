@@ -0,0 +1,21 @@
+-- =====================================================
+-- V17: Skipped (duplicate) files of upload sessions
+-- =====================================================
+-- A file whose content the user already has is not uploaded, but it is part of its
+-- session's total and counts as completed. It has no photos row, so each skipped file
+-- gets one row here under its own ID: session progress is rebuilt from photos and
+-- these rows, and two files matching the same library photo count twice.
+-- =====================================================
+
+CREATE TABLE upload_session_skips (
+    id UUID PRIMARY KEY,
+    session_id UUID NOT NULL REFERENCES upload_sessions(id) ON DELETE CASCADE,
+    -- Existing photo the file duplicates
+    photo_id UUID REFERENCES photos(id) ON DELETE SET NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Supports: WHERE session_id = ? (progress rebuild)
+CREATE INDEX idx_upload_session_skips_session_id ON upload_session_skips(session_id);
+
+COMMENT ON TABLE upload_session_skips IS 'Files skipped as duplicates, counted as completed in their upload session';
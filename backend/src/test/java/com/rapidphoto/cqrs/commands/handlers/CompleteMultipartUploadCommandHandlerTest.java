@@ -0,0 +1,93 @@
+package com.rapidphoto.cqrs.commands.handlers;
+
+import com.rapidphoto.cqrs.commands.CompleteMultipartUploadCommand;
+import com.rapidphoto.domain.photo.Photo;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.infrastructure.S3Service;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CompleteMultipartUploadCommandHandlerTest {
+
+    @Mock
+    private PhotoRepository photoRepository;
+
+    @Mock
+    private S3Service s3Service;
+
+    private CompleteMultipartUploadCommandHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        handler = new CompleteMultipartUploadCommandHandler(photoRepository, s3Service);
+    }
+
+    @Test
+    void shouldCompleteMultipartUploadWithPhotoKey() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        UUID sessionId = UUID.randomUUID();
+        Photo photo = Photo.initiate(userId, sessionId, "burst.heic", 12L * 1024 * 1024);
+        Map<Integer, String> eTags = Map.of(1, "\"a\"", 2, "\"b\"");
+        String expectedKey = S3Service.buildUploadKey(userId, sessionId, photo.getId(), "burst.heic");
+
+        when(photoRepository.findById(photo.getId())).thenReturn(Mono.just(photo));
+        when(s3Service.completeMultipartUpload(expectedKey, "upload-1", eTags))
+            .thenReturn(Mono.just("\"final\""));
+
+        var command = new CompleteMultipartUploadCommand(sessionId, photo.getId(), userId, "upload-1", eTags);
+
+        // When & Then
+        StepVerifier.create(handler.handle(command))
+            .assertNext(result -> {
+                assertThat(result).containsEntry("s3Key", expectedKey);
+                assertThat(result).containsEntry("etag", "\"final\"");
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldRejectOtherUsersPhoto() {
+        // Given
+        UUID sessionId = UUID.randomUUID();
+        Photo photo = Photo.initiate(UUID.randomUUID(), sessionId, "burst.heic", 12L * 1024 * 1024);
+        when(photoRepository.findById(photo.getId())).thenReturn(Mono.just(photo));
+
+        var command = new CompleteMultipartUploadCommand(
+            sessionId, photo.getId(), UUID.randomUUID(), "upload-1", Map.of(1, "\"a\""));
+
+        // When & Then
+        StepVerifier.create(handler.handle(command))
+            .expectError(IllegalArgumentException.class)
+            .verify();
+        verify(s3Service, never()).completeMultipartUpload(anyString(), anyString(), anyMap());
+    }
+
+    @Test
+    void shouldRejectEmptyPartList() {
+        var command = new CompleteMultipartUploadCommand(
+            UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), "upload-1", Map.of());
+
+        StepVerifier.create(handler.handle(command))
+            .expectError(IllegalArgumentException.class)
+            .verify();
+        verify(photoRepository, never()).findById(any(UUID.class));
+    }
+}
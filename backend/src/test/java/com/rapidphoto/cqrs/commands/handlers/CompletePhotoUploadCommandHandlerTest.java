@@ -1,11 +1,11 @@
 package com.rapidphoto.cqrs.commands.handlers;
 
 import com.rapidphoto.cqrs.commands.CompletePhotoUploadCommand;
-import com.rapidphoto.domain.events.PhotoUploadedEvent;
 import com.rapidphoto.domain.photo.Photo;
 import com.rapidphoto.domain.photo.PhotoRepository;
-import com.rapidphoto.domain.upload.UploadSession;
-import com.rapidphoto.domain.upload.UploadSessionRepository;
+import com.rapidphoto.domain.upload.SessionProgress;
+import com.rapidphoto.infrastructure.processing.PhotoProcessingQueue;
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
 import com.rapidphoto.streaming.UploadProgressEventHandler;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,11 +17,13 @@ import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,16 +33,20 @@ class CompletePhotoUploadCommandHandlerTest {
     private PhotoRepository photoRepository;
 
     @Mock
-    private UploadSessionRepository uploadSessionRepository;
+    private SessionProgressStore progressStore;
 
     @Mock
     private UploadProgressEventHandler eventHandler;
 
+    @Mock
+    private PhotoProcessingQueue processingQueue;
+
     private CompletePhotoUploadCommandHandler handler;
 
     @BeforeEach
     void setUp() {
-        handler = new CompletePhotoUploadCommandHandler(photoRepository, uploadSessionRepository, eventHandler);
+        handler = new CompletePhotoUploadCommandHandler(
+            photoRepository, progressStore, eventHandler, processingQueue);
     }
 
     @Test
@@ -51,7 +57,7 @@ class CompletePhotoUploadCommandHandlerTest {
         UUID photoId = UUID.randomUUID();
 
         Photo photo = Photo.initiate(userId, sessionId, "test.jpg", 1024L);
-        UploadSession session = UploadSession.start(userId);
+        SessionProgress progress = new SessionProgress(sessionId, userId, 5, 1, 0);
 
         Map<String, Object> metadata = new HashMap<>();
         metadata.put("width", 1920);
@@ -66,9 +72,9 @@ class CompletePhotoUploadCommandHandlerTest {
 
         when(photoRepository.findById(photoId)).thenReturn(Mono.just(photo));
         when(photoRepository.save(any(Photo.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
-        when(uploadSessionRepository.findById(sessionId)).thenReturn(Mono.just(session));
-        when(uploadSessionRepository.save(any(UploadSession.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
-        when(eventHandler.handlePhotoUploaded(any(PhotoUploadedEvent.class))).thenReturn(Mono.empty());
+        when(processingQueue.submitAfterCommit(photo.getId(), userId)).thenReturn(Mono.empty());
+        when(progressStore.recordCompleted(sessionId, photo.getId())).thenReturn(Mono.just(progress));
+        when(eventHandler.publishProgress(List.of(photo.getId()), progress)).thenReturn(Mono.empty());
 
         // When
         Mono<UUID> result = handler.handle(command);
@@ -78,21 +84,24 @@ class CompletePhotoUploadCommandHandlerTest {
             .assertNext(resultId -> {
                 assertThat(resultId).isEqualTo(photo.getId());
                 verify(photoRepository).save(any(Photo.class));
-                verify(uploadSessionRepository).save(any(UploadSession.class));
-                verify(eventHandler).handlePhotoUploaded(any(PhotoUploadedEvent.class));
+                // One atomic counter increment, no read-modify-write of the session
+                verify(progressStore).recordCompleted(sessionId, photo.getId());
+                verify(progressStore, never()).flush(any(UUID.class));
+                verify(eventHandler).publishProgress(List.of(photo.getId()), progress);
+                verify(processingQueue).submitAfterCommit(photo.getId(), userId);
             })
             .verifyComplete();
     }
 
     @Test
-    void shouldPublishPhotoUploadedEvent() {
+    void shouldPublishCompletedPhoto() {
         // Given
         UUID userId = UUID.randomUUID();
         UUID sessionId = UUID.randomUUID();
         UUID photoId = UUID.randomUUID();
 
         Photo photo = Photo.initiate(userId, sessionId, "test.jpg", 1024L);
-        UploadSession session = UploadSession.start(userId);
+        SessionProgress progress = new SessionProgress(sessionId, userId, 5, 1, 0);
 
         CompletePhotoUploadCommand command = new CompletePhotoUploadCommand(
             photoId,
@@ -103,22 +112,49 @@ class CompletePhotoUploadCommandHandlerTest {
 
         when(photoRepository.findById(photoId)).thenReturn(Mono.just(photo));
         when(photoRepository.save(any(Photo.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
-        when(uploadSessionRepository.findById(sessionId)).thenReturn(Mono.just(session));
-        when(uploadSessionRepository.save(any(UploadSession.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
-        when(eventHandler.handlePhotoUploaded(any(PhotoUploadedEvent.class))).thenReturn(Mono.empty());
+        when(processingQueue.submitAfterCommit(photo.getId(), userId)).thenReturn(Mono.empty());
+        when(progressStore.recordCompleted(sessionId, photo.getId())).thenReturn(Mono.just(progress));
+        when(eventHandler.publishProgress(List.of(photo.getId()), progress)).thenReturn(Mono.empty());
 
         // When
         handler.handle(command).block();
 
-        // Then
-        ArgumentCaptor<PhotoUploadedEvent> eventCaptor = ArgumentCaptor.forClass(PhotoUploadedEvent.class);
-        verify(eventHandler).handlePhotoUploaded(eventCaptor.capture());
-
-        PhotoUploadedEvent event = eventCaptor.getValue();
-        assertThat(event.getPhotoId()).isEqualTo(photo.getId());
-        assertThat(event.getUserId()).isEqualTo(userId);
-        assertThat(event.getSessionId()).isEqualTo(sessionId);
-        assertThat(event.getFilename()).isEqualTo("test.jpg");
+        // Then - published under the completed photo's ID with the counters it produced
+        verify(eventHandler).publishProgress(List.of(photo.getId()), progress);
+        verifyNoMoreInteractions(eventHandler);
+    }
+
+    @Test
+    void shouldPublishSessionCompletedForLastPhoto() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        UUID sessionId = UUID.randomUUID();
+        UUID photoId = UUID.randomUUID();
+
+        Photo photo = Photo.initiate(userId, sessionId, "last.jpg", 1024L);
+        // Counters as returned by the increment that counted the final photo
+        SessionProgress progress = new SessionProgress(sessionId, userId, 2, 2, 0);
+
+        CompletePhotoUploadCommand command = new CompletePhotoUploadCommand(
+            photoId,
+            "uploads/last.jpg",
+            "version123",
+            new HashMap<>()
+        );
+
+        when(photoRepository.findById(photoId)).thenReturn(Mono.just(photo));
+        when(photoRepository.save(any(Photo.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(processingQueue.submitAfterCommit(photo.getId(), userId)).thenReturn(Mono.empty());
+        when(progressStore.recordCompleted(sessionId, photo.getId())).thenReturn(Mono.just(progress));
+        when(eventHandler.publishProgress(List.of(photo.getId()), progress)).thenReturn(Mono.empty());
+
+        // When
+        handler.handle(command).block();
+
+        // Then - the event handler sees the final counters and completes the session
+        ArgumentCaptor<SessionProgress> progressCaptor = ArgumentCaptor.forClass(SessionProgress.class);
+        verify(eventHandler).publishProgress(eq(List.of(photo.getId())), progressCaptor.capture());
+        assertThat(progressCaptor.getValue().isFinished()).isTrue();
     }
 
     @Test
@@ -0,0 +1,128 @@
+package com.rapidphoto.cqrs.commands.handlers;
+
+import com.rapidphoto.cqrs.commands.FailPhotoUploadCommand;
+import com.rapidphoto.domain.events.PhotoUploadFailedEvent;
+import com.rapidphoto.domain.photo.Photo;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.domain.photo.PhotoStatus;
+import com.rapidphoto.domain.upload.SessionProgress;
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
+import com.rapidphoto.streaming.UploadProgressEventHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FailPhotoUploadCommandHandlerTest {
+
+    @Mock
+    private PhotoRepository photoRepository;
+
+    @Mock
+    private SessionProgressStore progressStore;
+
+    @Mock
+    private UploadProgressEventHandler eventHandler;
+
+    private FailPhotoUploadCommandHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        handler = new FailPhotoUploadCommandHandler(photoRepository, progressStore, eventHandler);
+    }
+
+    @Test
+    void shouldFailPhotoAndPublishProgress() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        UUID sessionId = UUID.randomUUID();
+        Photo photo = Photo.initiate(userId, sessionId, "broken.jpg", 1024L);
+        SessionProgress progress = new SessionProgress(sessionId, userId, 5, 1, 1);
+
+        when(photoRepository.findById(photo.getId())).thenReturn(Mono.just(photo));
+        when(photoRepository.save(any(Photo.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(progressStore.recordFailed(sessionId, photo.getId())).thenReturn(Mono.just(progress));
+        when(eventHandler.publishProgress(any(PhotoUploadFailedEvent.class), any(SessionProgress.class)))
+            .thenReturn(Mono.empty());
+
+        // When
+        StepVerifier.create(handler.handle(new FailPhotoUploadCommand(photo.getId(), "Network error", userId)))
+            .verifyComplete();
+
+        // Then
+        assertThat(photo.getUploadStatus()).isEqualTo(PhotoStatus.FAILED);
+        ArgumentCaptor<PhotoUploadFailedEvent> eventCaptor = ArgumentCaptor.forClass(PhotoUploadFailedEvent.class);
+        verify(eventHandler).publishProgress(eventCaptor.capture(), eq(progress));
+        assertThat(eventCaptor.getValue().getPhotoId()).isEqualTo(photo.getId());
+        assertThat(eventCaptor.getValue().getReason()).isEqualTo("Network error");
+    }
+
+    @Test
+    void shouldPublishFinalCountersWhenLastPhotoFails() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        UUID sessionId = UUID.randomUUID();
+        Photo photo = Photo.initiate(userId, sessionId, "last.jpg", 1024L);
+        SessionProgress progress = new SessionProgress(sessionId, userId, 3, 2, 1);
+
+        when(photoRepository.findById(photo.getId())).thenReturn(Mono.just(photo));
+        when(photoRepository.save(any(Photo.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(progressStore.recordFailed(sessionId, photo.getId())).thenReturn(Mono.just(progress));
+        when(eventHandler.publishProgress(any(PhotoUploadFailedEvent.class), any(SessionProgress.class)))
+            .thenReturn(Mono.empty());
+
+        // When
+        handler.handle(new FailPhotoUploadCommand(photo.getId(), "Too large", userId)).block();
+
+        // Then - the event handler sees the final counters and completes the session
+        ArgumentCaptor<SessionProgress> progressCaptor = ArgumentCaptor.forClass(SessionProgress.class);
+        verify(eventHandler).publishProgress(any(PhotoUploadFailedEvent.class), progressCaptor.capture());
+        assertThat(progressCaptor.getValue().isFinished()).isTrue();
+    }
+
+    @Test
+    void shouldIgnoreRepeatedFailureReport() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        Photo photo = Photo.initiate(userId, UUID.randomUUID(), "broken.jpg", 1024L);
+        photo.failUpload("Network error");
+
+        when(photoRepository.findById(photo.getId())).thenReturn(Mono.just(photo));
+
+        // When
+        StepVerifier.create(handler.handle(new FailPhotoUploadCommand(photo.getId(), "Network error", userId)))
+            .verifyComplete();
+
+        // Then - counted once already
+        verify(photoRepository, never()).save(any(Photo.class));
+        verifyNoInteractions(progressStore, eventHandler);
+    }
+
+    @Test
+    void shouldRejectPhotoOfAnotherUser() {
+        // Given
+        Photo photo = Photo.initiate(UUID.randomUUID(), UUID.randomUUID(), "theirs.jpg", 1024L);
+        when(photoRepository.findById(photo.getId())).thenReturn(Mono.just(photo));
+
+        // When
+        Mono<Void> result = handler.handle(new FailPhotoUploadCommand(photo.getId(), "Network error", UUID.randomUUID()));
+
+        // Then
+        StepVerifier.create(result)
+            .expectError(IllegalArgumentException.class)
+            .verify();
+        assertThat(photo.getUploadStatus()).isEqualTo(PhotoStatus.PENDING);
+    }
+}
@@ -0,0 +1,202 @@
+package com.rapidphoto.cqrs.commands.handlers;
+
+import com.rapidphoto.cqrs.commands.InitiatePhotoUploadBatchCommand;
+import com.rapidphoto.cqrs.commands.InitiatePhotoUploadBatchCommand.FileDescriptor;
+import com.rapidphoto.domain.photo.Photo;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.domain.upload.SessionProgress;
+import com.rapidphoto.domain.upload.UploadSession;
+import com.rapidphoto.domain.upload.UploadSessionRepository;
+import com.rapidphoto.domain.user.UserPreferencesRepository;
+import com.rapidphoto.infrastructure.S3Service;
+import com.rapidphoto.infrastructure.dedup.ContentHashIndex;
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
+import com.rapidphoto.infrastructure.upload.UploadPlan;
+import com.rapidphoto.infrastructure.upload.UploadPlanner;
+import com.rapidphoto.infrastructure.upload.UploadThroughputTracker;
+import com.rapidphoto.streaming.UploadProgressEventHandler;
+import org.mockito.ArgumentCaptor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InitiatePhotoUploadBatchCommandHandlerTest {
+
+    @Mock
+    private PhotoRepository photoRepository;
+
+    @Mock
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Mock
+    private UserPreferencesRepository preferencesRepository;
+
+    @Mock
+    private S3Service s3Service;
+
+    @Mock
+    private ContentHashIndex contentHashIndex;
+
+    @Mock
+    private SessionProgressStore progressStore;
+
+    @Mock
+    private UploadProgressEventHandler eventHandler;
+
+    private InitiatePhotoUploadBatchCommandHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        handler = new InitiatePhotoUploadBatchCommandHandler(
+            photoRepository,
+            uploadSessionRepository,
+            preferencesRepository,
+            s3Service,
+            new UploadPlanner(16L * 1024 * 1024, 8),
+            new UploadThroughputTracker(),
+            contentHashIndex,
+            progressStore,
+            eventHandler
+        );
+    }
+
+    @Test
+    void shouldInsertOnceAndPresignEveryFile() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        UploadSession session = UploadSession.start(userId);
+        List<FileDescriptor> files = List.of(
+            new FileDescriptor("a.jpg", 1024, "image/jpeg"),
+            new FileDescriptor("b.jpg", 2048, "image/jpeg"),
+            new FileDescriptor("c.jpg", 4096, "image/jpeg")
+        );
+
+        when(uploadSessionRepository.findById(session.getId())).thenReturn(Mono.just(session));
+        when(preferencesRepository.findByUserId(userId)).thenReturn(Mono.empty());
+        when(photoRepository.insertAll(anyList())).thenReturn(Mono.just(3L));
+        when(s3Service.generatePresignedUploadUrl(any(), any(), any(), anyString(), anyString(), any(UploadPlan.class)))
+            .thenAnswer(invocation -> Mono.just(Map.<String, Object>of(
+                "photoId", invocation.getArgument(2).toString(),
+                "uploadUrl", "https://s3/" + invocation.getArgument(3)
+            )));
+
+        var command = new InitiatePhotoUploadBatchCommand(session.getId(), userId, files);
+
+        // When & Then
+        StepVerifier.create(handler.handle(command).collectList())
+            .assertNext(results -> {
+                assertThat(results).hasSize(3);
+                assertThat(results).extracting(result -> result.get("index"))
+                    .containsExactlyInAnyOrder(0, 1, 2);
+            })
+            .verifyComplete();
+
+        verify(photoRepository, times(1)).insertAll(anyList());
+    }
+
+    @Test
+    void shouldSkipDuplicatesAndCountThemInTheSession() {
+        // Given - the second and third files are both copies of one library photo
+        String newHash = "a".repeat(64);
+        String duplicateHash = "b".repeat(64);
+        UUID userId = UUID.randomUUID();
+        UploadSession session = UploadSession.start(userId);
+        Photo existing = Photo.initiate(userId, UUID.randomUUID(), "IMG_0001.jpg", 2048);
+        SessionProgress progress = new SessionProgress(session.getId(), userId, 3, 2, 0);
+        List<FileDescriptor> files = List.of(
+            new FileDescriptor("a.jpg", 1024, "image/jpeg", newHash),
+            new FileDescriptor("b.jpg", 2048, "image/jpeg", duplicateHash.toUpperCase()),
+            new FileDescriptor("c.jpg", 2048, "image/jpeg", duplicateHash)
+        );
+
+        when(uploadSessionRepository.findById(session.getId())).thenReturn(Mono.just(session));
+        when(preferencesRepository.findByUserId(userId)).thenReturn(Mono.empty());
+        when(contentHashIndex.findDuplicate(userId, newHash)).thenReturn(Mono.empty());
+        when(contentHashIndex.findDuplicate(userId, duplicateHash)).thenReturn(Mono.just(existing));
+        when(photoRepository.insertAll(anyList())).thenReturn(Mono.just(1L));
+        when(progressStore.recordSkipped(eq(session.getId()), anyList(), eq(List.of(existing.getId(), existing.getId()))))
+            .thenReturn(Mono.just(progress));
+        when(eventHandler.publishProgress(List.of(existing.getId(), existing.getId()), progress))
+            .thenReturn(Mono.empty());
+        when(s3Service.generatePresignedUploadUrl(any(), any(), any(), anyString(), anyString(), any(UploadPlan.class)))
+            .thenAnswer(invocation -> Mono.just(Map.<String, Object>of(
+                "photoId", invocation.getArgument(2).toString(),
+                "uploadUrl", "https://s3/" + invocation.getArgument(3)
+            )));
+
+        var command = new InitiatePhotoUploadBatchCommand(session.getId(), userId, files);
+
+        // When & Then
+        StepVerifier.create(handler.handle(command).collectMap(result -> result.get("index")))
+            .assertNext(results -> {
+                assertThat(results.get(0)).containsEntry("uploadUrl", "https://s3/a.jpg");
+                assertThat(results.get(1))
+                    .containsEntry("photoId", existing.getId().toString())
+                    .containsEntry("duplicate", true)
+                    .doesNotContainKey("uploadUrl");
+                assertThat(results.get(2)).containsEntry("photoId", existing.getId().toString());
+                // Each skipped file is counted under its own ID
+                assertThat(results.get(1).get("skipId")).isNotNull().isNotEqualTo(results.get(2).get("skipId"));
+            })
+            .verifyComplete();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<UUID>> skipIds = ArgumentCaptor.forClass(List.class);
+        verify(progressStore).recordSkipped(eq(session.getId()), skipIds.capture(), anyList());
+        assertThat(skipIds.getValue()).doesNotHaveDuplicates().hasSize(2).doesNotContain(existing.getId());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Photo>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(photoRepository).insertAll(inserted.capture());
+        assertThat(inserted.getValue()).extracting(Photo::getFilename).containsExactly("a.jpg");
+        verify(s3Service, times(1)).generatePresignedUploadUrl(
+            eq(userId), eq(session.getId()), any(), anyString(), anyString(), any(UploadPlan.class));
+    }
+
+    @Test
+    void shouldRejectSessionOwnedByAnotherUser() {
+        // Given
+        UploadSession session = UploadSession.start(UUID.randomUUID());
+        when(uploadSessionRepository.findById(session.getId())).thenReturn(Mono.just(session));
+        when(preferencesRepository.findByUserId(any())).thenReturn(Mono.empty());
+
+        var command = new InitiatePhotoUploadBatchCommand(
+            session.getId(), UUID.randomUUID(), List.of(new FileDescriptor("a.jpg", 1024, "image/jpeg")));
+
+        // When & Then
+        StepVerifier.create(handler.handle(command))
+            .expectError(IllegalArgumentException.class)
+            .verify();
+        verify(photoRepository, never()).insertAll(anyList());
+    }
+
+    @Test
+    void shouldRejectInvalidDescriptorBeforeTouchingDatabase() {
+        var command = new InitiatePhotoUploadBatchCommand(
+            UUID.randomUUID(), UUID.randomUUID(), List.of(new FileDescriptor(" ", 1024, "image/jpeg")));
+
+        StepVerifier.create(handler.handle(command))
+            .expectError(IllegalArgumentException.class)
+            .verify();
+        verify(uploadSessionRepository, never()).findById(any(UUID.class));
+    }
+}
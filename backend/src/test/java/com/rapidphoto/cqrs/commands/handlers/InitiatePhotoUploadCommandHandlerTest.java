@@ -0,0 +1,146 @@
+package com.rapidphoto.cqrs.commands.handlers;
+
+import com.rapidphoto.cqrs.commands.InitiatePhotoUploadCommand;
+import com.rapidphoto.domain.photo.Photo;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.domain.upload.SessionProgress;
+import com.rapidphoto.domain.user.UserPreferencesRepository;
+import com.rapidphoto.infrastructure.S3Service;
+import com.rapidphoto.infrastructure.dedup.ContentHashIndex;
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
+import com.rapidphoto.infrastructure.upload.UploadPlan;
+import com.rapidphoto.infrastructure.upload.UploadPlanner;
+import com.rapidphoto.infrastructure.upload.UploadThroughputTracker;
+import com.rapidphoto.streaming.UploadProgressEventHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InitiatePhotoUploadCommandHandlerTest {
+
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @Mock
+    private PhotoRepository photoRepository;
+
+    @Mock
+    private S3Service s3Service;
+
+    @Mock
+    private UserPreferencesRepository preferencesRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ContentHashIndex contentHashIndex;
+
+    @Mock
+    private SessionProgressStore progressStore;
+
+    @Mock
+    private UploadProgressEventHandler eventHandler;
+
+    private InitiatePhotoUploadCommandHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        handler = new InitiatePhotoUploadCommandHandler(
+            photoRepository,
+            s3Service,
+            preferencesRepository,
+            new UploadPlanner(16L * 1024 * 1024, 8),
+            new UploadThroughputTracker(),
+            eventPublisher,
+            contentHashIndex,
+            progressStore,
+            eventHandler
+        );
+    }
+
+    @Test
+    void shouldReturnExistingPhotoForDuplicateContent() {
+        // Given - the skipped file is the last one its session was waiting for
+        UUID userId = UUID.randomUUID();
+        UUID sessionId = UUID.randomUUID();
+        Photo existing = Photo.initiate(userId, UUID.randomUUID(), "IMG_0001.jpg", 1024);
+        SessionProgress progress = new SessionProgress(sessionId, userId, 2, 2, 0);
+        when(contentHashIndex.findDuplicate(userId, HASH)).thenReturn(Mono.just(existing));
+        when(progressStore.recordSkipped(eq(sessionId), anyList(), eq(List.of(existing.getId()))))
+            .thenReturn(Mono.just(progress));
+        when(eventHandler.publishProgress(List.of(existing.getId()), progress)).thenReturn(Mono.empty());
+
+        // Upper-case hashes are accepted and normalized
+        var command = new InitiatePhotoUploadCommand(
+            sessionId, userId, "IMG_0001 copy.jpg", 1024, "image/jpeg", HASH.toUpperCase());
+
+        // When & Then
+        StepVerifier.create(handler.handle(command))
+            .assertNext(result -> {
+                assertThat(result).containsEntry("photoId", existing.getId().toString());
+                assertThat(result).containsEntry("duplicate", true);
+                assertThat(result).doesNotContainKey("uploadUrl");
+                // Counted under its own skip ID, not the existing photo's
+                verify(progressStore).recordSkipped(
+                    sessionId, List.of(UUID.fromString((String) result.get("skipId"))), List.of(existing.getId()));
+            })
+            .verifyComplete();
+
+        verify(photoRepository, never()).save(any(Photo.class));
+        verifyNoInteractions(s3Service);
+        verify(eventHandler).publishProgress(List.of(existing.getId()), progress);
+    }
+
+    @Test
+    void shouldPresignWhenContentIsNew() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        when(contentHashIndex.findDuplicate(userId, HASH)).thenReturn(Mono.empty());
+        when(photoRepository.save(any(Photo.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(preferencesRepository.findByUserId(userId)).thenReturn(Mono.empty());
+        when(s3Service.generatePresignedUploadUrl(eq(userId), any(), any(), anyString(), anyString(), any(UploadPlan.class)))
+            .thenReturn(Mono.just(Map.<String, Object>of("photoId", "new", "uploadUrl", "https://s3/upload")));
+
+        var command = new InitiatePhotoUploadCommand(
+            UUID.randomUUID(), userId, "IMG_0002.jpg", 1024, "image/jpeg", HASH);
+
+        // When & Then
+        StepVerifier.create(handler.handle(command))
+            .assertNext(result -> assertThat(result).containsEntry("uploadUrl", "https://s3/upload"))
+            .verifyComplete();
+
+        verify(photoRepository).save(any(Photo.class));
+    }
+
+    @Test
+    void shouldRejectMalformedContentHash() {
+        var command = new InitiatePhotoUploadCommand(
+            UUID.randomUUID(), UUID.randomUUID(), "IMG_0003.jpg", 1024, "image/jpeg", "not-a-hash");
+
+        StepVerifier.create(handler.handle(command))
+            .expectError(IllegalArgumentException.class)
+            .verify();
+
+        verifyNoInteractions(contentHashIndex, photoRepository, s3Service);
+    }
+}
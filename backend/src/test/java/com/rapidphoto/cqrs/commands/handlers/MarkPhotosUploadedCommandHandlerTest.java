@@ -0,0 +1,136 @@
+package com.rapidphoto.cqrs.commands.handlers;
+
+import com.rapidphoto.cqrs.commands.MarkPhotosUploadedCommand;
+import com.rapidphoto.domain.photo.PhotoBatchRepository.CompletedUpload;
+import com.rapidphoto.domain.photo.PhotoBatchRepository.UploadCompletion;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.domain.upload.SessionProgress;
+import com.rapidphoto.infrastructure.processing.PhotoProcessingQueue;
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
+import com.rapidphoto.infrastructure.upload.UploadThroughputTracker;
+import com.rapidphoto.streaming.UploadProgressEventHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MarkPhotosUploadedCommandHandlerTest {
+
+    private static final String BUCKET = "rapidphoto-uploads";
+
+    @Mock
+    private PhotoRepository photoRepository;
+
+    @Mock
+    private SessionProgressStore progressStore;
+
+    @Mock
+    private UploadProgressEventHandler eventHandler;
+
+    @Mock
+    private UploadThroughputTracker throughputTracker;
+
+    @Mock
+    private PhotoProcessingQueue processingQueue;
+
+    private MarkPhotosUploadedCommandHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        handler = new MarkPhotosUploadedCommandHandler(
+            photoRepository, progressStore, eventHandler, throughputTracker, processingQueue, BUCKET);
+    }
+
+    @Test
+    void shouldCountEachSessionOnceAndPublishOneMessagePerSession() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        UUID sessionId = UUID.randomUUID();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID skipped = UUID.randomUUID();
+        List<UploadCompletion> completions = List.of(
+            new UploadCompletion(first, "uploads/a.jpg", "\"etag-a\"", 2000L),
+            new UploadCompletion(second, "uploads/b.jpg", null, null),
+            new UploadCompletion(skipped, "uploads/c.jpg", null, 500L)
+        );
+        SessionProgress progress = new SessionProgress(sessionId, userId, 10, 4, 0);
+
+        // The third photo is someone else's or already completed: the UPDATE does not return it
+        when(photoRepository.completeUploads(userId, BUCKET, completions)).thenReturn(Flux.just(
+            new CompletedUpload(first, sessionId, 1024L),
+            new CompletedUpload(second, sessionId, 2048L)
+        ));
+        when(processingQueue.submitAfterCommit(any(UUID.class), eq(userId))).thenReturn(Mono.empty());
+        when(progressStore.recordCompleted(sessionId, List.of(first, second))).thenReturn(Mono.just(progress));
+        when(eventHandler.publishProgress(List.of(first, second), progress)).thenReturn(Mono.empty());
+
+        // When / Then
+        StepVerifier.create(handler.handle(new MarkPhotosUploadedCommand(completions, userId)))
+            .expectNext(2)
+            .verifyComplete();
+
+        verify(progressStore, times(1)).recordCompleted(any(UUID.class), anyList());
+        verify(processingQueue).submitAfterCommit(first, userId);
+        verify(processingQueue).submitAfterCommit(second, userId);
+        // Only the photo whose client reported a transfer time feeds the throughput estimate
+        verify(throughputTracker).record(userId, 1024L, Duration.ofMillis(2000));
+        verifyNoMoreInteractions(throughputTracker);
+        verify(eventHandler).publishProgress(List.of(first, second), progress);
+    }
+
+    @Test
+    void shouldPublishFinalCountersWhenBatchFinishesSession() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        UUID sessionId = UUID.randomUUID();
+        UUID photoId = UUID.randomUUID();
+        List<UploadCompletion> completions = List.of(new UploadCompletion(photoId, "uploads/last.jpg", null, null));
+        SessionProgress progress = new SessionProgress(sessionId, userId, 3, 2, 1);
+
+        when(photoRepository.completeUploads(userId, BUCKET, completions)).thenReturn(Flux.just(
+            new CompletedUpload(photoId, sessionId, 1024L)
+        ));
+        when(processingQueue.submitAfterCommit(photoId, userId)).thenReturn(Mono.empty());
+        when(progressStore.recordCompleted(sessionId, List.of(photoId))).thenReturn(Mono.just(progress));
+        when(eventHandler.publishProgress(List.of(photoId), progress)).thenReturn(Mono.empty());
+
+        // When
+        handler.handle(new MarkPhotosUploadedCommand(completions, userId)).block();
+
+        // Then - the event handler sees the final counters and completes the session
+        ArgumentCaptor<SessionProgress> progressCaptor = ArgumentCaptor.forClass(SessionProgress.class);
+        verify(eventHandler).publishProgress(eq(List.of(photoId)), progressCaptor.capture());
+        assertThat(progressCaptor.getValue().isFinished()).isTrue();
+    }
+
+    @Test
+    void shouldSkipProgressWhenNothingChanged() {
+        // Given - a retried batch whose photos are all completed already
+        UUID userId = UUID.randomUUID();
+        List<UploadCompletion> completions =
+            List.of(new UploadCompletion(UUID.randomUUID(), "uploads/a.jpg", null, null));
+        when(photoRepository.completeUploads(userId, BUCKET, completions)).thenReturn(Flux.empty());
+
+        // When / Then
+        StepVerifier.create(handler.handle(new MarkPhotosUploadedCommand(completions, userId)))
+            .expectNext(0)
+            .verifyComplete();
+        verifyNoInteractions(progressStore, eventHandler, processingQueue, throughputTracker);
+    }
+}
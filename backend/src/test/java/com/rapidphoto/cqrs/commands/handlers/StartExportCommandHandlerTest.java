@@ -0,0 +1,136 @@
+package com.rapidphoto.cqrs.commands.handlers;
+
+import com.rapidphoto.cqrs.commands.StartExportCommand;
+import com.rapidphoto.domain.tag.Tag;
+import com.rapidphoto.domain.tag.TagRepository;
+import com.rapidphoto.domain.upload.UploadSessionRepository;
+import com.rapidphoto.infrastructure.export.ExportJob;
+import com.rapidphoto.infrastructure.export.ExportJobRepository;
+import com.rapidphoto.infrastructure.export.ExportScope;
+import com.rapidphoto.infrastructure.export.ExportWorker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for StartExportCommandHandler.
+ */
+@ExtendWith(MockitoExtension.class)
+class StartExportCommandHandlerTest {
+
+    @Mock
+    private ExportJobRepository exportJobRepository;
+
+    @Mock
+    private TagRepository tagRepository;
+
+    @Mock
+    private UploadSessionRepository sessionRepository;
+
+    @Mock
+    private ExportWorker exportWorker;
+
+    private StartExportCommandHandler handler;
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        handler = new StartExportCommandHandler(exportJobRepository, tagRepository, sessionRepository, exportWorker, 2);
+        userId = UUID.randomUUID();
+    }
+
+    @Test
+    void shouldQueueExportOfTag_AndWakeWorker() {
+        // Given
+        Tag tag = Tag.create(userId, "holiday", "#3B82F6");
+        ExportJob queued = pendingJob(ExportScope.TAG, tag.getId());
+        when(tagRepository.findById(tag.getId())).thenReturn(Mono.just(tag));
+        when(exportJobRepository.countActiveByUserId(userId)).thenReturn(Mono.just(1L));
+        when(exportJobRepository.insert(eq(userId), eq("TAG"), eq(tag.getId()), any(Instant.class)))
+            .thenReturn(Mono.just(queued));
+
+        // When & Then
+        StepVerifier.create(handler.handle(new StartExportCommand(userId, ExportScope.TAG, tag.getId())))
+            .assertNext(export -> {
+                assertThat(export.id()).isEqualTo(queued.id().toString());
+                assertThat(export.scope()).isEqualTo("TAG");
+                assertThat(export.scopeId()).isEqualTo(tag.getId().toString());
+                assertThat(export.status()).isEqualTo("PENDING");
+                assertThat(export.downloadUrl()).isNull();
+            })
+            .verifyComplete();
+
+        verify(exportWorker).poll();
+    }
+
+    @Test
+    void shouldRejectTagOfAnotherUser() {
+        // Given
+        Tag tag = Tag.create(UUID.randomUUID(), "holiday", "#3B82F6");
+        when(tagRepository.findById(tag.getId())).thenReturn(Mono.just(tag));
+
+        // When & Then
+        StepVerifier.create(handler.handle(new StartExportCommand(userId, ExportScope.TAG, tag.getId())))
+            .expectError(StartExportCommandHandler.UnauthorizedException.class)
+            .verify();
+
+        verify(exportJobRepository, never()).insert(any(), any(), any(), any());
+        verifyNoInteractions(exportWorker);
+    }
+
+    @Test
+    void shouldRejectUnknownSession() {
+        // Given
+        UUID sessionId = UUID.randomUUID();
+        when(sessionRepository.findById(sessionId)).thenReturn(Mono.empty());
+
+        // When & Then
+        StepVerifier.create(handler.handle(new StartExportCommand(userId, ExportScope.SESSION, sessionId)))
+            .expectError(StartExportCommandHandler.ScopeNotFoundException.class)
+            .verify();
+
+        verify(exportJobRepository, never()).insert(any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldRejectExport_WhenUserHasTooManyActive() {
+        // Given
+        when(exportJobRepository.countActiveByUserId(userId)).thenReturn(Mono.just(2L));
+
+        // When & Then
+        StepVerifier.create(handler.handle(new StartExportCommand(userId, ExportScope.ALL, null)))
+            .expectError(StartExportCommandHandler.TooManyExportsException.class)
+            .verify();
+
+        verify(exportJobRepository, never()).insert(any(), any(), any(), any());
+        verifyNoInteractions(tagRepository, sessionRepository, exportWorker);
+    }
+
+    @Test
+    void shouldRequireIdMatchingScope() {
+        UUID tagId = UUID.randomUUID();
+
+        assertThatThrownBy(() -> new StartExportCommand(userId, ExportScope.ALL, tagId))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new StartExportCommand(userId, ExportScope.TAG, null))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private ExportJob pendingJob(ExportScope scope, UUID scopeId) {
+        return new ExportJob(UUID.randomUUID(), userId, scope.name(), scopeId, "PENDING",
+            null, 0, 0, null, null, 0, Instant.now(), null, null);
+    }
+}
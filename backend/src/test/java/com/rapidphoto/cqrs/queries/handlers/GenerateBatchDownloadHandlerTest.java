@@ -5,20 +5,44 @@ import com.rapidphoto.domain.photo.Photo;
 import com.rapidphoto.domain.photo.PhotoRepository;
 import com.rapidphoto.domain.photo.S3Location;
 import com.rapidphoto.exception.BatchDownloadLimitExceededException;
+import com.rapidphoto.infrastructure.archive.ArchiveReadAhead;
+import com.rapidphoto.infrastructure.dedup.ContentHashService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
-import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.ResponsePublisher;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 
@@ -33,7 +57,7 @@ class GenerateBatchDownloadHandlerTest {
     private PhotoRepository photoRepository;
 
     @Mock
-    private S3Client s3Client;
+    private S3AsyncClient s3AsyncClient;
 
     private GenerateBatchDownloadHandler handler;
 
@@ -43,7 +67,8 @@ class GenerateBatchDownloadHandlerTest {
 
     @BeforeEach
     void setUp() {
-        handler = new GenerateBatchDownloadHandler(photoRepository, s3Client, bucketName);
+        handler = new GenerateBatchDownloadHandler(photoRepository, s3AsyncClient,
+            new ArchiveReadAhead(4, 1024, 4096, new SimpleMeterRegistry()), bucketName, 500L * 1024 * 1024, "auto");
         userId = UUID.randomUUID();
         sessionId = UUID.randomUUID();
     }
@@ -139,8 +164,166 @@ class GenerateBatchDownloadHandlerTest {
         }
     }
 
+    @Test
+    void shouldStoreJpegsWithKnownCrcsInRequestOrderAndKnownLength() throws IOException {
+        // Given - CRC of the first from the hashing stage, of the second from S3's checksum
+        byte[] first = "first jpeg bytes".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "second jpeg bytes".getBytes(StandardCharsets.UTF_8);
+        Photo photo1 = createPhoto("b.jpg");
+        photo1.completeUpload(Map.of(ContentHashService.CRC32, crc32(first)));
+        Photo photo2 = createPhoto("a.JPG");
+        List<UUID> photoIds = List.of(photo1.getId(), photo2.getId());
+
+        when(photoRepository.findAllById(photoIds)).thenReturn(Flux.just(photo2, photo1));
+        Map<String, byte[]> objects = Map.of(key(photo1), first, key(photo2), second);
+        stubS3(objects, Map.of(key(photo2), crc32Checksum(second)));
+
+        // When
+        GenerateBatchDownloadHandler.BatchArchive archive =
+            handler.handle(new GenerateBatchDownloadQuery(photoIds, userId)).block();
+
+        // Then
+        byte[] zip = join(archive.content());
+        assertThat(archive.contentLength()).isEqualTo(zip.length);
+        List<ZipEntry> entries = new ArrayList<>();
+        Map<String, byte[]> read = unzip(zip, entries);
+        assertThat(read.keySet()).containsExactly("b.jpg", "a.JPG");
+        assertThat(read.get("b.jpg")).isEqualTo(first);
+        assertThat(read.get("a.JPG")).isEqualTo(second);
+        assertThat(entries).allMatch(entry -> entry.getMethod() == ZipEntry.STORED);
+    }
+
+    @Test
+    void shouldDeflateOtherFormatsAndLeaveLengthUnknown() throws IOException {
+        // Given
+        byte[] text = "notes notes notes notes".getBytes(StandardCharsets.UTF_8);
+        Photo photo = createPhoto("notes.txt");
+        List<UUID> photoIds = List.of(photo.getId());
+
+        when(photoRepository.findAllById(photoIds)).thenReturn(Flux.just(photo));
+        stubS3(Map.of(key(photo), text), Map.of());
+
+        // When
+        GenerateBatchDownloadHandler.BatchArchive archive =
+            handler.handle(new GenerateBatchDownloadQuery(photoIds, userId)).block();
+
+        // Then
+        assertThat(archive.contentLength()).isEqualTo(-1);
+        List<ZipEntry> entries = new ArrayList<>();
+        assertThat(unzip(join(archive.content()), entries).get("notes.txt")).isEqualTo(text);
+        assertThat(entries.get(0).getMethod()).isEqualTo(ZipEntry.DEFLATED);
+    }
+
+    @Test
+    void shouldProduceByteRangesFromRangedS3Reads() {
+        // Given
+        byte[] first = "the first photo, stored".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "the second photo, stored too".getBytes(StandardCharsets.UTF_8);
+        Photo photo1 = createPhoto("one.jpg");
+        photo1.completeUpload(Map.of(ContentHashService.CRC32, crc32(first)));
+        Photo photo2 = createPhoto("two.jpg");
+        photo2.completeUpload(Map.of(ContentHashService.CRC32, crc32(second)));
+        List<UUID> photoIds = List.of(photo1.getId(), photo2.getId());
+
+        when(photoRepository.findAllById(photoIds)).thenReturn(Flux.just(photo1, photo2));
+        stubS3(Map.of(key(photo1), first, key(photo2), second), Map.of());
+
+        GenerateBatchDownloadHandler.BatchArchive archive =
+            handler.handle(new GenerateBatchDownloadQuery(photoIds, userId)).block();
+        byte[] whole = join(archive.content());
+        assertThat(archive.supportsRanges()).isTrue();
+        assertThat(archive.etag()).startsWith("\"");
+
+        // When / Then - ranges within headers, across entries, and to the end
+        long length = archive.contentLength();
+        for (long[] range : new long[][] {{0, 10}, {40, 90}, {60, length - 1}, {length - 22, length - 1}}) {
+            byte[] part = join(archive.content(range[0], range[1]));
+            assertThat(part).isEqualTo(Arrays.copyOfRange(whole, (int) range[0], (int) range[1] + 1));
+        }
+    }
+
+    @Test
+    void shouldDeflateJpegsWithoutKnownCrcs() throws IOException {
+        // Given - not hashed yet, and no S3 checksum
+        byte[] jpeg = {1, 2, 3};
+        Photo photo = createPhoto("unhashed.jpg");
+        List<UUID> photoIds = List.of(photo.getId());
+
+        when(photoRepository.findAllById(photoIds)).thenReturn(Flux.just(photo));
+        stubS3(Map.of(key(photo), jpeg), Map.of());
+
+        // When
+        GenerateBatchDownloadHandler.BatchArchive archive =
+            handler.handle(new GenerateBatchDownloadQuery(photoIds, userId)).block();
+
+        // Then - a STORED entry would need its CRC before the data, so it is deflated
+        List<ZipEntry> entries = new ArrayList<>();
+        assertThat(unzip(join(archive.content()), entries).get("unhashed.jpg")).isEqualTo(jpeg);
+        assertThat(entries.get(0).getMethod()).isEqualTo(ZipEntry.DEFLATED);
+        assertThat(archive.contentLength()).isEqualTo(-1);
+        assertThat(archive.supportsRanges()).isFalse();
+        assertThat(archive.etag()).isNull();
+    }
+
     // Helper methods
 
+    @SuppressWarnings("unchecked")
+    private void stubS3(Map<String, byte[]> objects, Map<String, String> checksums) {
+        when(s3AsyncClient.headObject(any(HeadObjectRequest.class))).thenAnswer(invocation -> {
+            HeadObjectRequest request = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(HeadObjectResponse.builder()
+                .contentLength((long) objects.get(request.key()).length)
+                .checksumCRC32(checksums.get(request.key()))
+                .build());
+        });
+        when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+            .thenAnswer(invocation -> {
+                GetObjectRequest request = invocation.getArgument(0);
+                byte[] content = objects.get(request.key());
+                if (request.range() != null) {
+                    String[] range = request.range().substring("bytes=".length()).split("-");
+                    content = Arrays.copyOfRange(content, Integer.parseInt(range[0]), Integer.parseInt(range[1]) + 1);
+                }
+                return CompletableFuture.completedFuture(new ResponsePublisher<>(
+                    GetObjectResponse.builder().contentLength((long) content.length).build(),
+                    SdkPublisher.adapt(Flux.just(ByteBuffer.wrap(content)))));
+            });
+    }
+
+    private static String key(Photo photo) {
+        return photo.getS3Location().getKey();
+    }
+
+    private static long crc32(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private static String crc32Checksum(byte[] data) {
+        return Base64.getEncoder().encodeToString(ByteBuffer.allocate(4).putInt((int) crc32(data)).array());
+    }
+
+    private static byte[] join(Flux<DataBuffer> buffers) {
+        DataBuffer joined = DataBufferUtils.join(buffers).block();
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        DataBufferUtils.release(joined);
+        return bytes;
+    }
+
+    private static Map<String, byte[]> unzip(byte[] archive, List<ZipEntry> entries) throws IOException {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                contents.put(entry.getName(), zip.readAllBytes());
+                entries.add(entry);
+            }
+        }
+        return contents;
+    }
+
     private Photo createPhoto(String filename) {
         return createPhotoWithSize(filename, 1024000L);
     }
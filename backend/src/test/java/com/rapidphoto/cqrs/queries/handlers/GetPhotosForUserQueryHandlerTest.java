@@ -2,9 +2,12 @@ package com.rapidphoto.cqrs.queries.handlers;
 
 import com.rapidphoto.cqrs.dtos.PhotoWithTagsDTO;
 import com.rapidphoto.cqrs.queries.GetPhotosForUserQuery;
+import com.rapidphoto.cqrs.queries.PhotoCursor;
 import com.rapidphoto.domain.photo.Photo;
 import com.rapidphoto.domain.photo.PhotoRepository;
 import com.rapidphoto.domain.tag.TagRepository;
+import com.rapidphoto.infrastructure.PresignedUrlCache;
+import com.rapidphoto.infrastructure.S3Service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,12 +16,16 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -31,11 +38,15 @@ class GetPhotosForUserQueryHandlerTest {
     @Mock
     private TagRepository tagRepository;
 
+    @Mock
+    private S3Service s3Service;
+
     private GetPhotosForUserQueryHandler handler;
 
     @BeforeEach
     void setUp() {
-        handler = new GetPhotosForUserQueryHandler(photoRepository, tagRepository);
+        handler = new GetPhotosForUserQueryHandler(
+            photoRepository, tagRepository, s3Service, new PresignedUrlCache(1000, 15, 3), 512);
     }
 
     @Test
@@ -46,11 +57,10 @@ class GetPhotosForUserQueryHandlerTest {
 
         Photo photo1 = Photo.initiate(userId, sessionId, "photo1.jpg", 1024L);
         Photo photo2 = Photo.initiate(userId, sessionId, "photo2.jpg", 2048L);
-        Photo photo3 = Photo.initiate(userId, sessionId, "photo3.jpg", 3072L);
 
         GetPhotosForUserQuery query = new GetPhotosForUserQuery(userId, 0, 2);
 
-        when(photoRepository.findByUserId(userId)).thenReturn(Flux.just(photo1, photo2, photo3));
+        when(photoRepository.findPageByUserId(userId, 2, 0L)).thenReturn(Flux.just(photo1, photo2));
         when(tagRepository.findByPhotoIds(any())).thenReturn(Flux.empty());
 
         // When
@@ -75,7 +85,7 @@ class GetPhotosForUserQueryHandlerTest {
         UUID userId = UUID.randomUUID();
         GetPhotosForUserQuery query = new GetPhotosForUserQuery(userId, 0, 10);
 
-        when(photoRepository.findByUserId(userId)).thenReturn(Flux.empty());
+        when(photoRepository.findPageByUserId(userId, 10, 0L)).thenReturn(Flux.empty());
 
         // When
         Flux<PhotoWithTagsDTO> result = handler.handle(query);
@@ -91,14 +101,12 @@ class GetPhotosForUserQueryHandlerTest {
         UUID userId = UUID.randomUUID();
         UUID sessionId = UUID.randomUUID();
 
-        Photo photo1 = Photo.initiate(userId, sessionId, "photo1.jpg", 1024L);
-        Photo photo2 = Photo.initiate(userId, sessionId, "photo2.jpg", 2048L);
         Photo photo3 = Photo.initiate(userId, sessionId, "photo3.jpg", 3072L);
 
-        // Page 1 (skip 2, take 1)
+        // Page 1 is pushed into SQL as LIMIT 2 OFFSET 2
         GetPhotosForUserQuery query = new GetPhotosForUserQuery(userId, 1, 2);
 
-        when(photoRepository.findByUserId(userId)).thenReturn(Flux.just(photo1, photo2, photo3));
+        when(photoRepository.findPageByUserId(userId, 2, 2L)).thenReturn(Flux.just(photo3));
         when(tagRepository.findByPhotoIds(any())).thenReturn(Flux.empty());
 
         // When
@@ -123,7 +131,7 @@ class GetPhotosForUserQueryHandlerTest {
         List<UUID> tagIds = List.of(tagId);
         GetPhotosForUserQuery query = new GetPhotosForUserQuery(userId, 0, 10, tagIds);
 
-        when(photoRepository.findByUserIdAndAllTags(userId, tagIds, 1))
+        when(photoRepository.findPageByUserIdAndAllTags(userId, tagIds, 1, 10, 0L))
             .thenReturn(Flux.just(photo1, photo2));
         when(tagRepository.findByPhotoIds(any())).thenReturn(Flux.empty());
 
@@ -136,7 +144,7 @@ class GetPhotosForUserQueryHandlerTest {
             .assertNext(dto -> assertThat(dto.filename()).isEqualTo("photo2.jpg"))
             .verifyComplete();
 
-        verify(photoRepository).findByUserIdAndAllTags(userId, tagIds, 1);
+        verify(photoRepository).findPageByUserIdAndAllTags(userId, tagIds, 1, 10, 0L);
     }
 
     @Test
@@ -153,7 +161,7 @@ class GetPhotosForUserQueryHandlerTest {
         GetPhotosForUserQuery query = new GetPhotosForUserQuery(userId, 0, 10, tagIds);
 
         // Only photo1 has BOTH tags
-        when(photoRepository.findByUserIdAndAllTags(userId, tagIds, 2))
+        when(photoRepository.findPageByUserIdAndAllTags(userId, tagIds, 2, 10, 0L))
             .thenReturn(Flux.just(photo1));
         when(tagRepository.findByPhotoIds(any())).thenReturn(Flux.empty());
 
@@ -165,7 +173,7 @@ class GetPhotosForUserQueryHandlerTest {
             .assertNext(dto -> assertThat(dto.filename()).isEqualTo("photo1.jpg"))
             .verifyComplete();
 
-        verify(photoRepository).findByUserIdAndAllTags(userId, tagIds, 2);
+        verify(photoRepository).findPageByUserIdAndAllTags(userId, tagIds, 2, 10, 0L);
     }
 
     @Test
@@ -178,7 +186,7 @@ class GetPhotosForUserQueryHandlerTest {
         List<UUID> tagIds = List.of(tagId1, tagId2);
         GetPhotosForUserQuery query = new GetPhotosForUserQuery(userId, 0, 10, tagIds);
 
-        when(photoRepository.findByUserIdAndAllTags(userId, tagIds, 2))
+        when(photoRepository.findPageByUserIdAndAllTags(userId, tagIds, 2, 10, 0L))
             .thenReturn(Flux.empty());
 
         // When
@@ -199,7 +207,7 @@ class GetPhotosForUserQueryHandlerTest {
 
         GetPhotosForUserQuery query = new GetPhotosForUserQuery(userId, 0, 10, null);
 
-        when(photoRepository.findByUserId(userId)).thenReturn(Flux.just(photo1));
+        when(photoRepository.findPageByUserId(userId, 10, 0L)).thenReturn(Flux.just(photo1));
         when(tagRepository.findByPhotoIds(any())).thenReturn(Flux.empty());
 
         // When
@@ -210,7 +218,7 @@ class GetPhotosForUserQueryHandlerTest {
             .assertNext(dto -> assertThat(dto.filename()).isEqualTo("photo1.jpg"))
             .verifyComplete();
 
-        verify(photoRepository).findByUserId(userId);
+        verify(photoRepository).findPageByUserId(userId, 10, 0L);
     }
 
     @Test
@@ -223,7 +231,7 @@ class GetPhotosForUserQueryHandlerTest {
 
         GetPhotosForUserQuery query = new GetPhotosForUserQuery(userId, 0, 10, List.of());
 
-        when(photoRepository.findByUserId(userId)).thenReturn(Flux.just(photo1));
+        when(photoRepository.findPageByUserId(userId, 10, 0L)).thenReturn(Flux.just(photo1));
         when(tagRepository.findByPhotoIds(any())).thenReturn(Flux.empty());
 
         // When
@@ -234,7 +242,7 @@ class GetPhotosForUserQueryHandlerTest {
             .assertNext(dto -> assertThat(dto.filename()).isEqualTo("photo1.jpg"))
             .verifyComplete();
 
-        verify(photoRepository).findByUserId(userId);
+        verify(photoRepository).findPageByUserId(userId, 10, 0L);
     }
 
     @Test
@@ -246,13 +254,12 @@ class GetPhotosForUserQueryHandlerTest {
 
         Photo photo1 = Photo.initiate(userId, sessionId, "photo1.jpg", 1024L);
         Photo photo2 = Photo.initiate(userId, sessionId, "photo2.jpg", 2048L);
-        Photo photo3 = Photo.initiate(userId, sessionId, "photo3.jpg", 3072L);
 
         List<UUID> tagIds = List.of(tagId);
         GetPhotosForUserQuery query = new GetPhotosForUserQuery(userId, 0, 2, tagIds);
 
-        when(photoRepository.findByUserIdAndAllTags(userId, tagIds, 1))
-            .thenReturn(Flux.just(photo1, photo2, photo3));
+        when(photoRepository.findPageByUserIdAndAllTags(userId, tagIds, 1, 2, 0L))
+            .thenReturn(Flux.just(photo1, photo2));
         when(tagRepository.findByPhotoIds(any())).thenReturn(Flux.empty());
 
         // When
@@ -264,4 +271,26 @@ class GetPhotosForUserQueryHandlerTest {
             .assertNext(dto -> assertThat(dto.filename()).isEqualTo("photo2.jpg"))
             .verifyComplete();
     }
+
+    @Test
+    void shouldContinueAfterCursorWithKeysetQuery() {
+        // Given - a cursor replaces the offset and is pushed into SQL
+        UUID userId = UUID.randomUUID();
+        UUID sessionId = UUID.randomUUID();
+        Photo photo4 = Photo.initiate(userId, sessionId, "photo4.jpg", 1024L);
+        PhotoCursor cursor = new PhotoCursor(Instant.parse("2025-01-01T10:00:00Z"), UUID.randomUUID());
+
+        GetPhotosForUserQuery query = new GetPhotosForUserQuery(userId, 7, 2, null, cursor);
+
+        when(photoRepository.findPageByUserIdBefore(userId, cursor.createdAt(), cursor.id(), 2))
+            .thenReturn(Flux.just(photo4));
+        when(tagRepository.findByPhotoIds(any())).thenReturn(Flux.empty());
+
+        // When & Then - page number is ignored when a cursor is present
+        StepVerifier.create(handler.handle(query))
+            .assertNext(dto -> assertThat(dto.filename()).isEqualTo("photo4.jpg"))
+            .verifyComplete();
+
+        verify(photoRepository, never()).findPageByUserId(any(), anyInt(), anyLong());
+    }
 }
@@ -3,6 +3,7 @@ package com.rapidphoto.infrastructure;
 import com.rapidphoto.domain.photo.Photo;
 import com.rapidphoto.domain.photo.PhotoRepository;
 import com.rapidphoto.domain.shared.Email;
+import com.rapidphoto.domain.upload.SessionProgress;
 import com.rapidphoto.domain.upload.UploadSession;
 import com.rapidphoto.domain.upload.UploadSessionRepository;
 import com.rapidphoto.domain.user.User;
@@ -13,6 +14,7 @@ import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import reactor.test.StepVerifier;
 
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -142,6 +144,107 @@ class DatabaseIntegrationTest extends BaseIntegrationTest {
             .verifyComplete();
     }
 
+    @Test
+    void shouldInsertPhotoBatchWithSingleStatement() {
+        // Given
+        User user = User.create(Email.of("batch-insert@test.com"), "password123", "Batch Insert");
+        UploadSession session = UploadSession.start(user.getId());
+        List<Photo> photos = List.of(
+            Photo.initiate(user.getId(), session.getId(), "a.jpg", 1000),
+            Photo.initiate(user.getId(), session.getId(), "b.jpg", 2000),
+            Photo.initiate(user.getId(), session.getId(), "c.jpg", 3000)
+        );
+
+        // When & Then
+        StepVerifier.create(
+            userRepository.save(user)
+                .then(uploadSessionRepository.save(session))
+                .then(photoRepository.insertAll(photos))
+        )
+            .assertNext(inserted -> assertThat(inserted).isEqualTo(3L))
+            .verifyComplete();
+
+        StepVerifier.create(photoRepository.findBySessionId(session.getId()))
+            .expectNextCount(3)
+            .verifyComplete();
+
+        // Cleanup (photos cascade with the user)
+        StepVerifier.create(userRepository.deleteById(user.getId()))
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldPageGalleryWithKeysetCursor() {
+        // Given - batch insert gives all rows the same created_at, so id breaks the tie
+        User user = User.create(Email.of("keyset@test.com"), "password123", "Keyset");
+        UploadSession session = UploadSession.start(user.getId());
+        List<Photo> photos = List.of(
+            Photo.initiate(user.getId(), session.getId(), "a.jpg", 1000),
+            Photo.initiate(user.getId(), session.getId(), "b.jpg", 1000),
+            Photo.initiate(user.getId(), session.getId(), "c.jpg", 1000)
+        );
+        userRepository.save(user)
+            .then(uploadSessionRepository.save(session))
+            .then(photoRepository.insertAll(photos))
+            .block();
+
+        // When - first page by limit, second page after the last row of the first
+        List<Photo> firstPage = photoRepository.findPageByUserId(user.getId(), 2, 0).collectList().block();
+        Photo last = firstPage.get(firstPage.size() - 1);
+        List<Photo> secondPage = photoRepository
+            .findPageByUserIdBefore(user.getId(), last.getCreatedAt(), last.getId(), 2)
+            .collectList().block();
+
+        // Then - pages are disjoint and cover every photo
+        assertThat(firstPage).hasSize(2);
+        assertThat(secondPage).hasSize(1);
+        assertThat(secondPage.get(0).getId())
+            .isNotIn(firstPage.stream().map(Photo::getId).toList());
+
+        // Cleanup
+        StepVerifier.create(userRepository.deleteById(user.getId()))
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldSaveSessionProgressInOneBatchWithoutGoingBackwards() {
+        // Given
+        User user = User.create(Email.of("session-progress@test.com"), "password123", "Session Progress");
+        UploadSession first = UploadSession.start(user.getId());
+        first.setTotalPhotos(10);
+        UploadSession second = UploadSession.start(user.getId());
+        second.setTotalPhotos(5);
+        userRepository.save(user)
+            .then(uploadSessionRepository.save(first))
+            .then(uploadSessionRepository.save(second))
+            .block();
+
+        // When - one batch for both sessions, then a stale write for the first
+        StepVerifier.create(uploadSessionRepository.saveProgress(List.of(
+                new SessionProgress(first.getId(), user.getId(), 10, 7, 1),
+                new SessionProgress(second.getId(), user.getId(), 5, 5, 0))))
+            .assertNext(rows -> assertThat(rows).isEqualTo(2L))
+            .verifyComplete();
+        uploadSessionRepository.saveProgress(List.of(
+                new SessionProgress(first.getId(), user.getId(), 10, 3, 0)))
+            .block();
+
+        // Then - counters only moved forward
+        StepVerifier.create(uploadSessionRepository.findById(first.getId()))
+            .assertNext(stored -> {
+                assertThat(stored.getCompletedPhotos()).isEqualTo(7);
+                assertThat(stored.getFailedPhotos()).isEqualTo(1);
+            })
+            .verifyComplete();
+        StepVerifier.create(uploadSessionRepository.findById(second.getId()))
+            .assertNext(stored -> assertThat(stored.getCompletedPhotos()).isEqualTo(5))
+            .verifyComplete();
+
+        // Cleanup
+        StepVerifier.create(userRepository.deleteById(user.getId()))
+            .verifyComplete();
+    }
+
     @Test
     void shouldVerifyIndexesExist() {
         // Query information_schema to verify indexes
@@ -0,0 +1,141 @@
+package com.rapidphoto.infrastructure;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PresignedUrlCacheTest {
+
+    private MutableClock clock;
+    private AtomicInteger signCount;
+    private PresignedUrlCache.UrlSigner signer;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        signCount = new AtomicInteger();
+        signer = (signedAt, ttl) -> Mono.fromCallable(() -> "https://s3/signed-" + signCount.incrementAndGet());
+    }
+
+    @Test
+    void shouldReturnSameUrlWithinReuseWindow() {
+        PresignedUrlCache cache = new PresignedUrlCache(100, Duration.ofMinutes(15), Duration.ofMinutes(3), clock);
+
+        StepVerifier.create(cache.get("photo.jpg", PresignedUrlCache.Purpose.VIEW, signer))
+            .expectNext("https://s3/signed-1")
+            .verifyComplete();
+
+        clock.advance(Duration.ofMinutes(11));
+
+        StepVerifier.create(cache.get("photo.jpg", PresignedUrlCache.Purpose.VIEW, signer))
+            .expectNext("https://s3/signed-1")
+            .verifyComplete();
+        assertThat(signCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldResignInsideSafetyMargin() {
+        PresignedUrlCache cache = new PresignedUrlCache(100, Duration.ofMinutes(15), Duration.ofMinutes(3), clock);
+
+        cache.get("photo.jpg", PresignedUrlCache.Purpose.VIEW, signer).block();
+        clock.advance(Duration.ofMinutes(12));
+
+        StepVerifier.create(cache.get("photo.jpg", PresignedUrlCache.Purpose.VIEW, signer))
+            .expectNext("https://s3/signed-2")
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldSignAsOfWindowStart() {
+        // Given: 15 minute URLs reused for 12 minute windows
+        PresignedUrlCache cache = new PresignedUrlCache(100, Duration.ofMinutes(15), Duration.ofMinutes(3), clock);
+        List<Instant> signedAt = new ArrayList<>();
+        clock.advance(Duration.ofMinutes(31));
+
+        // When
+        cache.get("photo.jpg", PresignedUrlCache.Purpose.VIEW, (at, ttl) -> {
+            signedAt.add(at);
+            assertThat(ttl).isEqualTo(Duration.ofMinutes(15));
+            return Mono.just("https://s3/signed");
+        }).block();
+
+        // Then: the window that began at 00:24 (windows are aligned to the epoch)
+        assertThat(signedAt).containsExactly(Instant.parse("2025-01-01T00:24:00Z"));
+    }
+
+    @Test
+    void shouldGiveSameUrlOnEveryInstanceWithinWindow() {
+        // Given: two instances (or one before and after a restart) and a deterministic signer
+        PresignedUrlCache.UrlSigner deterministic = (signedAt, ttl) -> Mono.just("https://s3/photo.jpg?date=" + signedAt);
+        PresignedUrlCache first = new PresignedUrlCache(100, Duration.ofMinutes(15), Duration.ofMinutes(3), clock);
+        PresignedUrlCache second = new PresignedUrlCache(100, Duration.ofMinutes(15), Duration.ofMinutes(3), clock);
+
+        // When
+        String fromFirst = first.get("photo.jpg", PresignedUrlCache.Purpose.VIEW, deterministic).block();
+        clock.advance(Duration.ofMinutes(7));
+        String fromSecond = second.get("photo.jpg", PresignedUrlCache.Purpose.VIEW, deterministic).block();
+
+        // Then
+        assertThat(fromSecond).isEqualTo(fromFirst);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedKey() {
+        PresignedUrlCache cache = new PresignedUrlCache(2, Duration.ofMinutes(15), Duration.ofMinutes(3), clock);
+
+        cache.get("a.jpg", PresignedUrlCache.Purpose.VIEW, signer).block();
+        cache.get("b.jpg", PresignedUrlCache.Purpose.VIEW, signer).block();
+        cache.get("a.jpg", PresignedUrlCache.Purpose.VIEW, signer).block(); // a is now most recent
+        cache.get("c.jpg", PresignedUrlCache.Purpose.VIEW, signer).block(); // evicts b
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("a.jpg", PresignedUrlCache.Purpose.VIEW, signer).block()).isEqualTo("https://s3/signed-1");
+        assertThat(cache.get("b.jpg", PresignedUrlCache.Purpose.VIEW, signer).block()).isEqualTo("https://s3/signed-4");
+    }
+
+    @Test
+    void shouldRejectMarginNotShorterThanTtl() {
+        assertThatThrownBy(() -> new PresignedUrlCache(10, Duration.ofMinutes(5), Duration.ofMinutes(5), clock))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
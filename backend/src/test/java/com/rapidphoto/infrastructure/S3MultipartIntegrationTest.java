@@ -0,0 +1,165 @@
+package com.rapidphoto.infrastructure;
+
+import com.rapidphoto.infrastructure.upload.UploadPlan;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Integration tests for S3Service multipart uploads using LocalStack.
+ * Exercises the full lifecycle: create upload, PUT parts to presigned URLs,
+ * complete with ETags, and abort.
+ */
+class S3MultipartIntegrationTest extends BaseIntegrationTest {
+
+    private static final String BUCKET_NAME = "test-multipart-bucket";
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+
+    private static S3Client s3Client;
+    private static S3Service s3Service;
+
+    @BeforeAll
+    static void setupS3Service() {
+        s3Client = S3Client.builder()
+            .endpointOverride(URI.create("http://localhost:4566"))
+            .credentialsProvider(StaticCredentialsProvider.create(
+                AwsBasicCredentials.create("test", "test")
+            ))
+            .region(Region.US_EAST_1)
+            .forcePathStyle(true)
+            .build();
+
+        S3Presigner s3Presigner = S3Presigner.builder()
+            .endpointOverride(URI.create("http://localhost:4566"))
+            .credentialsProvider(StaticCredentialsProvider.create(
+                AwsBasicCredentials.create("test", "test")
+            ))
+            .region(Region.US_EAST_1)
+            .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+            .build();
+
+        try {
+            s3Client.createBucket(CreateBucketRequest.builder()
+                .bucket(BUCKET_NAME)
+                .build());
+        } catch (BucketAlreadyOwnedByYouException e) {
+            // Bucket already exists, that's fine
+        }
+
+        s3Service = new S3Service(s3Client, s3Presigner, BUCKET_NAME, BUCKET_NAME);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldAssembleObjectFromPresignedParts() throws IOException {
+        // Given - 12MB file: two full 5MB parts and a 2MB tail
+        byte[] content = new byte[12 * 1024 * 1024];
+        new Random(42).nextBytes(content);
+        UUID userId = UUID.randomUUID();
+        UUID sessionId = UUID.randomUUID();
+        UUID photoId = UUID.randomUUID();
+
+        UploadPlan plan = new UploadPlan(content.length, true, PART_SIZE, 3, 3);
+
+        Map<String, Object> initiate = s3Service.generatePresignedUploadUrl(
+            userId, sessionId, photoId, "burst.heic", "image/heic", plan
+        ).block();
+
+        assertThat(initiate).containsKeys("uploadId", "partUrls", "s3Key");
+        List<String> partUrls = (List<String>) initiate.get("partUrls");
+        assertThat(partUrls).hasSize(3);
+
+        // When - upload each part and collect ETags, as the browser would
+        Map<Integer, String> eTags = new HashMap<>();
+        for (int i = 0; i < partUrls.size(); i++) {
+            int start = i * PART_SIZE;
+            int end = Math.min(start + PART_SIZE, content.length);
+            eTags.put(i + 1, putBytes(partUrls.get(i), Arrays.copyOfRange(content, start, end)));
+        }
+
+        String s3Key = (String) initiate.get("s3Key");
+        String finalETag = s3Service.completeMultipartUpload(
+            s3Key, (String) initiate.get("uploadId"), eTags
+        ).block();
+
+        // Then - a single object exists with the original bytes
+        assertThat(finalETag).isNotBlank();
+        ResponseBytes<GetObjectResponse> stored = s3Client.getObjectAsBytes(GetObjectRequest.builder()
+            .bucket(BUCKET_NAME)
+            .key(s3Key)
+            .build());
+        assertThat(stored.asByteArray()).isEqualTo(content);
+
+        ListObjectsV2Response listing = s3Client.listObjectsV2(ListObjectsV2Request.builder()
+            .bucket(BUCKET_NAME)
+            .prefix(s3Key)
+            .build());
+        assertThat(listing.contents()).hasSize(1);
+
+        // Cleanup
+        s3Client.deleteObject(DeleteObjectRequest.builder()
+            .bucket(BUCKET_NAME)
+            .key(s3Key)
+            .build());
+    }
+
+    @Test
+    void shouldAbortMultipartUpload() {
+        // Given
+        String s3Key = S3Service.buildUploadKey(
+            UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), "aborted.jpg");
+        String uploadId = s3Service.createMultipartUpload(s3Key, "image/jpeg").block();
+
+        // When
+        s3Service.abortMultipartUpload(s3Key, uploadId).block();
+
+        // Then - upload can no longer be completed
+        assertThatThrownBy(() -> s3Service.completeMultipartUpload(s3Key, uploadId, Map.of(1, "\"etag\"")).block())
+            .isInstanceOf(S3Exception.class);
+    }
+
+    @Test
+    void shouldReturnSingleUrlForSinglePutPlan() {
+        Map<String, Object> initiate = s3Service.generatePresignedUploadUrl(
+            UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), "small.jpg", "image/jpeg",
+            UploadPlan.singlePut(1024)
+        ).block();
+
+        assertThat(initiate).containsKey("uploadUrl");
+        assertThat(initiate).doesNotContainKey("uploadId");
+    }
+
+    private String putBytes(String presignedUrl, byte[] bytes) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(presignedUrl).openConnection();
+        connection.setRequestMethod("PUT");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(bytes.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(bytes);
+        }
+        assertThat(connection.getResponseCode()).isEqualTo(200);
+        return connection.getHeaderField("ETag");
+    }
+}
@@ -0,0 +1,59 @@
+package com.rapidphoto.infrastructure;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for S3Service URL signing; presigning is local, no S3 needed.
+ */
+class S3ServiceTest {
+
+    private static final Instant SIGNED_AT = Instant.parse("2025-01-01T00:00:00Z");
+    private static final Duration EXPIRATION = Duration.ofMinutes(15);
+
+    private S3Presigner presigner;
+    private S3Service s3Service;
+
+    @BeforeEach
+    void setUp() {
+        presigner = S3Presigner.builder()
+            .region(Region.US_EAST_1)
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("key", "secret")))
+            .build();
+        s3Service = new S3Service(null, presigner, "photos", "thumbnails");
+    }
+
+    @AfterEach
+    void tearDown() {
+        presigner.close();
+    }
+
+    @Test
+    void shouldSignViewUrlAsOfGivenTime() {
+        String url = s3Service.generatePresignedViewUrl("uploads/a.jpg", SIGNED_AT, EXPIRATION).block();
+
+        assertThat(url)
+            .contains("X-Amz-Date=20250101T000000Z")
+            .contains("X-Amz-Expires=900");
+    }
+
+    @Test
+    void shouldGiveSameUrlForSameKeyTimeAndExpiration() throws InterruptedException {
+        String first = s3Service.generatePresignedThumbnailUrl("thumbs/a.jpg", SIGNED_AT, EXPIRATION).block();
+        Thread.sleep(1100); // Past the one-second resolution of X-Amz-Date
+
+        String second = s3Service.generatePresignedThumbnailUrl("thumbs/a.jpg", SIGNED_AT, EXPIRATION).block();
+
+        assertThat(second).isEqualTo(first);
+    }
+}
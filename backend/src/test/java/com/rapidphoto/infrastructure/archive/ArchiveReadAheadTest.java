@@ -0,0 +1,129 @@
+package com.rapidphoto.infrastructure.archive;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for archive read-ahead.
+ */
+class ArchiveReadAheadTest {
+
+    private static final Instant MODIFIED = Instant.parse("2024-05-06T07:08:10Z");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldKeepEntryOrderAndContent() throws IOException {
+        // Given
+        ArchiveReadAhead readAhead = new ArchiveReadAhead(2, 64, 1024, meterRegistry);
+        List<ZipArchiveEntry> sources = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            sources.add(new ZipArchiveEntry("photo-" + i + ".jpg", MODIFIED, chunks(20, 8, (byte) i)));
+        }
+
+        // When
+        byte[] archive;
+        try (ArchiveReadAhead.Window window = readAhead.open(sources)) {
+            DataBuffer joined = DataBufferUtils.join(ZipArchiveEncoder.encode(
+                Flux.fromIterable(window.entries()), DefaultDataBufferFactory.sharedInstance)).block();
+            archive = new byte[joined.readableByteCount()];
+            joined.read(archive);
+            DataBufferUtils.release(joined);
+        }
+
+        // Then
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            for (int i = 0; i < 5; i++) {
+                ZipEntry entry = zip.getNextEntry();
+                assertThat(entry.getName()).isEqualTo("photo-" + i + ".jpg");
+                byte[] expected = new byte[160];
+                Arrays.fill(expected, (byte) i);
+                assertThat(zip.readAllBytes()).isEqualTo(expected);
+            }
+            assertThat(zip.getNextEntry()).isNull();
+        }
+        assertThat(meterRegistry.get("download.read-ahead.buffered").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldOpenOnlyTheNextObjectsWithinBudget() {
+        // Given - 8-byte chunks, 10 bytes of budget, 1 object ahead
+        ArchiveReadAhead readAhead = new ArchiveReadAhead(1, 10, 1024, meterRegistry);
+        AtomicInteger firstRead = new AtomicInteger();
+        AtomicInteger secondRead = new AtomicInteger();
+        AtomicBoolean thirdOpened = new AtomicBoolean();
+        List<ZipArchiveEntry> sources = List.of(
+            new ZipArchiveEntry("a.jpg", MODIFIED, chunks(100, 8, (byte) 1).doOnNext(data -> firstRead.incrementAndGet())),
+            new ZipArchiveEntry("b.jpg", MODIFIED, chunks(100, 8, (byte) 2).doOnNext(data -> secondRead.incrementAndGet())),
+            new ZipArchiveEntry("c.jpg", MODIFIED, chunks(100, 8, (byte) 3).doOnSubscribe(s -> thirdOpened.set(true)))
+        );
+        ArchiveReadAhead.Window window = readAhead.open(sources);
+
+        // When - the first entry is reached but nothing is consumed yet
+        StepVerifier.create(window.entries().get(0).content(), 0)
+            .expectSubscription()
+            .thenCancel()
+            .verify();
+
+        // Then - the first object fills the budget, the next one holds a single chunk
+        assertThat(firstRead).hasValue(2);
+        assertThat(secondRead).hasValue(1);
+        assertThat(thirdOpened).isFalse();
+        assertThat(meterRegistry.get("download.read-ahead.buffered").gauge().value()).isEqualTo(24.0);
+
+        window.close();
+        assertThat(meterRegistry.get("download.read-ahead.buffered").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldOnlyTrackObjectsStillBeingRead() {
+        // Given - a long archive, 2 objects ahead
+        ArchiveReadAhead readAhead = new ArchiveReadAhead(2, 64, 1024, meterRegistry);
+        AtomicReference<ArchiveReadAhead.Window> window = new AtomicReference<>();
+        AtomicInteger mostOpen = new AtomicInteger();
+        List<ZipArchiveEntry> sources = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            sources.add(new ZipArchiveEntry("photo-" + i + ".jpg", MODIFIED, chunks(4, 8, (byte) i)
+                .doOnNext(data -> mostOpen.accumulateAndGet(window.get().openObjects(), Math::max))));
+        }
+        window.set(readAhead.open(sources));
+
+        // When
+        ZipArchiveEncoder.encode(Flux.fromIterable(window.get().entries()), DefaultDataBufferFactory.sharedInstance)
+            .doOnNext(DataBufferUtils::release)
+            .blockLast();
+
+        // Then - freed budget is offered to the entry being written and those ahead, not all 200
+        assertThat(mostOpen.get()).isBetween(1, 3);
+        assertThat(window.get().openObjects()).isZero();
+        window.get().close();
+    }
+
+    private static Flux<ByteBuffer> chunks(int count, int size, byte value) {
+        return Flux.range(0, count).map(i -> {
+            byte[] chunk = new byte[size];
+            Arrays.fill(chunk, value);
+            return ByteBuffer.wrap(chunk);
+        });
+    }
+}
@@ -0,0 +1,249 @@
+package com.rapidphoto.infrastructure.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the reactive ZIP encoder.
+ */
+class ZipArchiveEncoderTest {
+
+    private static final Instant MODIFIED = Instant.parse("2024-05-06T07:08:10Z");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldProduceArchiveReadableByZipInputStream() throws IOException {
+        // Given
+        byte[] random = new byte[200_000];
+        new Random(42).nextBytes(random);
+        byte[] text = "hello hello hello hello".getBytes(StandardCharsets.UTF_8);
+
+        Flux<ZipArchiveEntry> entries = Flux.just(
+            new ZipArchiveEntry("random.bin", MODIFIED, chunks(random, 7_000)),
+            new ZipArchiveEntry("gr\u00fc\u00dfe.txt", MODIFIED, chunks(text, 5)),
+            new ZipArchiveEntry("empty.txt", MODIFIED, Flux.empty())
+        );
+
+        // When
+        byte[] archive = join(ZipArchiveEncoder.encode(entries, DefaultDataBufferFactory.sharedInstance));
+
+        // Then
+        Map<String, byte[]> read = unzip(archive);
+        assertThat(read.keySet()).containsExactly("random.bin", "gr\u00fc\u00dfe.txt", "empty.txt");
+        assertThat(read.get("random.bin")).isEqualTo(random);
+        assertThat(read.get("gr\u00fc\u00dfe.txt")).isEqualTo(text);
+        assertThat(read.get("empty.txt")).isEmpty();
+    }
+
+    @Test
+    void shouldNotOpenLaterEntriesBeforeTheyAreReached() {
+        // Given
+        AtomicBoolean secondOpened = new AtomicBoolean();
+        Flux<ZipArchiveEntry> entries = Flux.just(
+            new ZipArchiveEntry("first.txt", MODIFIED, chunks(new byte[10], 10)),
+            new ZipArchiveEntry("second.txt", MODIFIED,
+                chunks(new byte[10], 10).doOnSubscribe(subscription -> secondOpened.set(true)))
+        );
+
+        // When / Then - header of the first entry only
+        StepVerifier.create(ZipArchiveEncoder.encode(entries, DefaultDataBufferFactory.sharedInstance), 1)
+            .consumeNextWith(DataBufferUtils::release)
+            .thenCancel()
+            .verify();
+        assertThat(secondOpened).isFalse();
+    }
+
+    @Test
+    void shouldStoreEntriesAndPredictTheArchiveLength() throws IOException {
+        // Given
+        byte[] photo = new byte[50_000];
+        new Random(7).nextBytes(photo);
+        byte[] other = "stored as is".getBytes(StandardCharsets.UTF_8);
+        List<ZipArchiveEntry> entries = List.of(
+            new ZipArchiveEntry("photo.jpg", MODIFIED, true, photo.length, crc32(photo), chunks(photo, 4_096)),
+            new ZipArchiveEntry("other.jpg", MODIFIED, true, other.length, crc32(other), chunks(other, 5))
+        );
+
+        // When
+        byte[] archive = join(ZipArchiveEncoder.encode(Flux.fromIterable(entries), DefaultDataBufferFactory.sharedInstance));
+
+        // Then
+        assertThat(ZipArchiveEncoder.archiveLength(entries)).isEqualTo(archive.length);
+        Map<String, byte[]> read = unzip(archive);
+        assertThat(read.get("photo.jpg")).isEqualTo(photo);
+        assertThat(read.get("other.jpg")).isEqualTo(other);
+    }
+
+    @Test
+    void shouldUseZip64FieldsPastTheLimit() throws IOException {
+        // Given - a limit low enough that every size and offset past the first header needs ZIP64
+        byte[] photo = new byte[3_000];
+        new Random(9).nextBytes(photo);
+        byte[] text = "deflated text".getBytes(StandardCharsets.UTF_8);
+        List<ZipArchiveEntry> stored = List.of(
+            new ZipArchiveEntry("a.jpg", MODIFIED, true, photo.length, crc32(photo), chunks(photo, 1_000)),
+            new ZipArchiveEntry("b.jpg", MODIFIED, true, photo.length, crc32(photo), chunks(photo, 1_000))
+        );
+        long limit = 1_000;
+
+        // When
+        byte[] storedArchive = join(ZipArchiveEncoder.encode(
+            Flux.fromIterable(stored), DefaultDataBufferFactory.sharedInstance, limit));
+        byte[] mixedArchive = join(ZipArchiveEncoder.encode(
+            Flux.fromIterable(stored).concatWithValues(
+                new ZipArchiveEntry("c.txt", MODIFIED, chunks(text, 4)),
+                new ZipArchiveEntry("d.bin", MODIFIED, chunks(photo, 1_000))), // Deflated past the limit
+            DefaultDataBufferFactory.sharedInstance, limit));
+
+        // Then
+        assertThat(ZipArchiveEncoder.archiveLength(stored, limit)).isEqualTo(storedArchive.length);
+        assertThat(unzipFile(storedArchive)).containsOnlyKeys("a.jpg", "b.jpg");
+        Map<String, byte[]> mixed = unzipFile(mixedArchive);
+        assertThat(mixed.get("b.jpg")).isEqualTo(photo);
+        assertThat(mixed.get("c.txt")).isEqualTo(text);
+        assertThat(mixed.get("d.bin")).isEqualTo(photo);
+    }
+
+    @Test
+    void shouldFailWhenStoredContentDiffersFromWhatWasDeclared() {
+        // Given
+        byte[] photo = "not the bytes that were hashed".getBytes(StandardCharsets.UTF_8);
+        Flux<ZipArchiveEntry> wrongCrc = Flux.just(
+            new ZipArchiveEntry("a.jpg", MODIFIED, true, photo.length, crc32(photo) ^ 1, chunks(photo, 8)));
+        Flux<ZipArchiveEntry> wrongSize = Flux.just(
+            new ZipArchiveEntry("a.jpg", MODIFIED, true, photo.length + 1, crc32(photo), chunks(photo, 8)));
+
+        // When / Then
+        StepVerifier.create(ZipArchiveEncoder.encode(wrongCrc, DefaultDataBufferFactory.sharedInstance))
+            .thenConsumeWhile(buffer -> true)
+            .verifyErrorMessage("Entry a.jpg does not match its CRC");
+        StepVerifier.create(ZipArchiveEncoder.encode(wrongSize, DefaultDataBufferFactory.sharedInstance))
+            .thenConsumeWhile(buffer -> true)
+            .verifyErrorMessage("Entry a.jpg has 30 bytes, expected 31");
+    }
+
+    @Test
+    void shouldRequireSizeAndCrcOfStoredEntries() {
+        assertThatThrownBy(() -> new ZipArchiveEntry("a.jpg", MODIFIED, true, 10, null, Flux.empty()))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ZipArchiveEntry("a.jpg", MODIFIED, true, -1, 0L, Flux.empty()))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldEncodeAnyRangeAsTheSameBytesAsTheWholeArchive() {
+        // Given - stored entries with known CRCs, one of them empty
+        Random random = new Random(11);
+        List<byte[]> contents = List.of(new byte[1_500], new byte[0], new byte[700]);
+        contents.forEach(random::nextBytes);
+        for (long limit : new long[] {ZipStreamWriter.ZIP64_LIMIT, 1_000}) {
+            List<ZipArchiveEntry> entries = List.of(
+                storedEntry("a.jpg", contents.get(0)),
+                storedEntry("b.jpg", contents.get(1)),
+                storedEntry("c.jpg", contents.get(2))
+            );
+            byte[] archive = join(ZipArchiveEncoder.encode(
+                Flux.fromIterable(entries), DefaultDataBufferFactory.sharedInstance, limit));
+
+            for (int i = 0; i < 200; i++) {
+                int start = random.nextInt(archive.length);
+                int end = start + random.nextInt(archive.length - start);
+
+                // When - each entry provides just the part of its data inside the range
+                List<ZipArchiveEncoder.ContentRange> ranges = ZipArchiveEncoder.contentRanges(entries, start, end, limit);
+                List<ZipArchiveEntry> parts = new ArrayList<>();
+                for (int e = 0; e < entries.size(); e++) {
+                    ZipArchiveEncoder.ContentRange range = ranges.get(e);
+                    parts.add(entries.get(e).withContent(range.length() == 0
+                        ? Flux.error(new AssertionError("Entry outside the range was read"))
+                        : chunks(Arrays.copyOfRange(contents.get(e),
+                            (int) range.offset(), (int) (range.offset() + range.length())), 100)));
+                }
+                byte[] part = join(ZipArchiveEncoder.encodeRange(parts, start, end,
+                    DefaultDataBufferFactory.sharedInstance, limit));
+
+                // Then
+                assertThat(part).isEqualTo(Arrays.copyOfRange(archive, start, end + 1));
+            }
+        }
+    }
+
+    private static ZipArchiveEntry storedEntry(String name, byte[] content) {
+        return new ZipArchiveEntry(name, MODIFIED, true, content.length, crc32(content), chunks(content, 100));
+    }
+
+    private static long crc32(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private static Flux<ByteBuffer> chunks(byte[] data, int size) {
+        return Flux.range(0, (data.length + size - 1) / size)
+            .map(i -> ByteBuffer.wrap(data, i * size, Math.min(size, data.length - i * size)));
+    }
+
+    private static byte[] join(Flux<DataBuffer> buffers) {
+        DataBuffer joined = DataBufferUtils.join(buffers).block();
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        DataBufferUtils.release(joined);
+        return bytes;
+    }
+
+    private static Map<String, byte[]> unzip(byte[] archive) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Read through the central directory, which (unlike ZipInputStream) handles ZIP64
+     * data descriptors below the real 4GB limit.
+     */
+    private Map<String, byte[]> unzipFile(byte[] archive) throws IOException {
+        Path file = Files.write(tempDir.resolve("archive-" + System.nanoTime() + ".zip"), archive);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                entries.put(entry.getName(), zip.getInputStream(entry).readAllBytes());
+            }
+        }
+        return entries;
+    }
+}
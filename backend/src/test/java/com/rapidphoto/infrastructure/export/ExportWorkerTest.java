@@ -0,0 +1,157 @@
+package com.rapidphoto.infrastructure.export;
+
+import com.rapidphoto.cqrs.queries.handlers.GenerateBatchDownloadHandler;
+import com.rapidphoto.cqrs.queries.handlers.GetExportJobQueryHandler;
+import com.rapidphoto.domain.photo.Photo;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.domain.photo.S3Location;
+import com.rapidphoto.streaming.ExportNotification;
+import com.rapidphoto.streaming.UploadProgressPublisher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for how ExportWorker ends a run that does not complete.
+ */
+@ExtendWith(MockitoExtension.class)
+class ExportWorkerTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Mock
+    private ExportJobRepository jobRepository;
+
+    @Mock
+    private PhotoRepository photoRepository;
+
+    @Mock
+    private GenerateBatchDownloadHandler archiveHandler;
+
+    @Mock
+    private S3MultipartWriter multipartWriter;
+
+    @Mock
+    private UploadProgressPublisher progressPublisher;
+
+    @Mock
+    private GetExportJobQueryHandler getExportJobHandler;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ExportWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        worker = new ExportWorker(jobRepository, photoRepository, archiveHandler, multipartWriter,
+            progressPublisher, getExportJobHandler, meterRegistry, 2);
+    }
+
+    @Test
+    void shouldReleaseFailedRunForRetry() {
+        // Given - first attempt, and the archive cannot be built
+        ExportJob job = job(1);
+        stubPhotos(job);
+        when(jobRepository.start(eq(job.id()), eq(1), eq(1), any(Instant.class))).thenReturn(Mono.just(1));
+        when(archiveHandler.archive(anyList())).thenReturn(Mono.error(new RuntimeException("S3 unavailable")));
+        when(jobRepository.release(job.id(), 1, "S3 unavailable")).thenReturn(Mono.just(1));
+
+        // When / Then - the run ends quietly and the job goes back in line
+        StepVerifier.create(worker.run(job))
+            .verifyComplete();
+
+        verify(jobRepository).release(job.id(), 1, "S3 unavailable");
+        verify(jobRepository, never()).fail(any(UUID.class), anyInt(), anyString(), any(Instant.class));
+        verifyNoInteractions(progressPublisher);
+        assertThat(meterRegistry.counter("export.jobs.failed").count()).isZero();
+    }
+
+    @Test
+    void shouldStopRunWhoseClaimWasTakenOver() {
+        // Given - the job's claim went stale and another run took it over
+        ExportJob job = job(1);
+        stubPhotos(job);
+        when(jobRepository.start(eq(job.id()), eq(1), eq(1), any(Instant.class))).thenReturn(Mono.just(0));
+
+        // When / Then
+        StepVerifier.create(worker.run(job))
+            .verifyComplete();
+
+        // Neither the archive nor the job row is touched: the job belongs to the other run
+        verifyNoInteractions(archiveHandler, multipartWriter, progressPublisher);
+        verify(jobRepository, never()).release(any(UUID.class), anyInt(), anyString());
+        verify(jobRepository, never()).fail(any(UUID.class), anyInt(), anyString(), any(Instant.class));
+    }
+
+    @Test
+    void shouldFailJobOnItsLastAttempt() {
+        // Given - the last attempt fails too
+        ExportJob job = job(MAX_ATTEMPTS);
+        stubPhotos(job);
+        when(jobRepository.start(eq(job.id()), eq(MAX_ATTEMPTS), eq(1), any(Instant.class))).thenReturn(Mono.just(1));
+        when(archiveHandler.archive(anyList())).thenReturn(Mono.error(new RuntimeException("S3 unavailable")));
+        when(jobRepository.fail(eq(job.id()), eq(MAX_ATTEMPTS), eq("S3 unavailable"), any(Instant.class)))
+            .thenReturn(Mono.just(1));
+        when(progressPublisher.publishExportNotification(eq(job.userId().toString()), any(ExportNotification.class)))
+            .thenReturn(Mono.just(1L));
+
+        // When / Then
+        StepVerifier.create(worker.run(job))
+            .verifyComplete();
+
+        verify(jobRepository, never()).release(any(UUID.class), anyInt(), anyString());
+        ArgumentCaptor<ExportNotification> notification = ArgumentCaptor.forClass(ExportNotification.class);
+        verify(progressPublisher).publishExportNotification(eq(job.userId().toString()), notification.capture());
+        assertThat(notification.getValue().type()).isEqualTo(ExportNotification.FAILED);
+        assertThat(notification.getValue().message()).isEqualTo("S3 unavailable");
+        assertThat(meterRegistry.counter("export.jobs.failed").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldFailAbandonedJobsBeforeClaiming() {
+        // Given
+        when(jobRepository.failAbandoned(any(Instant.class), any(Instant.class), eq(MAX_ATTEMPTS), anyString()))
+            .thenReturn(Mono.just(1));
+        when(jobRepository.claim(eq(2), any(Instant.class), any(Instant.class), eq(MAX_ATTEMPTS)))
+            .thenReturn(Flux.empty());
+
+        // When
+        worker.poll();
+
+        // Then - a job out of attempts is failed rather than claimed once more
+        InOrder inOrder = inOrder(jobRepository);
+        inOrder.verify(jobRepository).failAbandoned(any(Instant.class), any(Instant.class), eq(MAX_ATTEMPTS), anyString());
+        inOrder.verify(jobRepository).claim(eq(2), any(Instant.class), any(Instant.class), eq(MAX_ATTEMPTS));
+    }
+
+    private static ExportJob job(int attempts) {
+        return new ExportJob(UUID.randomUUID(), UUID.randomUUID(), ExportScope.ALL.name(), null,
+            ExportJobStatus.RUNNING.name(), null, 0, 0, null, null, attempts,
+            Instant.now(), Instant.now(), null);
+    }
+
+    private void stubPhotos(ExportJob job) {
+        Photo photo = Photo.initiate(job.userId(), null, "a.jpg", 1024L);
+        photo.startUpload(S3Location.of("bucket", "uploads/a.jpg"));
+        photo.completeUpload(null);
+        when(photoRepository.findByUserIdAndStatus(job.userId(), "COMPLETED")).thenReturn(Flux.just(photo));
+    }
+}
@@ -0,0 +1,205 @@
+package com.rapidphoto.infrastructure.export;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for S3MultipartWriter.
+ */
+@ExtendWith(MockitoExtension.class)
+class S3MultipartWriterTest {
+
+    private static final int PART_SIZE = S3MultipartWriter.MIN_PART_SIZE;
+    private static final String KEY = "exports/user/export.zip";
+
+    @Mock
+    private S3AsyncClient s3AsyncClient;
+
+    private S3MultipartWriter writer;
+    private final Map<Integer, byte[]> uploadedParts = new TreeMap<>();
+
+    @BeforeEach
+    void setUp() {
+        writer = new S3MultipartWriter(s3AsyncClient, "test-bucket", PART_SIZE);
+    }
+
+    @Test
+    void shouldCutContentIntoPartsAndCompleteUpload() {
+        // Given: 11MB arriving in chunks that do not line up with 5MB parts
+        byte[] content = pattern(11 * 1024 * 1024);
+        stubCreate();
+        stubUploadPart();
+        when(s3AsyncClient.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+            .thenReturn(CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build()));
+        List<Long> progress = new ArrayList<>();
+
+        // When
+        Mono<Long> result = writer.write(KEY, "application/zip", chunks(content, 3 * 1024 * 1024), content.length,
+            written -> Mono.fromRunnable(() -> progress.add(written)));
+
+        // Then
+        StepVerifier.create(result)
+            .expectNext((long) content.length)
+            .verifyComplete();
+
+        assertThat(uploadedParts.keySet()).containsExactly(1, 2, 3);
+        assertThat(uploadedParts.get(1)).hasSize(PART_SIZE);
+        assertThat(uploadedParts.get(2)).hasSize(PART_SIZE);
+        assertThat(uploadedParts.get(3)).hasSize(content.length - 2 * PART_SIZE);
+        assertThat(joined(uploadedParts)).isEqualTo(content);
+        assertThat(progress).containsExactly((long) PART_SIZE, 2L * PART_SIZE, (long) content.length);
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> completeCaptor =
+            ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3AsyncClient).completeMultipartUpload(completeCaptor.capture());
+        assertThat(completeCaptor.getValue().uploadId()).isEqualTo("upload-1");
+        assertThat(completeCaptor.getValue().multipartUpload().parts())
+            .extracting(CompletedPart::partNumber, CompletedPart::eTag)
+            .containsExactly(
+                tuple(1, "etag-1"),
+                tuple(2, "etag-2"),
+                tuple(3, "etag-3"));
+    }
+
+    @Test
+    void shouldUploadOneEmptyPart_WhenContentIsEmpty() {
+        // Given
+        stubCreate();
+        stubUploadPart();
+        when(s3AsyncClient.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+            .thenReturn(CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build()));
+
+        // When
+        Mono<Long> result = writer.write(KEY, "application/zip", Flux.empty(), -1, written -> Mono.empty());
+
+        // Then: S3 needs at least one part to complete an upload
+        StepVerifier.create(result)
+            .expectNext(0L)
+            .verifyComplete();
+        assertThat(uploadedParts.keySet()).containsExactly(1);
+        assertThat(uploadedParts.get(1)).isEmpty();
+    }
+
+    @Test
+    void shouldAbortUpload_WhenContentFails() {
+        // Given: one full part, then the archive fails
+        byte[] content = pattern(PART_SIZE + 1024);
+        stubCreate();
+        stubUploadPart();
+        when(s3AsyncClient.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+            .thenReturn(CompletableFuture.completedFuture(AbortMultipartUploadResponse.builder().build()));
+        Flux<DataBuffer> failing = chunks(content, 1024 * 1024)
+            .concatWith(Flux.error(new IllegalStateException("Failed to fetch S3 object")));
+
+        // When
+        Mono<Long> result = writer.write(KEY, "application/zip", failing, content.length, written -> Mono.empty());
+
+        // Then
+        StepVerifier.create(result)
+            .expectErrorMessage("Failed to fetch S3 object")
+            .verify();
+        assertThat(uploadedParts.keySet()).containsExactly(1);
+
+        ArgumentCaptor<AbortMultipartUploadRequest> abortCaptor =
+            ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+        verify(s3AsyncClient).abortMultipartUpload(abortCaptor.capture());
+        assertThat(abortCaptor.getValue().uploadId()).isEqualTo("upload-1");
+        verify(s3AsyncClient, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void shouldGrowParts_WhenObjectWouldNeedTooManyParts() {
+        // Small and unknown sizes keep the configured part size
+        assertThat(writer.partSizeFor(-1)).isEqualTo(PART_SIZE);
+        assertThat(writer.partSizeFor(1024L * 1024 * 1024)).isEqualTo(PART_SIZE);
+
+        // 100GB would need 20,000 parts of 5MB; parts grow to stay within half of S3's limit
+        long expected = 100L * 1024 * 1024 * 1024;
+        int partSize = writer.partSizeFor(expected);
+        assertThat(partSize).isGreaterThan(PART_SIZE);
+        assertThat((expected + partSize - 1) / partSize).isLessThanOrEqualTo(S3MultipartWriter.MAX_PARTS / 2);
+    }
+
+    private void stubCreate() {
+        when(s3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+            .thenReturn(CompletableFuture.completedFuture(
+                CreateMultipartUploadResponse.builder().uploadId("upload-1").build()));
+    }
+
+    private void stubUploadPart() {
+        when(s3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+            .thenAnswer(invocation -> {
+                UploadPartRequest request = invocation.getArgument(0);
+                AsyncRequestBody body = invocation.getArgument(1);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                Flux.from(body).doOnNext(buffer -> {
+                    byte[] chunk = new byte[buffer.remaining()];
+                    buffer.get(chunk);
+                    bytes.writeBytes(chunk);
+                }).blockLast();
+                assertThat(request.contentLength()).isEqualTo(bytes.size());
+                uploadedParts.put(request.partNumber(), bytes.toByteArray());
+                return CompletableFuture.completedFuture(
+                    UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build());
+            });
+    }
+
+    private static Flux<DataBuffer> chunks(byte[] content, int chunkSize) {
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int offset = 0; offset < content.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, content.length - offset);
+            buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(
+                Arrays.copyOfRange(content, offset, offset + length)));
+        }
+        return Flux.fromIterable(buffers);
+    }
+
+    private static byte[] pattern(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31 + i / 7);
+        }
+        return bytes;
+    }
+
+    private static byte[] joined(Map<Integer, byte[]> parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        parts.values().forEach(out::writeBytes);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,167 @@
+package com.rapidphoto.infrastructure.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rapidphoto.cqrs.commands.MarkPhotosUploadedCommand;
+import com.rapidphoto.cqrs.commands.handlers.MarkPhotosUploadedCommandHandler;
+import com.rapidphoto.domain.photo.PhotoBatchRepository.UploadCompletion;
+import com.rapidphoto.infrastructure.S3Service;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for completing uploads from S3 ObjectCreated notifications.
+ */
+@ExtendWith(MockitoExtension.class)
+class UploadIngestionWorkerTest {
+
+    private static final String BUCKET = "rapidphoto-uploads";
+
+    @Mock
+    private MarkPhotosUploadedCommandHandler markPhotosUploadedHandler;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private InMemoryUploadEventQueue queue;
+    private UploadIngestionWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        queue = new InMemoryUploadEventQueue();
+        worker = new UploadIngestionWorker(queue, markPhotosUploadedHandler, objectMapper, meterRegistry, BUCKET, 10);
+    }
+
+    @Test
+    void shouldCompleteEachUsersPhotosInOneCommand() {
+        // Given - two photos of one user (one notified twice) and one of another
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        UUID session = UUID.randomUUID();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        String firstKey = S3Service.buildUploadKey(alice, session, first, "beach day.jpg");
+        queue.offer(notification(BUCKET, firstKey, "etag-1"));
+        queue.offer(notification(BUCKET, S3Service.buildUploadKey(alice, session, second, "b.jpg"), "etag-2"));
+        queue.offer(notification(BUCKET, S3Service.buildUploadKey(bob, UUID.randomUUID(), third, "c.jpg"), "etag-3"));
+        queue.offer(notification(BUCKET, firstKey, "etag-1"));
+        when(markPhotosUploadedHandler.handle(any(MarkPhotosUploadedCommand.class)))
+            .thenAnswer(invocation -> Mono.just(
+                invocation.<MarkPhotosUploadedCommand>getArgument(0).completions().size()));
+
+        // When / Then
+        StepVerifier.create(worker.pollOnce())
+            .expectNext(4)
+            .verifyComplete();
+
+        ArgumentCaptor<MarkPhotosUploadedCommand> captor = ArgumentCaptor.forClass(MarkPhotosUploadedCommand.class);
+        verify(markPhotosUploadedHandler, times(2)).handle(captor.capture());
+        MarkPhotosUploadedCommand aliceCommand = captor.getAllValues().get(0);
+        assertThat(aliceCommand.userId()).isEqualTo(alice);
+        assertThat(aliceCommand.completions()).containsExactly(
+            new UploadCompletion(first, firstKey, "etag-1", null),
+            new UploadCompletion(second, S3Service.buildUploadKey(alice, session, second, "b.jpg"), "etag-2", null)
+        );
+        assertThat(captor.getAllValues().get(1).userId()).isEqualTo(bob);
+        assertThat(meterRegistry.counter("upload.ingest.completed").count()).isEqualTo(3.0);
+    }
+
+    @Test
+    void shouldIgnoreOtherBucketsKeysAndUnreadableMessages() {
+        // Given
+        queue.offer(notification("someone-elses-bucket",
+            S3Service.buildUploadKey(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), "a.jpg"), "e"));
+        queue.offer(notification(BUCKET, "thumbnails/not-an-upload.jpg", "e"));
+        queue.offer("{\"Event\":\"s3:TestEvent\"}");
+        queue.offer("not json");
+
+        // When / Then
+        StepVerifier.create(worker.pollOnce())
+            .expectNext(4)
+            .verifyComplete();
+        verifyNoInteractions(markPhotosUploadedHandler);
+        assertThat(meterRegistry.counter("upload.ingest.ignored").count()).isEqualTo(3.0);
+    }
+
+    @Test
+    void shouldKeepMessagesWhenCompletionFails() {
+        // Given
+        UploadEventQueue failingQueue = mock(UploadEventQueue.class);
+        UploadEventQueue.Message message = new UploadEventQueue.Message("r1", notification(BUCKET,
+            S3Service.buildUploadKey(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), "a.jpg"), "e"));
+        when(failingQueue.receive(anyInt())).thenReturn(Mono.just(List.of(message)));
+        when(markPhotosUploadedHandler.handle(any(MarkPhotosUploadedCommand.class)))
+            .thenReturn(Mono.error(new IllegalStateException("database down")));
+        worker = new UploadIngestionWorker(failingQueue, markPhotosUploadedHandler, objectMapper, meterRegistry, BUCKET, 10);
+
+        // When / Then - not deleted, so the queue redelivers it
+        StepVerifier.create(worker.pollOnce())
+            .expectError(IllegalStateException.class)
+            .verify();
+        verify(failingQueue, never()).delete(anyList());
+    }
+
+    @Test
+    void shouldDeleteMessagesOfOtherUsers_WhenOneUsersCompletionFails() {
+        // Given
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        UploadEventQueue failingQueue = mock(UploadEventQueue.class);
+        UploadEventQueue.Message aliceMessage = new UploadEventQueue.Message("r1", notification(BUCKET,
+            S3Service.buildUploadKey(alice, UUID.randomUUID(), UUID.randomUUID(), "a.jpg"), "e"));
+        UploadEventQueue.Message bobMessage = new UploadEventQueue.Message("r2", notification(BUCKET,
+            S3Service.buildUploadKey(bob, UUID.randomUUID(), UUID.randomUUID(), "b.jpg"), "e"));
+        when(failingQueue.receive(anyInt())).thenReturn(Mono.just(List.of(aliceMessage, bobMessage)));
+        when(failingQueue.delete(anyList())).thenReturn(Mono.empty());
+        when(markPhotosUploadedHandler.handle(any(MarkPhotosUploadedCommand.class)))
+            .thenAnswer(invocation -> invocation.<MarkPhotosUploadedCommand>getArgument(0).userId().equals(alice)
+                ? Mono.error(new IllegalStateException("database down"))
+                : Mono.just(1));
+        worker = new UploadIngestionWorker(failingQueue, markPhotosUploadedHandler, objectMapper, meterRegistry, BUCKET, 10);
+
+        // When / Then - Bob's message is deleted, Alice's is kept for redelivery
+        StepVerifier.create(worker.pollOnce())
+            .expectError(IllegalStateException.class)
+            .verify();
+        verify(failingQueue).delete(List.of(bobMessage));
+        assertThat(meterRegistry.counter("upload.ingest.completed").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void shouldParseUploadKeys() {
+        UUID userId = UUID.randomUUID();
+        UUID sessionId = UUID.randomUUID();
+        UUID photoId = UUID.randomUUID();
+
+        assertThat(S3Service.parseUploadKey(S3Service.buildUploadKey(userId, sessionId, photoId, "a/b-c.jpg")))
+            .contains(new S3Service.UploadKey(userId, sessionId, photoId, "a/b-c.jpg"));
+        assertThat(S3Service.parseUploadKey("uploads/" + userId + "/" + sessionId + "/not-a-photo-id.jpg")).isEmpty();
+        assertThat(S3Service.parseUploadKey("uploads/" + userId + "/" + photoId + "-a.jpg")).isEmpty();
+    }
+
+    private String notification(String bucket, String key, String etag) {
+        // S3 form-encodes keys in notifications
+        String encodedKey = URLEncoder.encode(key, StandardCharsets.UTF_8)
+            .replace("%2F", "/");
+        return """
+            {"Records":[{"eventName":"ObjectCreated:Put","s3":{"bucket":{"name":"%s"},"object":{"key":"%s","size":1024,"eTag":"%s"}}}]}
+            """.formatted(bucket, encodedKey, etag);
+    }
+}
@@ -0,0 +1,187 @@
+package com.rapidphoto.infrastructure.metadata;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageHeaderParserTest {
+
+    private final ImageHeaderParser parser = new ImageHeaderParser();
+
+    @Test
+    void shouldReadJpegFrameSize() throws IOException {
+        Map<String, Object> metadata = parser.parse(image(640, 480, "jpeg"));
+
+        assertThat(metadata)
+            .containsEntry("format", "jpeg")
+            .containsEntry("width", 640)
+            .containsEntry("height", 480);
+    }
+
+    @Test
+    void shouldReadExifAndReportRotatedSize() throws IOException {
+        Map<String, Object> metadata = parser.parse(withExif(image(640, 480, "jpeg")));
+
+        assertThat(metadata)
+            .containsEntry("camera_make", "Canon")
+            .containsEntry("camera_model", "Canon EOS R5")
+            .containsEntry("orientation", 6)
+            .containsEntry("taken_at", "2024-06-01T12:30:45")
+            // Orientation 6 is rotated 90 degrees, so the displayed size is portrait
+            .containsEntry("width", 480)
+            .containsEntry("height", 640);
+    }
+
+    @Test
+    void shouldKeepExifFromTruncatedHeader() throws IOException {
+        byte[] jpeg = withExif(image(640, 480, "jpeg"));
+        // Cut off right after the Exif segment, before the frame header
+        byte[] prefix = Arrays.copyOf(jpeg, 2 + 2 + exifSegment().length);
+
+        Map<String, Object> metadata = parser.parse(prefix);
+
+        assertThat(metadata)
+            .containsEntry("camera_model", "Canon EOS R5")
+            .doesNotContainKeys("width", "height");
+    }
+
+    @Test
+    void shouldReadPngSize() throws IOException {
+        Map<String, Object> metadata = parser.parse(image(300, 200, "png"));
+
+        assertThat(metadata)
+            .containsEntry("format", "png")
+            .containsEntry("width", 300)
+            .containsEntry("height", 200);
+    }
+
+    @Test
+    void shouldReadWebpCanvasSize() {
+        ByteBuffer chunk = ByteBuffer.allocate(18).order(ByteOrder.LITTLE_ENDIAN);
+        chunk.put(ascii("VP8X")).putInt(10);
+        chunk.put((byte) 0).put(new byte[3]);
+        putUint24(chunk, 4032 - 1);
+        putUint24(chunk, 3024 - 1);
+        byte[] webp = riff(chunk.array());
+
+        Map<String, Object> metadata = parser.parse(webp);
+
+        assertThat(metadata)
+            .containsEntry("format", "webp")
+            .containsEntry("width", 4032)
+            .containsEntry("height", 3024);
+    }
+
+    @Test
+    void shouldReadLargestHeicImageSpatialExtent() {
+        byte[] tile = box("ispe", ByteBuffer.allocate(12).putInt(0).putInt(512).putInt(512).array());
+        byte[] grid = box("ispe", ByteBuffer.allocate(12).putInt(0).putInt(4032).putInt(3024).array());
+        byte[] ipco = box("ipco", concat(tile, grid));
+        byte[] meta = box("meta", concat(new byte[4], box("hdlr", new byte[20]), box("iprp", ipco)));
+        byte[] ftyp = box("ftyp", concat(ascii("heic"), new byte[4], ascii("mif1heic")));
+
+        Map<String, Object> metadata = parser.parse(concat(ftyp, meta));
+
+        assertThat(metadata)
+            .containsEntry("format", "heic")
+            .containsEntry("width", 4032)
+            .containsEntry("height", 3024);
+    }
+
+    @Test
+    void shouldReturnEmptyForUnknownFormat() {
+        assertThat(parser.parse("definitely not an image".getBytes())).isEmpty();
+        assertThat(parser.parse(new byte[0])).isEmpty();
+    }
+
+    private static byte[] image(int width, int height, String format) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, format, bytes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Insert an APP1 Exif segment right after SOI.
+     */
+    private static byte[] withExif(byte[] jpeg) {
+        byte[] segment = exifSegment();
+        ByteBuffer app1 = ByteBuffer.allocate(4 + segment.length);
+        app1.put((byte) 0xFF).put((byte) 0xE1).putShort((short) (segment.length + 2)).put(segment);
+        return concat(Arrays.copyOf(jpeg, 2), app1.array(), Arrays.copyOfRange(jpeg, 2, jpeg.length));
+    }
+
+    /**
+     * Big-endian TIFF: IFD0 with Make, Model, Orientation and an Exif IFD with DateTimeOriginal.
+     */
+    private static byte[] exifSegment() {
+        byte[] make = ascii("Canon\0");
+        byte[] model = ascii("Canon EOS R5\0");
+        byte[] taken = ascii("2024:06:01 12:30:45\0");
+
+        int ifd0 = 8;
+        int ifd0Size = 2 + 4 * 12 + 4;
+        int exifIfd = ifd0 + ifd0Size;
+        int exifIfdSize = 2 + 12 + 4;
+        int makeOffset = exifIfd + exifIfdSize;
+        int modelOffset = makeOffset + make.length;
+        int takenOffset = modelOffset + model.length;
+
+        ByteBuffer tiff = ByteBuffer.allocate(takenOffset + taken.length);
+        tiff.put(ascii("MM")).putShort((short) 42).putInt(ifd0);
+        tiff.putShort((short) 4);
+        entry(tiff, 0x010F, 2, make.length, makeOffset);
+        entry(tiff, 0x0110, 2, model.length, modelOffset);
+        tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) 6).putShort((short) 0);
+        entry(tiff, 0x8769, 4, 1, exifIfd);
+        tiff.putInt(0);
+        tiff.putShort((short) 1);
+        entry(tiff, 0x9003, 2, taken.length, takenOffset);
+        tiff.putInt(0);
+        tiff.put(make).put(model).put(taken);
+
+        return concat(ascii("Exif\0\0"), tiff.array());
+    }
+
+    private static void entry(ByteBuffer buffer, int tag, int type, int count, int value) {
+        buffer.putShort((short) tag).putShort((short) type).putInt(count).putInt(value);
+    }
+
+    private static byte[] riff(byte[] chunks) {
+        ByteBuffer riff = ByteBuffer.allocate(12 + chunks.length).order(ByteOrder.LITTLE_ENDIAN);
+        riff.put(ascii("RIFF")).putInt(4 + chunks.length).put(ascii("WEBP")).put(chunks);
+        return riff.array();
+    }
+
+    private static void putUint24(ByteBuffer buffer, int value) {
+        buffer.put((byte) value).put((byte) (value >> 8)).put((byte) (value >> 16));
+    }
+
+    private static byte[] box(String type, byte[] payload) {
+        return ByteBuffer.allocate(8 + payload.length)
+            .putInt(8 + payload.length).put(ascii(type)).put(payload)
+            .array();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
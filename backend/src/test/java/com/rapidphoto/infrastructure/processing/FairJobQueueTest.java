@@ -0,0 +1,58 @@
+package com.rapidphoto.infrastructure.processing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FairJobQueueTest {
+
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+
+    @Test
+    void shouldServeUsersRoundRobin() {
+        FairJobQueue queue = new FairJobQueue(10, 10);
+        queue.offer(job(alice), true);
+        queue.offer(job(alice), true);
+        queue.offer(job(alice), true);
+        queue.offer(job(bob), true);
+
+        // Bob's single job is not stuck behind Alice's burst
+        assertThat(queue.poll().userId()).isEqualTo(alice);
+        assertThat(queue.poll().userId()).isEqualTo(bob);
+        assertThat(queue.poll().userId()).isEqualTo(alice);
+        assertThat(queue.poll().userId()).isEqualTo(alice);
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    void shouldRejectBeyondPerUserLimit() {
+        FairJobQueue queue = new FairJobQueue(10, 2);
+
+        assertThat(queue.offer(job(alice), true)).isTrue();
+        assertThat(queue.offer(job(alice), true)).isTrue();
+        assertThat(queue.offer(job(alice), true)).isFalse();
+        assertThat(queue.offer(job(bob), true)).isTrue();
+
+        // Drained overflow jobs only respect the overall capacity
+        assertThat(queue.offer(job(alice), false)).isTrue();
+        assertThat(queue.size()).isEqualTo(4);
+    }
+
+    @Test
+    void shouldRejectWhenFull() {
+        FairJobQueue queue = new FairJobQueue(2, 10);
+
+        assertThat(queue.offer(job(alice), true)).isTrue();
+        assertThat(queue.offer(job(bob), false)).isTrue();
+        assertThat(queue.offer(job(bob), false)).isFalse();
+        assertThat(queue.remainingCapacity()).isZero();
+    }
+
+    private static ProcessingJob job(UUID userId) {
+        return ProcessingJob.of(ProcessingJobType.THUMBNAILS, UUID.randomUUID(), userId);
+    }
+}
@@ -0,0 +1,277 @@
+package com.rapidphoto.infrastructure.processing;
+
+import com.rapidphoto.domain.photo.Photo;
+import com.rapidphoto.domain.photo.PhotoRepository;
+import com.rapidphoto.domain.photo.S3Location;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.AbstractReactiveTransactionManager;
+import org.springframework.transaction.reactive.GenericReactiveTransaction;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for PhotoProcessingQueue.
+ */
+@ExtendWith(MockitoExtension.class)
+class PhotoProcessingQueueTest {
+
+    @Mock
+    private PhotoRepository photoRepository;
+
+    @Mock
+    private ProcessingJobRepository jobRepository;
+
+    private final List<UUID> processed = new CopyOnWriteArrayList<>();
+    private final Map<UUID, Photo> photos = new ConcurrentHashMap<>();
+    private Function<Photo, Mono<Void>> processing = photo -> Mono.empty();
+    private PhotoProcessingQueue queue;
+    private Photo photo;
+
+    @BeforeEach
+    void setUp() {
+        photo = completedPhoto();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    void shouldQueueJobsOnlyOnceTransactionCommits() {
+        // Given
+        queue = queue(10, 10);
+        when(photoRepository.findById(photo.getId())).thenReturn(Mono.just(photo));
+        List<Boolean> startedBeforeCommit = new CopyOnWriteArrayList<>();
+
+        // When: submitted from inside a transaction
+        TransactionalOperator.create(new NoOpTransactionManager())
+            .transactional(Mono.defer(() -> queue.submitAfterCommit(photo.getId(), photo.getUserId()))
+                .then(Mono.fromRunnable(() -> startedBeforeCommit.add(
+                    queue.queuedJobs() > 0 || !mockingDetails(photoRepository).getInvocations().isEmpty()))))
+            .block();
+
+        // Then: nothing ran while the photo's row was still uncommitted
+        assertThat(startedBeforeCommit).containsExactly(false);
+        awaitProcessed(1);
+        assertThat(processed).containsExactly(photo.getId());
+    }
+
+    @Test
+    void shouldQueueJobsRightAwayWithoutTransaction() {
+        // Given
+        queue = queue(10, 10);
+        when(photoRepository.findById(photo.getId())).thenReturn(Mono.just(photo));
+
+        // When
+        queue.submitAfterCommit(photo.getId(), photo.getUserId()).block();
+
+        // Then
+        awaitProcessed(1);
+        assertThat(processed).containsExactly(photo.getId());
+    }
+
+    @Test
+    void shouldSpillWhenQueueIsFull_AndRunJobOnceDrained() throws InterruptedException {
+        // Given: one worker held busy and room for one more job in memory
+        queue = queue(1, 1);
+        stubPhotoLookup();
+        CountDownLatch release = new CountDownLatch(1);
+        Photo running = completedPhoto();
+        Photo waiting = completedPhoto();
+        Photo overflow = completedPhoto();
+        processing = photo -> photo == running
+            ? Mono.fromRunnable(() -> await(release))
+            : Mono.empty();
+        when(jobRepository.insert(eq("THUMBNAILS"), eq(overflow.getId()), eq(overflow.getUserId()), eq(0), any(Instant.class)))
+            .thenReturn(Mono.just(1));
+
+        // When
+        queue.submit(running.getId(), running.getUserId());
+        queue.submit(waiting.getId(), waiting.getUserId());
+        queue.submit(overflow.getId(), overflow.getUserId());
+
+        // Then: the third job went to processing_jobs
+        verify(jobRepository, timeout(5000)).insert(
+            eq("THUMBNAILS"), eq(overflow.getId()), eq(overflow.getUserId()), eq(0), any(Instant.class));
+        release.countDown();
+        awaitProcessed(2);
+
+        // When: the drain claims it back
+        UUID rowId = UUID.randomUUID();
+        when(jobRepository.deleteExhausted(any(Instant.class), eq(3))).thenReturn(Mono.just(0));
+        when(jobRepository.claim(anyInt(), any(Instant.class), any(Instant.class), eq(3))).thenReturn(Flux.just(
+            new ProcessingJobRecord(rowId, "THUMBNAILS", overflow.getId(), overflow.getUserId(), 1, Instant.now(), Instant.now())));
+        when(jobRepository.deleteById(rowId)).thenReturn(Mono.empty());
+        queue.drainSpilled();
+
+        // Then: it runs and its row is deleted
+        awaitProcessed(3);
+        assertThat(processed).containsExactly(running.getId(), waiting.getId(), overflow.getId());
+        verify(jobRepository, timeout(5000)).deleteById(rowId);
+    }
+
+    @Test
+    void shouldRetryFailedJobThroughOverflowTable() {
+        // Given
+        queue = queue(10, 10);
+        stubPhotoLookup();
+        processing = photo -> Mono.error(new IllegalStateException("S3 unavailable"));
+        when(jobRepository.insert(eq("THUMBNAILS"), eq(photo.getId()), eq(photo.getUserId()), eq(1), any(Instant.class)))
+            .thenReturn(Mono.just(1));
+
+        // When
+        queue.submit(photo.getId(), photo.getUserId());
+
+        // Then: stored with its first attempt counted, for the drain to run again
+        verify(jobRepository, timeout(5000)).insert(
+            eq("THUMBNAILS"), eq(photo.getId()), eq(photo.getUserId()), eq(1), any(Instant.class));
+    }
+
+    @Test
+    void shouldReleaseFailedDrainedJob_WhileAttemptsRemain() {
+        // Given
+        queue = queue(10, 10);
+        stubPhotoLookup();
+        processing = photo -> Mono.error(new IllegalStateException("S3 unavailable"));
+        UUID rowId = stubDrainedJob(2);
+        when(jobRepository.release(rowId)).thenReturn(Mono.just(1));
+
+        // When
+        queue.drainSpilled();
+
+        // Then
+        verify(jobRepository, timeout(5000)).release(rowId);
+        verify(jobRepository, never()).deleteById(rowId);
+    }
+
+    @Test
+    void shouldDeleteFailedDrainedJob_OnItsLastAttempt() {
+        // Given
+        queue = queue(10, 10);
+        stubPhotoLookup();
+        processing = photo -> Mono.error(new IllegalStateException("S3 unavailable"));
+        UUID rowId = stubDrainedJob(3);
+        when(jobRepository.deleteById(rowId)).thenReturn(Mono.empty());
+
+        // When
+        queue.drainSpilled();
+
+        // Then
+        verify(jobRepository, timeout(5000)).deleteById(rowId);
+        verify(jobRepository, never()).release(any(UUID.class));
+    }
+
+    private UUID stubDrainedJob(int attempts) {
+        UUID rowId = UUID.randomUUID();
+        when(jobRepository.deleteExhausted(any(Instant.class), eq(3))).thenReturn(Mono.just(0));
+        when(jobRepository.claim(anyInt(), any(Instant.class), any(Instant.class), eq(3))).thenReturn(Flux.just(
+            new ProcessingJobRecord(rowId, "THUMBNAILS", photo.getId(), photo.getUserId(), attempts,
+                Instant.now(), Instant.now())));
+        return rowId;
+    }
+
+    private void stubPhotoLookup() {
+        when(photoRepository.findById(any(UUID.class)))
+            .thenAnswer(invocation -> Mono.justOrEmpty(photos.get(invocation.<UUID>getArgument(0))));
+    }
+
+    private Photo completedPhoto() {
+        Photo completed = Photo.initiate(UUID.randomUUID(), null, "a.jpg", 1024L);
+        completed.startUpload(S3Location.of("bucket", "uploads/a.jpg"));
+        completed.completeUpload(null);
+        photos.put(completed.getId(), completed);
+        return completed;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private PhotoProcessingQueue queue(int capacity, int perUser) {
+        PhotoProcessor processor = new PhotoProcessor() {
+            @Override
+            public ProcessingJobType type() {
+                return ProcessingJobType.THUMBNAILS;
+            }
+
+            @Override
+            public Mono<Void> process(Photo photo) {
+                return processing.apply(photo).then(Mono.fromRunnable(() -> processed.add(photo.getId())));
+            }
+        };
+        return new PhotoProcessingQueue(photoRepository, jobRepository, List.of(processor),
+            new SimpleMeterRegistry(), 1, capacity, perUser);
+    }
+
+    private void awaitProcessed(int count) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (processed.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Runs transaction synchronizations without a database.
+     */
+    private static final class NoOpTransactionManager extends AbstractReactiveTransactionManager {
+
+        @Override
+        protected Object doGetTransaction(TransactionSynchronizationManager synchronizationManager) {
+            return new Object();
+        }
+
+        @Override
+        protected Mono<Void> doBegin(TransactionSynchronizationManager synchronizationManager, Object transaction,
+                                     TransactionDefinition definition) {
+            return Mono.empty();
+        }
+
+        @Override
+        protected Mono<Void> doCommit(TransactionSynchronizationManager synchronizationManager,
+                                      GenericReactiveTransaction status) {
+            return Mono.empty();
+        }
+
+        @Override
+        protected Mono<Void> doRollback(TransactionSynchronizationManager synchronizationManager,
+                                        GenericReactiveTransaction status) {
+            return Mono.empty();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.rapidphoto.infrastructure.thumbnail;
+
+import com.rapidphoto.infrastructure.metadata.ImageHeaderParser;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ThumbnailGeneratorTest {
+
+    private final ThumbnailGenerator generator = new ThumbnailGenerator(new ImageHeaderParser(), 131072);
+
+    @Test
+    void shouldFitEachSizeToLongestEdge() throws IOException {
+        byte[] source = image(4000, 3000, "png");
+
+        Map<Integer, byte[]> thumbnails = generator.generate(new ByteArrayInputStream(source), List.of(256, 1024));
+
+        assertThat(thumbnails).containsOnlyKeys(256, 1024);
+        BufferedImage small = read(thumbnails.get(256));
+        assertThat(small.getWidth()).isEqualTo(256);
+        assertThat(small.getHeight()).isEqualTo(192);
+        BufferedImage large = read(thumbnails.get(1024));
+        assertThat(large.getWidth()).isEqualTo(1024);
+        assertThat(large.getHeight()).isEqualTo(768);
+    }
+
+    @Test
+    void shouldNotUpscaleSmallImages() throws IOException {
+        byte[] source = image(200, 100, "jpeg");
+
+        Map<Integer, byte[]> thumbnails = generator.generate(new ByteArrayInputStream(source), List.of(512));
+
+        BufferedImage thumbnail = read(thumbnails.get(512));
+        assertThat(thumbnail.getWidth()).isEqualTo(200);
+        assertThat(thumbnail.getHeight()).isEqualTo(100);
+    }
+
+    @Test
+    void shouldTurnImageUprightByExifOrientation() throws IOException {
+        // Given: a landscape sensor image, red on the left, tagged "rotate 90 clockwise" (6)
+        byte[] source = withOrientation(halves(400, 200), 6);
+
+        // When
+        Map<Integer, byte[]> thumbnails = generator.generate(new ByteArrayInputStream(source), List.of(256));
+
+        // Then: portrait, with the left half now on top
+        BufferedImage thumbnail = read(thumbnails.get(256));
+        assertThat(thumbnail.getWidth()).isEqualTo(128);
+        assertThat(thumbnail.getHeight()).isEqualTo(256);
+        assertThat(new Color(thumbnail.getRGB(64, 32)).getRed()).isGreaterThan(200);
+        assertThat(new Color(thumbnail.getRGB(64, 224)).getBlue()).isGreaterThan(200);
+    }
+
+    @Test
+    void shouldMapEachOrientationToItsUprightCorner() {
+        // Given: a 3x2 image whose top-left pixel is marked
+        BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0xFFFFFF);
+
+        // Then: where that pixel lands once each orientation is undone
+        assertMarked(ThumbnailGenerator.orient(image, 1), 3, 2, 0, 0);
+        assertMarked(ThumbnailGenerator.orient(image, 2), 3, 2, 2, 0);
+        assertMarked(ThumbnailGenerator.orient(image, 3), 3, 2, 2, 1);
+        assertMarked(ThumbnailGenerator.orient(image, 4), 3, 2, 0, 1);
+        assertMarked(ThumbnailGenerator.orient(image, 5), 2, 3, 0, 0);
+        assertMarked(ThumbnailGenerator.orient(image, 6), 2, 3, 1, 0);
+        assertMarked(ThumbnailGenerator.orient(image, 7), 2, 3, 1, 2);
+        assertMarked(ThumbnailGenerator.orient(image, 8), 2, 3, 0, 2);
+    }
+
+    @Test
+    void shouldRejectUnsupportedFormat() {
+        byte[] notAnImage = "definitely not an image".getBytes();
+
+        assertThatThrownBy(() -> generator.generate(new ByteArrayInputStream(notAnImage), List.of(256)))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("Unsupported image format");
+    }
+
+    private static byte[] image(int width, int height, String format) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, format, bytes);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] halves(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, width / 2, height);
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(width / 2, 0, width - width / 2, height);
+        graphics.dispose();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", bytes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Insert an Exif APP1 segment holding only an Orientation tag after the JFIF APP0.
+     */
+    private static byte[] withOrientation(byte[] jpeg, int orientation) {
+        byte[] app1 = {
+            (byte) 0xFF, (byte) 0xE1, 0, 34,
+            'E', 'x', 'i', 'f', 0, 0,
+            'M', 'M', 0, 42, 0, 0, 0, 8,                    // Big-endian TIFF, IFD0 at 8
+            0, 1,                                           // One entry
+            0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0, // Orientation, SHORT
+            0, 0, 0, 0                                      // No next IFD
+        };
+        int app0End = 4 + ((jpeg[4] & 0xFF) << 8 | jpeg[5] & 0xFF);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(jpeg, 0, app0End);
+        bytes.writeBytes(app1);
+        bytes.write(jpeg, app0End, jpeg.length - app0End);
+        return bytes.toByteArray();
+    }
+
+    private static void assertMarked(BufferedImage image, int width, int height, int x, int y) {
+        assertThat(image.getWidth()).isEqualTo(width);
+        assertThat(image.getHeight()).isEqualTo(height);
+        assertThat(image.getRGB(x, y) & 0xFFFFFF).isEqualTo(0xFFFFFF);
+    }
+
+    private static BufferedImage read(byte[] jpeg) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(jpeg));
+    }
+}
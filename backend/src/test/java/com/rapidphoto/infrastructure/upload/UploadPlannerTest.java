@@ -0,0 +1,89 @@
+package com.rapidphoto.infrastructure.upload;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UploadPlannerTest {
+
+    private static final long MB = 1024L * 1024;
+
+    private UploadPlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        planner = new UploadPlanner(16 * MB, 8);
+    }
+
+    @Test
+    void shouldUseSinglePutBelowThreshold() {
+        UploadPlan plan = planner.plan(12 * MB, 3, null);
+
+        assertThat(plan.multipart()).isFalse();
+        assertThat(plan.partCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldUseFewerLargerPartsForMaxSizeFile() {
+        // 100MB with default preferences used to be 20 x 5MB parts
+        UploadPlan plan = planner.plan(100 * MB, 3, null);
+
+        assertThat(plan.multipart()).isTrue();
+        assertThat(plan.partSize()).isEqualTo(UploadPlanner.DEFAULT_PART_SIZE);
+        assertThat(plan.partCount()).isEqualTo(7);
+        assertThat(plan.suggestedConcurrency()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldSplitEvenlyAcrossConnectionsOnFastLinks() {
+        // 100MB/s observed: throughput-based part would be huge, cap at an even split
+        UploadPlan plan = planner.plan(100 * MB, 4, 100.0 * MB);
+
+        assertThat(plan.partSize()).isEqualTo(25 * MB);
+        assertThat(plan.partCount()).isEqualTo(4);
+        assertThat(plan.suggestedConcurrency()).isEqualTo(4);
+    }
+
+    @Test
+    void shouldSizePartsFromPerConnectionThroughput() {
+        // 2MB/s per connection: 8s per part is 16MB, whatever the concurrency
+        UploadPlan plan = planner.plan(200 * MB, 4, 2.0 * MB);
+
+        assertThat(plan.partSize()).isEqualTo(16 * MB);
+        assertThat(plan.partCount()).isEqualTo(13);
+        assertThat(plan.suggestedConcurrency()).isEqualTo(4);
+    }
+
+    @Test
+    void shouldUseMinimumPartSizeOnSlowLinks() {
+        // 512KB/s per connection: 8s per part would be < 5MB, clamp to the S3 minimum
+        UploadPlan plan = planner.plan(40 * MB, 3, 0.5 * MB);
+
+        assertThat(plan.partSize()).isEqualTo(UploadPlanner.MIN_PART_SIZE);
+        assertThat(plan.partCount()).isEqualTo(8);
+    }
+
+    @Test
+    void shouldNotSuggestMoreConcurrencyThanParts() {
+        UploadPlan plan = planner.plan(20 * MB, 10, null);
+
+        assertThat(plan.partCount()).isEqualTo(4);
+        assertThat(plan.suggestedConcurrency()).isEqualTo(4);
+    }
+
+    @Test
+    void shouldStayWithinS3PartLimit() {
+        UploadPlan plan = planner.plan(200_000 * MB, 3, 1.0 * MB);
+
+        assertThat(plan.partCount()).isLessThanOrEqualTo(UploadPlanner.MAX_PARTS);
+        assertThat(plan.partSize() * plan.partCount()).isGreaterThanOrEqualTo(200_000 * MB);
+    }
+
+    @Test
+    void shouldRejectNonPositiveSize() {
+        assertThatThrownBy(() -> planner.plan(0, 3, null))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -153,9 +153,9 @@ class DownloadIntegrationTest extends IntegrationTestBase {
         // Create photos with large file sizes (simulated)
         List<UUID> photoIds = new ArrayList<>();
 
-        // Create 10 photos, each 60MB (total 600MB > 500MB limit)
+        // Create 10 photos, each 1.1GB (total 11GB > 10GB limit)
         for (int i = 0; i < 10; i++) {
-            photoIds.add(createTestPhoto("large" + i + ".jpg", 60_000_000L));
+            photoIds.add(createTestPhoto("large" + i + ".jpg", 1_100_000_000L));
         }
 
         // Attempt batch download - should fail due to size limit
@@ -167,7 +167,7 @@ class DownloadIntegrationTest extends IntegrationTestBase {
             .exchange()
             .expectStatus().isBadRequest()
             .expectBody()
-            .jsonPath("$.message").value(containsString("500MB"));
+            .jsonPath("$.message").value(containsString("10240MB"));
     }
 
     @Test
@@ -189,6 +189,53 @@ class GalleryIntegrationTest extends IntegrationTestBase {
             .jsonPath("$.length()").isEqualTo(5);
     }
 
+    @Test
+    void testGalleryStreaming_NdjsonReturnsOnePhotoPerLine() {
+        UUID photo1 = createTestPhoto("first.jpg", 100000L);
+        UUID photo2 = createTestPhoto("second.jpg", 200000L);
+        UUID photo3 = createTestPhoto("third.jpg", 300000L);
+
+        // Stream a full page of 2 - the cursor header is sent before the body
+        var result = webTestClient.get()
+            .uri(uriBuilder -> uriBuilder
+                .path("/api/photos")
+                .queryParam("size", 2)
+                .build())
+            .header(HttpHeaders.AUTHORIZATION, authHeader())
+            .accept(MediaType.APPLICATION_NDJSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+            .expectHeader().exists("X-Next-Cursor")
+            .returnResult(Map.class);
+
+        String cursor = result.getResponseHeaders().getFirst("X-Next-Cursor");
+        List<Object> firstPageIds = result.getResponseBody()
+            .map(photo -> photo.get("id"))
+            .collectList()
+            .block();
+        assertThat(firstPageIds).hasSize(2);
+
+        // The streamed cursor continues with the remaining photo
+        List<Object> allIds = new ArrayList<>(firstPageIds);
+        webTestClient.get()
+            .uri(uriBuilder -> uriBuilder
+                .path("/api/photos")
+                .queryParam("size", 2)
+                .queryParam("cursor", cursor)
+                .build())
+            .header(HttpHeaders.AUTHORIZATION, authHeader())
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().doesNotExist("X-Next-Cursor")
+            .expectBody()
+            .jsonPath("$.length()").isEqualTo(1)
+            .jsonPath("$[0].id").value(allIds::add);
+
+        assertThat(allIds).containsExactlyInAnyOrder(
+            photo1.toString(), photo2.toString(), photo3.toString());
+    }
+
     @Test
     void testPhotoOrdering_ByUploadDate() {
         // Create photos with small delays to ensure different timestamps
@@ -0,0 +1,129 @@
+package com.rapidphoto.streaming;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rapidphoto.streaming.UploadProgressPublisher.PublishedMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Rough comparison of the two progress wire formats: bytes per event and encode/decode
+ * time, Jackson JSON (as published, with eventId) against ProgressMessageCodec.
+ *
+ * Not a test; run the main method from the IDE or with the test classpath. Numbers are
+ * a warmed-up average over a mixed batch of events, good enough to compare the formats
+ * but not a substitute for a JMH run.
+ */
+public final class ProgressCodecBenchmark {
+
+    private static final int EVENTS = 1_000;
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 500;
+
+    private static volatile Object sink;
+
+    private ProgressCodecBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Like Spring Boot's mapper, which the subscribers use, so eventId is ignored
+        ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        ProgressMessageCodec codec = new ProgressMessageCodec();
+        List<UploadProgressMessage> messages = sampleEvents();
+
+        List<String> json = new ArrayList<>(EVENTS);
+        List<byte[]> binary = new ArrayList<>(EVENTS);
+        long jsonBytes = 0;
+        long binaryBytes = 0;
+        for (int i = 0; i < EVENTS; i++) {
+            String encoded = encodeJson(objectMapper, messages.get(i), eventId(i));
+            json.add(encoded);
+            jsonBytes += encoded.getBytes(StandardCharsets.UTF_8).length;
+            binary.add(codec.encode(messages.get(i), eventId(i)));
+            binaryBytes += binary.get(i).length;
+        }
+
+        double jsonEncode = time(() -> {
+            for (int i = 0; i < EVENTS; i++) {
+                sink = encodeJson(objectMapper, messages.get(i), eventId(i)).getBytes(StandardCharsets.UTF_8);
+            }
+        });
+        double binaryEncode = time(() -> {
+            for (int i = 0; i < EVENTS; i++) {
+                sink = codec.encode(messages.get(i), eventId(i));
+            }
+        });
+        double jsonDecode = time(() -> {
+            for (String payload : json) {
+                sink = objectMapper.readValue(payload, UploadProgressMessage.class);
+            }
+        });
+        double binaryDecode = time(() -> {
+            for (byte[] payload : binary) {
+                PublishedMessage decoded = codec.decode(payload);
+                sink = decoded.message();
+            }
+        });
+
+        System.out.printf("%-8s %12s %14s %14s%n", "format", "bytes/event", "encode ns/op", "decode ns/op");
+        System.out.printf("%-8s %12.1f %14.0f %14.0f%n", "json", (double) jsonBytes / EVENTS, jsonEncode, jsonDecode);
+        System.out.printf("%-8s %12.1f %14.0f %14.0f%n", "binary", (double) binaryBytes / EVENTS, binaryEncode, binaryDecode);
+    }
+
+    /**
+     * Mostly single-photo uploads, as in a real session, with some batches, failures and completions.
+     */
+    private static List<UploadProgressMessage> sampleEvents() {
+        String sessionId = UUID.randomUUID().toString();
+        List<UploadProgressMessage> messages = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            int percent = i * 100 / EVENTS;
+            if (i % 50 == 49) {
+                messages.add(new PhotoFailedMessage(sessionId, UUID.randomUUID().toString(),
+                    "Upload to storage failed", i / 50, EVENTS));
+            } else if (i % 10 == 9) {
+                messages.add(new PhotoUploadedMessage(sessionId, UUID.randomUUID().toString(),
+                    List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString()), i, EVENTS, percent));
+            } else {
+                messages.add(new PhotoUploadedMessage(sessionId, UUID.randomUUID().toString(), i, EVENTS, percent));
+            }
+        }
+        messages.set(EVENTS - 1, new SessionCompletedMessage(sessionId, EVENTS - 20, 20, EVENTS));
+        return messages;
+    }
+
+    private static String encodeJson(ObjectMapper objectMapper, UploadProgressMessage message, String eventId)
+        throws Exception {
+        String messageJson = objectMapper.writeValueAsString(message);
+        // Same splice the publisher does for the event log id
+        return messageJson.substring(0, messageJson.lastIndexOf('}'))
+            + ",\"" + UploadProgressPublisher.EVENT_ID_FIELD + "\":\"" + eventId + "\"}";
+    }
+
+    private static String eventId(int i) {
+        return "1700000000000-" + i;
+    }
+
+    /**
+     * Average nanoseconds per event over the measured rounds.
+     */
+    private static double time(Round round) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            round.run();
+        }
+        return (double) (System.nanoTime() - start) / MEASURED_ROUNDS / EVENTS;
+    }
+
+    @FunctionalInterface
+    private interface Round {
+        void run() throws Exception;
+    }
+}
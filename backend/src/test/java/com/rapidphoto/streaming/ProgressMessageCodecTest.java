@@ -0,0 +1,95 @@
+package com.rapidphoto.streaming;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rapidphoto.streaming.UploadProgressPublisher.PublishedMessage;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for the compact binary progress wire format.
+ */
+class ProgressMessageCodecTest {
+
+    private final ProgressMessageCodec codec = new ProgressMessageCodec();
+
+    @Test
+    void shouldRoundTripEveryMessageKind() {
+        String sessionId = UUID.randomUUID().toString();
+        String photoId = UUID.randomUUID().toString();
+        List<UploadProgressMessage> messages = List.of(
+            new PhotoUploadedMessage(sessionId, photoId, 3, 10, 30),
+            new PhotoUploadedMessage(sessionId, photoId,
+                List.of(UUID.randomUUID().toString(), photoId), 5, 10, 50),
+            new PhotoFailedMessage(sessionId, photoId, "Checksum mismatch: \u00fcn\u00efcode", 1, 10),
+            new PhotoFailedMessage(sessionId, photoId, null, 2, 10),
+            new SessionCompletedMessage(sessionId, 8, 2, 10),
+            new SessionSnapshotMessage(sessionId, 4, 1, 10, 50)
+        );
+
+        for (UploadProgressMessage message : messages) {
+            PublishedMessage decoded = codec.decode(codec.encode(message, "1700000000000-42"));
+
+            assertThat(decoded.message()).isEqualTo(message);
+            assertThat(decoded.eventId()).isEqualTo("1700000000000-42");
+        }
+    }
+
+    @Test
+    void shouldRoundTripNonUuidIdsAndMissingEventId() {
+        // Given - ids that must come back as the exact same strings
+        PhotoUploadedMessage message = new PhotoUploadedMessage(
+            "session-123", "photo-456", List.of("photo-455", "photo-456"), 2, 4, 50);
+        PhotoFailedMessage upperCase = new PhotoFailedMessage(
+            UUID.randomUUID().toString().toUpperCase(), "p", "error", 1, 1);
+
+        // When / Then
+        PublishedMessage decoded = codec.decode(codec.encode(message, null));
+        assertThat(decoded.message()).isEqualTo(message);
+        assertThat(decoded.eventId()).isNull();
+        assertThat(codec.decode(codec.encode(upperCase, null)).message()).isEqualTo(upperCase);
+    }
+
+    @Test
+    void shouldBeSmallerThanJson() throws Exception {
+        // Given
+        ObjectMapper objectMapper = new ObjectMapper();
+        String sessionId = UUID.randomUUID().toString();
+        PhotoUploadedMessage message = new PhotoUploadedMessage(sessionId, UUID.randomUUID().toString(), 37, 100, 37);
+
+        // When
+        byte[] binary = codec.encode(message, "1700000000000-36");
+        byte[] json = objectMapper.writeValueAsString(message).getBytes(StandardCharsets.UTF_8);
+
+        // Then
+        assertThat(binary.length).isLessThan(json.length / 3);
+    }
+
+    @Test
+    void shouldTellBinaryFromJsonPayloads() {
+        byte[] binary = codec.encode(new SessionCompletedMessage("s", 1, 0, 1), null);
+
+        assertThat(ProgressMessageCodec.isBinary(binary)).isTrue();
+        assertThat(ProgressMessageCodec.isBinary("{\"type\":\"SESSION_COMPLETED\"}".getBytes(StandardCharsets.UTF_8)))
+            .isFalse();
+        assertThat(ProgressMessageCodec.isBinary(new byte[0])).isFalse();
+    }
+
+    @Test
+    void shouldRejectTruncatedOrUnknownPayloads() {
+        byte[] binary = codec.encode(new PhotoFailedMessage("s", "p", "error", 1, 2), "1-1");
+
+        assertThatThrownBy(() -> codec.decode(Arrays.copyOf(binary, binary.length - 3)))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> codec.decode(new byte[] {ProgressMessageCodec.FORMAT, 9, 0}))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> codec.decode("{}".getBytes(StandardCharsets.UTF_8)))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,160 @@
+package com.rapidphoto.streaming;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.ReactiveSubscription.PatternMessage;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for RedisSubscriptionHub routing and reference counting.
+ */
+@ExtendWith(MockitoExtension.class)
+class RedisSubscriptionHubTest {
+
+    @Mock
+    private ReactiveRedisTemplate<String, byte[]> redisTemplate;
+
+    @Mock
+    private UploadProgressPublisher publisher;
+
+    private final ProgressMessageCodec codec = new ProgressMessageCodec();
+    private final Sinks.Many<PatternMessage<String, String, byte[]>> redis = Sinks.many().multicast().directBestEffort();
+    private final AtomicInteger redisSubscriptions = new AtomicInteger();
+
+    private RedisSubscriptionHub hub;
+
+    @BeforeEach
+    void setUp() {
+        Flux<PatternMessage<String, String, byte[]>> patternMessages = redis.asFlux()
+            .doOnSubscribe(s -> redisSubscriptions.incrementAndGet());
+        doReturn(patternMessages).when(redisTemplate).listenToPattern(any(String[].class));
+        hub = new RedisSubscriptionHub(redisTemplate, publisher, codec, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void shouldRouteMessagesToListenersOfTheirChannelOverOneSubscription() {
+        // Given - two sessions with three local listeners
+        Flux<ServerSentEvent<String>> first = hub.listen("upload-session:a");
+        Flux<ServerSentEvent<String>> second = hub.listen("upload-session:a");
+        Flux<ServerSentEvent<String>> other = hub.listen("upload-session:b");
+
+        // When / Then
+        StepVerifier.create(Flux.merge(first.take(1), second.take(1), other.take(1)).collectList())
+            .then(() -> {
+                assertThat(redisSubscriptions).hasValue(1);
+                assertThat(hub.listenerCount()).isEqualTo(3);
+                publish("upload-session:a", progress("1-1"));
+                publish("upload-session:b", progress("1-2"));
+            })
+            .assertNext(frames -> {
+                assertThat(frames).extracting(ServerSentEvent::id).containsExactlyInAnyOrder("1-1", "1-1", "1-2");
+                // One frame per message, shared by every listener of the channel
+                assertThat(frames.stream().filter(frame -> "1-1".equals(frame.id())).distinct()).hasSize(1);
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldForwardPublishedJsonAsFrameData() {
+        String json = progress("1700000000000-4");
+
+        StepVerifier.create(hub.listen("upload-session:a"))
+            .then(() -> publish("upload-session:a", json))
+            .assertNext(frame -> {
+                assertThat(frame.event()).isEqualTo("PHOTO_UPLOADED");
+                assertThat(frame.id()).isEqualTo("1700000000000-4");
+                assertThat(frame.data()).isEqualTo(json);
+            })
+            .thenCancel()
+            .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void shouldRenderBinaryPayloadsAsJsonFrames() {
+        // Given - a compact message on the same channel as JSON ones
+        SessionCompletedMessage message = new SessionCompletedMessage("a", 9, 1, 10);
+        String json = "{\"type\":\"SESSION_COMPLETED\",\"sessionId\":\"a\"}";
+        when(publisher.serializeMessage(message)).thenReturn(json);
+
+        StepVerifier.create(hub.listen("upload-session:a"))
+            // When
+            .then(() -> {
+                redis.tryEmitNext(new PatternMessage<>("upload-session:*", "upload-session:a",
+                    codec.encode(message, "1700000000000-5")));
+                publish("upload-session:a", progress("1700000000000-6"));
+            })
+            // Then
+            .assertNext(frame -> {
+                assertThat(frame.event()).isEqualTo("SESSION_COMPLETED");
+                assertThat(frame.id()).isEqualTo("1700000000000-5");
+                assertThat(frame.data()).isEqualTo(json);
+            })
+            .assertNext(frame -> assertThat(frame.id()).isEqualTo("1700000000000-6"))
+            .thenCancel()
+            .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void shouldCloseSharedSubscriptionWhenLastListenerLeaves() {
+        // Given
+        StepVerifier.create(hub.listen("user-notifications:u"))
+            .then(() -> assertThat(redis.currentSubscriberCount()).isEqualTo(1))
+            // When
+            .thenCancel()
+            .verify(Duration.ofSeconds(1));
+
+        // Then - nothing left to route to
+        assertThat(hub.listenerCount()).isZero();
+        assertThat(redis.currentSubscriberCount()).isZero();
+
+        // A new listener opens a fresh subscription
+        StepVerifier.create(hub.listen("user-notifications:u"))
+            .then(() -> publish("user-notifications:u", "{\"message\":\"hello\"}"))
+            .assertNext(frame -> {
+                assertThat(frame.event()).isEqualTo("notification");
+                assertThat(frame.data()).isEqualTo("{\"message\":\"hello\"}");
+            })
+            .thenCancel()
+            .verify(Duration.ofSeconds(1));
+        assertThat(redisSubscriptions).hasValue(2);
+    }
+
+    @Test
+    void shouldSkipMessagesForOtherChannelsAndUnreadablePayloads() {
+        StepVerifier.create(hub.listen("upload-session:a"))
+            .then(() -> {
+                publish("upload-session:other", progress("1-1"));
+                publish("upload-session:a", "not json");
+                publish("upload-session:a", progress("1-2"));
+            })
+            .assertNext(frame -> assertThat(frame.id()).isEqualTo("1-2"))
+            .thenCancel()
+            .verify(Duration.ofSeconds(1));
+    }
+
+    private void publish(String channel, String payload) {
+        String pattern = channel.substring(0, channel.indexOf(':') + 1) + "*";
+        redis.tryEmitNext(new PatternMessage<>(pattern, channel, payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String progress(String eventId) {
+        return "{\"type\":\"PHOTO_UPLOADED\",\"sessionId\":\"s\",\"photoIds\":[\"p\"],\"eventId\":\"" + eventId + "\"}";
+    }
+}
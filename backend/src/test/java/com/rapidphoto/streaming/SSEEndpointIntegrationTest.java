@@ -106,14 +106,14 @@ class SSEEndpointIntegrationTest extends BaseIntegrationTest {
 
         // When - Call controller method directly (bypassing WebTestClient blocking issue)
         // AC1: Connection succeeds and returns Flux<ServerSentEvent> (equivalent to HTTP 200 + text/event-stream)
-        Flux<ServerSentEvent<UploadProgressMessage>> sseStream = streamController.streamProgress(
+        Flux<ServerSentEvent<String>> sseStream = streamController.streamProgress(
             sessionId,
             userPrincipal
         );
 
         // Then - Verify we can receive events from the stream
         // Take only 1 event to avoid infinite stream
-        Flux<ServerSentEvent<UploadProgressMessage>> streamEvents = sseStream.take(1);
+        Flux<ServerSentEvent<String>> streamEvents = sseStream.take(1);
 
         // Publish a message after a short delay to ensure subscription is active
         Mono.delay(Duration.ofMillis(200))
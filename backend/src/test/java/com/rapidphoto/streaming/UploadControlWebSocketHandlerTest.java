@@ -0,0 +1,130 @@
+package com.rapidphoto.streaming;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rapidphoto.cqrs.commands.CancelUploadSessionCommand;
+import com.rapidphoto.cqrs.commands.FailPhotoUploadCommand;
+import com.rapidphoto.cqrs.commands.MarkPhotosUploadedCommand;
+import com.rapidphoto.cqrs.commands.handlers.CancelUploadSessionCommandHandler;
+import com.rapidphoto.cqrs.commands.handlers.FailPhotoUploadCommandHandler;
+import com.rapidphoto.cqrs.commands.handlers.MarkPhotosUploadedCommandHandler;
+import com.rapidphoto.domain.photo.PhotoBatchRepository.UploadCompletion;
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
+import com.rapidphoto.security.UserPrincipal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for command handling on the upload control WebSocket.
+ */
+@ExtendWith(MockitoExtension.class)
+class UploadControlWebSocketHandlerTest {
+
+    @Mock
+    private RedisSubscriptionHub subscriptionHub;
+
+    @Mock
+    private UploadProgressPublisher progressPublisher;
+
+    @Mock
+    private SessionProgressStore progressStore;
+
+    @Mock
+    private MarkPhotosUploadedCommandHandler markPhotosUploadedHandler;
+
+    @Mock
+    private FailPhotoUploadCommandHandler failPhotoUploadHandler;
+
+    @Mock
+    private CancelUploadSessionCommandHandler cancelUploadSessionHandler;
+
+    private final UUID sessionId = UUID.randomUUID();
+    private final UserPrincipal user = new UserPrincipal(UUID.randomUUID(), "user@example.com", "user@example.com");
+
+    private UploadControlWebSocketHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        handler = new UploadControlWebSocketHandler(subscriptionHub, progressPublisher, progressStore,
+            markPhotosUploadedHandler, failPhotoUploadHandler, cancelUploadSessionHandler, new ObjectMapper());
+    }
+
+    @Test
+    void shouldAckPhotoUploaded() {
+        // Given
+        UUID photoId = UUID.randomUUID();
+        // Through the bulk handler, which counts the photo in its session
+        MarkPhotosUploadedCommand expected = new MarkPhotosUploadedCommand(
+            List.of(new UploadCompletion(photoId, "uploads/a.jpg", null, 1500L)), user.userId());
+        when(markPhotosUploadedHandler.handle(expected)).thenReturn(Mono.just(1));
+
+        // When / Then
+        StepVerifier.create(handler.execute(
+                "{\"type\":\"PHOTO_UPLOADED\",\"requestId\":\"r1\",\"photoId\":\"" + photoId + "\",\"s3Key\":\"uploads/a.jpg\",\"transferMillis\":1500}",
+                sessionId, user))
+            .expectNext(UploadControlReply.ack("r1"))
+            .verifyComplete();
+        verify(markPhotosUploadedHandler).handle(expected);
+    }
+
+    @Test
+    void shouldRunFailureReportsAndCancelAgainstTheSocketsSession() {
+        // Given
+        UUID photoId = UUID.randomUUID();
+        when(failPhotoUploadHandler.handle(new FailPhotoUploadCommand(photoId, "Network error", user.userId())))
+            .thenReturn(Mono.empty());
+        when(cancelUploadSessionHandler.handle(new CancelUploadSessionCommand(sessionId, user.userId())))
+            .thenReturn(Mono.empty());
+
+        // When / Then
+        StepVerifier.create(handler.execute(
+                "{\"type\":\"PHOTO_FAILED\",\"requestId\":\"r2\",\"photoId\":\"" + photoId + "\",\"reason\":\"Network error\"}",
+                sessionId, user))
+            .expectNext(UploadControlReply.ack("r2"))
+            .verifyComplete();
+        StepVerifier.create(handler.execute("{\"type\":\"CANCEL\",\"requestId\":\"r3\"}", sessionId, user))
+            .expectNext(UploadControlReply.ack("r3"))
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldReplyWithErrorInsteadOfFailingTheSocket() {
+        // Given
+        UUID photoId = UUID.randomUUID();
+        when(markPhotosUploadedHandler.handle(any(MarkPhotosUploadedCommand.class)))
+            .thenReturn(Mono.error(new IllegalArgumentException("Invalid S3 key")));
+
+        // When / Then - command errors
+        StepVerifier.create(handler.execute(
+                "{\"type\":\"PHOTO_UPLOADED\",\"requestId\":\"r4\",\"photoId\":\"" + photoId + "\",\"s3Key\":\"k\"}",
+                sessionId, user))
+            .expectNext(UploadControlReply.error("r4", "Invalid S3 key"))
+            .verifyComplete();
+
+        // Malformed ids and messages
+        StepVerifier.create(handler.execute(
+                "{\"type\":\"PHOTO_FAILED\",\"requestId\":\"r5\",\"photoId\":\"nope\"}", sessionId, user))
+            .assertNext(reply -> {
+                assertThat(reply.type()).isEqualTo("ERROR");
+                assertThat(reply.requestId()).isEqualTo("r5");
+            })
+            .verifyComplete();
+        StepVerifier.create(handler.execute("{\"type\":\"DELETE_EVERYTHING\"}", sessionId, user))
+            .expectNext(UploadControlReply.error(null, "Unreadable message"))
+            .verifyComplete();
+        verifyNoInteractions(failPhotoUploadHandler, cancelUploadSessionHandler);
+    }
+}
@@ -3,24 +3,31 @@ package com.rapidphoto.streaming;
 import com.rapidphoto.domain.events.PhotoUploadFailedEvent;
 import com.rapidphoto.domain.events.PhotoUploadedEvent;
 import com.rapidphoto.domain.events.UploadSessionCompletedEvent;
+import com.rapidphoto.domain.upload.SessionProgress;
 import com.rapidphoto.domain.upload.SessionStatus;
 import com.rapidphoto.domain.upload.UploadSession;
-import com.rapidphoto.domain.upload.UploadSessionRepository;
+import com.rapidphoto.infrastructure.upload.SessionProgressStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -34,13 +41,14 @@ class UploadProgressEventHandlerTest {
     private UploadProgressPublisher progressPublisher;
 
     @Mock
-    private UploadSessionRepository sessionRepository;
+    private SessionProgressStore progressStore;
 
     private UploadProgressEventHandler eventHandler;
 
     @BeforeEach
     void setUp() {
-        eventHandler = new UploadProgressEventHandler(progressPublisher, sessionRepository);
+        // No coalescing window: every completion is published on its own
+        eventHandler = new UploadProgressEventHandler(progressPublisher, progressStore, 0);
     }
 
     @Test
@@ -63,7 +71,7 @@ class UploadProgressEventHandlerTest {
         session.recordPhotoUploaded();
         session.recordPhotoUploaded(); // 3 photos uploaded
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Mono.just(session));
+        when(progressStore.get(sessionId)).thenReturn(Mono.just(SessionProgress.of(session)));
         when(progressPublisher.publishSessionProgress(any(), any())).thenReturn(Mono.just(2L));
 
         // When
@@ -105,7 +113,7 @@ class UploadProgressEventHandlerTest {
         session.recordPhotoFailed();
         session.recordPhotoFailed(); // 2 photos failed
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Mono.just(session));
+        when(progressStore.get(sessionId)).thenReturn(Mono.just(SessionProgress.of(session)));
         when(progressPublisher.publishSessionProgress(any(), any())).thenReturn(Mono.just(1L));
 
         // When
@@ -192,7 +200,7 @@ class UploadProgressEventHandlerTest {
             "test-photo.jpg"
         );
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Mono.empty());
+        when(progressStore.get(sessionId)).thenReturn(Mono.empty());
 
         // When
         Mono<Void> result = eventHandler.handlePhotoUploaded(event);
@@ -223,7 +231,7 @@ class UploadProgressEventHandlerTest {
             session.recordPhotoUploaded();
         }
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Mono.just(session));
+        when(progressStore.get(sessionId)).thenReturn(Mono.just(SessionProgress.of(session)));
         when(progressPublisher.publishSessionProgress(any(), any())).thenReturn(Mono.just(1L));
 
         // When
@@ -258,7 +266,7 @@ class UploadProgressEventHandlerTest {
         UploadSession session = UploadSession.start(userId);
         session.setTotalPhotos(10);
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Mono.just(session));
+        when(progressStore.get(sessionId)).thenReturn(Mono.just(SessionProgress.of(session)));
         when(progressPublisher.publishSessionProgress(any(), any()))
             .thenReturn(Mono.error(new RuntimeException("Redis connection failed")));
 
@@ -270,4 +278,142 @@ class UploadProgressEventHandlerTest {
             .expectErrorMessage("Redis connection failed")
             .verify();
     }
+
+    @Test
+    void shouldCoalescePhotoUploadedWithinWindow() {
+        // Given
+        UploadProgressEventHandler coalescing = new UploadProgressEventHandler(progressPublisher, progressStore, 50);
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+
+        when(progressPublisher.publishSessionProgress(any(), any())).thenReturn(Mono.just(1L));
+
+        // When - completions arrive out of order within one window
+        StepVerifier.create(coalescing.handlePhotoUploaded(uploaded(first, userId, sessionId), progress(sessionId, userId, 1)))
+            .verifyComplete();
+        StepVerifier.create(coalescing.handlePhotoUploaded(uploaded(second, userId, sessionId), progress(sessionId, userId, 3)))
+            .verifyComplete();
+        StepVerifier.create(coalescing.handlePhotoUploaded(uploaded(third, userId, sessionId), progress(sessionId, userId, 2)))
+            .verifyComplete();
+
+        // Then - one message with the whole batch and the highest counters
+        ArgumentCaptor<PhotoUploadedMessage> messageCaptor = ArgumentCaptor.forClass(PhotoUploadedMessage.class);
+        verify(progressPublisher, timeout(2000)).publishSessionProgress(eq(sessionId.toString()), messageCaptor.capture());
+
+        PhotoUploadedMessage message = messageCaptor.getValue();
+        assertThat(message.photoIds()).containsExactly(first.toString(), second.toString(), third.toString());
+        assertThat(message.photoId()).isEqualTo(third.toString());
+        assertThat(message.uploadedCount()).isEqualTo(3);
+        assertThat(message.totalCount()).isEqualTo(10);
+        assertThat(message.progressPercent()).isEqualTo(30);
+    }
+
+    @Test
+    void shouldFlushPendingBatchBeforeSessionCompleted() {
+        // Given - a window long enough that only the completion can publish the batch
+        UploadProgressEventHandler coalescing = new UploadProgressEventHandler(progressPublisher, progressStore, 60_000);
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        UUID photoId = UUID.randomUUID();
+
+        when(progressPublisher.publishSessionProgress(any(), any())).thenReturn(Mono.just(1L));
+        when(progressPublisher.publishUserNotification(any(), any())).thenReturn(Mono.just(1L));
+
+        StepVerifier.create(coalescing.handlePhotoUploaded(uploaded(photoId, userId, sessionId), progress(sessionId, userId, 10)))
+            .verifyComplete();
+        verifyNoInteractions(progressPublisher);
+
+        // When
+        StepVerifier.create(coalescing.handleSessionCompleted(new UploadSessionCompletedEvent(sessionId, userId, 10, 0)))
+            .verifyComplete();
+
+        // Then - the batch is published first, then SESSION_COMPLETED
+        InOrder order = inOrder(progressPublisher);
+        order.verify(progressPublisher).publishSessionProgress(eq(sessionId.toString()), any(PhotoUploadedMessage.class));
+        order.verify(progressPublisher).publishSessionProgress(eq(sessionId.toString()), any(SessionCompletedMessage.class));
+    }
+
+    @Test
+    void shouldPublishProgressWithoutCompletionWhileSessionIsOpen() {
+        // Given
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        when(progressPublisher.publishSessionProgress(any(), any())).thenReturn(Mono.just(1L));
+
+        // When
+        StepVerifier.create(eventHandler.publishProgress(List.of(first, second), progress(sessionId, userId, 4)))
+            .verifyComplete();
+
+        // Then - one PHOTO_UPLOADED, counters left to the write-behind flush
+        ArgumentCaptor<PhotoUploadedMessage> messageCaptor = ArgumentCaptor.forClass(PhotoUploadedMessage.class);
+        verify(progressPublisher).publishSessionProgress(eq(sessionId.toString()), messageCaptor.capture());
+        assertThat(messageCaptor.getValue().photoIds()).containsExactly(first.toString(), second.toString());
+        verify(progressPublisher, never()).publishUserNotification(any(), any());
+        verify(progressStore, never()).flush(any(UUID.class));
+    }
+
+    @Test
+    void shouldFlushAndCompleteSessionAfterItsLastPhoto() {
+        // Given - counters as returned by the increment that counted the final photo
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        UUID photoId = UUID.randomUUID();
+        SessionProgress finished = new SessionProgress(sessionId, userId, 3, 2, 1);
+
+        when(progressStore.flush(sessionId)).thenReturn(Mono.empty());
+        when(progressPublisher.publishSessionProgress(any(), any())).thenReturn(Mono.just(1L));
+        when(progressPublisher.publishUserNotification(any(), any())).thenReturn(Mono.just(1L));
+
+        // When
+        StepVerifier.create(eventHandler.publishProgress(List.of(photoId), finished))
+            .verifyComplete();
+
+        // Then - counters persisted, then the photo, then SESSION_COMPLETED with the final counts
+        ArgumentCaptor<SessionCompletedMessage> completedCaptor = ArgumentCaptor.forClass(SessionCompletedMessage.class);
+        InOrder order = inOrder(progressStore, progressPublisher);
+        order.verify(progressStore).flush(sessionId);
+        order.verify(progressPublisher).publishSessionProgress(eq(sessionId.toString()), any(PhotoUploadedMessage.class));
+        order.verify(progressPublisher).publishSessionProgress(eq(sessionId.toString()), completedCaptor.capture());
+        assertThat(completedCaptor.getValue().successCount()).isEqualTo(2);
+        assertThat(completedCaptor.getValue().failedCount()).isEqualTo(1);
+        verify(progressPublisher).publishUserNotification(eq(userId.toString()), any(Notification.class));
+    }
+
+    @Test
+    void shouldCompleteSessionAfterItsLastPhotoFails() {
+        // Given
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        PhotoUploadFailedEvent event = new PhotoUploadFailedEvent(
+            UUID.randomUUID(), userId, sessionId, "last.jpg", "Too large");
+        SessionProgress finished = new SessionProgress(sessionId, userId, 3, 2, 1);
+
+        when(progressStore.flush(sessionId)).thenReturn(Mono.empty());
+        when(progressPublisher.publishSessionProgress(any(), any())).thenReturn(Mono.just(1L));
+        when(progressPublisher.publishUserNotification(any(), any())).thenReturn(Mono.just(1L));
+
+        // When
+        StepVerifier.create(eventHandler.publishProgress(event, finished))
+            .verifyComplete();
+
+        // Then
+        InOrder order = inOrder(progressStore, progressPublisher);
+        order.verify(progressStore).flush(sessionId);
+        order.verify(progressPublisher).publishSessionProgress(eq(sessionId.toString()), any(PhotoFailedMessage.class));
+        order.verify(progressPublisher).publishSessionProgress(eq(sessionId.toString()), any(SessionCompletedMessage.class));
+    }
+
+    private static PhotoUploadedEvent uploaded(UUID photoId, UUID userId, UUID sessionId) {
+        return new PhotoUploadedEvent(photoId, userId, sessionId, "test-photo.jpg");
+    }
+
+    private static SessionProgress progress(UUID sessionId, UUID userId, int completed) {
+        return new SessionProgress(sessionId, userId, 10, completed, 0);
+    }
 }
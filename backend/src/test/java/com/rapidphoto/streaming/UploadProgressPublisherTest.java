@@ -4,16 +4,25 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -26,13 +35,17 @@ class UploadProgressPublisherTest {
     @Mock
     private ReactiveRedisTemplate<String, String> redisTemplate;
 
+    @Mock
+    private SessionEventLog eventLog;
+
     private UploadProgressPublisher publisher;
     private ObjectMapper objectMapper;
 
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper();
-        publisher = new UploadProgressPublisher(redisTemplate, objectMapper);
+        publisher = new UploadProgressPublisher(
+            redisTemplate, objectMapper, eventLog, new ProgressMessageCodec(), "json");
     }
 
     @Test
@@ -47,8 +60,8 @@ class UploadProgressPublisherTest {
             50
         );
 
-        when(redisTemplate.convertAndSend(anyString(), anyString()))
-            .thenReturn(Mono.just(2L)); // 2 subscribers received
+        when(eventLog.appendAndPublish(anyString(), anyString(), anyString(), any(byte[].class), anyBoolean()))
+            .thenReturn(Mono.just(2L));
 
         // When
         Mono<Long> result = publisher.publishSessionProgress(sessionId, message);
@@ -58,10 +71,8 @@ class UploadProgressPublisherTest {
             .assertNext(count -> assertThat(count).isEqualTo(2L))
             .verifyComplete();
 
-        verify(redisTemplate).convertAndSend(
-            eq("upload-session:session-123"),
-            anyString()
-        );
+        verify(eventLog).appendAndPublish(
+            eq(sessionId), anyString(), eq("upload-session:session-123"), any(byte[].class), eq(false));
     }
 
     @Test
@@ -76,7 +87,7 @@ class UploadProgressPublisherTest {
             10
         );
 
-        when(redisTemplate.convertAndSend(anyString(), anyString()))
+        when(eventLog.appendAndPublish(anyString(), anyString(), anyString(), any(byte[].class), anyBoolean()))
             .thenReturn(Mono.just(1L));
 
         // When
@@ -99,7 +110,7 @@ class UploadProgressPublisherTest {
             10
         );
 
-        when(redisTemplate.convertAndSend(anyString(), anyString()))
+        when(eventLog.appendAndPublish(anyString(), anyString(), anyString(), any(byte[].class), anyBoolean()))
             .thenReturn(Mono.just(3L));
 
         // When
@@ -232,7 +243,7 @@ class UploadProgressPublisherTest {
             10
         );
 
-        when(redisTemplate.convertAndSend(anyString(), anyString()))
+        when(eventLog.appendAndPublish(anyString(), anyString(), anyString(), any(byte[].class), anyBoolean()))
             .thenReturn(Mono.error(new RuntimeException("Redis connection failed")));
 
         // When
@@ -243,4 +254,100 @@ class UploadProgressPublisherTest {
             .expectErrorMessage("Redis connection failed")
             .verify();
     }
+
+    @Test
+    void shouldLogAndPublishSessionMessageInOneStep() {
+        // Given
+        String sessionId = "session-resume";
+        PhotoUploadedMessage message = new PhotoUploadedMessage(sessionId, "photo-1", 1, 10, 10);
+
+        when(eventLog.appendAndPublish(eq(sessionId), anyString(), anyString(), any(byte[].class), eq(false)))
+            .thenReturn(Mono.just(1L));
+
+        // When
+        StepVerifier.create(publisher.publishSessionProgress(sessionId, message))
+            .expectNext(1L)
+            .verifyComplete();
+
+        // Then - the log stores the plain message, the channel gets the same JSON for the log to tag
+        ArgumentCaptor<String> logged = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<byte[]> published = ArgumentCaptor.forClass(byte[].class);
+        verify(eventLog).appendAndPublish(
+            eq(sessionId), logged.capture(), eq("upload-session:session-resume"), published.capture(), eq(false));
+        assertThat(logged.getValue()).doesNotContain("eventId");
+        assertThat(new String(published.getValue(), StandardCharsets.UTF_8)).isEqualTo(logged.getValue());
+        verifyNoInteractions(redisTemplate);
+
+        // As tagged by the log's script: a trailing eventId field
+        String json = logged.getValue();
+        String tagged = json.substring(0, json.length() - 1) + ",\"eventId\":\"1700000000000-3\"}";
+        UploadProgressPublisher.PublishedMessage received = publisher.readPublished(tagged);
+        assertThat(received.eventId()).isEqualTo("1700000000000-3");
+        assertThat(received.message()).isEqualTo(message);
+    }
+
+    @Test
+    void shouldPublishCompactSessionMessageWhenBinaryWireFormatSelected() {
+        // Given
+        ProgressMessageCodec codec = new ProgressMessageCodec();
+        UploadProgressPublisher binaryPublisher = new UploadProgressPublisher(
+            redisTemplate, objectMapper, eventLog, codec, "binary");
+        String sessionId = UUID.randomUUID().toString();
+        PhotoUploadedMessage message = new PhotoUploadedMessage(sessionId, UUID.randomUUID().toString(), 1, 10, 10);
+
+        when(eventLog.appendAndPublish(eq(sessionId), anyString(), anyString(), any(byte[].class), eq(true)))
+            .thenReturn(Mono.just(1L));
+
+        // When
+        StepVerifier.create(binaryPublisher.publishSessionProgress(sessionId, message))
+            .expectNext(1L)
+            .verifyComplete();
+
+        // Then - the log still stores JSON, the channel gets the compact encoding
+        ArgumentCaptor<String> logged = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<byte[]> published = ArgumentCaptor.forClass(byte[].class);
+        verify(eventLog).appendAndPublish(
+            eq(sessionId), logged.capture(), eq("upload-session:" + sessionId), published.capture(), eq(true));
+        assertThat(publisher.deserializeMessage(logged.getValue())).isEqualTo(message);
+        assertThat(codec.decode(published.getValue()).eventId()).isNull();
+
+        // As tagged by the log's script: flags bit set, then millis and sequence varints after the header
+        UploadProgressPublisher.PublishedMessage received = codec.decode(withEventId(published.getValue(), 1700000000000L, 3));
+        assertThat(received.eventId()).isEqualTo("1700000000000-3");
+        assertThat(received.message()).isEqualTo(message);
+    }
+
+    /**
+     * What SessionEventLog's publish script does to a binary message encoded without an event id.
+     */
+    private static byte[] withEventId(byte[] untagged, long millis, long sequence) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(untagged, 0, 2);
+        out.write(1);
+        for (long value : new long[] {millis, sequence}) {
+            while (value >= 128) {
+                out.write((int) (value % 128 + 128));
+                value /= 128;
+            }
+            out.write((int) value);
+        }
+        out.write(untagged, 3, untagged.length - 3);
+        return out.toByteArray();
+    }
+
+    @Test
+    void shouldRejectUnknownWireFormat() {
+        assertThatThrownBy(() -> new UploadProgressPublisher(
+            redisTemplate, objectMapper, eventLog, new ProgressMessageCodec(), "xml"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldOrderEventLogIdsNumerically() {
+        assertThat(SessionEventLog.compareIds("1700000000000-10", "1700000000000-9")).isPositive();
+        assertThat(SessionEventLog.compareIds("999-5", "1000-0")).isNegative();
+        assertThat(SessionEventLog.compareIds("1000-1", "1000-1")).isZero();
+        assertThat(SessionEventLog.isEntryId("1700000000000-0")).isTrue();
+        assertThat(SessionEventLog.isEntryId(UUID.randomUUID().toString())).isFalse();
+    }
 }
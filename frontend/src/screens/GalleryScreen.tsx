@@ -315,7 +315,7 @@ export const GalleryScreen: React.FC = () => {
       const isHighlighted = highlightedSessionId && photo.sessionId === highlightedSessionId;
       return {
         photoUrl: photo.storageUrl || '',
-        thumbnailUrl: photo.storageUrl || '', // Use storageUrl as fallback for thumbnail
+        thumbnailUrl: photo.thumbnailUrl || photo.storageUrl || '', // Fall back to the original until thumbnails exist
         filename: photo.filename,
         uploadDate: new Date(photo.createdAt),
         fileSize: photo.fileSize,
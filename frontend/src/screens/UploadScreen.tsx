@@ -147,15 +147,18 @@ export const UploadScreen: React.FC = () => {
 
   // Handle SSE message: Photo uploaded successfully
   const handlePhotoUploaded = useCallback((message: PhotoUploadedMessage) => {
-    console.log('[UploadScreen] Photo uploaded:', message.photoId);
+    const photoIds = message.photoIds ?? [message.photoId];
+    console.log('[UploadScreen] Photos uploaded:', photoIds);
     setUploadProgress((prev) => {
       const updated = new Map(prev);
-      updated.set(message.photoId, {
-        photoId: message.photoId,
-        status: 'completed',
-        progress: 100,
-        bytesUploaded: 0,
-        totalBytes: 0,
+      photoIds.forEach((photoId) => {
+        updated.set(photoId, {
+          photoId,
+          status: 'completed',
+          progress: 100,
+          bytesUploaded: 0,
+          totalBytes: 0,
+        });
       });
       return updated;
     });
@@ -344,7 +344,7 @@ describe('SSEManager', () => {
   });
 
   describe('Reconnection', () => {
-    it('should trigger state resync on reconnect', async () => {
+    it('should not resync state just because the connection opened', async () => {
       const messageHandler = jest.fn();
       const resyncHandler = jest.fn();
 
@@ -361,7 +361,34 @@ describe('SSEManager', () => {
 
       await sseManager.connect(messageHandler, resyncHandler);
 
-      expect(resyncHandler).toHaveBeenCalled();
+      expect(resyncHandler).not.toHaveBeenCalled();
+    });
+
+    it('should trigger state resync when the server sends a snapshot', async () => {
+      const messageHandler = jest.fn();
+      const resyncHandler = jest.fn();
+      const snapshot: UploadProgressMessage = {
+        type: 'SESSION_SNAPSHOT',
+        sessionId: 'test-session',
+        uploadedCount: 3,
+        failedCount: 0,
+        totalCount: 10,
+        progressPercent: 30,
+      };
+
+      mockFetchEventSource.mockImplementation(async (_url, options) => {
+        options.onmessage?.({
+          event: 'SESSION_SNAPSHOT',
+          data: JSON.stringify(snapshot),
+          id: '1700000000000-0',
+          retry: 0,
+        });
+      });
+
+      await sseManager.connect(messageHandler, resyncHandler);
+
+      expect(messageHandler).toHaveBeenCalledWith(snapshot);
+      expect(resyncHandler).toHaveBeenCalledTimes(1);
     });
   });
 
@@ -60,12 +60,8 @@ export class SSEManager {
             console.log('[SSE] Connection established');
             this.setConnectionStatus('connected');
             this.reconnectAttempts = 0;
-
-            // Trigger state resync on reconnect (AC5)
-            if (this.resyncHandler) {
-              console.log('[SSE] Triggering state resync on connect');
-              this.resyncHandler();
-            }
+            // Reconnects carry Last-Event-ID; the server replays missed events, or sends
+            // SESSION_SNAPSHOT when it cannot, which triggers the state resync below (AC5)
           } else if (response.status >= 400 && response.status < 500 && response.status !== 429) {
             // Client error (except rate limit) - don't retry
             throw new FatalError(`SSE connection failed: ${response.status} ${response.statusText}`);
@@ -84,7 +80,8 @@ export class SSEManager {
           // Parse event type and data
           if (event.event === 'PHOTO_UPLOADED' ||
               event.event === 'PHOTO_FAILED' ||
-              event.event === 'SESSION_COMPLETED') {
+              event.event === 'SESSION_COMPLETED' ||
+              event.event === 'SESSION_SNAPSHOT') {
             try {
               const message = JSON.parse(event.data) as UploadProgressMessage;
               this.messageHandler?.(message);
@@ -92,6 +89,12 @@ export class SSEManager {
               console.error(`[SSE] Failed to parse ${event.event}:`, error);
             }
           }
+
+          // Missed events could not be replayed (or this is the first connect): resync state
+          if (event.event === 'SESSION_SNAPSHOT' && this.resyncHandler) {
+            console.log('[SSE] Triggering state resync on snapshot');
+            this.resyncHandler();
+          }
         },
 
         onerror: (error) => {
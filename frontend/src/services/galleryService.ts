@@ -21,6 +21,7 @@ export interface Photo {
   fileSize: number;
   s3Key: string | null;
   storageUrl: string | null;
+  thumbnailUrl?: string | null; // Gallery-sized thumbnail once generated
   uploadStatus: 'PENDING' | 'UPLOADING' | 'COMPLETED' | 'FAILED';
   progress: number;
   metadata: Record<string, any>;
@@ -37,6 +38,7 @@ export interface PhotoDTO {
   fileSize: number;
   s3Key: string | null;
   storageUrl: string | null;
+  thumbnailUrl?: string | null; // Gallery-sized thumbnail once generated
   uploadStatus: 'PENDING' | 'UPLOADING' | 'COMPLETED' | 'FAILED';
   progress: number;
   metadata: Record<string, any>;
@@ -52,6 +54,7 @@ export interface GetPhotosParams {
   size?: number;
   sort?: SortOption;
   tagIds?: string[]; // Story 3.4: Optional tag filter (AND logic)
+  cursor?: string; // Keyset cursor from a previous X-Next-Cursor header; overrides page
 }
 
 export interface GetPhotosResponse {
@@ -66,10 +69,14 @@ export interface GetPhotosResponse {
  * Story 3.4: Added tagIds parameter for filtering by tags (AND logic)
  */
 export const getPhotos = async (params: GetPhotosParams = {}): Promise<Photo[]> => {
-  const { page = 0, size = 30, sort = 'createdAt,desc', tagIds = [] } = params;
+  const { page = 0, size = 30, sort = 'createdAt,desc', tagIds = [], cursor } = params;
 
   const queryParams: any = { page, size, sort };
 
+  if (cursor) {
+    queryParams.cursor = cursor;
+  }
+
   // Add tagIds if provided (sent as multiple query params: ?tagIds=uuid1&tagIds=uuid2)
   if (tagIds.length > 0) {
     queryParams.tagIds = tagIds;
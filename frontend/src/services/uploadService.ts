@@ -6,6 +6,7 @@
 
 import axios, { AxiosProgressEvent } from 'axios';
 import { SelectedPhoto } from '../types/upload';
+import { UploadControlSocket } from './websocketService';
 
 export interface UploadProgress {
   photoId: string;
@@ -24,11 +25,16 @@ export interface UploadSession {
   onError?: (photoId: string, error: string) => void;
 }
 
+// Files are hashed in memory; larger ones skip dedup rather than hold the whole file twice
+const MAX_HASHED_FILE_BYTES = 64 * 1024 * 1024;
+
 class UploadService {
   private maxConcurrent = 10;
   private activeUploads = 0;
   private uploadQueue: Array<() => Promise<void>> = [];
   private sessions: Map<string, UploadSession> = new Map();
+  // Per-session control socket for acks, failures and cancel; HTTP is the fallback
+  private controls: Map<string, UploadControlSocket> = new Map();
 
   /**
    * Set maximum concurrent uploads (user preference)
@@ -80,6 +86,13 @@ class UploadService {
 
       this.sessions.set(sessionId, session);
 
+      // Not awaited: photos that finish before it opens are reported over HTTP
+      const control = new UploadControlSocket(apiBaseUrl, authToken, sessionId);
+      this.controls.set(sessionId, control);
+      control.connect().catch((error) => {
+        console.warn('Upload control socket unavailable, using HTTP:', error);
+      });
+
       // Queue all uploads
       for (const photo of photos) {
         this.queueUpload(sessionId, photo, apiBaseUrl, authToken);
@@ -103,6 +116,7 @@ class UploadService {
     const uploadTask = async () => {
       const session = this.sessions.get(sessionId);
       if (!session) return;
+      let backendPhotoId: string | undefined;
 
       try {
         // Update status to uploading
@@ -115,20 +129,46 @@ class UploadService {
             filename: photo.name,
             fileSizeBytes: photo.size,
             mimeType: photo.type,
+            contentHash: await this.computeContentHash(photo),
           },
           {
             headers: { Authorization: `Bearer ${authToken}` },
           }
         );
 
-        const { uploadUrl, partUrls } = initiateResponse.data;
+        if (initiateResponse.data.duplicate) {
+          // Already in the library - nothing to upload or notify
+          this.updatePhotoProgress(sessionId, photo.id, 'completed', 100);
+          this.checkSessionComplete(sessionId);
+          return;
+        }
+
+        const { uploadUrl, partUrls, partSize, uploadId, suggestedConcurrency } = initiateResponse.data;
+        backendPhotoId = initiateResponse.data.photoId;
 
+        // Summed PUT time, so the backend samples per-connection throughput
+        let transferMillis: number | undefined;
         if (uploadUrl) {
           // Single upload for small files
-          await this.uploadSingle(sessionId, photo, uploadUrl);
+          transferMillis = await this.uploadSingle(sessionId, photo, uploadUrl);
         } else if (partUrls) {
           // Multipart upload for large files
-          await this.uploadMultipart(sessionId, photo, partUrls);
+          const multipartBaseUrl =
+            `${apiBaseUrl}/api/upload/sessions/${sessionId}/photos/${initiateResponse.data.photoId}/multipart`;
+          const headers = { Authorization: `Bearer ${authToken}` };
+          try {
+            const upload = await this.uploadMultipart(
+              sessionId, photo, partUrls, partSize, suggestedConcurrency
+            );
+            transferMillis = upload.transferMillis;
+            const parts = upload.parts;
+            // Ask backend to stitch the parts into the final S3 object
+            await axios.post(`${multipartBaseUrl}/complete`, { uploadId, parts }, { headers });
+          } catch (multipartError) {
+            // Discard uploaded parts so they don't linger in S3
+            await axios.post(`${multipartBaseUrl}/abort`, { uploadId }, { headers }).catch(() => undefined);
+            throw multipartError;
+          }
         }
 
         // Mark as completed
@@ -138,13 +178,7 @@ class UploadService {
         try {
           const photoId = initiateResponse.data.photoId;
           const s3Key = initiateResponse.data.s3Key;
-          await axios.post(
-            `${apiBaseUrl}/api/photos/${photoId}/uploaded`,
-            { s3Key },
-            {
-              headers: { Authorization: `Bearer ${authToken}` },
-            }
-          );
+          await this.notifyUploaded(sessionId, photoId, s3Key, transferMillis, apiBaseUrl, authToken);
           console.log(`Successfully notified backend that photo ${photoId} was uploaded`);
         } catch (notifyError: any) {
           console.error('Failed to notify backend of upload completion:', notifyError);
@@ -157,6 +191,13 @@ class UploadService {
         const errorMsg = error.response?.data?.error || error.message || 'Upload failed';
         this.updatePhotoProgress(sessionId, photo.id, 'failed', 0, errorMsg);
         session.onError?.(photo.id, errorMsg);
+        if (backendPhotoId) {
+          // Best effort: lets the backend count the failure towards session completion
+          await this.controls
+            .get(sessionId)
+            ?.send({ type: 'PHOTO_FAILED', photoId: backendPhotoId, reason: errorMsg })
+            .catch(() => undefined);
+        }
       } finally {
         this.activeUploads--;
         this.processQueue();
@@ -167,6 +208,36 @@ class UploadService {
     this.processQueue();
   }
 
+  /**
+   * Tell the backend a photo is in S3: over the session's control socket when it is
+   * open, otherwise (or if the socket drops the command) with a POST.
+   */
+  private async notifyUploaded(
+    sessionId: string,
+    photoId: string,
+    s3Key: string,
+    transferMillis: number | undefined,
+    apiBaseUrl: string,
+    authToken: string
+  ) {
+    const control = this.controls.get(sessionId);
+    if (control?.isConnected()) {
+      try {
+        await control.send({ type: 'PHOTO_UPLOADED', photoId, s3Key, transferMillis });
+        return;
+      } catch (socketError) {
+        console.warn('Upload control socket did not confirm completion, retrying over HTTP:', socketError);
+      }
+    }
+    await axios.post(
+      `${apiBaseUrl}/api/photos/${photoId}/uploaded`,
+      { s3Key, transferMillis },
+      {
+        headers: { Authorization: `Bearer ${authToken}` },
+      }
+    );
+  }
+
   /**
    * Process upload queue
    */
@@ -181,17 +252,38 @@ class UploadService {
   }
 
   /**
-   * Upload single file to S3
+   * Hex SHA-256 of the file, used by the backend to skip files already in the library.
+   * Returns undefined (upload normally) for large files or when WebCrypto is unavailable.
+   */
+  private async computeContentHash(photo: SelectedPhoto): Promise<string | undefined> {
+    if (photo.size > MAX_HASHED_FILE_BYTES || !globalThis.crypto?.subtle) {
+      return undefined;
+    }
+    try {
+      const buffer = await fetch(photo.uri).then((r) => r.arrayBuffer());
+      const digest = await globalThis.crypto.subtle.digest('SHA-256', buffer);
+      return Array.from(new Uint8Array(digest))
+        .map((b) => b.toString(16).padStart(2, '0'))
+        .join('');
+    } catch {
+      return undefined;
+    }
+  }
+
+  /**
+   * Upload single file to S3.
+   * Returns how long the PUT took in milliseconds.
    */
   private async uploadSingle(
     sessionId: string,
     photo: SelectedPhoto,
     uploadUrl: string
-  ): Promise<void> {
+  ): Promise<number> {
     // Fetch the file blob
     const blob = await fetch(photo.uri).then((r) => r.blob());
 
     // Upload to S3
+    const startedAt = Date.now();
     await axios.put(uploadUrl, blob, {
       headers: {
         'Content-Type': photo.type,
@@ -203,45 +295,50 @@ class UploadService {
         }
       },
     });
+    return Date.now() - startedAt;
   }
 
   /**
-   * Upload file in multiple parts (for large files)
+   * Upload file in multiple parts (for large files).
+   * Returns the part numbers and ETags needed to complete the S3 multipart upload, and
+   * the summed duration of the part PUTs (time per connection, not wall-clock time).
    */
   private async uploadMultipart(
     sessionId: string,
     photo: SelectedPhoto,
-    partUrls: string[]
-  ): Promise<void> {
+    partUrls: string[],
+    partSize: number = 5 * 1024 * 1024,
+    concurrency: number = 3
+  ): Promise<{ parts: { partNumber: number; etag: string }[]; transferMillis: number }> {
     const blob = await fetch(photo.uri).then((r) => r.blob());
-    const partSize = 5 * 1024 * 1024; // 5MB per part
+    const parts: { partNumber: number; etag: string }[] = [];
+    let completedParts = 0;
+    let transferMillis = 0;
 
-    // Upload each part
-    const partPromises = partUrls.map(async (partUrl, index) => {
+    const uploadPart = async (index: number) => {
       const start = index * partSize;
       const end = Math.min(start + partSize, blob.size);
       const partBlob = blob.slice(start, end);
 
-      await axios.put(partUrl, partBlob, {
-        headers: {
-          'Content-Type': photo.type,
-        },
-      });
+      // No Content-Type: UploadPart URLs are not signed with one
+      const startedAt = Date.now();
+      const response = await axios.put(partUrls[index], partBlob);
+      transferMillis += Date.now() - startedAt;
+      parts.push({ partNumber: index + 1, etag: response.headers['etag'] });
 
       // Update progress based on parts completed
-      const progress = Math.round(((index + 1) / partUrls.length) * 100);
+      completedParts++;
+      const progress = Math.round((completedParts / partUrls.length) * 100);
       this.updatePhotoProgress(sessionId, photo.id, 'uploading', progress);
-    });
+    };
 
-    // Upload max 3 parts concurrently
-    const chunks = [];
-    for (let i = 0; i < partPromises.length; i += 3) {
-      chunks.push(partPromises.slice(i, i + 3));
+    // Upload parts with the concurrency suggested by the backend's upload plan
+    for (let i = 0; i < partUrls.length; i += concurrency) {
+      const indexes = partUrls.slice(i, i + concurrency).map((_, offset) => i + offset);
+      await Promise.all(indexes.map(uploadPart));
     }
 
-    for (const chunk of chunks) {
-      await Promise.all(chunk);
-    }
+    return { parts: parts.sort((a, b) => a.partNumber - b.partNumber), transferMillis };
   }
 
   /**
@@ -285,6 +382,7 @@ class UploadService {
 
     if (allComplete) {
       session.onComplete?.(sessionId);
+      this.closeControl(sessionId);
     }
   }
 
@@ -306,9 +404,26 @@ class UploadService {
       }
     });
 
+    // Let the backend move the session to CANCELLED, then close the socket
+    const control = this.controls.get(sessionId);
+    this.controls.delete(sessionId);
+    if (control?.isConnected()) {
+      control
+        .send({ type: 'CANCEL' })
+        .catch((error) => console.warn('Failed to cancel session on backend:', error))
+        .finally(() => control.disconnect());
+    } else {
+      control?.disconnect();
+    }
+
     this.sessions.delete(sessionId);
   }
 
+  private closeControl(sessionId: string) {
+    this.controls.get(sessionId)?.disconnect();
+    this.controls.delete(sessionId);
+  }
+
   /**
    * Get session status
    */
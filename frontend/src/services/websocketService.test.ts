@@ -0,0 +1,106 @@
+/**
+ * Tests for the upload control WebSocket client
+ */
+
+import { UploadControlSocket } from './websocketService';
+
+class FakeWebSocket {
+  static OPEN = 1;
+  static instances: FakeWebSocket[] = [];
+
+  readyState = 0;
+  sent: any[] = [];
+  onopen: (() => void) | null = null;
+  onerror: (() => void) | null = null;
+  onclose: (() => void) | null = null;
+  onmessage: ((event: { data: string }) => void) | null = null;
+
+  constructor(public url: string) {
+    FakeWebSocket.instances.push(this);
+  }
+
+  send(data: string) {
+    this.sent.push(JSON.parse(data));
+  }
+
+  close() {
+    this.readyState = 3;
+    this.onclose?.();
+  }
+
+  open() {
+    this.readyState = FakeWebSocket.OPEN;
+    this.onopen?.();
+  }
+
+  receive(message: object) {
+    this.onmessage?.({ data: JSON.stringify(message) });
+  }
+}
+
+describe('UploadControlSocket', () => {
+  const originalWebSocket = (global as any).WebSocket;
+
+  beforeEach(() => {
+    FakeWebSocket.instances = [];
+    (global as any).WebSocket = FakeWebSocket;
+  });
+
+  afterEach(() => {
+    (global as any).WebSocket = originalWebSocket;
+  });
+
+  async function connected(onMessage?: (message: any) => void) {
+    const control = new UploadControlSocket('https://api.example.com', 'tok en', 'session-1');
+    const opening = control.connect(onMessage);
+    const socket = FakeWebSocket.instances[0];
+    socket.open();
+    await opening;
+    return { control, socket };
+  }
+
+  it('should connect to the session socket with the token in the query', async () => {
+    const { control, socket } = await connected();
+
+    expect(socket.url).toBe('wss://api.example.com/api/upload/sessions/session-1/ws?access_token=tok%20en');
+    expect(control.isConnected()).toBe(true);
+  });
+
+  it('should resolve commands on ACK and reject them on ERROR', async () => {
+    const { control, socket } = await connected();
+
+    const uploaded = control.send({ type: 'PHOTO_UPLOADED', photoId: 'p1', s3Key: 'k1' });
+    const failed = control.send({ type: 'PHOTO_FAILED', photoId: 'p2', reason: 'Network error' });
+    expect(socket.sent).toEqual([
+      { type: 'PHOTO_UPLOADED', photoId: 'p1', s3Key: 'k1', requestId: '1' },
+      { type: 'PHOTO_FAILED', photoId: 'p2', reason: 'Network error', requestId: '2' },
+    ]);
+
+    // Replies may come back in any order
+    socket.receive({ type: 'ERROR', requestId: '2', error: 'Not authorized' });
+    socket.receive({ type: 'ACK', requestId: '1' });
+
+    await expect(uploaded).resolves.toBeUndefined();
+    await expect(failed).rejects.toThrow('Not authorized');
+  });
+
+  it('should pass progress messages to the handler', async () => {
+    const onMessage = jest.fn();
+    const { socket } = await connected(onMessage);
+
+    socket.receive({ type: 'SESSION_SNAPSHOT', sessionId: 'session-1', uploadedCount: 2 });
+
+    expect(onMessage).toHaveBeenCalledWith({ type: 'SESSION_SNAPSHOT', sessionId: 'session-1', uploadedCount: 2 });
+  });
+
+  it('should reject pending and new commands once closed', async () => {
+    const { control, socket } = await connected();
+
+    const pending = control.send({ type: 'CANCEL' });
+    socket.close();
+
+    await expect(pending).rejects.toThrow('closed');
+    await expect(control.send({ type: 'CANCEL' })).rejects.toThrow('not connected');
+    expect(control.isConnected()).toBe(false);
+  });
+});
@@ -1,45 +1,130 @@
 /**
- * WebSocket Service - Real-time Progress Updates
+ * WebSocket Service - Upload control channel
  * Story 2.8: WebSocket Client Integration
+ *
+ * One socket per upload session (GET /api/upload/sessions/{sessionId}/ws) carries
+ * completion acks, failure reports and cancel to the backend, and pushes the session's
+ * progress messages back, instead of one HTTP request per photo.
  */
 
-import { Client, IMessage } from '@stomp/stompjs';
-import SockJS from 'sockjs-client';
-
-export class WebSocketService {
-  private client: Client | null = null;
-  private connected = false;
-
-  connect(sessionId: string, onMessage: (data: any) => void) {
-    const socket = new SockJS(`${process.env.REACT_APP_API_URL}/ws`);
-    
-    this.client = new Client({
-      webSocketFactory: () => socket as any,
-      onConnect: () => {
-        this.connected = true;
-        this.client?.subscribe(`/topic/upload-sessions/${sessionId}`, (message: IMessage) => {
-          const data = JSON.parse(message.body);
-          onMessage(data);
-        });
-      },
-      onDisconnect: () => {
-        this.connected = false;
-      },
+import { UploadProgressMessage } from '../types/sse';
+
+export type UploadControlCommand =
+  | { type: 'PHOTO_UPLOADED'; photoId: string; s3Key: string; transferMillis?: number }
+  | { type: 'PHOTO_FAILED'; photoId: string; reason: string }
+  | { type: 'CANCEL' };
+
+interface UploadControlReply {
+  type: 'ACK' | 'ERROR';
+  requestId?: string;
+  error?: string;
+}
+
+interface PendingCommand {
+  resolve: () => void;
+  reject: (error: Error) => void;
+  timer: ReturnType<typeof setTimeout>;
+}
+
+// A command without a reply by then is treated as lost, so callers can fall back to HTTP
+const REPLY_TIMEOUT_MS = 15000;
+
+export class UploadControlSocket {
+  private socket: WebSocket | null = null;
+  private pending: Map<string, PendingCommand> = new Map();
+  private nextRequestId = 0;
+
+  constructor(
+    private apiBaseUrl: string,
+    private authToken: string,
+    private sessionId: string
+  ) {}
+
+  /**
+   * Open the socket; resolves once it is usable.
+   * Browsers cannot set headers on a WebSocket handshake, so the token goes in the query.
+   */
+  connect(onMessage?: (message: UploadProgressMessage) => void): Promise<void> {
+    const url =
+      `${this.apiBaseUrl.replace(/^http/, 'ws')}/api/upload/sessions/${this.sessionId}/ws` +
+      `?access_token=${encodeURIComponent(this.authToken)}`;
+
+    return new Promise((resolve, reject) => {
+      const socket = new WebSocket(url);
+      this.socket = socket;
+
+      socket.onopen = () => resolve();
+      socket.onerror = () => reject(new Error('Upload control socket failed'));
+      socket.onclose = () => {
+        if (this.socket === socket) {
+          this.socket = null;
+        }
+        this.rejectPending('Upload control socket closed');
+      };
+      socket.onmessage = (event) => {
+        const data = JSON.parse(event.data);
+        if (data.type === 'ACK' || data.type === 'ERROR') {
+          this.settle(data as UploadControlReply);
+        } else {
+          onMessage?.(data as UploadProgressMessage);
+        }
+      };
     });
+  }
 
-    this.client.activate();
+  isConnected(): boolean {
+    return this.socket !== null && this.socket.readyState === WebSocket.OPEN;
+  }
+
+  /**
+   * Send a command; resolves on ACK, rejects on ERROR, timeout or disconnect.
+   */
+  send(command: UploadControlCommand): Promise<void> {
+    const socket = this.socket;
+    if (!socket || socket.readyState !== WebSocket.OPEN) {
+      return Promise.reject(new Error('Upload control socket not connected'));
+    }
+
+    const requestId = String(++this.nextRequestId);
+    return new Promise((resolve, reject) => {
+      const timer = setTimeout(() => {
+        this.pending.delete(requestId);
+        reject(new Error('No reply to upload control command'));
+      }, REPLY_TIMEOUT_MS);
+      this.pending.set(requestId, { resolve, reject, timer });
+      socket.send(JSON.stringify({ ...command, requestId }));
+    });
   }
 
   disconnect() {
-    if (this.client) {
-      this.client.deactivate();
-      this.connected = false;
+    const socket = this.socket;
+    this.socket = null;
+    socket?.close();
+    this.rejectPending('Upload control socket closed');
+  }
+
+  private settle(reply: UploadControlReply) {
+    if (!reply.requestId) {
+      console.warn('[WS] Server could not read a command:', reply.error);
+      return;
+    }
+    const command = this.pending.get(reply.requestId);
+    if (!command) return;
+
+    this.pending.delete(reply.requestId);
+    clearTimeout(command.timer);
+    if (reply.type === 'ACK') {
+      command.resolve();
+    } else {
+      command.reject(new Error(reply.error || 'Upload control command failed'));
     }
   }
 
-  isConnected(): boolean {
-    return this.connected;
+  private rejectPending(reason: string) {
+    this.pending.forEach((command) => {
+      clearTimeout(command.timer);
+      command.reject(new Error(reason));
+    });
+    this.pending.clear();
   }
 }
-
-export const websocketService = new WebSocketService();
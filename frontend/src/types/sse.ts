@@ -6,12 +6,15 @@
 export type UploadProgressMessage =
   | PhotoUploadedMessage
   | PhotoFailedMessage
-  | SessionCompletedMessage;
+  | SessionCompletedMessage
+  | SessionSnapshotMessage;
 
 export interface PhotoUploadedMessage {
   type: 'PHOTO_UPLOADED';
   sessionId: string;
   photoId: string;
+  // Every photo in the coalesced batch; photoId is the last of them
+  photoIds?: string[];
   uploadedCount: number;
   totalCount: number;
   progressPercent: number;
@@ -37,6 +40,16 @@ export interface SessionCompletedMessage {
   timestamp: string;
 }
 
+// Sent first when a stream starts without replaying missed events
+export interface SessionSnapshotMessage {
+  type: 'SESSION_SNAPSHOT';
+  sessionId: string;
+  uploadedCount: number;
+  failedCount: number;
+  totalCount: number;
+  progressPercent: number;
+}
+
 export interface UploadStatus {
   status: 'queued' | 'uploading' | 'completed' | 'failed';
   percent?: number;
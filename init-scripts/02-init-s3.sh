@@ -6,8 +6,9 @@ echo "Initializing S3 bucket..."
 # Wait for LocalStack to be ready
 sleep 5
 
-# Create bucket
+# Create buckets
 awslocal s3 mb s3://rapidphoto-uploads
+awslocal s3 mb s3://rapidphoto-thumbnails
 
 # Configure CORS
 awslocal s3api put-bucket-cors --bucket rapidphoto-uploads --cors-configuration '{
@@ -23,3 +24,18 @@ awslocal s3api put-bucket-cors --bucket rapidphoto-uploads --cors-configuration
 }'
 
 echo "S3 bucket initialized with CORS configuration"
+
+# Upload notifications for the backend ingestion worker (UPLOAD_INGEST_QUEUE=sqs,
+# UPLOAD_INGEST_SQS_QUEUE_URL=http://localhost:4566/000000000000/rapidphoto-upload-events)
+awslocal sqs create-queue --queue-name rapidphoto-upload-events
+awslocal s3api put-bucket-notification-configuration --bucket rapidphoto-uploads --notification-configuration '{
+  "QueueConfigurations": [
+    {
+      "QueueArn": "arn:aws:sqs:us-east-1:000000000000:rapidphoto-upload-events",
+      "Events": ["s3:ObjectCreated:*"],
+      "Filter": { "Key": { "FilterRules": [{ "Name": "prefix", "Value": "uploads/" }] } }
+    }
+  ]
+}'
+
+echo "S3 upload notifications routed to SQS queue rapidphoto-upload-events"